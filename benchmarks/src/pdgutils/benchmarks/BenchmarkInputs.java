@@ -0,0 +1,107 @@
+package pdgutils.benchmarks;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.controlFlow.AnalysisCanceledException;
+import com.intellij.psi.controlFlow.ControlFlow;
+import com.intellij.psi.controlFlow.ControlFlowFactory;
+import com.intellij.psi.controlFlow.ControlFlowPolicy;
+import com.intellij.psi.controlFlow.LocalsOrMyInstanceFieldsControlFlowPolicy;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.EdtTestUtil;
+import com.intellij.testFramework.fixtures.CodeInsightTestFixture;
+import com.intellij.testFramework.fixtures.IdeaProjectTestFixture;
+import com.intellij.testFramework.fixtures.IdeaTestFixtureFactory;
+import com.intellij.testFramework.fixtures.TestFixtureBuilder;
+import org.jetbrains.annotations.NotNull;
+import pdgutils.ControlFlowGraph;
+import pdgutils.SyntheticControlFlowGraphFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Inputs shared by the benchmarks: control flow for the test programs under {@code testData/psi}, and synthetic
+ * graphs of a chosen size.
+ */
+public class BenchmarkInputs {
+
+    private static final String[] TEST_DATA_DIRS = {
+            "testData/psi/controlFlow",
+            "testData/psi/controlFlowGraph",
+            "testData/psi/controlDependenceGraph"
+    };
+
+    private static final long SYNTHETIC_SEED = 42;
+
+    private static List<ControlFlow> sTestDataControlFlows;
+
+    /**
+     * Build control flow for the code block at the caret of every test program. The programs are loaded into a light
+     * project fixture once per JVM, which is left open for the lifetime of the benchmark fork.
+     */
+    @NotNull
+    public static synchronized List<ControlFlow> getTestDataControlFlows() throws Exception {
+        if (sTestDataControlFlows == null) {
+            List<ControlFlow> controlFlows = new ArrayList<>();
+            EdtTestUtil.runInEdtAndWait(() -> {
+                IdeaTestFixtureFactory factory = IdeaTestFixtureFactory.getFixtureFactory();
+                TestFixtureBuilder<IdeaProjectTestFixture> builder = factory.createLightFixtureBuilder();
+                CodeInsightTestFixture fixture = factory.createCodeInsightFixture(builder.getFixture());
+                fixture.setUp();
+                for (File file : getTestDataFiles()) {
+                    controlFlows.add(getControlFlow(fixture, file));
+                }
+            });
+            sTestDataControlFlows = controlFlows;
+        }
+        return sTestDataControlFlows;
+    }
+
+    @NotNull
+    private static List<File> getTestDataFiles() {
+        List<File> files = new ArrayList<>();
+        for (String dir : TEST_DATA_DIRS) {
+            File[] dirFiles = new File(dir).listFiles((parent, name) -> name.endsWith(".java"));
+            if (dirFiles == null) {
+                throw new IllegalStateException("Can't find " + dir + "; run benchmarks from the project directory");
+            }
+            Arrays.sort(dirFiles);
+            files.addAll(Arrays.asList(dirFiles));
+        }
+        return files;
+    }
+
+    @NotNull
+    private static ControlFlow getControlFlow(@NotNull CodeInsightTestFixture fixture, @NotNull File file)
+            throws IOException, AnalysisCanceledException {
+        String contents = StringUtil.convertLineSeparators(FileUtil.loadFile(file));
+        fixture.configureByText(file.getName(), contents);
+        // Same policy selection as the golden-file tests.
+        ControlFlowPolicy policy = contents.startsWith("// LocalsOrMyInstanceFieldsControlFlowPolicy") ?
+                LocalsOrMyInstanceFieldsControlFlowPolicy.getInstance() : null;
+        return ReadAction.compute(() -> {
+            PsiElement element = fixture.getFile().findElementAt(fixture.getCaretOffset());
+            PsiCodeBlock block = PsiTreeUtil.getParentOfType(element, PsiCodeBlock.class, false);
+            if (block == null) {
+                throw new IllegalStateException("No code block at the caret in " + file);
+            }
+            return ControlFlowFactory.getInstance(fixture.getProject()).getControlFlow(block, policy);
+        });
+    }
+
+    /**
+     * @return a generated graph of {@code size} instructions plus an exit node. The seed is fixed, so every run
+     * measures the same graph.
+     */
+    @NotNull
+    public static ControlFlowGraph getSyntheticGraph(int size) {
+        return new SyntheticControlFlowGraphFactory(SYNTHETIC_SEED).getControlFlowGraph(size);
+    }
+}
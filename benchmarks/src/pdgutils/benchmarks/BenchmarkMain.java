@@ -0,0 +1,35 @@
+package pdgutils.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs every benchmark with the GC profiler, so allocation rates are reported next to timings. Run from the project
+ * directory, so that {@code testData} can be found. Results for each synthetic size are written to
+ * {@code bench_output.csv} for plotting scaling curves; arguments are passed on as a benchmark name filter.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws RunnerException {
+        OptionsBuilder builder = new OptionsBuilder();
+        if (args.length == 0) {
+            builder.include("Benchmark");
+        }
+        for (String arg : args) {
+            builder.include(arg);
+        }
+        Options options = builder
+                .addProfiler(GCProfiler.class)
+                .forks(1)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .resultFormat(ResultFormatType.CSV)
+                .result("bench_output.csv")
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,75 @@
+package pdgutils.benchmarks;
+
+import com.intellij.psi.controlFlow.ControlFlow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import pdgutils.ControlDependenceGraph;
+import pdgutils.ControlFlowGraph;
+import pdgutils.ControlFlowGraphFactory;
+import pdgutils.PostdominatorStrategy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link ControlDependenceGraph#from} with each postdominator strategy. Graphs cache their dense form, which is
+ * built during setup, so this measures postdominators and control dependences only.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ControlDependenceGraphBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class TestData {
+
+        @Param({"SET_INTERSECTION", "BITSET_INTERSECTION", "COOPER_HARVEY_KENNEDY"})
+        PostdominatorStrategy mStrategy;
+
+        List<ControlFlowGraph> mGraphs = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            for (ControlFlow controlFlow : BenchmarkInputs.getTestDataControlFlows()) {
+                ControlFlowGraph graph = ControlFlowGraphFactory.getControlFlowGraph(controlFlow);
+                graph.getDenseGraph();
+                mGraphs.add(graph);
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Synthetic {
+
+        @Param({"1024", "16384", "262144"})
+        int mSize;
+
+        ControlFlowGraph mGraph;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            mGraph = BenchmarkInputs.getSyntheticGraph(mSize);
+            mGraph.getDenseGraph();
+        }
+    }
+
+    @Benchmark
+    public void fromTestData(TestData testData, Blackhole blackhole) {
+        for (ControlFlowGraph graph : testData.mGraphs) {
+            blackhole.consume(ControlDependenceGraph.from(graph, testData.mStrategy));
+        }
+    }
+
+    @Benchmark
+    public ControlDependenceGraph fromSynthetic(Synthetic synthetic) {
+        return ControlDependenceGraph.from(synthetic.mGraph, PostdominatorStrategy.COOPER_HARVEY_KENNEDY);
+    }
+}
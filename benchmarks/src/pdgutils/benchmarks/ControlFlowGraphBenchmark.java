@@ -0,0 +1,50 @@
+package pdgutils.benchmarks;
+
+import com.intellij.psi.controlFlow.ControlFlow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import pdgutils.ControlFlowGraphFactory;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of building control flow graphs from IntelliJ control flow. One operation builds the graphs for every
+ * test program.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ControlFlowGraphBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class TestData {
+
+        List<ControlFlow> mControlFlows;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            mControlFlows = BenchmarkInputs.getTestDataControlFlows();
+        }
+    }
+
+    @Benchmark
+    public void getControlFlowGraph(TestData testData, Blackhole blackhole) {
+        for (ControlFlow controlFlow : testData.mControlFlows) {
+            blackhole.consume(ControlFlowGraphFactory.getControlFlowGraph(controlFlow));
+        }
+    }
+
+    @Benchmark
+    public void getDenseControlFlowGraph(TestData testData, Blackhole blackhole) {
+        for (ControlFlow controlFlow : testData.mControlFlows) {
+            blackhole.consume(ControlFlowGraphFactory.getDenseControlFlowGraph(controlFlow));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package pdgutils.benchmarks;
+
+import com.intellij.openapi.util.io.FileUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import pdgutils.ControlDependenceGraph;
+import pdgutils.DenseControlFlowGraph;
+import pdgutils.GraphRecord;
+import pdgutils.GraphStore;
+import pdgutils.GraphStoreWriter;
+import pdgutils.ImmediatePostdominatorSolver;
+import pdgutils.PostdominanceFrontier;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of opening a {@link GraphStore} and of looking graphs up in it, for stores of up to two million graphs. Every
+ * graph in a store is the same small generated graph under its own signature, so the store is quick to write during
+ * setup and lookups measure the index and decoding rather than graph size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GraphStoreBenchmark {
+
+    private static final int GRAPH_SIZE = 32;
+    private static final int LOOKUP_COUNT = 4096;
+
+    @State(Scope.Benchmark)
+    public static class Store {
+
+        @Param({"100000", "2000000"})
+        int mGraphCount;
+
+        File mDirectory;
+        GraphStore mStore;
+        String[] mSignatures = new String[LOOKUP_COUNT];
+        int mNext;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            mDirectory = FileUtil.createTempDirectory("graphStoreBenchmark", null);
+            DenseControlFlowGraph graph = BenchmarkInputs.getSyntheticGraph(GRAPH_SIZE).getDenseGraph();
+            ControlDependenceGraph dependences = PostdominanceFrontier.getControlDependenceGraph(graph,
+                    ImmediatePostdominatorSolver.getImmediatePostdominators(graph));
+            try (GraphStoreWriter writer = new GraphStoreWriter(mDirectory)) {
+                for (int i = 0; i < mGraphCount; i++) {
+                    writer.add(getSignature(i), graph, dependences);
+                }
+            }
+            Random random = new Random(42);
+            for (int i = 0; i < LOOKUP_COUNT; i++) {
+                mSignatures[i] = getSignature(random.nextInt(mGraphCount));
+            }
+            mStore = GraphStore.open(mDirectory);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            mStore.close();
+            FileUtil.delete(mDirectory);
+        }
+
+        String nextSignature() {
+            mNext = (mNext + 1) % LOOKUP_COUNT;
+            return mSignatures[mNext];
+        }
+    }
+
+    private static String getSignature(int i) {
+        return "com.example.Generated" + (i / 100) + "#method" + i + "(int,java.lang.String)";
+    }
+
+    /**
+     * Open a store and close it again. Only the index is mapped, so this shouldn't grow with the store.
+     */
+    @Benchmark
+    public int open(Store store) throws IOException {
+        try (GraphStore opened = GraphStore.open(store.mDirectory)) {
+            return opened.getGraphCount();
+        }
+    }
+
+    @Benchmark
+    public GraphRecord read(Store store) throws IOException {
+        return store.mStore.read(store.nextSignature());
+    }
+
+    @Benchmark
+    public boolean contains(Store store) throws IOException {
+        return store.mStore.contains(store.nextSignature());
+    }
+}
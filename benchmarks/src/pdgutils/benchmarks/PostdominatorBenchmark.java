@@ -0,0 +1,154 @@
+package pdgutils.benchmarks;
+
+import com.intellij.psi.controlFlow.ControlFlow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import pdgutils.BitsetPostdominatorIndex;
+import pdgutils.ControlFlowGraph;
+import pdgutils.ControlFlowGraphFactory;
+import pdgutils.ImmediatePostdominatorSolver;
+import pdgutils.ImmediatePostdominatorTree;
+import pdgutils.Postdominator;
+import pdgutils.PostdominatorIndex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of computing postdominators and immediate postdominator trees, measured separately so that a regression can be
+ * pinned on one stage. Trees are built from indexes computed during setup.
+ * <p>
+ * Synthetic sizes are picked per algorithm: the set-intersection index keeps a path per postdominator and bitsets are
+ * quadratic in the number of nodes, so only the immediate postdominator solver runs on the largest graphs.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PostdominatorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class TestData {
+
+        List<ControlFlowGraph> mGraphs = new ArrayList<>();
+        List<PostdominatorIndex> mPostdominatorIndexes = new ArrayList<>();
+        List<BitsetPostdominatorIndex> mBitsetPostdominatorIndexes = new ArrayList<>();
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            for (ControlFlow controlFlow : BenchmarkInputs.getTestDataControlFlows()) {
+                ControlFlowGraph graph = ControlFlowGraphFactory.getControlFlowGraph(controlFlow);
+                mGraphs.add(graph);
+                mPostdominatorIndexes.add(Postdominator.getPostdominators(graph));
+                mBitsetPostdominatorIndexes.add(BitsetPostdominatorIndex.getPostdominators(graph));
+            }
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class SetSynthetic {
+
+        @Param({"8", "16", "32"})
+        int mSize;
+
+        ControlFlowGraph mGraph;
+        PostdominatorIndex mPostdominatorIndex;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            mGraph = BenchmarkInputs.getSyntheticGraph(mSize);
+            mPostdominatorIndex = Postdominator.getPostdominators(mGraph);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class BitsetSynthetic {
+
+        @Param({"256", "1024", "4096"})
+        int mSize;
+
+        ControlFlowGraph mGraph;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            mGraph = BenchmarkInputs.getSyntheticGraph(mSize);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Synthetic {
+
+        @Param({"1024", "16384", "262144"})
+        int mSize;
+
+        ControlFlowGraph mGraph;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            mGraph = BenchmarkInputs.getSyntheticGraph(mSize);
+            mGraph.getDenseGraph();
+        }
+    }
+
+    @Benchmark
+    public void getPostdominatorsTestData(TestData testData, Blackhole blackhole) {
+        for (ControlFlowGraph graph : testData.mGraphs) {
+            blackhole.consume(Postdominator.getPostdominators(graph));
+        }
+    }
+
+    @Benchmark
+    public void getBitsetPostdominatorsTestData(TestData testData, Blackhole blackhole) {
+        for (ControlFlowGraph graph : testData.mGraphs) {
+            blackhole.consume(BitsetPostdominatorIndex.getPostdominators(graph));
+        }
+    }
+
+    @Benchmark
+    public void newImmediatePostdominatorTreeTestData(TestData testData, Blackhole blackhole) {
+        for (PostdominatorIndex index : testData.mPostdominatorIndexes) {
+            blackhole.consume(new ImmediatePostdominatorTree(index));
+        }
+    }
+
+    @Benchmark
+    public void newBitsetImmediatePostdominatorTreeTestData(TestData testData, Blackhole blackhole) {
+        for (BitsetPostdominatorIndex index : testData.mBitsetPostdominatorIndexes) {
+            blackhole.consume(new ImmediatePostdominatorTree(index));
+        }
+    }
+
+    @Benchmark
+    public void solveImmediatePostdominatorsTestData(TestData testData, Blackhole blackhole) {
+        for (ControlFlowGraph graph : testData.mGraphs) {
+            blackhole.consume(ImmediatePostdominatorSolver.getImmediatePostdominators(graph.getDenseGraph()));
+        }
+    }
+
+    @Benchmark
+    public PostdominatorIndex getPostdominatorsSynthetic(SetSynthetic synthetic) {
+        return Postdominator.getPostdominators(synthetic.mGraph);
+    }
+
+    @Benchmark
+    public ImmediatePostdominatorTree newImmediatePostdominatorTreeSynthetic(SetSynthetic synthetic) {
+        return new ImmediatePostdominatorTree(synthetic.mPostdominatorIndex);
+    }
+
+    @Benchmark
+    public BitsetPostdominatorIndex getBitsetPostdominatorsSynthetic(BitsetSynthetic synthetic) {
+        return BitsetPostdominatorIndex.getPostdominators(synthetic.mGraph);
+    }
+
+    @Benchmark
+    public int[] solveImmediatePostdominatorsSynthetic(Synthetic synthetic) {
+        return ImmediatePostdominatorSolver.getImmediatePostdominators(synthetic.mGraph.getDenseGraph());
+    }
+}
@@ -1,8 +0,0 @@
-import com.intellij.psi.controlFlow.SimpleInstruction;
-
-public class StatementInstruction extends SimpleInstruction {
-    @Override
-    public String toString() {
-        return "STATEMENT";
-    }
-}
@@ -0,0 +1,282 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A control flow graph whose nodes are basic blocks: runs of consecutive instructions where each instruction but the
+ * last has exactly one successor, the next instruction, and each instruction but the first has exactly one
+ * predecessor, the previous instruction. Block {@code b} covers the instruction nodes
+ * {@code [getStartOffset(b), getEndOffset(b))}, and its edges are the edges of its last instruction.
+ * <p>
+ * Blocks of one instruction keep that instruction; longer blocks get a {@link StatementInstruction}. The exit node is
+ * always a block of its own.
+ */
+public class BasicBlockGraph {
+
+    private final DenseControlFlowGraph mInstructionGraph;
+    private final DenseControlFlowGraph mBlockGraph;
+    private final int[] mBlockStarts;
+    private final int[] mInstructionBlocks;
+
+    private BasicBlockGraph(@NotNull DenseControlFlowGraph instructionGraph, @NotNull int[] blockStarts,
+                            @NotNull int[] instructionBlocks, @NotNull DenseControlFlowGraph blockGraph) {
+        mInstructionGraph = instructionGraph;
+        mBlockStarts = blockStarts;
+        mInstructionBlocks = instructionBlocks;
+        mBlockGraph = blockGraph;
+    }
+
+    /**
+     * Consolidate the nodes of a graph built by {@link ControlFlowGraphFactory#getDenseControlFlowGraph}. The block
+     * graph gets its own nodes, so the ids of the instruction graph's nodes are left alone.
+     */
+    @NotNull
+    public static BasicBlockGraph from(@NotNull DenseControlFlowGraph instructionGraph) {
+        int nodeCount = instructionGraph.size();
+        int[] instructionBlocks = new int[nodeCount];
+        int[] blockStarts = new int[nodeCount + 1];
+        boolean[] reachesExit = getNodesReachingExit(instructionGraph);
+        int blockCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (node == 0 || !reachesExit[node] || !continuesBlock(instructionGraph, node)) {
+                blockStarts[blockCount++] = node;
+            }
+            instructionBlocks[node] = blockCount - 1;
+        }
+        blockStarts[blockCount] = nodeCount;
+        blockStarts = Arrays.copyOf(blockStarts, blockCount + 1);
+
+        ControlFlowNode[] blocks = new ControlFlowNode[blockCount];
+        int edgeCount = 0;
+        for (int block = 0; block < blockCount; block++) {
+            int start = blockStarts[block];
+            int last = blockStarts[block + 1] - 1;
+            ControlFlowNode first = instructionGraph.getNode(start);
+            blocks[block] = (start == last) ? new ControlFlowNode(first.getInstruction(), first.getElement()) :
+                    new ControlFlowNode(new StatementInstruction(start, last + 1), first.getElement());
+            edgeCount += instructionGraph.getSuccessorEnd(last) - instructionGraph.getSuccessorStart(last);
+        }
+        int[] edgeSources = new int[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+        byte[] edgeTypes = new byte[edgeCount];
+        int edgeIndex = 0;
+        for (int block = 0; block < blockCount; block++) {
+            int last = blockStarts[block + 1] - 1;
+            for (int edge = instructionGraph.getSuccessorStart(last); edge < instructionGraph.getSuccessorEnd(last);
+                 edge++) {
+                edgeSources[edgeIndex] = block;
+                edgeTargets[edgeIndex] = instructionBlocks[instructionGraph.getSuccessor(edge)];
+                edgeTypes[edgeIndex] = (byte) instructionGraph.getSuccessorType(edge).ordinal();
+                edgeIndex++;
+            }
+        }
+        int exitNode = instructionGraph.getExitNode();
+        int exitBlock = (exitNode != DenseControlFlowGraph.NO_NODE) ? instructionBlocks[exitNode] :
+                DenseControlFlowGraph.NO_NODE;
+        DenseControlFlowGraph blockGraph =
+                new DenseControlFlowGraph(blocks, exitBlock, edgeSources, edgeTargets, edgeTypes, edgeIndex);
+        return new BasicBlockGraph(instructionGraph, blockStarts, instructionBlocks, blockGraph);
+    }
+
+    /**
+     * Nodes stuck in infinite loops have no postdominators, so there is nothing to gain from grouping them, and
+     * control dependences within such loops don't carry over from blocks to instructions. They are left as blocks of
+     * their own.
+     */
+    @NotNull
+    private static boolean[] getNodesReachingExit(@NotNull DenseControlFlowGraph graph) {
+        boolean[] reachesExit = new boolean[graph.size()];
+        if (graph.getExitNode() == DenseControlFlowGraph.NO_NODE) {
+            return reachesExit;
+        }
+        for (int node : graph.getReversePostorder(graph.getExitNode(), true)) {
+            reachesExit[node] = true;
+        }
+        return reachesExit;
+    }
+
+    /**
+     * @return whether {@code node} belongs in the same block as the node before it.
+     */
+    private static boolean continuesBlock(@NotNull DenseControlFlowGraph graph, int node) {
+        int previous = node - 1;
+        return node != graph.getExitNode() &&
+                graph.getSuccessorEnd(previous) - graph.getSuccessorStart(previous) == 1 &&
+                graph.getSuccessor(graph.getSuccessorStart(previous)) == node &&
+                graph.getPredecessorEnd(node) - graph.getPredecessorStart(node) == 1;
+    }
+
+    @NotNull
+    public DenseControlFlowGraph getInstructionGraph() {
+        return mInstructionGraph;
+    }
+
+    @NotNull
+    public DenseControlFlowGraph getBlockGraph() {
+        return mBlockGraph;
+    }
+
+    public int getBlockCount() {
+        return mBlockGraph.size();
+    }
+
+    /**
+     * @return offset of the first instruction in a block.
+     */
+    public int getStartOffset(int block) {
+        return mBlockStarts[block];
+    }
+
+    /**
+     * @return offset just past the last instruction in a block.
+     */
+    public int getEndOffset(int block) {
+        return mBlockStarts[block + 1];
+    }
+
+    /**
+     * @return the block that holds the instruction at {@code offset}.
+     */
+    public int getBlock(int offset) {
+        return mInstructionBlocks[offset];
+    }
+
+    /**
+     * Compute control dependences on the block graph and expand them back to instructions. A dependence of one block on
+     * another is a dependence of each of its instructions on the other block's last instruction, which is where that
+     * block branches. Dependences of a block on itself are worked out per instruction: the last instruction only
+     * depends on itself through a self loop, while the others depend on it whenever the block postdominates one of its
+     * own successors.
+     */
+    @NotNull
+    public ControlDependenceGraph getInstructionControlDependences() {
+        int blockCount = mBlockGraph.size();
+        int[] immediatePostdominators = ImmediatePostdominatorSolver.getImmediatePostdominators(mBlockGraph);
+        ControlDependenceGraph blockDependences =
+                PostdominanceFrontier.getControlDependenceGraph(mBlockGraph, immediatePostdominators);
+        long[][] selfDependences = getSelfDependences(immediatePostdominators);
+
+        int nodeCount = mInstructionGraph.size();
+        int[] dependenceOffsets = new int[nodeCount + 1];
+        long[][] rows = new long[blockCount * 2][];
+        for (int block = 0; block < blockCount; block++) {
+            int last = getEndOffset(block) - 1;
+            boolean single = getStartOffset(block) == last;
+            int rowSize = 0;
+            long[] row = new long[blockDependences.getDependenceEnd(block) - blockDependences.getDependenceStart(block)
+                    + selfDependences[block].length];
+            for (int dependence = blockDependences.getDependenceStart(block);
+                 dependence < blockDependences.getDependenceEnd(block); dependence++) {
+                int controller = blockDependences.getDependenceTarget(dependence);
+                if (controller != block || single) {
+                    row[rowSize++] = ((long) (getEndOffset(controller) - 1) << 8) |
+                            blockDependences.getDependenceType(dependence).ordinal();
+                }
+            }
+            // Row for the last instruction, then for the instructions before it.
+            rows[2 * block] = Arrays.copyOf(row, rowSize);
+            for (long selfDependence : selfDependences[block]) {
+                row[rowSize++] = ((long) last << 8) | selfDependence;
+            }
+            rows[2 * block + 1] = Arrays.copyOf(row, rowSize);
+            Arrays.sort(rows[2 * block + 1]);
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            dependenceOffsets[node + 1] = dependenceOffsets[node] + getRow(rows, node).length;
+        }
+        int[] controllers = new int[dependenceOffsets[nodeCount]];
+        byte[] types = new byte[dependenceOffsets[nodeCount]];
+        ControlFlowNode[] nodes = new ControlFlowNode[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            nodes[node] = mInstructionGraph.getNode(node);
+            int index = dependenceOffsets[node];
+            for (long entry : getRow(rows, node)) {
+                controllers[index] = (int) (entry >>> 8);
+                types[index] = (byte) (entry & 0xff);
+                index++;
+            }
+        }
+        return new ControlDependenceGraph(Arrays.asList(nodes), dependenceOffsets, controllers, types);
+    }
+
+    @NotNull
+    private long[] getRow(@NotNull long[][] rows, int node) {
+        int block = mInstructionBlocks[node];
+        return rows[(node == getEndOffset(block) - 1) ? 2 * block : 2 * block + 1];
+    }
+
+    /**
+     * @return for each block of more than one instruction, the types of the edges to successors it postdominates.
+     */
+    @NotNull
+    private long[][] getSelfDependences(@NotNull int[] immediatePostdominators) {
+        int blockCount = mBlockGraph.size();
+        // Number the postdominator tree so that a block postdominates another if it is an ancestor of it.
+        int[] childOffsets = new int[blockCount + 1];
+        for (int block = 0; block < blockCount; block++) {
+            if (immediatePostdominators[block] != DenseControlFlowGraph.NO_NODE) {
+                childOffsets[immediatePostdominators[block] + 1]++;
+            }
+        }
+        for (int block = 0; block < blockCount; block++) {
+            childOffsets[block + 1] += childOffsets[block];
+        }
+        int[] children = new int[childOffsets[blockCount]];
+        int[] fill = new int[blockCount];
+        for (int block = 0; block < blockCount; block++) {
+            int parent = immediatePostdominators[block];
+            if (parent != DenseControlFlowGraph.NO_NODE) {
+                children[childOffsets[parent] + fill[parent]++] = block;
+            }
+        }
+        int[] preorder = new int[blockCount];
+        int[] postorder = new int[blockCount];
+        int[] stack = new int[blockCount];
+        int[] nextChild = new int[blockCount];
+        int counter = 0;
+        for (int root = 0; root < blockCount; root++) {
+            if (immediatePostdominators[root] != DenseControlFlowGraph.NO_NODE) {
+                continue;
+            }
+            int stackSize = 0;
+            stack[stackSize++] = root;
+            preorder[root] = counter++;
+            nextChild[root] = childOffsets[root];
+            while (stackSize > 0) {
+                int block = stack[stackSize - 1];
+                if (nextChild[block] < childOffsets[block + 1]) {
+                    int child = children[nextChild[block]++];
+                    preorder[child] = counter++;
+                    nextChild[child] = childOffsets[child];
+                    stack[stackSize++] = child;
+                } else {
+                    postorder[block] = counter++;
+                    stackSize--;
+                }
+            }
+        }
+
+        long[][] selfDependences = new long[blockCount][];
+        long[] types = new long[ControlFlowEdgeType.values().length];
+        for (int block = 0; block < blockCount; block++) {
+            int typeCount = 0;
+            if (getEndOffset(block) - getStartOffset(block) > 1) {
+                boolean[] found = new boolean[types.length];
+                for (int edge = mBlockGraph.getSuccessorStart(block); edge < mBlockGraph.getSuccessorEnd(block);
+                     edge++) {
+                    int successor = mBlockGraph.getSuccessor(edge);
+                    int type = mBlockGraph.getSuccessorType(edge).ordinal();
+                    if (!found[type] && preorder[block] <= preorder[successor] &&
+                            postorder[successor] <= postorder[block]) {
+                        found[type] = true;
+                        types[typeCount++] = type;
+                    }
+                }
+            }
+            selfDependences[block] = Arrays.copyOf(types, typeCount);
+        }
+        return selfDependences;
+    }
+}
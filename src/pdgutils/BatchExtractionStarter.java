@@ -0,0 +1,112 @@
+package pdgutils;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ApplicationStarter;
+import com.intellij.openapi.application.ex.ApplicationManagerEx;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.util.Locale;
+
+/**
+ * Headless entry point for {@link BatchExtractor}:
+ * <pre>
+ * idea pdg-extract &lt;project directory&gt; &lt;output file&gt; [threads] [full|checked|none]
+ * </pre>
+ * The project is opened and indexed, graphs are written for every method, and the application exits. The graphs are
+ * written as DOT if the output file ends in {@code .dot}, and as JSON Lines otherwise. The last argument picks an
+ * {@link ExceptionFlow}; the default is to keep all exception edges.
+ */
+public class BatchExtractionStarter implements ApplicationStarter {
+
+    private static final Logger LOG = Logger.getInstance(BatchExtractionStarter.class);
+    private static final String USAGE =
+            "Usage: pdg-extract <project directory> <output file> [threads] [full|checked|none]";
+
+    @Override
+    public String getCommandName() {
+        return "pdg-extract";
+    }
+
+    @Override
+    public void premain(String[] args) {
+        if (args.length < 3 || args.length > 5) {
+            exitWithUsage(null);
+        }
+        if (args.length > 3 && parseThreadCount(args[3]) < 1) {
+            exitWithUsage("Thread count must be a positive integer: " + args[3]);
+        }
+        if (args.length > 4 && parseExceptionFlow(args[4]) == null) {
+            exitWithUsage("Unknown exception flow: " + args[4]);
+        }
+    }
+
+    private static void exitWithUsage(@Nullable String error) {
+        if (error != null) {
+            System.err.println(error);
+        }
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+
+    /**
+     * @return the thread count, or -1 if the argument isn't an integer.
+     */
+    private static int parseThreadCount(@NotNull String arg) {
+        try {
+            return Integer.parseInt(arg);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the exception flow named by the argument, in any case, or null if there is none.
+     */
+    @Nullable
+    private static ExceptionFlow parseExceptionFlow(@NotNull String arg) {
+        try {
+            return ExceptionFlow.valueOf(arg.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void main(String[] args) {
+        String projectPath = new File(args[1]).getAbsolutePath();
+        File output = new File(args[2]);
+        int threadCount = (args.length > 3) ? parseThreadCount(args[3]) : Runtime.getRuntime().availableProcessors();
+        ExceptionFlow exceptionFlow = (args.length > 4) ? parseExceptionFlow(args[4]) : ExceptionFlow.FULL;
+        ApplicationManager.getApplication().executeOnPooledThread(() -> {
+            try {
+                extract(projectPath, output, threadCount, exceptionFlow);
+            } catch (Exception e) {
+                LOG.error("Batch extraction failed", e);
+                System.exit(1);
+            }
+            ApplicationManager.getApplication().invokeLater(() ->
+                    ApplicationManagerEx.getApplicationEx().exit(true, true));
+        });
+    }
+
+    private static void extract(@NotNull String projectPath, @NotNull File output, int threadCount,
+                                @NotNull ExceptionFlow exceptionFlow) throws Exception {
+        Project project = ProjectManager.getInstance().loadAndOpenProject(projectPath);
+        if (project == null) {
+            throw new IllegalArgumentException("Couldn't open project at " + projectPath);
+        }
+        try {
+            DumbService.getInstance(project).waitForSmartMode();
+            new BatchExtractor(project, threadCount, exceptionFlow).run(output);
+        } finally {
+            ApplicationManager.getApplication().invokeAndWait(() ->
+                    ProjectManager.getInstance().closeProject(project));
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package pdgutils;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.controlFlow.AnalysisCanceledException;
+import com.intellij.psi.controlFlow.ControlFlow;
+import com.intellij.psi.controlFlow.ControlFlowFactory;
+import com.intellij.psi.controlFlow.ControlFlowPolicy;
+import com.intellij.psi.controlFlow.LocalsOrMyInstanceFieldsControlFlowPolicy;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds control flow and control dependence graphs for every method body in a project's Java sources. Files are
+ * handed out to worker threads, which read each file's PSI under a read action. Graphs are queued to a single writer
+ * thread as soon as they are built, so results are streamed to disk rather than held in memory; the bounded queue
+ * makes workers wait if the disk falls behind. If writing fails, workers stop and {@link #run} throws. How much
+ * exception flow goes into each graph is set by an {@link ExceptionFlow}, and the edges it saves are logged with the
+ * other metrics.
+ * <p>
+ * Each method's graphs are written with a {@link DotGraphWriter} if the output file ends in {@code .dot}, and with a
+ * {@link JsonLinesGraphWriter} otherwise, named by {@link #getMethodSignature}.
+ */
+public class BatchExtractor {
+
+    private static final Logger LOG = Logger.getInstance(BatchExtractor.class);
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final String END_OF_RESULTS = "";
+    private static final long OFFER_TIMEOUT_MS = 100;
+
+    private final Project mProject;
+    private final ControlFlowPolicy mPolicy;
+    private final int mThreadCount;
+    private final ExceptionFlow mExceptionFlow;
+    private final BlockingQueue<String> mResults = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // Set by the writer thread when it stops taking results before the end.
+    private volatile Exception mWriterFailure;
+    private long[] mLatencies = new long[1024];
+    private int mMethodCount;
+    private int mFailureCount;
+    private long mEdgeCount;
+    private long mFullEdgeCount;
+
+    public BatchExtractor(@NotNull Project project, int threadCount) {
+        this(project, threadCount, ExceptionFlow.FULL);
+    }
+
+    public BatchExtractor(@NotNull Project project, int threadCount, @NotNull ExceptionFlow exceptionFlow) {
+        mProject = project;
+        mPolicy = LocalsOrMyInstanceFieldsControlFlowPolicy.getInstance();
+        mThreadCount = threadCount;
+        mExceptionFlow = exceptionFlow;
+    }
+
+    /**
+     * @return a name for a method that is unique within a project: its class's qualified name, its name and its
+     * parameter types.
+     */
+    @NotNull
+    public static String getMethodSignature(@NotNull PsiMethod method) {
+        StringBuilder signature = new StringBuilder();
+        PsiClass containingClass = method.getContainingClass();
+        if (containingClass != null && containingClass.getQualifiedName() != null) {
+            signature.append(containingClass.getQualifiedName());
+        }
+        signature.append("#").append(method.getName()).append("(");
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                signature.append(",");
+            }
+            signature.append(parameters[i].getType().getCanonicalText());
+        }
+        return signature.append(")").toString();
+    }
+
+    /**
+     * Extract graphs for every method and write them to {@code output}. Blocks until all methods are done.
+     *
+     * @throws IOException if the results couldn't all be written
+     */
+    public void run(@NotNull File output) throws IOException, InterruptedException {
+        Collection<VirtualFile> files = ReadAction.compute(() ->
+                FileTypeIndex.getFiles(JavaFileType.INSTANCE, GlobalSearchScope.projectScope(mProject)));
+        LOG.info("Extracting graphs from " + files.size() + " files with " + mThreadCount + " threads and " +
+                mExceptionFlow + " exception flow");
+
+        boolean dot = output.getName().endsWith(".dot");
+        long start = System.nanoTime();
+        Thread writer = startWriter(output);
+        ExecutorService workers = Executors.newFixedThreadPool(mThreadCount);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (VirtualFile file : files) {
+                futures.add(workers.submit(() -> {
+                    extractFile(file, dot);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (mWriterFailure == null) {
+                        LOG.warn("Extraction failed", e.getCause());
+                    }
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+            while (writer.isAlive() && !mResults.offer(END_OF_RESULTS, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                // The writer is still draining the queue.
+            }
+            writer.join();
+        }
+        logMetrics(System.nanoTime() - start);
+        if (mWriterFailure != null) {
+            throw new IOException("Couldn't write results to " + output, mWriterFailure);
+        }
+    }
+
+    /**
+     * @param dot whether to write DOT rather than JSON Lines
+     */
+    private void extractFile(@NotNull VirtualFile file, boolean dot) throws InterruptedException, IOException {
+        if (mWriterFailure != null) {
+            return;
+        }
+        List<PsiCodeBlock> bodies = new ArrayList<>();
+        List<String> signatures = new ArrayList<>();
+        ReadAction.run(() -> {
+            PsiFile psiFile = file.isValid() ? PsiManager.getInstance(mProject).findFile(file) : null;
+            if (psiFile == null) {
+                return;
+            }
+            for (PsiMethod method : PsiTreeUtil.findChildrenOfType(psiFile, PsiMethod.class)) {
+                if (method.getBody() != null) {
+                    bodies.add(method.getBody());
+                    signatures.add(getMethodSignature(method));
+                }
+            }
+        });
+        for (int i = 0; i < bodies.size(); i++) {
+            PsiCodeBlock body = bodies.get(i);
+            String signature = signatures.get(i);
+            long methodStart = System.nanoTime();
+            String result = ReadAction.compute(() -> extractMethod(body, signature, dot));
+            long latency = System.nanoTime() - methodStart;
+            recordMethod(latency, result != null);
+            if (result != null) {
+                putResult(result);
+            }
+        }
+    }
+
+    /**
+     * Queue a result for the writer, waiting while the queue is full, unless the writer has stopped.
+     */
+    private void putResult(@NotNull String result) throws InterruptedException, IOException {
+        while (!mResults.offer(result, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            if (mWriterFailure != null) {
+                throw new IOException("Results are no longer being written", mWriterFailure);
+            }
+        }
+    }
+
+    /**
+     * Text ranges are read from the PSI, so this must be called in a read action.
+     *
+     * @return the method's control flow and control dependences as text, or null if IntelliJ couldn't build control
+     * flow for it.
+     */
+    @Nullable
+    private String extractMethod(@NotNull PsiCodeBlock body, @NotNull String signature, boolean dot)
+            throws IOException {
+        if (!body.isValid()) {
+            return null;
+        }
+        ControlFlow controlFlow;
+        try {
+            controlFlow = ControlFlowFactory.getInstance(mProject).getControlFlow(body, mPolicy);
+        } catch (AnalysisCanceledException e) {
+            return null;
+        }
+        ControlFlowGraph controlFlowGraph = ControlFlowGraphFactory.getControlFlowGraph(controlFlow, mExceptionFlow);
+        recordEdges(controlFlowGraph.getDenseGraph().getEdgeCount(),
+                ControlFlowGraphFactory.getFullEdgeCount(controlFlow));
+        StringWriter text = new StringWriter();
+        try (GraphTextWriter writer = dot ? new DotGraphWriter(text) : new JsonLinesGraphWriter(text)) {
+            writer.write(signature, controlFlowGraph.getDenseGraph(), ControlDependenceGraph.from(controlFlowGraph));
+        }
+        return text.toString();
+    }
+
+    private synchronized void recordMethod(long latency, boolean succeeded) {
+        if (!succeeded) {
+            mFailureCount++;
+            return;
+        }
+        if (mMethodCount == mLatencies.length) {
+            mLatencies = Arrays.copyOf(mLatencies, mMethodCount * 2);
+        }
+        mLatencies[mMethodCount++] = latency;
+    }
+
+    /**
+     * @param fullEdgeCount edges the graph would have had with all of its exception flow
+     */
+    private synchronized void recordEdges(int edgeCount, int fullEdgeCount) {
+        mEdgeCount += edgeCount;
+        mFullEdgeCount += fullEdgeCount;
+    }
+
+    @NotNull
+    private Thread startWriter(@NotNull File output) throws IOException {
+        Writer writer =
+                new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8));
+        Thread thread = new Thread(() -> {
+            // Workers stop queueing results once mWriterFailure is set, so there's no need to keep draining the queue.
+            try {
+                for (String result = mResults.take(); !END_OF_RESULTS.equals(result); result = mResults.take()) {
+                    // Graph writers end each graph with a line break already.
+                    writer.write(result);
+                }
+            } catch (IOException | InterruptedException e) {
+                mWriterFailure = e;
+            } finally {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    if (mWriterFailure == null) {
+                        mWriterFailure = e;
+                    }
+                }
+            }
+        }, "PDG batch writer");
+        thread.start();
+        return thread;
+    }
+
+    private synchronized void logMetrics(long elapsed) {
+        long[] latencies = Arrays.copyOf(mLatencies, mMethodCount);
+        Arrays.sort(latencies);
+        double seconds = elapsed / 1e9;
+        long p50 = getPercentile(latencies, 0.50);
+        long p99 = getPercentile(latencies, 0.99);
+        LOG.info(String.format("Extracted %d methods (%d failed) in %.1fs: %.1f methods/sec, p50 %.3fms, p99 %.3fms",
+                mMethodCount, mFailureCount, seconds, mMethodCount / seconds, p50 / 1e6, p99 / 1e6));
+        double pruned = (mFullEdgeCount > 0) ? 100.0 * (mFullEdgeCount - mEdgeCount) / mFullEdgeCount : 0;
+        LOG.info(String.format("Kept %d of %d control flow edges with %s exception flow (%.1f%% pruned)",
+                mEdgeCount, mFullEdgeCount, mExceptionFlow, pruned));
+    }
+
+    private static long getPercentile(@NotNull long[] sortedValues, double percentile) {
+        if (sortedValues.length == 0) {
+            return 0;
+        }
+        return sortedValues[Math.min(sortedValues.length - 1, (int) (sortedValues.length * percentile))];
+    }
+
+    public synchronized int getMethodCount() {
+        return mMethodCount;
+    }
+
+    public synchronized int getFailureCount() {
+        return mFailureCount;
+    }
+
+    /**
+     * @return edges in the control flow graphs extracted so far.
+     */
+    public synchronized long getEdgeCount() {
+        return mEdgeCount;
+    }
+
+    /**
+     * @return edges the control flow graphs extracted so far would have had with all of their exception flow.
+     */
+    public synchronized long getFullEdgeCount() {
+        return mFullEdgeCount;
+    }
+}
@@ -0,0 +1,83 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Sets of ints below a fixed bound, stored as {@code long[]} bitsets and combined a word at a time.
+ */
+public class BitsetLattice implements Lattice<long[]> {
+
+    public enum Meet {
+        /**
+         * Top is the full set; used by must-analyses such as postdominators.
+         */
+        INTERSECTION,
+        /**
+         * Top is the empty set; used by may-analyses such as reaching definitions.
+         */
+        UNION
+    }
+
+    private final int mBitCount;
+    private final int mWordCount;
+    private final Meet mMeet;
+
+    public BitsetLattice(int bitCount, @NotNull Meet meet) {
+        mBitCount = bitCount;
+        mWordCount = getWordCount(bitCount);
+        mMeet = meet;
+    }
+
+    public static int getWordCount(int bitCount) {
+        return (bitCount + 63) >>> 6;
+    }
+
+    public static void set(@NotNull long[] bits, int bit) {
+        bits[bit >>> 6] |= 1L << bit;
+    }
+
+    public static boolean get(@NotNull long[] bits, int bit) {
+        return (bits[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    @NotNull
+    @Override
+    public long[] createTop() {
+        long[] value = new long[mWordCount];
+        if (mMeet == Meet.INTERSECTION) {
+            for (int word = 0; word < mWordCount; word++) {
+                value[word] = -1L;
+            }
+            int lastWordBits = mBitCount & 63;
+            if (lastWordBits != 0) {
+                value[mWordCount - 1] = (1L << lastWordBits) - 1;
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public void meet(@NotNull long[] target, @NotNull long[] other) {
+        if (mMeet == Meet.INTERSECTION) {
+            for (int word = 0; word < mWordCount; word++) {
+                target[word] &= other[word];
+            }
+        } else {
+            for (int word = 0; word < mWordCount; word++) {
+                target[word] |= other[word];
+            }
+        }
+    }
+
+    @Override
+    public boolean assign(@NotNull long[] target, @NotNull long[] source) {
+        boolean changed = false;
+        for (int word = 0; word < mWordCount; word++) {
+            if (target[word] != source[word]) {
+                target[word] = source[word];
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,179 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Postdominator sets stored as {@code long[]} bitsets over node ids. Instead of a path per postdominator, only the
+ * length of the shortest path from a node to each of its postdominators is kept, which is all that is needed to pick
+ * out immediate postdominators. Distances for a node are stored in the order of the set bits of its postdominator set.
+ * <p>
+ * Sets are computed with the {@link WorklistSolver}. Nodes that cannot reach the exit node are only postdominated by
+ * themselves, and are ignored when intersecting the postdominator sets of their predecessors.
+ */
+public class BitsetPostdominatorIndex {
+
+    public static final int NO_DISTANCE = -1;
+
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private static final long REFERENCE_BYTES = 8;
+
+    private final DenseControlFlowGraph mGraph;
+    private final long[][] mSets;
+    private final int[][] mDistances;
+    private final DataflowMetrics mMetrics;
+
+    private BitsetPostdominatorIndex(@NotNull DenseControlFlowGraph graph, @NotNull DataflowSolution<long[]> solution) {
+        mGraph = graph;
+        mSets = new long[graph.size()][];
+        mDistances = new int[graph.size()][];
+        mMetrics = solution.getMetrics();
+        for (int node = 0; node < graph.size(); node++) {
+            mSets[node] = solution.getValue(node);
+            if (!solution.isReached(node)) {
+                Arrays.fill(mSets[node], 0L);
+                BitsetLattice.set(mSets[node], node);
+            }
+        }
+    }
+
+    @NotNull
+    public static BitsetPostdominatorIndex getPostdominators(@NotNull ControlFlowGraph controlFlowGraph) {
+        return getPostdominators(controlFlowGraph.getDenseGraph());
+    }
+
+    @NotNull
+    public static BitsetPostdominatorIndex getPostdominators(@NotNull DenseControlFlowGraph graph) {
+        DataflowSolution<long[]> solution = WorklistSolver.solve(graph, new PostdominatorProblem(graph));
+        BitsetPostdominatorIndex index = new BitsetPostdominatorIndex(graph, solution);
+        index.computeDistances();
+        return index;
+    }
+
+    /**
+     * Every node on a path from a node to one of its postdominators is also postdominated by it, so a breadth-first
+     * search backwards from each postdominator through the nodes it postdominates finds shortest path lengths.
+     */
+    private void computeDistances() {
+        for (int node = 0; node < mGraph.size(); node++) {
+            mDistances[node] = new int[getPostdominatorCount(node)];
+            Arrays.fill(mDistances[node], NO_DISTANCE);
+        }
+        int[] queue = new int[mGraph.size()];
+        int[] distances = new int[mGraph.size()];
+        Arrays.fill(distances, NO_DISTANCE);
+        for (int postdominator = 0; postdominator < mGraph.size(); postdominator++) {
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = postdominator;
+            distances[postdominator] = 0;
+            while (head < tail) {
+                int node = queue[head++];
+                mDistances[node][getRank(node, postdominator)] = distances[node];
+                for (int edge = mGraph.getPredecessorStart(node); edge < mGraph.getPredecessorEnd(node); edge++) {
+                    int predecessor = mGraph.getPredecessor(edge);
+                    if (distances[predecessor] == NO_DISTANCE && hasPostdominator(predecessor, postdominator)) {
+                        distances[predecessor] = distances[node] + 1;
+                        queue[tail++] = predecessor;
+                    }
+                }
+            }
+            for (int i = 0; i < tail; i++) {
+                distances[queue[i]] = NO_DISTANCE;
+            }
+        }
+    }
+
+    /**
+     * @return the number of postdominators of {@code node} with a smaller id than {@code postdominator}.
+     */
+    private int getRank(int node, int postdominator) {
+        long[] set = mSets[node];
+        int rank = 0;
+        for (int word = 0; word < (postdominator >>> 6); word++) {
+            rank += Long.bitCount(set[word]);
+        }
+        return rank + Long.bitCount(set[postdominator >>> 6] & ((1L << postdominator) - 1));
+    }
+
+    /**
+     * @return work done by the solver while computing postdominator sets.
+     */
+    @NotNull
+    public DataflowMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    @NotNull
+    public DenseControlFlowGraph getGraph() {
+        return mGraph;
+    }
+
+    public boolean hasPostdominator(int node, int postdominator) {
+        return BitsetLattice.get(mSets[node], postdominator);
+    }
+
+    public boolean hasPostdominator(@NotNull ControlFlowNode node, @NotNull ControlFlowNode postdominatorNode) {
+        int id = mGraph.getId(node);
+        int postdominatorId = mGraph.getId(postdominatorNode);
+        if (id == DenseControlFlowGraph.NO_NODE || postdominatorId == DenseControlFlowGraph.NO_NODE) {
+            return false;
+        }
+        return hasPostdominator(id, postdominatorId);
+    }
+
+    /**
+     * @return bytes held by the postdominator sets and distances, not counting the graph.
+     */
+    public long getEstimatedBytes() {
+        long bytes = 2 * (ARRAY_HEADER_BYTES + (long) mSets.length * REFERENCE_BYTES);
+        for (int node = 0; node < mSets.length; node++) {
+            bytes += 2 * ARRAY_HEADER_BYTES + (long) mSets[node].length * Long.BYTES +
+                    (long) mDistances[node].length * Integer.BYTES;
+        }
+        return bytes;
+    }
+
+    public int getPostdominatorCount(int node) {
+        int count = 0;
+        for (long word : mSets[node]) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return length of the shortest path from {@code node} to {@code postdominator}, or {@link #NO_DISTANCE} if it
+     * is not a postdominator or cannot be reached.
+     */
+    public int getDistance(int node, int postdominator) {
+        if (!hasPostdominator(node, postdominator)) {
+            return NO_DISTANCE;
+        }
+        return mDistances[node][getRank(node, postdominator)];
+    }
+
+    /**
+     * @return id of the nearest postdominator other than the node itself, or {@link DenseControlFlowGraph#NO_NODE}.
+     */
+    public int getImmediatePostdominator(int node) {
+        long[] set = mSets[node];
+        int rank = 0;
+        int nearest = DenseControlFlowGraph.NO_NODE;
+        int nearestDistance = Integer.MAX_VALUE;
+        for (int word = 0; word < set.length; word++) {
+            long bits = set[word];
+            while (bits != 0) {
+                int postdominator = (word << 6) + Long.numberOfTrailingZeros(bits);
+                int distance = mDistances[node][rank++];
+                if (postdominator != node && distance != NO_DISTANCE && distance < nearestDistance) {
+                    nearest = postdominator;
+                    nearestDistance = distance;
+                }
+                bits &= bits - 1;
+            }
+        }
+        return nearest;
+    }
+}
@@ -1,9 +1,12 @@
+package pdgutils;
+
 import org.jetbrains.annotations.NotNull;
 
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.BiPredicate;
 
 public class ControlDependenceEdge {
 
@@ -22,10 +25,38 @@ public class ControlDependenceEdge {
             @NotNull ControlFlowGraph controlFlowGraph,
             @NotNull ImmediatePostdominatorTree immediatePostdominatorTree,
             @NotNull PostdominatorIndex postdominators) {
+        return getControlDependences(controlFlowGraph, immediatePostdominatorTree, postdominators::hasPostdominator);
+    }
+
+    @NotNull
+    public static Map<ControlFlowNode, Set<ControlDependenceEdge>> getControlDependences(
+            @NotNull ControlFlowGraph controlFlowGraph,
+            @NotNull ImmediatePostdominatorTree immediatePostdominatorTree,
+            @NotNull BitsetPostdominatorIndex postdominators) {
+        return getControlDependences(controlFlowGraph, immediatePostdominatorTree, postdominators::hasPostdominator);
+    }
+
+    /**
+     * Get control dependences using only the immediate postdominator tree, for strategies that never build a
+     * {@link PostdominatorIndex}.
+     */
+    @NotNull
+    public static Map<ControlFlowNode, Set<ControlDependenceEdge>> getControlDependences(
+            @NotNull ControlFlowGraph controlFlowGraph,
+            @NotNull ImmediatePostdominatorTree immediatePostdominatorTree) {
+        return getControlDependences(controlFlowGraph, immediatePostdominatorTree,
+                immediatePostdominatorTree::isPostdominatedBy);
+    }
+
+    @NotNull
+    private static Map<ControlFlowNode, Set<ControlDependenceEdge>> getControlDependences(
+            @NotNull ControlFlowGraph controlFlowGraph,
+            @NotNull ImmediatePostdominatorTree immediatePostdominatorTree,
+            @NotNull BiPredicate<ControlFlowNode, ControlFlowNode> isPostdominatedBy) {
         Set<ControlFlowNode> visited = new HashSet<>();
         Map<ControlFlowNode, Set<ControlDependenceEdge>> dependences = new HashMap<>();
         for (ControlFlowNode node : controlFlowGraph.getNodes()) {
-            getControlDependences(node, controlFlowGraph, immediatePostdominatorTree, postdominators, dependences,
+            getControlDependences(node, controlFlowGraph, immediatePostdominatorTree, isPostdominatedBy, dependences,
                     visited);
         }
         return dependences;
@@ -42,7 +73,7 @@ public class ControlDependenceEdge {
     private static void getControlDependences(
             @NotNull ControlFlowNode node, @NotNull ControlFlowGraph controlFlowGraph,
             @NotNull ImmediatePostdominatorTree immediatePostdominatorTree,
-            @NotNull PostdominatorIndex postdominatorIndex,
+            @NotNull BiPredicate<ControlFlowNode, ControlFlowNode> isPostdominatedBy,
             @NotNull Map<ControlFlowNode, Set<ControlDependenceEdge>> dependences,
             @NotNull Set<ControlFlowNode> visitedNodes) {
         if (visitedNodes.contains(node)) {
@@ -52,22 +83,22 @@ public class ControlDependenceEdge {
         getDependencesOnPredecessors(node, controlFlowGraph, immediatePostdominatorTree, dependences);
         Set<ControlFlowNode> children = immediatePostdominatorTree.getChildren(node);
         if (children != null) {
-            getChildDependences(children, controlFlowGraph, immediatePostdominatorTree, postdominatorIndex, dependences,
+            getChildDependences(children, controlFlowGraph, immediatePostdominatorTree, isPostdominatedBy, dependences,
                     visitedNodes);
-            getDependencesFromChildren(node, children, postdominatorIndex, dependences);
+            getDependencesFromChildren(node, children, isPostdominatedBy, dependences);
         }
     }
 
     private static void getDependencesFromChildren(
             @NotNull ControlFlowNode node, Set<ControlFlowNode> children,
-            @NotNull PostdominatorIndex postdominatorIndex,
+            @NotNull BiPredicate<ControlFlowNode, ControlFlowNode> isPostdominatedBy,
             @NotNull Map<ControlFlowNode, Set<ControlDependenceEdge>> dependences
     ) {
         for (ControlFlowNode child : children) {
             Set<ControlDependenceEdge> childDependences = dependences.get(child);
             if (childDependences != null) {
                 for (ControlDependenceEdge childDependence : childDependences) {
-                    if (!postdominatorIndex.hasPostdominator(childDependence.getTo(), node)) {
+                    if (!isPostdominatedBy.test(childDependence.getTo(), node)) {
                         ControlDependenceEdge dependence = childDependence.clone();
                         childDependence.setFrom(node);
                         saveDependence(dependences, node, dependence);
@@ -80,11 +111,11 @@ public class ControlDependenceEdge {
     private static void getChildDependences(
             @NotNull Set<ControlFlowNode> children, @NotNull ControlFlowGraph controlFlowGraph,
             @NotNull ImmediatePostdominatorTree immediatePostdominatorTree,
-            @NotNull PostdominatorIndex postdominatorIndex,
+            @NotNull BiPredicate<ControlFlowNode, ControlFlowNode> isPostdominatedBy,
             @NotNull Map<ControlFlowNode, Set<ControlDependenceEdge>> dependences,
             @NotNull Set<ControlFlowNode> visitedNodes) {
         for (ControlFlowNode child : children) {
-            getControlDependences(child, controlFlowGraph, immediatePostdominatorTree, postdominatorIndex,
+            getControlDependences(child, controlFlowGraph, immediatePostdominatorTree, isPostdominatedBy,
                     dependences, visitedNodes);
         }
     }
@@ -0,0 +1,150 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * Control dependences stored as compressed sparse rows over node indexes. The dependences of node {@code i} are at
+ * indexes {@code [getDependenceStart(i), getDependenceEnd(i))}, sorted by the node they depend on.
+ * <p>
+ * A graph is immutable once built, so it can be shared between threads without locking or copying.
+ */
+public class ControlDependenceGraph {
+
+    private final List<ControlFlowNode> mNodes;
+    private final int[] mDependenceOffsets;
+    private final int[] mDependenceTargets;
+    private final byte[] mDependenceTypes;
+
+    public ControlDependenceGraph(List<ControlFlowNode> nodes,
+                                  Map<ControlFlowNode, Set<ControlDependenceEdge>> dependences) {
+        mNodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        Map<ControlFlowNode, Integer> nodeIndexes = new HashMap<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            nodeIndexes.put(nodes.get(i), i);
+        }
+        mDependenceOffsets = new int[nodes.size() + 1];
+        List<long[]> rows = new ArrayList<>();
+        for (int i = 0; i < nodes.size(); i++) {
+            Set<ControlDependenceEdge> nodeDependences = dependences.get(nodes.get(i));
+            long[] row = new long[(nodeDependences != null) ? nodeDependences.size() : 0];
+            int j = 0;
+            if (nodeDependences != null) {
+                for (ControlDependenceEdge dependence : nodeDependences) {
+                    row[j++] = ((long) nodeIndexes.get(dependence.getTo()) << 8) |
+                            dependence.getControlFlowEdgeType().ordinal();
+                }
+            }
+            Arrays.sort(row);
+            rows.add(row);
+            mDependenceOffsets[i + 1] = mDependenceOffsets[i] + row.length;
+        }
+        mDependenceTargets = new int[mDependenceOffsets[nodes.size()]];
+        mDependenceTypes = new byte[mDependenceOffsets[nodes.size()]];
+        for (int i = 0; i < nodes.size(); i++) {
+            long[] row = rows.get(i);
+            for (int j = 0; j < row.length; j++) {
+                mDependenceTargets[mDependenceOffsets[i] + j] = (int) (row[j] >>> 8);
+                mDependenceTypes[mDependenceOffsets[i] + j] = (byte) (row[j] & 0xff);
+            }
+        }
+    }
+
+    ControlDependenceGraph(@NotNull List<ControlFlowNode> nodes, @NotNull int[] dependenceOffsets,
+                           @NotNull int[] dependenceTargets, @NotNull byte[] dependenceTypes) {
+        mNodes = Collections.unmodifiableList(nodes);
+        mDependenceOffsets = dependenceOffsets;
+        mDependenceTargets = dependenceTargets;
+        mDependenceTypes = dependenceTypes;
+    }
+
+    public static ControlDependenceGraph from(ControlFlowGraph controlFlowGraph) {
+        return from(controlFlowGraph, PostdominatorStrategy.COOPER_HARVEY_KENNEDY);
+    }
+
+    public static ControlDependenceGraph from(ControlFlowGraph controlFlowGraph, PostdominatorStrategy strategy) {
+        switch (strategy) {
+            case SET_INTERSECTION:
+                /* Based on control dependence algorithm described in "Modern Compiler Implementation in Java", see
+                 * pages 415 443, and 465. */
+                PostdominatorIndex postdominatorIndex = Postdominator.getPostdominators(controlFlowGraph);
+                ImmediatePostdominatorTree immediatePostdominatorTree = new ImmediatePostdominatorTree(postdominatorIndex);
+                Map<ControlFlowNode, Set<ControlDependenceEdge>> dependences = ControlDependenceEdge
+                        .getControlDependences(controlFlowGraph, immediatePostdominatorTree, postdominatorIndex);
+                return new ControlDependenceGraph(controlFlowGraph.getNodes(), dependences);
+            case BITSET_INTERSECTION:
+                BitsetPostdominatorIndex bitsetPostdominatorIndex =
+                        BitsetPostdominatorIndex.getPostdominators(controlFlowGraph);
+                return PostdominanceFrontier.getControlDependenceGraph(controlFlowGraph,
+                        new ImmediatePostdominatorTree(bitsetPostdominatorIndex));
+            default:
+                DenseControlFlowGraph denseGraph = controlFlowGraph.getDenseGraph();
+                return PostdominanceFrontier.getControlDependenceGraph(denseGraph,
+                        ImmediatePostdominatorSolver.getImmediatePostdominators(denseGraph));
+        }
+    }
+
+    public int size() {
+        return mNodes.size();
+    }
+
+    @NotNull
+    public List<ControlFlowNode> getNodes() {
+        return mNodes;
+    }
+
+    public int getDependenceCount() {
+        return mDependenceTargets.length;
+    }
+
+    public int getDependenceStart(int node) {
+        return mDependenceOffsets[node];
+    }
+
+    public int getDependenceEnd(int node) {
+        return mDependenceOffsets[node + 1];
+    }
+
+    /**
+     * @return index of the node that a dependence is on.
+     */
+    public int getDependenceTarget(int dependence) {
+        return mDependenceTargets[dependence];
+    }
+
+    @NotNull
+    public ControlFlowEdgeType getDependenceType(int dependence) {
+        return ControlFlowEdgeType.fromOrdinal(mDependenceTypes[dependence]);
+    }
+
+    /**
+     * @return the dependences of the node at {@code index}, as edge objects.
+     */
+    @NotNull
+    public Set<ControlDependenceEdge> getDependences(int index) {
+        Set<ControlDependenceEdge> dependences = new HashSet<>();
+        for (int dependence = getDependenceStart(index); dependence < getDependenceEnd(index); dependence++) {
+            dependences.add(new ControlDependenceEdge(mNodes.get(index), mNodes.get(getDependenceTarget(dependence)),
+                    getDependenceType(dependence)));
+        }
+        return dependences;
+    }
+
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < mNodes.size(); i++) {
+            ControlFlowNode node = mNodes.get(i);
+            buffer.append(Integer.toString(i));
+            buffer.append(": ");
+            buffer.append(node.getInstruction().getClass().getSimpleName().replace("Instruction", ""));
+            buffer.append(" ->");
+            for (int dependence = getDependenceStart(i); dependence < getDependenceEnd(i); dependence++) {
+                buffer.append(" ").append(getDependenceTarget(dependence)).append(".")
+                        .append(getDependenceType(dependence));
+            }
+            buffer.append("\n");
+        }
+        return buffer.toString();
+    }
+}
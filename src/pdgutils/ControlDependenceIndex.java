@@ -0,0 +1,308 @@
+package pdgutils;
+
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiAnonymousClass;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiClassInitializer;
+import com.intellij.psi.PsiField;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMember;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiReturnStatement;
+import com.intellij.psi.PsiTypeElement;
+import com.intellij.psi.controlFlow.AnalysisCanceledException;
+import com.intellij.psi.controlFlow.ControlFlow;
+import com.intellij.psi.controlFlow.ControlFlowFactory;
+import com.intellij.psi.controlFlow.LocalsOrMyInstanceFieldsControlFlowPolicy;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.psi.util.PsiUtil;
+import com.intellij.util.indexing.DataIndexer;
+import com.intellij.util.indexing.DefaultFileTypeSpecificInputFilter;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileBasedIndexExtension;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.DataInputOutputUtil;
+import com.intellij.util.io.EnumeratorStringDescriptor;
+import com.intellij.util.io.KeyDescriptor;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent index from {@link #getMethodKey method key} to a {@link ControlDependenceSummary} of the method.
+ * IntelliJ re-indexes a file only when it changes, so summaries for the rest of the project are read from disk
+ * instead of being rebuilt on every start.
+ * <p>
+ * An indexer may only depend on the file it indexes, so summaries are built with {@link ExceptionFlow#NONE}. Which
+ * exceptions a call throws, and so which catch blocks it reaches, depends on other files; with exception edges left
+ * out, the dependences in a summary come from the method's own text. Catch blocks are then unreachable, and no
+ * return is control dependent on an {@link ControlFlowEdgeType#EXCEPTION} edge.
+ */
+public class ControlDependenceIndex extends FileBasedIndexExtension<String, ControlDependenceSummary> {
+
+    public static final ID<String, ControlDependenceSummary> NAME = ID.create("PdgUtils.ControlDependence");
+
+    private static final Logger LOG = Logger.getInstance(ControlDependenceIndex.class);
+    // Bump when the summary changes; the graph format's version is folded in below.
+    private static final int VERSION = 2;
+
+    @NotNull
+    @Override
+    public ID<String, ControlDependenceSummary> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return new DefaultFileTypeSpecificInputFilter(JavaFileType.INSTANCE);
+    }
+
+    @Override
+    public boolean dependsOnFileContent() {
+        return true;
+    }
+
+    @Override
+    public int getVersion() {
+        return (GraphWriter.FORMAT_VERSION << 8) | VERSION;
+    }
+
+    @NotNull
+    @Override
+    public KeyDescriptor<String> getKeyDescriptor() {
+        return EnumeratorStringDescriptor.INSTANCE;
+    }
+
+    @NotNull
+    @Override
+    public DataIndexer<String, ControlDependenceSummary, FileContent> getIndexer() {
+        return inputData -> {
+            PsiFile file = inputData.getPsiFile();
+            if (!(file instanceof PsiJavaFile)) {
+                return Collections.emptyMap();
+            }
+            Map<String, ControlDependenceSummary> summaries = new HashMap<>();
+            for (PsiMethod method : PsiTreeUtil.findChildrenOfType(file, PsiMethod.class)) {
+                if (method.getBody() == null) {
+                    continue;
+                }
+                ControlDependenceSummary summary = summarize(inputData.getProject(), method);
+                // Keys only repeat for methods declared twice, which doesn't compile; the first one is kept.
+                if (summary != null) {
+                    summaries.putIfAbsent(getMethodKey(method), summary);
+                }
+            }
+            return summaries;
+        };
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<ControlDependenceSummary> getValueExternalizer() {
+        return new DataExternalizer<ControlDependenceSummary>() {
+            @Override
+            public void save(@NotNull DataOutput out, ControlDependenceSummary value) throws IOException {
+                byte[] graph = value.getEncodedGraph();
+                DataInputOutputUtil.writeINT(out, graph.length);
+                out.write(graph);
+                int[] returnNodes = value.getReturnNodes();
+                DataInputOutputUtil.writeINT(out, returnNodes.length);
+                int previous = 0;
+                for (int node : returnNodes) {
+                    DataInputOutputUtil.writeINT(out, node - previous);
+                    previous = node;
+                }
+            }
+
+            @Override
+            public ControlDependenceSummary read(@NotNull DataInput in) throws IOException {
+                byte[] graph = new byte[DataInputOutputUtil.readINT(in)];
+                in.readFully(graph);
+                int[] returnNodes = new int[DataInputOutputUtil.readINT(in)];
+                int previous = 0;
+                for (int i = 0; i < returnNodes.length; i++) {
+                    previous += DataInputOutputUtil.readINT(in);
+                    returnNodes[i] = previous;
+                }
+                return new ControlDependenceSummary(graph, returnNodes);
+            }
+        };
+    }
+
+    /**
+     * Get a name for a method that is unique within its file, built from the file's text alone: the package, the
+     * names of the enclosing classes, the method's name and the source text of its parameter types. Anonymous and
+     * local classes are named after the member they are declared in and their position in it, as in
+     * {@code a.Outer#run()$1#run()} for a method of the first anonymous class in {@code Outer.run()}.
+     */
+    @NotNull
+    public static String getMethodKey(@NotNull PsiMethod method) {
+        StringBuilder key = new StringBuilder();
+        appendClassKey(key, method.getContainingClass(), method.getContainingFile());
+        key.append("#").append(method.getName()).append("(");
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            if (i > 0) {
+                key.append(",");
+            }
+            PsiTypeElement typeElement = parameters[i].getTypeElement();
+            if (typeElement != null) {
+                key.append(typeElement.getText().replaceAll("\\s+", ""));
+            }
+        }
+        return key.append(")").toString();
+    }
+
+    private static void appendClassKey(@NotNull StringBuilder key, @Nullable PsiClass psiClass, PsiFile file) {
+        if (psiClass == null) {
+            return;
+        }
+        if (psiClass instanceof PsiAnonymousClass || PsiUtil.isLocalClass(psiClass)) {
+            PsiMember member = getEnclosingMember(psiClass);
+            if (member != null) {
+                appendMemberKey(key, member, file);
+                key.append("$").append(getLocalClassIndex(member, psiClass));
+            }
+            if (!(psiClass instanceof PsiAnonymousClass)) {
+                key.append(psiClass.getName());
+            }
+        } else if (psiClass.getContainingClass() != null) {
+            appendClassKey(key, psiClass.getContainingClass(), file);
+            key.append(".").append(psiClass.getName());
+        } else {
+            if (file instanceof PsiJavaFile && !((PsiJavaFile) file).getPackageName().isEmpty()) {
+                key.append(((PsiJavaFile) file).getPackageName()).append(".");
+            }
+            key.append(psiClass.getName());
+        }
+    }
+
+    private static void appendMemberKey(@NotNull StringBuilder key, @NotNull PsiMember member, PsiFile file) {
+        if (member instanceof PsiMethod) {
+            key.append(getMethodKey((PsiMethod) member));
+        } else if (member instanceof PsiClass) {
+            appendClassKey(key, (PsiClass) member, file);
+        } else {
+            appendClassKey(key, member.getContainingClass(), file);
+            if (member instanceof PsiField) {
+                key.append("#").append(((PsiField) member).getName());
+            } else if (member instanceof PsiClassInitializer && member.getContainingClass() != null) {
+                key.append("#{").append(
+                        Arrays.asList(member.getContainingClass().getInitializers()).indexOf(member)).append("}");
+            }
+        }
+    }
+
+    @Nullable
+    private static PsiMember getEnclosingMember(@NotNull PsiClass psiClass) {
+        return PsiTreeUtil.getParentOfType(psiClass, PsiMethod.class, PsiField.class, PsiClassInitializer.class,
+                PsiClass.class);
+    }
+
+    /**
+     * @return the 1-based position of an anonymous or local class among those declared directly in {@code member}.
+     */
+    private static int getLocalClassIndex(@NotNull PsiMember member, @NotNull PsiClass psiClass) {
+        int index = 0;
+        for (PsiClass candidate : PsiTreeUtil.findChildrenOfType(member, PsiClass.class)) {
+            if (getEnclosingMember(candidate) == member) {
+                index++;
+                if (candidate == psiClass) {
+                    return index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the summary of a method, or null if it has no body or IntelliJ couldn't build control flow for it. Must
+     * be called under a read action.
+     */
+    @Nullable
+    public static ControlDependenceSummary getSummary(@NotNull PsiMethod method) {
+        PsiFile file = method.getContainingFile();
+        if (!(file instanceof PsiJavaFile) || file.getVirtualFile() == null) {
+            return null;
+        }
+        // Keys are unique within a file only, so look in the method's own file.
+        List<ControlDependenceSummary> summaries = FileBasedIndex.getInstance().getValues(NAME,
+                getMethodKey(method), GlobalSearchScope.fileScope(file));
+        return summaries.isEmpty() ? null : summaries.get(0);
+    }
+
+    @Nullable
+    private static ControlDependenceSummary summarize(@NotNull Project project, @NotNull PsiMethod method) {
+        ControlFlow controlFlow;
+        try {
+            controlFlow = ControlFlowFactory.getInstance(project).getControlFlow(method.getBody(),
+                    LocalsOrMyInstanceFieldsControlFlowPolicy.getInstance());
+        } catch (AnalysisCanceledException e) {
+            return null;
+        }
+        DenseControlFlowGraph controlFlowGraph =
+                ControlFlowGraphFactory.getDenseControlFlowGraph(controlFlow, ExceptionFlow.NONE);
+        ControlDependenceGraph controlDependenceGraph = PostdominanceFrontier.getControlDependenceGraph(
+                controlFlowGraph, ImmediatePostdominatorSolver.getImmediatePostdominators(controlFlowGraph));
+        int[] returnNodes = new int[controlFlowGraph.size()];
+        int returnCount = 0;
+        for (int node = 0; node < controlFlowGraph.size(); node++) {
+            if (controlFlowGraph.getNode(node).getElement() instanceof PsiReturnStatement) {
+                returnNodes[returnCount++] = node;
+            }
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            new GraphWriter(new DataOutputStream(bytes)).write(method.getName(), null, controlDependenceGraph);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return new ControlDependenceSummary(bytes.toByteArray(), Arrays.copyOf(returnNodes, returnCount));
+    }
+
+    /**
+     * @return keys of the methods in {@code scope} with a return statement that is control dependent on an edge of
+     * type {@code type}, such as {@link ControlFlowEdgeType#BRANCH} for returns guarded by a condition. Answered from
+     * the index alone. Must be called under a read action.
+     */
+    @NotNull
+    public static List<String> getMethodsWithReturnDependentOn(@NotNull Project project,
+                                                               @NotNull GlobalSearchScope scope,
+                                                               @NotNull ControlFlowEdgeType type) {
+        FileBasedIndex index = FileBasedIndex.getInstance();
+        List<String> methods = new ArrayList<>();
+        for (String key : index.getAllKeys(NAME, project)) {
+            for (ControlDependenceSummary summary : index.getValues(NAME, key, scope)) {
+                try {
+                    if (summary.isReturnControlDependentOn(type)) {
+                        methods.add(key);
+                        break;
+                    }
+                } catch (IOException e) {
+                    LOG.warn("Corrupt control dependence summary for " + key, e);
+                }
+            }
+        }
+        Collections.sort(methods);
+        return methods;
+    }
+}
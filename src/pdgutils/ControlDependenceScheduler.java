@@ -0,0 +1,211 @@
+package pdgutils;
+
+import com.intellij.concurrency.SensitiveProgressWrapper;
+import com.intellij.ide.highlighter.JavaFileType;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiFile;
+import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.controlFlow.AnalysisCanceledException;
+import com.intellij.psi.controlFlow.ControlFlow;
+import com.intellij.psi.controlFlow.ControlFlowFactory;
+import com.intellij.psi.controlFlow.ControlFlowPolicy;
+import com.intellij.psi.controlFlow.LocalsOrMyInstanceFieldsControlFlowPolicy;
+import com.intellij.psi.search.FileTypeIndex;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Builds control dependence graphs for many methods at once on a fork-join pool. Each file is a task that collects its
+ * method bodies, and each method is a task of its own, so work is balanced across cores even when one file holds most
+ * of the methods.
+ * <p>
+ * Methods are analysed in read actions that give way to write actions: if the user types while a method is being
+ * analysed, the read action is cancelled and the method is retried once the write is done, so the UI never waits on
+ * the analysis. Every task checks the progress indicator, so cancelling it stops the whole run.
+ */
+public class ControlDependenceScheduler {
+
+    private final Project mProject;
+    private final ControlFlowPolicy mPolicy;
+    private final int mParallelism;
+
+    public ControlDependenceScheduler(@NotNull Project project) {
+        this(project, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ControlDependenceScheduler(@NotNull Project project, int parallelism) {
+        mProject = project;
+        mPolicy = LocalsOrMyInstanceFieldsControlFlowPolicy.getInstance();
+        mParallelism = parallelism;
+    }
+
+    /**
+     * Analyse the Java files of a module. Must not be called on the event dispatch thread; run it from a
+     * {@link com.intellij.openapi.progress.Task.Backgroundable} instead.
+     */
+    @NotNull
+    public Map<String, ControlDependenceGraph> analyze(@NotNull Module module, @NotNull ProgressIndicator indicator) {
+        Collection<VirtualFile> files = ReadAction.compute(() ->
+                FileTypeIndex.getFiles(JavaFileType.INSTANCE, module.getModuleScope(false)));
+        return analyze(files, indicator);
+    }
+
+    /**
+     * @return control dependence graph of each method, keyed by {@link ControlDependenceIndex#getMethodKey}. Methods
+     * that IntelliJ can't build control flow for are left out.
+     * @throws com.intellij.openapi.progress.ProcessCanceledException if {@code indicator} is cancelled.
+     */
+    @NotNull
+    public Map<String, ControlDependenceGraph> analyze(@NotNull Collection<VirtualFile> files,
+                                                       @NotNull ProgressIndicator indicator) {
+        Map<String, ControlDependenceGraph> results = new ConcurrentHashMap<>();
+        Run run = new Run(indicator, results, files.size());
+        indicator.setIndeterminate(false);
+        List<FileTask> tasks = new ArrayList<>();
+        for (VirtualFile file : files) {
+            tasks.add(new FileTask(run, file));
+        }
+        ForkJoinPool pool = new ForkJoinPool(mParallelism);
+        try {
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    ForkJoinTask.invokeAll(tasks);
+                }
+            });
+        } finally {
+            pool.shutdownNow();
+        }
+        indicator.checkCanceled();
+        return results;
+    }
+
+    /**
+     * Run {@code action} in a read action that is cancelled by write actions, retrying until it completes. A write
+     * action cancels the indicator it is given, so each attempt gets its own, which is also cancelled along with
+     * {@code indicator}.
+     */
+    private static void runInReadAction(@NotNull Runnable action, @NotNull ProgressIndicator indicator) {
+        while (!ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(action,
+                new SensitiveProgressWrapper(indicator))) {
+            indicator.checkCanceled();
+            ProgressIndicatorUtils.yieldToPendingWriteActions();
+        }
+    }
+
+    /**
+     * State shared by the tasks of one call to {@link #analyze}. Progress is counted in files, whose number is known up
+     * front, so the fraction shown never goes back. Each file's share is split between its methods as they finish.
+     */
+    private static class Run {
+
+        private static final long FILE_UNITS = 1 << 20;
+
+        private final ProgressIndicator mIndicator;
+        private final Map<String, ControlDependenceGraph> mResults;
+        private final long mTotalUnits;
+        private long mDoneUnits;
+
+        private Run(@NotNull ProgressIndicator indicator, @NotNull Map<String, ControlDependenceGraph> results,
+                    int fileCount) {
+            mIndicator = indicator;
+            mResults = results;
+            mTotalUnits = Math.max(1, fileCount * FILE_UNITS);
+        }
+
+        private synchronized void workDone(long units) {
+            mDoneUnits += units;
+            mIndicator.setFraction((double) mDoneUnits / mTotalUnits);
+        }
+    }
+
+    private class FileTask extends RecursiveAction {
+
+        private final Run mRun;
+        private final VirtualFile mFile;
+
+        private FileTask(@NotNull Run run, @NotNull VirtualFile file) {
+            mRun = run;
+            mFile = file;
+        }
+
+        @Override
+        protected void compute() {
+            mRun.mIndicator.checkCanceled();
+            List<String> keys = new ArrayList<>();
+            List<PsiCodeBlock> bodies = new ArrayList<>();
+            runInReadAction(() -> {
+                keys.clear();
+                bodies.clear();
+                PsiFile psiFile = mFile.isValid() ? PsiManager.getInstance(mProject).findFile(mFile) : null;
+                if (psiFile == null) {
+                    return;
+                }
+                for (PsiMethod method : PsiTreeUtil.findChildrenOfType(psiFile, PsiMethod.class)) {
+                    if (method.getBody() != null) {
+                        keys.add(ControlDependenceIndex.getMethodKey(method));
+                        bodies.add(method.getBody());
+                    }
+                }
+            }, mRun.mIndicator);
+            long methodUnits = keys.isEmpty() ? 0 : Run.FILE_UNITS / keys.size();
+            List<MethodTask> tasks = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                tasks.add(new MethodTask(mRun, keys.get(i), bodies.get(i), methodUnits));
+            }
+            ForkJoinTask.invokeAll(tasks);
+            // Whatever is left of the file's share after its methods, all of it if it has none.
+            mRun.workDone(Run.FILE_UNITS - keys.size() * methodUnits);
+        }
+    }
+
+    private class MethodTask extends RecursiveAction {
+
+        private final Run mRun;
+        private final String mKey;
+        private final PsiCodeBlock mBody;
+        private final long mUnits;
+
+        private MethodTask(@NotNull Run run, @NotNull String key, @NotNull PsiCodeBlock body, long units) {
+            mRun = run;
+            mKey = key;
+            mBody = body;
+            mUnits = units;
+        }
+
+        @Override
+        protected void compute() {
+            mRun.mIndicator.checkCanceled();
+            runInReadAction(() -> {
+                if (!mBody.isValid()) {
+                    return;
+                }
+                ControlFlow controlFlow;
+                try {
+                    controlFlow = ControlFlowFactory.getInstance(mProject).getControlFlow(mBody, mPolicy);
+                } catch (AnalysisCanceledException e) {
+                    return;
+                }
+                mRun.mResults.put(mKey,
+                        ControlDependenceGraph.from(ControlFlowGraphFactory.getControlFlowGraph(controlFlow)));
+            }, mRun.mIndicator);
+            mRun.workDone(mUnits);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * What {@link ControlDependenceIndex} keeps for a method: its control dependence graph as a {@link GraphWriter}
+ * record, and the nodes of its return statements. The record is only decoded when it is asked for.
+ */
+public class ControlDependenceSummary {
+
+    private final byte[] mGraph;
+    private final int[] mReturnNodes;
+
+    /**
+     * @param graph       a record written by {@link GraphWriter}
+     * @param returnNodes ids of the nodes for the method's return statements, in ascending order
+     */
+    public ControlDependenceSummary(@NotNull byte[] graph, @NotNull int[] returnNodes) {
+        mGraph = graph;
+        mReturnNodes = returnNodes;
+    }
+
+    @NotNull
+    byte[] getEncodedGraph() {
+        return mGraph;
+    }
+
+    @NotNull
+    public int[] getReturnNodes() {
+        return mReturnNodes.clone();
+    }
+
+    @NotNull
+    public GraphRecord getGraph() throws IOException {
+        GraphRecord record = new GraphReader(new DataInputStream(new ByteArrayInputStream(mGraph))).read();
+        if (record == null) {
+            throw new IOException("Empty control dependence summary");
+        }
+        return record;
+    }
+
+    /**
+     * @return whether any return statement is control dependent on an edge of type {@code type}.
+     */
+    public boolean isReturnControlDependentOn(@NotNull ControlFlowEdgeType type) throws IOException {
+        if (mReturnNodes.length == 0) {
+            return false;
+        }
+        boolean[] found = new boolean[1];
+        new GraphReader(new DataInputStream(new ByteArrayInputStream(mGraph))).accept(new GraphReader.Visitor() {
+            @Override
+            public void visitDependence(int node, int controller, @NotNull ControlFlowEdgeType dependenceType) {
+                if (dependenceType == type && Arrays.binarySearch(mReturnNodes, node) >= 0) {
+                    found[0] = true;
+                }
+            }
+        });
+        return found[0];
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ControlDependenceSummary)) {
+            return false;
+        }
+        ControlDependenceSummary summary = (ControlDependenceSummary) other;
+        return Arrays.equals(mGraph, summary.mGraph) && Arrays.equals(mReturnNodes, summary.mReturnNodes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(mGraph) + Arrays.hashCode(mReturnNodes);
+    }
+}
@@ -0,0 +1,438 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Brings immediate postdominators and control dependences up to date after a method is edited, reusing the results
+ * computed for the graph before the edit.
+ * <p>
+ * The old and new graphs are lined up by their longest common prefix and suffix of instruction kinds; an edit to one
+ * statement changes the instructions in between and shifts the ones after it. A new node is changed if it has no
+ * counterpart in the old graph or its edges don't line up with its counterpart's. Nodes that can't reach a changed
+ * node see exactly the same paths to the exit as before, so their immediate postdominators, and the dependences they
+ * control, carry over. Only the affected nodes, those that reach a changed node, are run through the
+ * Cooper-Harvey-Kennedy iteration again, seeded with the carried-over parents, and only their outgoing edges are walked
+ * up the tree for new dependences.
+ * <p>
+ * When too much of the graph is affected for this to pay off, or the graphs can't be lined up at all, everything is
+ * rebuilt. {@link #getFullRebuildCount()} counts how often that happens.
+ */
+public class ControlDependenceUpdater {
+
+    public static final double DEFAULT_MAX_AFFECTED_FRACTION = 0.5;
+
+    private static final int UNDEFINED = DenseControlFlowGraph.NO_NODE;
+
+    private final double mMaxAffectedFraction;
+    private long mIncrementalUpdateCount;
+    private long mFullRebuildCount;
+    private long mAffectedNodeCount;
+
+    public ControlDependenceUpdater() {
+        this(DEFAULT_MAX_AFFECTED_FRACTION);
+    }
+
+    /**
+     * @param maxAffectedFraction fraction of the new graph's nodes that may be affected before falling back to a full
+     *                            rebuild
+     */
+    public ControlDependenceUpdater(double maxAffectedFraction) {
+        mMaxAffectedFraction = maxAffectedFraction;
+    }
+
+    /**
+     * Immediate postdominators and control dependences of a graph, as produced by {@link #update}.
+     */
+    public static class Result {
+
+        private final int[] mImmediatePostdominators;
+        private final ControlDependenceGraph mControlDependenceGraph;
+        private final boolean mIncremental;
+
+        private Result(@NotNull int[] immediatePostdominators, @NotNull ControlDependenceGraph controlDependenceGraph,
+                       boolean incremental) {
+            mImmediatePostdominators = immediatePostdominators;
+            mControlDependenceGraph = controlDependenceGraph;
+            mIncremental = incremental;
+        }
+
+        @NotNull
+        public int[] getImmediatePostdominators() {
+            return mImmediatePostdominators;
+        }
+
+        @NotNull
+        public ControlDependenceGraph getControlDependenceGraph() {
+            return mControlDependenceGraph;
+        }
+
+        /**
+         * @return false if the result was rebuilt from scratch.
+         */
+        public boolean isIncremental() {
+            return mIncremental;
+        }
+    }
+
+    /**
+     * @param oldGraph                   graph before the edit, or null to build from scratch
+     * @param oldImmediatePostdominators immediate postdominators of {@code oldGraph}
+     * @param oldControlDependences      control dependences of {@code oldGraph}
+     */
+    @NotNull
+    public Result update(@Nullable DenseControlFlowGraph oldGraph, @Nullable int[] oldImmediatePostdominators,
+                         @Nullable ControlDependenceGraph oldControlDependences,
+                         @NotNull DenseControlFlowGraph newGraph) {
+        if (oldGraph != null && oldImmediatePostdominators != null && oldControlDependences != null) {
+            Result result = new Update(oldGraph, oldImmediatePostdominators, oldControlDependences, newGraph).run();
+            if (result != null) {
+                return result;
+            }
+        }
+        recordFullRebuild();
+        int[] immediatePostdominators = ImmediatePostdominatorSolver.getImmediatePostdominators(newGraph);
+        return new Result(immediatePostdominators,
+                PostdominanceFrontier.getControlDependenceGraph(newGraph, immediatePostdominators), false);
+    }
+
+    private synchronized void recordIncrementalUpdate(int affectedNodeCount) {
+        mIncrementalUpdateCount++;
+        mAffectedNodeCount += affectedNodeCount;
+    }
+
+    private synchronized void recordFullRebuild() {
+        mFullRebuildCount++;
+    }
+
+    public synchronized long getIncrementalUpdateCount() {
+        return mIncrementalUpdateCount;
+    }
+
+    public synchronized long getFullRebuildCount() {
+        return mFullRebuildCount;
+    }
+
+    /**
+     * @return total number of nodes recomputed over all incremental updates.
+     */
+    public synchronized long getAffectedNodeCount() {
+        return mAffectedNodeCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "incrementalUpdates=" + mIncrementalUpdateCount + " fullRebuilds=" + mFullRebuildCount +
+                " affectedNodes=" + mAffectedNodeCount;
+    }
+
+    /**
+     * State for one update.
+     */
+    private class Update {
+
+        private final DenseControlFlowGraph mOldGraph;
+        private final int[] mOldImmediatePostdominators;
+        private final ControlDependenceGraph mOldControlDependences;
+        private final DenseControlFlowGraph mNewGraph;
+        private int mPrefix;
+        private int mSuffix;
+        private boolean[] mAffected;
+        private int[] mAffectedNodes;
+        private int mAffectedCount;
+
+        private Update(@NotNull DenseControlFlowGraph oldGraph, @NotNull int[] oldImmediatePostdominators,
+                       @NotNull ControlDependenceGraph oldControlDependences, @NotNull DenseControlFlowGraph newGraph) {
+            mOldGraph = oldGraph;
+            mOldImmediatePostdominators = oldImmediatePostdominators;
+            mOldControlDependences = oldControlDependences;
+            mNewGraph = newGraph;
+        }
+
+        /**
+         * @return the updated result, or null if a full rebuild is needed.
+         */
+        @Nullable
+        private Result run() {
+            int exitNode = mNewGraph.getExitNode();
+            if (exitNode == DenseControlFlowGraph.NO_NODE || mOldGraph.getExitNode() == DenseControlFlowGraph.NO_NODE) {
+                return null;
+            }
+            alignNodes();
+            if (getNewId(mOldGraph.getExitNode()) != exitNode) {
+                return null;
+            }
+            findAffectedNodes();
+            if (mAffectedCount > mMaxAffectedFraction * mNewGraph.size()) {
+                return null;
+            }
+            int[] immediatePostdominators = updateImmediatePostdominators();
+            ControlDependenceGraph controlDependences = updateControlDependences(immediatePostdominators);
+            recordIncrementalUpdate(mAffectedCount);
+            return new Result(immediatePostdominators, controlDependences, true);
+        }
+
+        /**
+         * Match the suffix first: the exit is the last node of both graphs, and a prefix that ran past the edit would
+         * leave it unmatched.
+         */
+        private void alignNodes() {
+            int oldCount = mOldGraph.size();
+            int newCount = mNewGraph.size();
+            int limit = Math.min(oldCount, newCount);
+            while (mSuffix < limit && isSameKind(oldCount - 1 - mSuffix, newCount - 1 - mSuffix)) {
+                mSuffix++;
+            }
+            while (mPrefix < limit - mSuffix && isSameKind(mPrefix, mPrefix)) {
+                mPrefix++;
+            }
+        }
+
+        private boolean isSameKind(int oldNode, int newNode) {
+            return InstructionKind.of(mOldGraph.getNode(oldNode).getInstruction()) ==
+                    InstructionKind.of(mNewGraph.getNode(newNode).getInstruction());
+        }
+
+        /**
+         * @return id in the new graph of a node in the old graph, or {@link DenseControlFlowGraph#NO_NODE} if the node
+         * was removed. Kept nodes stay in the same order.
+         */
+        private int getNewId(int oldNode) {
+            if (oldNode < mPrefix) {
+                return oldNode;
+            } else if (oldNode >= mOldGraph.size() - mSuffix) {
+                return oldNode + mNewGraph.size() - mOldGraph.size();
+            }
+            return DenseControlFlowGraph.NO_NODE;
+        }
+
+        private int getOldId(int newNode) {
+            if (newNode < mPrefix) {
+                return newNode;
+            } else if (newNode >= mNewGraph.size() - mSuffix) {
+                return newNode - mNewGraph.size() + mOldGraph.size();
+            }
+            return DenseControlFlowGraph.NO_NODE;
+        }
+
+        /**
+         * Mark changed nodes, then everything that can reach them.
+         */
+        private void findAffectedNodes() {
+            int nodeCount = mNewGraph.size();
+            mAffected = new boolean[nodeCount];
+            mAffectedNodes = new int[nodeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                if (!hasSameEdges(node)) {
+                    mAffected[node] = true;
+                    mAffectedNodes[mAffectedCount++] = node;
+                }
+            }
+            for (int i = 0; i < mAffectedCount; i++) {
+                int node = mAffectedNodes[i];
+                for (int edge = mNewGraph.getPredecessorStart(node); edge < mNewGraph.getPredecessorEnd(node);
+                     edge++) {
+                    int predecessor = mNewGraph.getPredecessor(edge);
+                    if (!mAffected[predecessor]) {
+                        mAffected[predecessor] = true;
+                        mAffectedNodes[mAffectedCount++] = predecessor;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return whether a new node has a counterpart with the same set of edges. Postdominators and dependences only
+         * depend on which edges there are, not on how many times each is repeated.
+         */
+        private boolean hasSameEdges(int newNode) {
+            int oldNode = getOldId(newNode);
+            if (oldNode == DenseControlFlowGraph.NO_NODE) {
+                return false;
+            }
+            for (int oldEdge = mOldGraph.getSuccessorStart(oldNode); oldEdge < mOldGraph.getSuccessorEnd(oldNode);
+                 oldEdge++) {
+                int successor = getNewId(mOldGraph.getSuccessor(oldEdge));
+                if (successor == DenseControlFlowGraph.NO_NODE ||
+                        !hasEdge(mNewGraph, newNode, successor, mOldGraph.getSuccessorType(oldEdge))) {
+                    return false;
+                }
+            }
+            for (int newEdge = mNewGraph.getSuccessorStart(newNode); newEdge < mNewGraph.getSuccessorEnd(newNode);
+                 newEdge++) {
+                int successor = getOldId(mNewGraph.getSuccessor(newEdge));
+                if (successor == DenseControlFlowGraph.NO_NODE ||
+                        !hasEdge(mOldGraph, oldNode, successor, mNewGraph.getSuccessorType(newEdge))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean hasEdge(@NotNull DenseControlFlowGraph graph, int node, int successor,
+                                @NotNull ControlFlowEdgeType type) {
+            for (int edge = graph.getSuccessorStart(node); edge < graph.getSuccessorEnd(node); edge++) {
+                if (graph.getSuccessor(edge) == successor && graph.getSuccessorType(edge) == type) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Carry over the parents of unaffected nodes, then iterate over the affected nodes only. The numbering still
+         * covers the whole graph, since the fingers in {@link ImmediatePostdominatorSolver#intersect} climb into
+         * unaffected nodes.
+         */
+        @NotNull
+        private int[] updateImmediatePostdominators() {
+            int nodeCount = mNewGraph.size();
+            int root = mNewGraph.getExitNode();
+            int[] parents = new int[nodeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                int parent = mAffected[node] ? UNDEFINED : mOldImmediatePostdominators[getOldId(node)];
+                parents[node] = (parent != UNDEFINED) ? getNewId(parent) : UNDEFINED;
+            }
+            int[] reversePostorder = mNewGraph.getReversePostorder(root, true);
+            int[] postorderNumbers = new int[nodeCount];
+            Arrays.fill(postorderNumbers, UNDEFINED);
+            int[] order = new int[mAffectedCount];
+            int orderSize = 0;
+            for (int i = 0; i < reversePostorder.length; i++) {
+                int node = reversePostorder[i];
+                postorderNumbers[node] = reversePostorder.length - 1 - i;
+                if (mAffected[node] && node != root) {
+                    order[orderSize++] = node;
+                }
+            }
+
+            parents[root] = root;
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int i = 0; i < orderSize; i++) {
+                    int node = order[i];
+                    int newParent = UNDEFINED;
+                    for (int edge = mNewGraph.getSuccessorStart(node); edge < mNewGraph.getSuccessorEnd(node);
+                         edge++) {
+                        int successor = mNewGraph.getSuccessor(edge);
+                        if (parents[successor] == UNDEFINED) {
+                            continue;
+                        }
+                        newParent = (newParent == UNDEFINED) ? successor :
+                                ImmediatePostdominatorSolver.intersect(successor, newParent, parents,
+                                        postorderNumbers);
+                    }
+                    if (newParent != UNDEFINED && parents[node] != newParent) {
+                        parents[node] = newParent;
+                        changed = true;
+                    }
+                }
+            }
+            parents[root] = UNDEFINED;
+            return parents;
+        }
+
+        /**
+         * Node {@code n} depends on an edge from {@code x} to {@code s} if {@code n} is on the tree path from
+         * {@code s} up to, but not including, the immediate postdominator of {@code x}; {@code x} only depends on
+         * itself through a self loop. Nodes that depend on an unaffected node are unaffected too, so dependences on
+         * unaffected nodes are copied, in order, from the old rows, and merged with new walks from the affected nodes.
+         */
+        @NotNull
+        private ControlDependenceGraph updateControlDependences(@NotNull int[] immediatePostdominators) {
+            // Entries are packed as (dependent node << 32 | controller << 8 | edge type).
+            long[] walked = new long[16];
+            int walkedSize = 0;
+            for (int i = 0; i < mAffectedCount; i++) {
+                int controller = mAffectedNodes[i];
+                int stop = immediatePostdominators[controller];
+                for (int edge = mNewGraph.getSuccessorStart(controller); edge < mNewGraph.getSuccessorEnd(controller);
+                     edge++) {
+                    int successor = mNewGraph.getSuccessor(edge);
+                    long label = ((long) controller << 8) | mNewGraph.getSuccessorType(edge).ordinal();
+                    for (int node = successor; node != UNDEFINED && node != stop;
+                         node = immediatePostdominators[node]) {
+                        if (node == controller && node != successor) {
+                            break;
+                        }
+                        if (walkedSize == walked.length) {
+                            walked = Arrays.copyOf(walked, walkedSize * 2);
+                        }
+                        walked[walkedSize++] = ((long) node << 32) | label;
+                        if (node == controller) {
+                            break;
+                        }
+                    }
+                }
+            }
+            Arrays.sort(walked, 0, walkedSize);
+
+            int nodeCount = mNewGraph.size();
+            int[] dependenceOffsets = new int[nodeCount + 1];
+            int capacity = mOldControlDependences.getDependenceCount() + walkedSize;
+            int[] controllers = new int[capacity];
+            byte[] types = new byte[capacity];
+            int dependenceCount = 0;
+            int walkedIndex = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                if (!mAffected[node]) {
+                    int oldNode = getOldId(node);
+                    for (int dependence = mOldControlDependences.getDependenceStart(oldNode);
+                         dependence < mOldControlDependences.getDependenceEnd(oldNode); dependence++) {
+                        int controller = getNewId(mOldControlDependences.getDependenceTarget(dependence));
+                        if (controller != DenseControlFlowGraph.NO_NODE && !mAffected[controller]) {
+                            long entry = ((long) controller << 8) |
+                                    mOldControlDependences.getDependenceType(dependence).ordinal();
+                            // Merge in walked entries that sort before this one.
+                            while (walkedIndex < walkedSize && (walked[walkedIndex] >>> 32) == node &&
+                                    (walked[walkedIndex] & 0xffffffffL) < entry) {
+                                dependenceCount = addDependence(controllers, types, dependenceCount,
+                                        walked[walkedIndex++]);
+                            }
+                            dependenceCount = addDependence(controllers, types, dependenceCount, entry);
+                        }
+                    }
+                }
+                while (walkedIndex < walkedSize && (walked[walkedIndex] >>> 32) == node) {
+                    dependenceCount = addDependence(controllers, types, dependenceCount, walked[walkedIndex++]);
+                }
+                // Walks from different edges of the same type can reach the same node.
+                dependenceCount = removeDuplicates(controllers, types, dependenceOffsets[node], dependenceCount);
+                dependenceOffsets[node + 1] = dependenceCount;
+            }
+            ControlFlowNode[] nodes = new ControlFlowNode[nodeCount];
+            for (int node = 0; node < nodeCount; node++) {
+                nodes[node] = mNewGraph.getNode(node);
+            }
+            List<ControlFlowNode> nodeList = Arrays.asList(nodes);
+            return new ControlDependenceGraph(nodeList, dependenceOffsets, Arrays.copyOf(controllers, dependenceCount),
+                    Arrays.copyOf(types, dependenceCount));
+        }
+
+        private int addDependence(@NotNull int[] controllers, @NotNull byte[] types, int dependenceCount,
+                                  long entry) {
+            controllers[dependenceCount] = (int) ((entry & 0xffffffffL) >>> 8);
+            types[dependenceCount] = (byte) (entry & 0xff);
+            return dependenceCount + 1;
+        }
+
+        /**
+         * @return the new end of a sorted row after dropping repeated entries.
+         */
+        private int removeDuplicates(@NotNull int[] controllers, @NotNull byte[] types, int start, int end) {
+            int size = start;
+            for (int i = start; i < end; i++) {
+                if (size == start || controllers[i] != controllers[size - 1] || types[i] != types[size - 1]) {
+                    controllers[size] = controllers[i];
+                    types[size] = types[i];
+                    size++;
+                }
+            }
+            return size;
+        }
+    }
+}
@@ -1,3 +1,5 @@
+package pdgutils;
+
 public class ControlFlowEdge {
 
     private ControlFlowNode mFrom;
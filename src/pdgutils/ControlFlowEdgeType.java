@@ -1,3 +1,5 @@
+package pdgutils;
+
 import com.intellij.psi.controlFlow.*;
 
 public enum ControlFlowEdgeType {
@@ -6,6 +8,8 @@ public enum ControlFlowEdgeType {
     BRANCH("branch"),
     EXCEPTION("exception");
 
+    private static final ControlFlowEdgeType[] VALUES = values();
+
     private String mReadableName;
 
     ControlFlowEdgeType(String readableName) {
@@ -16,6 +20,10 @@ public enum ControlFlowEdgeType {
         return mReadableName;
     }
 
+    public static ControlFlowEdgeType fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
     public static ControlFlowEdgeType getControlFlowEdgeType(Instruction instruction, int index, int nextNumber) {
         if (instruction instanceof ConditionalThrowToInstruction) {
             if (nextNumber == 0) {
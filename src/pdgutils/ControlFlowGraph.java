@@ -0,0 +1,287 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+/**
+ * Based on {@link com.intellij.psi.controlFlow.ControlFlowImpl}.
+ * <p>
+ * A graph is either built up node by node with {@link #addNode} and {@link #addEdge}, or wraps a
+ * {@link DenseControlFlowGraph}. Either way, reads go through the dense representation, which is rebuilt lazily after
+ * the graph is modified.
+ *
+ * @author andrewhead
+ */
+public class ControlFlowGraph {
+
+    private final List<ControlFlowNode> mNodes = new ArrayList<>();
+    private final Map<ControlFlowNode, Set<ControlFlowEdge>> mNext = new HashMap<>();
+    private final Map<ControlFlowNode, Set<ControlFlowEdge>> mPrevious = new HashMap<>();
+    private ControlFlowNode mExitNode;
+    private volatile DenseControlFlowGraph mDenseGraph;
+    private boolean mEdgesMaterialized = true;
+
+    public ControlFlowGraph() {
+    }
+
+    /**
+     * Create a view over a dense graph. Edge objects are only created when they are asked for.
+     */
+    public ControlFlowGraph(@NotNull DenseControlFlowGraph denseGraph) {
+        for (int i = 0; i < denseGraph.size(); i++) {
+            mNodes.add(denseGraph.getNode(i));
+        }
+        if (denseGraph.getExitNode() != DenseControlFlowGraph.NO_NODE) {
+            mExitNode = denseGraph.getNode(denseGraph.getExitNode());
+        }
+        mDenseGraph = denseGraph;
+        mEdgesMaterialized = false;
+    }
+
+    public void addNode(@NotNull ControlFlowNode node) {
+        materializeEdges();
+        mNodes.add(node);
+        mDenseGraph = null;
+    }
+
+    public void addEdge(@NotNull ControlFlowNode from, @NotNull ControlFlowNode to, @NotNull ControlFlowEdgeType type) {
+        materializeEdges();
+        saveEdge(new ControlFlowEdge(from, to, type));
+        mDenseGraph = null;
+    }
+
+    private void saveEdge(@NotNull ControlFlowEdge edge) {
+        if (!mNext.containsKey(edge.getFrom())) {
+            mNext.put(edge.getFrom(), new HashSet<>());
+        }
+        mNext.get(edge.getFrom()).add(edge);
+
+        if (!mPrevious.containsKey(edge.getTo())) {
+            mPrevious.put(edge.getTo(), new HashSet<>());
+        }
+        mPrevious.get(edge.getTo()).add(edge);
+    }
+
+    /**
+     * Copy the edges of the wrapped dense graph into edge maps, so that the graph can be modified.
+     */
+    private void materializeEdges() {
+        if (mEdgesMaterialized) {
+            return;
+        }
+        DenseControlFlowGraph denseGraph = mDenseGraph;
+        for (int node = 0; node < denseGraph.size(); node++) {
+            for (int edge = denseGraph.getSuccessorStart(node); edge < denseGraph.getSuccessorEnd(node); edge++) {
+                saveEdge(new ControlFlowEdge(denseGraph.getNode(node),
+                        denseGraph.getNode(denseGraph.getSuccessor(edge)), denseGraph.getSuccessorType(edge)));
+            }
+        }
+        mEdgesMaterialized = true;
+    }
+
+    /**
+     * @return this graph in compressed sparse row form. Node ids match indexes in {@link #getNodes()}.
+     */
+    @NotNull
+    public DenseControlFlowGraph getDenseGraph() {
+        DenseControlFlowGraph denseGraph = mDenseGraph;
+        if (denseGraph == null) {
+            ControlFlowNode[] nodes = mNodes.toArray(new ControlFlowNode[0]);
+            // Nodes can be shared with other graphs, so ids are kept here rather than on the nodes.
+            Map<ControlFlowNode, Integer> ids = new IdentityHashMap<>(nodes.length);
+            for (int i = 0; i < nodes.length; i++) {
+                ids.put(nodes[i], i);
+            }
+            int edgeCount = 0;
+            for (Set<ControlFlowEdge> edges : mNext.values()) {
+                edgeCount += edges.size();
+            }
+            int[] edgeSources = new int[edgeCount];
+            int[] edgeTargets = new int[edgeCount];
+            byte[] edgeTypes = new byte[edgeCount];
+            int edgeIndex = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                Set<ControlFlowEdge> edges = mNext.get(nodes[i]);
+                if (edges != null) {
+                    for (ControlFlowEdge edge : edges) {
+                        edgeSources[edgeIndex] = i;
+                        edgeTargets[edgeIndex] = ids.get(edge.getTo());
+                        edgeTypes[edgeIndex] = (byte) edge.getType().ordinal();
+                        edgeIndex++;
+                    }
+                }
+            }
+            int exitNode = (mExitNode != null) ? ids.get(mExitNode) : DenseControlFlowGraph.NO_NODE;
+            denseGraph = new DenseControlFlowGraph(nodes, exitNode, edgeSources, edgeTargets, edgeTypes, edgeIndex);
+            mDenseGraph = denseGraph;
+        }
+        return denseGraph;
+    }
+
+    /**
+     * @return the nodes, as a read-only view that follows later changes to the graph.
+     */
+    public List<ControlFlowNode> getNodes() {
+        return Collections.unmodifiableList(this.mNodes);
+    }
+
+    /**
+     * @return an immutable snapshot of the graph, which can be shared between threads. Changes made to this graph
+     * afterwards don't show up in the snapshot. The snapshot holds this graph's nodes, so trees and control
+     * dependences built from it are over the same node objects; see {@link ControlFlowSnapshot}.
+     */
+    @NotNull
+    public DenseControlFlowGraph freeze() {
+        return getDenseGraph();
+    }
+
+    @Nullable
+    public ControlFlowNode getExitNode() {
+        return mExitNode;
+    }
+
+    public void setExitNode(@NotNull ControlFlowNode node) {
+        materializeEdges();
+        this.mExitNode = node;
+        mDenseGraph = null;
+    }
+
+    /**
+     * @return a read-only view of the node's successors in the current dense graph, with no set built per call.
+     */
+    @NotNull
+    public Set<ControlFlowNode> getSuccessors(@NotNull ControlFlowNode node) {
+        DenseControlFlowGraph denseGraph = getDenseGraph();
+        int id = denseGraph.getId(node);
+        if (id == DenseControlFlowGraph.NO_NODE) {
+            return Collections.emptySet();
+        }
+        return new SuccessorSet(denseGraph, id);
+    }
+
+    @Nullable
+    public Set<ControlFlowEdge> getEdgesTo(@NotNull ControlFlowNode node) {
+        if (mEdgesMaterialized) {
+            return this.mPrevious.get(node);
+        }
+        DenseControlFlowGraph denseGraph = mDenseGraph;
+        int id = denseGraph.getId(node);
+        if (id == DenseControlFlowGraph.NO_NODE ||
+                denseGraph.getPredecessorStart(id) == denseGraph.getPredecessorEnd(id)) {
+            return null;
+        }
+        Set<ControlFlowEdge> edgesTo = new HashSet<>();
+        for (int edge = denseGraph.getPredecessorStart(id); edge < denseGraph.getPredecessorEnd(id); edge++) {
+            edgesTo.add(new ControlFlowEdge(denseGraph.getNode(denseGraph.getPredecessor(edge)), node,
+                    denseGraph.getPredecessorType(edge)));
+        }
+        return edgesTo;
+    }
+
+    public int size() {
+        return this.mNodes.size();
+    }
+
+    /**
+     * The targets of one node's row of successor edges. A target reached by edges of several types is listed once.
+     */
+    private static class SuccessorSet extends AbstractSet<ControlFlowNode> {
+
+        private final DenseControlFlowGraph mGraph;
+        private final int mNode;
+
+        SuccessorSet(@NotNull DenseControlFlowGraph graph, int node) {
+            mGraph = graph;
+            mNode = node;
+        }
+
+        /**
+         * @return whether an earlier edge of the row has the same target as {@code edge}.
+         */
+        private boolean isRepeated(int edge) {
+            for (int earlier = mGraph.getSuccessorStart(mNode); earlier < edge; earlier++) {
+                if (mGraph.getSuccessor(earlier) == mGraph.getSuccessor(edge)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public boolean contains(Object object) {
+            for (int edge = mGraph.getSuccessorStart(mNode); edge < mGraph.getSuccessorEnd(mNode); edge++) {
+                if (mGraph.getNode(mGraph.getSuccessor(edge)) == object) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (int edge = mGraph.getSuccessorStart(mNode); edge < mGraph.getSuccessorEnd(mNode); edge++) {
+                if (!isRepeated(edge)) {
+                    size++;
+                }
+            }
+            return size;
+        }
+
+        @NotNull
+        @Override
+        public Iterator<ControlFlowNode> iterator() {
+            return new Iterator<ControlFlowNode>() {
+                private int mEdge = skipRepeated(mGraph.getSuccessorStart(mNode));
+
+                private int skipRepeated(int edge) {
+                    while (edge < mGraph.getSuccessorEnd(mNode) && isRepeated(edge)) {
+                        edge++;
+                    }
+                    return edge;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return mEdge < mGraph.getSuccessorEnd(mNode);
+                }
+
+                @Override
+                public ControlFlowNode next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    ControlFlowNode next = mGraph.getNode(mGraph.getSuccessor(mEdge));
+                    mEdge = skipRepeated(mEdge + 1);
+                    return next;
+                }
+            };
+        }
+    }
+
+    @Override
+    public String toString() {
+        DenseControlFlowGraph denseGraph = getDenseGraph();
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < denseGraph.size(); i++) {
+            ControlFlowNode node = denseGraph.getNode(i);
+            buffer.append(Integer.toString(i));
+            buffer.append(": ");
+            buffer.append(node.getInstruction().getClass().getSimpleName().replace("Instruction", ""));
+            buffer.append(" ->");
+            List<Integer> nextEdges = new ArrayList<>();
+            for (int edge = denseGraph.getSuccessorStart(i); edge < denseGraph.getSuccessorEnd(i); edge++) {
+                nextEdges.add(edge);
+            }
+            nextEdges.sort(Comparator.comparingInt(denseGraph::getSuccessor));
+            for (int nextEdge : nextEdges) {
+                buffer.append(" ").append(denseGraph.getSuccessor(nextEdge)).append(".")
+                        .append(denseGraph.getSuccessorType(nextEdge));
+            }
+            buffer.append("\n");
+        }
+        return buffer.toString();
+    }
+}
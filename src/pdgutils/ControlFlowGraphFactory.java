@@ -0,0 +1,175 @@
+package pdgutils;
+
+import com.intellij.codeInsight.ExceptionUtil;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.controlFlow.ControlFlow;
+import com.intellij.psi.controlFlow.EmptyInstruction;
+import com.intellij.psi.controlFlow.Instruction;
+import com.intellij.psi.controlFlow.ThrowToInstruction;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ControlFlowGraphFactory {
+    /**
+     * Get control flow graph for control flow. Consolidates statements in a control flow.
+     */
+    public static ControlFlowGraph getControlFlowGraph(ControlFlow controlFlow) {
+        return new ControlFlowGraph(getDenseControlFlowGraph(controlFlow));
+    }
+
+    /**
+     * Get control flow graph for control flow, keeping only as much exception flow as asked for.
+     */
+    public static ControlFlowGraph getControlFlowGraph(ControlFlow controlFlow, ExceptionFlow exceptionFlow) {
+        return new ControlFlowGraph(getDenseControlFlowGraph(controlFlow, exceptionFlow));
+    }
+
+    /**
+     * Get control flow graph for control flow, built straight from the instruction list. Node {@code i} is the node
+     * for instruction {@code i}; the last node is the exit node.
+     */
+    public static DenseControlFlowGraph getDenseControlFlowGraph(ControlFlow controlFlow) {
+        return getDenseControlFlowGraph(controlFlow, ExceptionFlow.FULL);
+    }
+
+    /**
+     * Get control flow graph for control flow, built straight from the instruction list. Node {@code i} is the node
+     * for instruction {@code i}, followed by the exit node. With {@link ExceptionFlow#NONE}, a graph with a
+     * {@code throw}, or a rethrow from a {@code finally} block, that would be caught in the method also gets an
+     * exceptional exit node after the exit node.
+     */
+    public static DenseControlFlowGraph getDenseControlFlowGraph(ControlFlow controlFlow,
+                                                                 ExceptionFlow exceptionFlow) {
+        List<Instruction> instructions = controlFlow.getInstructions();
+        int exitNode = instructions.size();
+        int exceptionalExitNode = exitNode + 1;
+
+        int edgeCount = 1;
+        for (int i = 0; i < instructions.size(); i++) {
+            edgeCount += instructions.get(i).nNext();
+        }
+        int[] edgeSources = new int[edgeCount];
+        int[] edgeTargets = new int[edgeCount];
+        byte[] edgeTypes = new byte[edgeCount];
+        int edgeIndex = 0;
+        boolean hasExceptionalExit = false;
+        Map<PsiElement, Boolean> throwsChecked = new HashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            for (int offset = 0; offset < instruction.nNext(); offset++) {
+                int nextI = instruction.getNext(i, offset);
+                if (nextI < 0 || nextI > exitNode) {
+                    continue;
+                }
+                ControlFlowEdgeType type = ControlFlowEdgeType.getControlFlowEdgeType(instruction, i, offset);
+                if (type == ControlFlowEdgeType.EXCEPTION &&
+                        !keepsExceptionEdge(controlFlow, i, exceptionFlow, throwsChecked)) {
+                    continue;
+                }
+                if (exceptionFlow == ExceptionFlow.NONE && instruction instanceof ThrowToInstruction &&
+                        nextI != exitNode) {
+                    nextI = exceptionalExitNode;
+                    hasExceptionalExit = true;
+                }
+                edgeSources[edgeIndex] = i;
+                edgeTargets[edgeIndex] = nextI;
+                edgeTypes[edgeIndex] = (byte) type.ordinal();
+                edgeIndex++;
+            }
+        }
+        ControlFlowNode[] nodes = getNodes(controlFlow, instructions, hasExceptionalExit);
+        if (hasExceptionalExit) {
+            edgeSources[edgeIndex] = exceptionalExitNode;
+            edgeTargets[edgeIndex] = exitNode;
+            edgeTypes[edgeIndex] = (byte) ControlFlowEdgeType.EXCEPTION.ordinal();
+            edgeIndex++;
+        }
+        return new DenseControlFlowGraph(nodes, exitNode, edgeSources, edgeTargets, edgeTypes, edgeIndex);
+    }
+
+    /**
+     * @param throwsChecked whether each element seen so far can throw a checked exception. Runs of throw instructions
+     *                      usually share an element.
+     */
+    private static boolean keepsExceptionEdge(ControlFlow controlFlow, int index, ExceptionFlow exceptionFlow,
+                                              Map<PsiElement, Boolean> throwsChecked) {
+        switch (exceptionFlow) {
+            case NONE:
+                return false;
+            case CHECKED:
+                PsiElement element = controlFlow.getElement(index);
+                if (element == null) {
+                    return true;
+                }
+                Boolean result = throwsChecked.get(element);
+                if (result == null) {
+                    result = !ExceptionUtil.getThrownCheckedExceptions(element).isEmpty();
+                    throwsChecked.put(element, result);
+                }
+                return result;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Count the edges a graph would have with all of its exception flow, without building it.
+     */
+    public static int getFullEdgeCount(ControlFlow controlFlow) {
+        List<Instruction> instructions = controlFlow.getInstructions();
+        int exitNode = instructions.size();
+        int edgeCount = 0;
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            for (int offset = 0; offset < instruction.nNext(); offset++) {
+                int nextI = instruction.getNext(i, offset);
+                if (nextI >= 0 && nextI <= exitNode) {
+                    edgeCount++;
+                }
+            }
+        }
+        return edgeCount;
+    }
+
+    /**
+     * Get control flow graph for control flow with straight-line runs of instructions consolidated into basic blocks.
+     */
+    public static BasicBlockGraph getBasicBlockGraph(ControlFlow controlFlow) {
+        return BasicBlockGraph.from(getDenseControlFlowGraph(controlFlow));
+    }
+
+    /**
+     * Get control flow graph for control flow with {@code finally} subroutines copied for each call, so that each copy
+     * returns only to its own call site. The graph may grow to {@link InlinedControlFlowGraph#DEFAULT_MAX_GROWTH}
+     * times its size.
+     */
+    public static InlinedControlFlowGraph getInlinedControlFlowGraph(ControlFlow controlFlow) {
+        return InlinedControlFlowGraph.from(getDenseControlFlowGraph(controlFlow));
+    }
+
+    /**
+     * @param maxNodes most nodes the graph may have once subroutines are copied
+     */
+    public static InlinedControlFlowGraph getInlinedControlFlowGraph(ControlFlow controlFlow, int maxNodes) {
+        return InlinedControlFlowGraph.from(getDenseControlFlowGraph(controlFlow), maxNodes);
+    }
+
+    /**
+     * @return nodes indexed by control flow instruction index, followed by an exit node and, if asked for, an
+     * exceptional exit node.
+     */
+    private static ControlFlowNode[] getNodes(ControlFlow controlFlow, List<Instruction> instructions,
+                                              boolean hasExceptionalExit) {
+        ControlFlowNode[] nodes = new ControlFlowNode[instructions.size() + (hasExceptionalExit ? 2 : 1)];
+        for (int i = 0; i < instructions.size(); i++) {
+            PsiElement element = controlFlow.getElement(i);
+            nodes[i] = new ControlFlowNode(instructions.get(i), element);
+        }
+        for (int i = instructions.size(); i < nodes.length; i++) {
+            nodes[i] = new ControlFlowNode(EmptyInstruction.INSTANCE, null);
+        }
+        return nodes;
+    }
+}
@@ -1,21 +1,23 @@
+package pdgutils;
+
 import com.intellij.psi.controlFlow.Instruction;
 import com.intellij.psi.PsiElement;
 
-class ControlFlowNode {
+public class ControlFlowNode {
 
-    private Instruction mInstruction;
-    private PsiElement mElement;
+    private final Instruction mInstruction;
+    private final PsiElement mElement;
 
     ControlFlowNode(Instruction instruction, PsiElement element) {
         mInstruction = instruction;
         mElement = element;
     }
 
-    Instruction getInstruction() {
+    public Instruction getInstruction() {
         return mInstruction;
     }
 
-    PsiElement getElement() {
+    public PsiElement getElement() {
         return mElement;
     }
 }
@@ -0,0 +1,48 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An immutable control flow graph together with its postdominator tree and control dependences, all over the same
+ * node objects and ids. It can be shared between threads without locking or copying.
+ */
+public class ControlFlowSnapshot {
+
+    private final DenseControlFlowGraph mControlFlowGraph;
+    private final PostdominatorTree mPostdominatorTree;
+    private final ControlDependenceGraph mControlDependenceGraph;
+
+    private ControlFlowSnapshot(@NotNull DenseControlFlowGraph controlFlowGraph,
+                                @NotNull PostdominatorTree postdominatorTree,
+                                @NotNull ControlDependenceGraph controlDependenceGraph) {
+        mControlFlowGraph = controlFlowGraph;
+        mPostdominatorTree = postdominatorTree;
+        mControlDependenceGraph = controlDependenceGraph;
+    }
+
+    /**
+     * Freeze {@code graph} and solve its postdominators once for both the tree and the control dependences.
+     */
+    @NotNull
+    public static ControlFlowSnapshot build(@NotNull ControlFlowGraph graph) {
+        DenseControlFlowGraph denseGraph = graph.freeze();
+        int[] immediatePostdominators = ImmediatePostdominatorSolver.getImmediatePostdominators(denseGraph);
+        return new ControlFlowSnapshot(denseGraph, new PostdominatorTree(denseGraph, immediatePostdominators),
+                PostdominanceFrontier.getControlDependenceGraph(denseGraph, immediatePostdominators));
+    }
+
+    @NotNull
+    public DenseControlFlowGraph getControlFlowGraph() {
+        return mControlFlowGraph;
+    }
+
+    @NotNull
+    public PostdominatorTree getPostdominatorTree() {
+        return mPostdominatorTree;
+    }
+
+    @NotNull
+    public ControlDependenceGraph getControlDependenceGraph() {
+        return mControlDependenceGraph;
+    }
+}
@@ -0,0 +1,157 @@
+package pdgutils;
+
+import com.intellij.psi.PsiVariable;
+import com.intellij.psi.controlFlow.ReadVariableInstruction;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Data dependences from each variable read to the writes that reach it, stored as compressed sparse rows over node ids
+ * like the {@link ControlDependenceGraph}. The dependences of node {@code i} are at indexes
+ * {@code [getDependenceStart(i), getDependenceEnd(i))}, sorted by the node they depend on, and each is labeled with
+ * the variable it carries.
+ * <p>
+ * Reaching definitions are solved once over the whole graph with the {@link WorklistSolver}, with one bit per write,
+ * so no per-node sets of definitions are ever built.
+ */
+public class DataDependenceGraph {
+
+    private final List<ControlFlowNode> mNodes;
+    private final List<PsiVariable> mVariables;
+    private final int[] mDependenceOffsets;
+    private final int[] mDependenceTargets;
+    private final int[] mDependenceVariables;
+    private final DataflowMetrics mMetrics;
+
+    private DataDependenceGraph(@NotNull List<ControlFlowNode> nodes, @NotNull List<PsiVariable> variables,
+                                @NotNull int[] dependenceOffsets, @NotNull int[] dependenceTargets,
+                                @NotNull int[] dependenceVariables, @NotNull DataflowMetrics metrics) {
+        mNodes = Collections.unmodifiableList(nodes);
+        mVariables = Collections.unmodifiableList(variables);
+        mDependenceOffsets = dependenceOffsets;
+        mDependenceTargets = dependenceTargets;
+        mDependenceVariables = dependenceVariables;
+        mMetrics = metrics;
+    }
+
+    @NotNull
+    public static DataDependenceGraph from(@NotNull ControlFlowGraph controlFlowGraph) {
+        return from(controlFlowGraph.getDenseGraph());
+    }
+
+    @NotNull
+    public static DataDependenceGraph from(@NotNull DenseControlFlowGraph graph) {
+        ReachingDefinitionsProblem problem = new ReachingDefinitionsProblem(graph);
+        DataflowSolution<long[]> solution = WorklistSolver.solve(graph, problem);
+        int nodeCount = graph.size();
+        int[] dependenceOffsets = new int[nodeCount + 1];
+        int[] targets = new int[Math.max(16, nodeCount)];
+        int[] variables = new int[targets.length];
+        int dependenceCount = 0;
+        ControlFlowNode[] nodes = new ControlFlowNode[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            nodes[node] = graph.getNode(node);
+            if (nodes[node].getInstruction() instanceof ReadVariableInstruction && solution.isReached(node)) {
+                PsiVariable variable = ((ReadVariableInstruction) nodes[node].getInstruction()).variable;
+                int variableIndex = problem.getVariableIndex(variable);
+                if (variableIndex >= 0) {
+                    // A read doesn't change which definitions reach it, so its out value is also its in value.
+                    long[] reaching = solution.getValue(node);
+                    long[] defining = problem.getVariableDefinitions(variableIndex);
+                    for (int word = 0; word < reaching.length; word++) {
+                        long bits = reaching[word] & defining[word];
+                        while (bits != 0) {
+                            int definition = (word << 6) + Long.numberOfTrailingZeros(bits);
+                            if (dependenceCount == targets.length) {
+                                targets = Arrays.copyOf(targets, targets.length * 2);
+                                variables = Arrays.copyOf(variables, variables.length * 2);
+                            }
+                            targets[dependenceCount] = problem.getDefinitionNode(definition);
+                            variables[dependenceCount] = variableIndex;
+                            dependenceCount++;
+                            bits &= bits - 1;
+                        }
+                    }
+                }
+            }
+            dependenceOffsets[node + 1] = dependenceCount;
+        }
+        // Definition ids increase with node ids, so each row is already sorted by the node depended on.
+        return new DataDependenceGraph(Arrays.asList(nodes), problem.getVariables(), dependenceOffsets,
+                Arrays.copyOf(targets, dependenceCount), Arrays.copyOf(variables, dependenceCount),
+                solution.getMetrics());
+    }
+
+    public int size() {
+        return mNodes.size();
+    }
+
+    @NotNull
+    public List<ControlFlowNode> getNodes() {
+        return mNodes;
+    }
+
+    /**
+     * @return variables written in the graph, indexed by {@link #getDependenceVariableIndex(int)}.
+     */
+    @NotNull
+    public List<PsiVariable> getVariables() {
+        return mVariables;
+    }
+
+    public int getDependenceCount() {
+        return mDependenceTargets.length;
+    }
+
+    public int getDependenceStart(int node) {
+        return mDependenceOffsets[node];
+    }
+
+    public int getDependenceEnd(int node) {
+        return mDependenceOffsets[node + 1];
+    }
+
+    /**
+     * @return index of the node that writes the value a dependence is on.
+     */
+    public int getDependenceTarget(int dependence) {
+        return mDependenceTargets[dependence];
+    }
+
+    public int getDependenceVariableIndex(int dependence) {
+        return mDependenceVariables[dependence];
+    }
+
+    @NotNull
+    public PsiVariable getDependenceVariable(int dependence) {
+        return mVariables.get(mDependenceVariables[dependence]);
+    }
+
+    /**
+     * @return work done by the solver while computing reaching definitions.
+     */
+    @NotNull
+    public DataflowMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < mNodes.size(); i++) {
+            ControlFlowNode node = mNodes.get(i);
+            buffer.append(Integer.toString(i));
+            buffer.append(": ");
+            buffer.append(node.getInstruction().getClass().getSimpleName().replace("Instruction", ""));
+            buffer.append(" ->");
+            for (int dependence = getDependenceStart(i); dependence < getDependenceEnd(i); dependence++) {
+                buffer.append(" ").append(getDependenceTarget(dependence)).append(".")
+                        .append(getDependenceVariable(dependence).getName());
+            }
+            buffer.append("\n");
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,49 @@
+package pdgutils;
+
+/**
+ * Work done by one run of the {@link WorklistSolver}.
+ */
+public class DataflowMetrics {
+
+    private int mIterations;
+    private int mNodeVisits;
+    private long mSetOperations;
+
+    void countIteration() {
+        mIterations++;
+    }
+
+    void countNodeVisit() {
+        mNodeVisits++;
+    }
+
+    void countSetOperations(int count) {
+        mSetOperations += count;
+    }
+
+    /**
+     * @return number of passes over the worklist in reverse postorder.
+     */
+    public int getIterations() {
+        return mIterations;
+    }
+
+    /**
+     * @return number of times a transfer function was applied.
+     */
+    public int getNodeVisits() {
+        return mNodeVisits;
+    }
+
+    /**
+     * @return number of meets and assignments of lattice values.
+     */
+    public long getSetOperations() {
+        return mSetOperations;
+    }
+
+    @Override
+    public String toString() {
+        return "iterations=" + mIterations + " nodeVisits=" + mNodeVisits + " setOperations=" + mSetOperations;
+    }
+}
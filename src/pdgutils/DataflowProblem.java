@@ -0,0 +1,40 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A dataflow analysis over a {@link DenseControlFlowGraph}, described as a lattice and a transfer function.
+ */
+public interface DataflowProblem<V> {
+
+    enum Direction {
+        /**
+         * Values flow from the entry node along control flow edges.
+         */
+        FORWARD,
+        /**
+         * Values flow from the exit node against control flow edges.
+         */
+        BACKWARD
+    }
+
+    @NotNull
+    Direction getDirection();
+
+    @NotNull
+    Lattice<V> getLattice();
+
+    @NotNull
+    TransferFunction<V> getTransferFunction();
+
+    /**
+     * @return the node values start flowing from, usually the entry node for forward problems and the exit node for
+     * backward problems.
+     */
+    int getBoundaryNode(@NotNull DenseControlFlowGraph graph);
+
+    /**
+     * Set the value flowing into the boundary node.
+     */
+    void setBoundaryValue(@NotNull V value);
+}
@@ -0,0 +1,38 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Values computed by the {@link WorklistSolver}. Nodes that values could not flow to from the boundary node keep the
+ * top value of the lattice.
+ */
+public class DataflowSolution<V> {
+
+    private final Object[] mValues;
+    private final boolean[] mReached;
+    private final DataflowMetrics mMetrics;
+
+    DataflowSolution(@NotNull Object[] values, @NotNull boolean[] reached, @NotNull DataflowMetrics metrics) {
+        mValues = values;
+        mReached = reached;
+        mMetrics = metrics;
+    }
+
+    /**
+     * @return the value flowing out of {@code node}.
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public V getValue(int node) {
+        return (V) mValues[node];
+    }
+
+    public boolean isReached(int node) {
+        return mReached[node];
+    }
+
+    @NotNull
+    public DataflowMetrics getMetrics() {
+        return mMetrics;
+    }
+}
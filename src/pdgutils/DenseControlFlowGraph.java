@@ -0,0 +1,174 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Immutable control flow graph over int node ids. Successors and predecessors are stored as compressed sparse rows:
+ * the edges of node {@code i} are at indexes {@code [getSuccessorStart(i), getSuccessorEnd(i))} of the successor
+ * arrays, and likewise for predecessors. Edge types are stored as {@link ControlFlowEdgeType} ordinals.
+ *
+ * @author andrewhead
+ */
+public class DenseControlFlowGraph {
+
+    public static final int NO_NODE = -1;
+
+    private final ControlFlowNode[] mNodes;
+    private final int mExitNode;
+    private final int[] mSuccessorOffsets;
+    private final int[] mSuccessors;
+    private final byte[] mSuccessorTypes;
+    private final int[] mPredecessorOffsets;
+    private final int[] mPredecessors;
+    private final byte[] mPredecessorTypes;
+    // Built the first time a node is looked up. Nodes can be shared with other graphs, so ids are never stored on them.
+    private volatile Map<ControlFlowNode, Integer> mIds;
+
+    /**
+     * @param nodes     nodes, indexed by id. The graph only reads them, so they can be shared with other graphs.
+     * @param exitNode  id of the exit node, or {@link #NO_NODE}
+     * @param edgeCount number of edges to read from the front of the edge arrays
+     */
+    public DenseControlFlowGraph(@NotNull ControlFlowNode[] nodes, int exitNode, @NotNull int[] edgeSources,
+                                 @NotNull int[] edgeTargets, @NotNull byte[] edgeTypes, int edgeCount) {
+        mNodes = nodes;
+        mExitNode = exitNode;
+
+        mSuccessorOffsets = new int[nodes.length + 1];
+        mSuccessors = new int[edgeCount];
+        mSuccessorTypes = new byte[edgeCount];
+        mPredecessorOffsets = new int[nodes.length + 1];
+        mPredecessors = new int[edgeCount];
+        mPredecessorTypes = new byte[edgeCount];
+
+        for (int edge = 0; edge < edgeCount; edge++) {
+            mSuccessorOffsets[edgeSources[edge] + 1]++;
+            mPredecessorOffsets[edgeTargets[edge] + 1]++;
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            mSuccessorOffsets[i + 1] += mSuccessorOffsets[i];
+            mPredecessorOffsets[i + 1] += mPredecessorOffsets[i];
+        }
+        int[] successorFill = new int[nodes.length];
+        int[] predecessorFill = new int[nodes.length];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int from = edgeSources[edge];
+            int to = edgeTargets[edge];
+            int successorIndex = mSuccessorOffsets[from] + successorFill[from]++;
+            mSuccessors[successorIndex] = to;
+            mSuccessorTypes[successorIndex] = edgeTypes[edge];
+            int predecessorIndex = mPredecessorOffsets[to] + predecessorFill[to]++;
+            mPredecessors[predecessorIndex] = from;
+            mPredecessorTypes[predecessorIndex] = edgeTypes[edge];
+        }
+    }
+
+    public int size() {
+        return mNodes.length;
+    }
+
+    public int getEdgeCount() {
+        return mSuccessors.length;
+    }
+
+    @NotNull
+    public ControlFlowNode getNode(int id) {
+        return mNodes[id];
+    }
+
+    /**
+     * @return id of a node in this graph, or {@link #NO_NODE} if the node isn't in this graph.
+     */
+    public int getId(@NotNull ControlFlowNode node) {
+        // Threads that race to build the map build the same one.
+        Map<ControlFlowNode, Integer> ids = mIds;
+        if (ids == null) {
+            ids = new IdentityHashMap<>(mNodes.length);
+            for (int i = 0; i < mNodes.length; i++) {
+                ids.put(mNodes[i], i);
+            }
+            mIds = ids;
+        }
+        Integer foundId = ids.get(node);
+        return (foundId != null) ? foundId : NO_NODE;
+    }
+
+    public int getExitNode() {
+        return mExitNode;
+    }
+
+    public int getSuccessorStart(int node) {
+        return mSuccessorOffsets[node];
+    }
+
+    public int getSuccessorEnd(int node) {
+        return mSuccessorOffsets[node + 1];
+    }
+
+    public int getSuccessor(int edge) {
+        return mSuccessors[edge];
+    }
+
+    @NotNull
+    public ControlFlowEdgeType getSuccessorType(int edge) {
+        return ControlFlowEdgeType.fromOrdinal(mSuccessorTypes[edge]);
+    }
+
+    public int getPredecessorStart(int node) {
+        return mPredecessorOffsets[node];
+    }
+
+    public int getPredecessorEnd(int node) {
+        return mPredecessorOffsets[node + 1];
+    }
+
+    public int getPredecessor(int edge) {
+        return mPredecessors[edge];
+    }
+
+    @NotNull
+    public ControlFlowEdgeType getPredecessorType(int edge) {
+        return ControlFlowEdgeType.fromOrdinal(mPredecessorTypes[edge]);
+    }
+
+    /**
+     * @param followPredecessors walk the reverse control flow graph instead of the control flow graph
+     * @return nodes reachable from {@code root}, in reverse postorder of a depth-first search.
+     */
+    @NotNull
+    public int[] getReversePostorder(int root, boolean followPredecessors) {
+        int[] order = new int[size()];
+        int orderSize = 0;
+        boolean[] visited = new boolean[size()];
+        int[] stack = new int[size()];
+        int[] nextEdge = new int[size()];
+        int stackSize = 0;
+        stack[stackSize++] = root;
+        visited[root] = true;
+        nextEdge[root] = followPredecessors ? getPredecessorStart(root) : getSuccessorStart(root);
+        while (stackSize > 0) {
+            int node = stack[stackSize - 1];
+            int end = followPredecessors ? getPredecessorEnd(node) : getSuccessorEnd(node);
+            if (nextEdge[node] < end) {
+                int edge = nextEdge[node]++;
+                int next = followPredecessors ? getPredecessor(edge) : getSuccessor(edge);
+                if (!visited[next]) {
+                    visited[next] = true;
+                    nextEdge[next] = followPredecessors ? getPredecessorStart(next) : getSuccessorStart(next);
+                    stack[stackSize++] = next;
+                }
+            } else {
+                order[orderSize++] = node;
+                stackSize--;
+            }
+        }
+        int[] reversePostorder = new int[orderSize];
+        for (int i = 0; i < orderSize; i++) {
+            reversePostorder[i] = order[orderSize - 1 - i];
+        }
+        return reversePostorder;
+    }
+}
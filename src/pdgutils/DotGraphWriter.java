@@ -0,0 +1,112 @@
+package pdgutils;
+
+import com.intellij.openapi.util.TextRange;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Streams graphs as Graphviz DOT, one {@code digraph} per method. Graphviz lays out each graph in a file separately.
+ * <p>
+ * Nodes are named {@code n<id>} and labeled with their id and instruction kind. Their text ranges are in a
+ * {@code range} attribute, as {@code start:end}. Control flow edges are solid and point to successors. Control
+ * dependences are dashed and point from the node depended on, as do data dependences, which are dotted and labeled
+ * with their variable. The exit node is drawn with a double border.
+ */
+public class DotGraphWriter extends GraphTextWriter {
+
+    public DotGraphWriter(@NotNull Writer out) {
+        super(out);
+    }
+
+    public DotGraphWriter(@NotNull OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    protected void startGraph(@NotNull String name, int nodeCount, int exitNode) throws IOException {
+        mOut.write("digraph \"");
+        writeEscaped(name);
+        mOut.write("\" {\n  node [shape=box];\n");
+    }
+
+    @Override
+    protected void startNode(int node, @NotNull ControlFlowNode controlFlowNode, boolean isExit) throws IOException {
+        mOut.write("  n");
+        mOut.write(Integer.toString(node));
+        mOut.write(" [label=\"");
+        mOut.write(Integer.toString(node));
+        mOut.write(": ");
+        mOut.write(getKind(controlFlowNode).toString());
+        mOut.write('"');
+        TextRange range = getTextRange(controlFlowNode);
+        if (range != null) {
+            mOut.write(", range=\"");
+            mOut.write(Integer.toString(range.getStartOffset()));
+            mOut.write(':');
+            mOut.write(Integer.toString(range.getEndOffset()));
+            mOut.write('"');
+        }
+        if (isExit) {
+            mOut.write(", peripheries=2");
+        }
+        mOut.write("];\n");
+    }
+
+    @Override
+    protected void writeEdge(int node, @NotNull EdgeGroup group, int target, @NotNull String type,
+                             @Nullable String variable) throws IOException {
+        // Control dependences are stored on the dependent node, but drawn from the node depended on.
+        int from = (group == EdgeGroup.CONTROLLERS) ? target : node;
+        int to = (group == EdgeGroup.CONTROLLERS) ? node : target;
+        mOut.write("  n");
+        mOut.write(Integer.toString(from));
+        mOut.write(" -> n");
+        mOut.write(Integer.toString(to));
+        mOut.write(" [label=\"");
+        writeEscaped((variable != null) ? variable : type);
+        mOut.write('"');
+        if (variable != null) {
+            mOut.write(", style=dotted");
+        } else if (group != EdgeGroup.SUCCESSORS) {
+            mOut.write(", style=dashed");
+        }
+        mOut.write("];\n");
+    }
+
+    /**
+     * Escape quotes with a backslash, and write line breaks as {@code \n}, which Graphviz draws as a centered line
+     * break in labels. Carriage returns are dropped. Backslashes and ampersands are written as the character entities
+     * {@code &#92;} and {@code &amp;}, which labels show as the characters themselves: Graphviz reads a backslash
+     * before the closing quote as escaping it, and gives meaning to backslash sequences in labels.
+     */
+    @Override
+    protected void writeEscaped(@NotNull String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"') {
+                mOut.write("\\\"");
+            } else if (c == '\\') {
+                mOut.write("&#92;");
+            } else if (c == '&') {
+                mOut.write("&amp;");
+            } else if (c == '\n') {
+                mOut.write("\\n");
+            } else if (c != '\r') {
+                mOut.write(c);
+            }
+        }
+    }
+
+    @Override
+    protected void endNode(int node) {
+    }
+
+    @Override
+    protected void endGraph() throws IOException {
+        mOut.write("}\n");
+    }
+}
@@ -0,0 +1,25 @@
+package pdgutils;
+
+/**
+ * How much of a method's exception flow goes into its control flow graph. IntelliJ adds a
+ * {@code ConditionalThrowToInstruction} wherever an exception could be raised inside a {@code try}, so on code that
+ * calls a lot of throwing methods, exception edges can outnumber all others.
+ */
+public enum ExceptionFlow {
+    /**
+     * Keep every exception edge.
+     */
+    FULL,
+    /**
+     * Keep exception edges only from instructions whose element can throw a checked exception. Unchecked exceptions
+     * that could be raised anywhere are left out. Explicit {@code throw} statements are kept.
+     */
+    CHECKED,
+    /**
+     * Leave out exception edges, as if nothing but explicit {@code throw} statements could raise an exception.
+     * Unconditional throws to a handler in the method go to a single exceptional exit node, added after the exit
+     * node, instead. Besides {@code throw} statements, these include the rethrows IntelliJ adds at the end of a
+     * {@code finally} block to carry an exception on to an enclosing handler.
+     */
+    NONE
+}
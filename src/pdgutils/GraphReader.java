@@ -0,0 +1,249 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Reads records written by {@link GraphWriter}. A record can be decoded into the arrays of a {@link GraphRecord}, or
+ * walked with a {@link Visitor}, which sees nodes and edges as they are decoded without storing them. Either way, no
+ * nodes, instructions or PSI are created.
+ */
+public class GraphReader {
+
+    /**
+     * Receives the parts of a record in the order they are stored: the graph, its nodes, then its exit node and
+     * successors if it has control flow, then its control dependences if it has them.
+     */
+    public static abstract class Visitor {
+
+        public void visitGraph(@NotNull String name, int nodeCount, boolean hasControlFlow,
+                               boolean hasControlDependences) {
+        }
+
+        /**
+         * @param startOffset start of the node's element, or {@link GraphRecord#NO_OFFSET}
+         */
+        public void visitNode(int node, @NotNull InstructionKind kind, int startOffset, int endOffset) {
+        }
+
+        public void visitExitNode(int exitNode) {
+        }
+
+        public void visitSuccessor(int node, int successor, @NotNull ControlFlowEdgeType type) {
+        }
+
+        public void visitDependence(int node, int controller, @NotNull ControlFlowEdgeType type) {
+        }
+    }
+
+    private static final int EDGE_TYPE_COUNT = ControlFlowEdgeType.values().length;
+
+    private final DataInput mIn;
+
+    public GraphReader(@NotNull DataInput in) {
+        mIn = in;
+    }
+
+    /**
+     * @throws IOException if the stream wasn't written by {@link GraphWriter} or was written by a newer format.
+     */
+    public void readHeader() throws IOException {
+        if (mIn.readInt() != GraphWriter.MAGIC) {
+            throw new IOException("Not a graph stream");
+        }
+        int version = mIn.readUnsignedByte();
+        if (version > GraphWriter.FORMAT_VERSION) {
+            throw new IOException("Unsupported graph format version " + version);
+        }
+    }
+
+    /**
+     * @return the next record, or null at the end of the stream.
+     */
+    @Nullable
+    public GraphRecord read() throws IOException {
+        RecordBuilder builder = new RecordBuilder();
+        return accept(builder) ? builder.build() : null;
+    }
+
+    /**
+     * Pass the next record to {@code visitor}.
+     *
+     * @return false at the end of the stream.
+     */
+    public boolean accept(@NotNull Visitor visitor) throws IOException {
+        int flags;
+        try {
+            flags = mIn.readUnsignedByte();
+        } catch (EOFException e) {
+            return false;
+        }
+        String name = mIn.readUTF();
+        int nodeCount = readVarInt();
+        if (nodeCount < 0) {
+            throw new IOException("Malformed node count " + nodeCount);
+        }
+        boolean hasControlFlow = (flags & GraphWriter.HAS_CONTROL_FLOW) != 0;
+        boolean hasControlDependences = (flags & GraphWriter.HAS_CONTROL_DEPENDENCES) != 0;
+        visitor.visitGraph(name, nodeCount, hasControlFlow, hasControlDependences);
+        int previousStart = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            InstructionKind kind = InstructionKind.fromCode(mIn.readUnsignedByte());
+            int length = readVarInt() - 1;
+            if (length < 0) {
+                visitor.visitNode(node, kind, GraphRecord.NO_OFFSET, GraphRecord.NO_OFFSET);
+            } else {
+                previousStart += readSignedVarInt();
+                visitor.visitNode(node, kind, previousStart, previousStart + length);
+            }
+        }
+        if (hasControlFlow) {
+            visitor.visitExitNode(readVarInt() - 1);
+            for (int node = 0; node < nodeCount; node++) {
+                int previous = node;
+                int rowSize = readVarInt();
+                for (int i = 0; i < rowSize; i++) {
+                    previous += (i == 0) ? readSignedVarInt() : readVarInt();
+                    visitor.visitSuccessor(node, previous, readEdgeType());
+                }
+            }
+        }
+        if (hasControlDependences) {
+            for (int node = 0; node < nodeCount; node++) {
+                int previous = node;
+                int rowSize = readVarInt();
+                for (int i = 0; i < rowSize; i++) {
+                    previous += (i == 0) ? readSignedVarInt() : readVarInt();
+                    visitor.visitDependence(node, previous, readEdgeType());
+                }
+            }
+        }
+        return true;
+    }
+
+    @NotNull
+    private ControlFlowEdgeType readEdgeType() throws IOException {
+        int ordinal = mIn.readUnsignedByte();
+        if (ordinal >= EDGE_TYPE_COUNT) {
+            throw new IOException("Unknown edge type " + ordinal);
+        }
+        return ControlFlowEdgeType.fromOrdinal(ordinal);
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = mIn.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private int readSignedVarInt() throws IOException {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Collects a record into arrays. Rows arrive in node order, so they are appended as they come.
+     */
+    private static class RecordBuilder extends Visitor {
+
+        private String mName;
+        private byte[] mKinds;
+        private int[] mStartOffsets;
+        private int[] mEndOffsets;
+        private int mExitNode = DenseControlFlowGraph.NO_NODE;
+        private int[] mSuccessorOffsets;
+        private int[] mSuccessors;
+        private byte[] mSuccessorTypes;
+        private int mSuccessorCount;
+        private int[] mDependenceOffsets;
+        private int[] mDependenceTargets;
+        private byte[] mDependenceTypes;
+        private int mDependenceCount;
+
+        @Override
+        public void visitGraph(@NotNull String name, int nodeCount, boolean hasControlFlow,
+                               boolean hasControlDependences) {
+            mName = name;
+            mKinds = new byte[nodeCount];
+            mStartOffsets = new int[nodeCount];
+            mEndOffsets = new int[nodeCount];
+            if (hasControlFlow) {
+                mSuccessorOffsets = new int[nodeCount + 1];
+                mSuccessors = new int[nodeCount];
+                mSuccessorTypes = new byte[nodeCount];
+            }
+            if (hasControlDependences) {
+                mDependenceOffsets = new int[nodeCount + 1];
+                mDependenceTargets = new int[nodeCount];
+                mDependenceTypes = new byte[nodeCount];
+            }
+        }
+
+        @Override
+        public void visitNode(int node, @NotNull InstructionKind kind, int startOffset, int endOffset) {
+            mKinds[node] = (byte) kind.ordinal();
+            mStartOffsets[node] = startOffset;
+            mEndOffsets[node] = endOffset;
+        }
+
+        @Override
+        public void visitExitNode(int exitNode) {
+            mExitNode = exitNode;
+        }
+
+        @Override
+        public void visitSuccessor(int node, int successor, @NotNull ControlFlowEdgeType type) {
+            if (mSuccessorCount == mSuccessors.length) {
+                mSuccessors = Arrays.copyOf(mSuccessors, mSuccessorCount * 2 + 1);
+                mSuccessorTypes = Arrays.copyOf(mSuccessorTypes, mSuccessorCount * 2 + 1);
+            }
+            mSuccessors[mSuccessorCount] = successor;
+            mSuccessorTypes[mSuccessorCount] = (byte) type.ordinal();
+            mSuccessorCount++;
+            mSuccessorOffsets[node + 1] = mSuccessorCount;
+        }
+
+        @Override
+        public void visitDependence(int node, int controller, @NotNull ControlFlowEdgeType type) {
+            if (mDependenceCount == mDependenceTargets.length) {
+                mDependenceTargets = Arrays.copyOf(mDependenceTargets, mDependenceCount * 2 + 1);
+                mDependenceTypes = Arrays.copyOf(mDependenceTypes, mDependenceCount * 2 + 1);
+            }
+            mDependenceTargets[mDependenceCount] = controller;
+            mDependenceTypes[mDependenceCount] = (byte) type.ordinal();
+            mDependenceCount++;
+            mDependenceOffsets[node + 1] = mDependenceCount;
+        }
+
+        @NotNull
+        GraphRecord build() {
+            fillOffsets(mSuccessorOffsets);
+            fillOffsets(mDependenceOffsets);
+            return new GraphRecord(mName, mKinds, mStartOffsets, mEndOffsets, mExitNode, mSuccessorOffsets,
+                    mSuccessors, mSuccessorTypes, mDependenceOffsets, mDependenceTargets, mDependenceTypes);
+        }
+
+        /**
+         * Offsets were only set for nodes with edges; nodes without any end where the node before them ends.
+         */
+        private static void fillOffsets(@Nullable int[] offsets) {
+            if (offsets == null) {
+                return;
+            }
+            for (int i = 1; i < offsets.length; i++) {
+                offsets[i] = Math.max(offsets[i], offsets[i - 1]);
+            }
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A graph as read back by {@link GraphReader}: plain arrays over node ids, with instruction kinds and source offsets
+ * in place of instructions and PSI elements. Successor and dependence rows are compressed sparse rows, sorted by the
+ * node they point to.
+ */
+public class GraphRecord {
+
+    public static final int NO_OFFSET = -1;
+
+    private final String mName;
+    private final byte[] mKinds;
+    private final int[] mStartOffsets;
+    private final int[] mEndOffsets;
+    private final int mExitNode;
+    private final int[] mSuccessorOffsets;
+    private final int[] mSuccessors;
+    private final byte[] mSuccessorTypes;
+    private final int[] mDependenceOffsets;
+    private final int[] mDependenceTargets;
+    private final byte[] mDependenceTypes;
+
+    GraphRecord(@NotNull String name, @NotNull byte[] kinds, @NotNull int[] startOffsets, @NotNull int[] endOffsets,
+                int exitNode, @Nullable int[] successorOffsets, @Nullable int[] successors,
+                @Nullable byte[] successorTypes, @Nullable int[] dependenceOffsets, @Nullable int[] dependenceTargets,
+                @Nullable byte[] dependenceTypes) {
+        mName = name;
+        mKinds = kinds;
+        mStartOffsets = startOffsets;
+        mEndOffsets = endOffsets;
+        mExitNode = exitNode;
+        mSuccessorOffsets = successorOffsets;
+        mSuccessors = successors;
+        mSuccessorTypes = successorTypes;
+        mDependenceOffsets = dependenceOffsets;
+        mDependenceTargets = dependenceTargets;
+        mDependenceTypes = dependenceTypes;
+    }
+
+    @NotNull
+    public String getName() {
+        return mName;
+    }
+
+    public int size() {
+        return mKinds.length;
+    }
+
+    @NotNull
+    public InstructionKind getKind(int node) {
+        return InstructionKind.fromCode(mKinds[node]);
+    }
+
+    /**
+     * @return start of the node's element in its file, or {@link #NO_OFFSET} if it has no element.
+     */
+    public int getStartOffset(int node) {
+        return mStartOffsets[node];
+    }
+
+    public int getEndOffset(int node) {
+        return mEndOffsets[node];
+    }
+
+    public boolean hasControlFlow() {
+        return mSuccessorOffsets != null;
+    }
+
+    public boolean hasControlDependences() {
+        return mDependenceOffsets != null;
+    }
+
+    public int getExitNode() {
+        return mExitNode;
+    }
+
+    public int getSuccessorStart(int node) {
+        return mSuccessorOffsets[node];
+    }
+
+    public int getSuccessorEnd(int node) {
+        return mSuccessorOffsets[node + 1];
+    }
+
+    public int getSuccessor(int edge) {
+        return mSuccessors[edge];
+    }
+
+    @NotNull
+    public ControlFlowEdgeType getSuccessorType(int edge) {
+        return ControlFlowEdgeType.fromOrdinal(mSuccessorTypes[edge]);
+    }
+
+    public int getDependenceStart(int node) {
+        return mDependenceOffsets[node];
+    }
+
+    public int getDependenceEnd(int node) {
+        return mDependenceOffsets[node + 1];
+    }
+
+    public int getDependenceTarget(int dependence) {
+        return mDependenceTargets[dependence];
+    }
+
+    @NotNull
+    public ControlFlowEdgeType getDependenceType(int dependence) {
+        return ControlFlowEdgeType.fromOrdinal(mDependenceTypes[dependence]);
+    }
+
+    /**
+     * @return control dependences in the same form as {@link ControlDependenceGraph#toString()}.
+     */
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < size(); i++) {
+            buffer.append(Integer.toString(i));
+            buffer.append(": ");
+            buffer.append(getKind(i));
+            buffer.append(" ->");
+            if (hasControlDependences()) {
+                for (int dependence = getDependenceStart(i); dependence < getDependenceEnd(i); dependence++) {
+                    buffer.append(" ").append(getDependenceTarget(dependence)).append(".")
+                            .append(getDependenceType(dependence));
+                }
+            }
+            buffer.append("\n");
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,211 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read-only store of method graphs written by {@link GraphStoreWriter}, looked up by method signature.
+ * <p>
+ * A store is a directory of segment files, each a {@link GraphWriter} stream, and an index of
+ * {@code (signature hash, segment, offset)} entries sorted by hash. Opening a store only maps the index; segments are
+ * mapped the first time a graph in them is read. Lookups binary search the mapped index and decode the record straight
+ * from the mapped segment, so nothing is read into the heap but the graph that was asked for, and nothing at all when
+ * it is walked with a {@link GraphReader.Visitor}.
+ * <p>
+ * A store can be read from any number of threads. Once it is closed, reads throw.
+ */
+public class GraphStore implements Closeable {
+
+    static final String INDEX_FILE_NAME = "index";
+    static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+    private static final int INDEX_HEADER_SIZE = 16;
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    private final File mDirectory;
+    private final ByteBuffer mIndex;
+    private final int mGraphCount;
+    // Segments are mapped without a lock. Two threads may both map a segment; only one mapping is kept.
+    private final AtomicReferenceArray<MappedByteBuffer> mSegments;
+    private volatile boolean mClosed;
+
+    private GraphStore(@NotNull File directory, @NotNull ByteBuffer index, int graphCount, int segmentCount) {
+        mDirectory = directory;
+        mIndex = index;
+        mGraphCount = graphCount;
+        mSegments = new AtomicReferenceArray<>(segmentCount);
+    }
+
+    @NotNull
+    public static GraphStore open(@NotNull File directory) throws IOException {
+        ByteBuffer index = map(new File(directory, INDEX_FILE_NAME));
+        if (index.capacity() < INDEX_HEADER_SIZE || index.getInt(0) != GraphWriter.MAGIC) {
+            throw new IOException(directory + " is not a graph store");
+        }
+        int version = index.getInt(4);
+        if (version > GraphWriter.FORMAT_VERSION) {
+            throw new IOException("Unsupported graph format version " + version);
+        }
+        int graphCount = index.getInt(8);
+        if (index.capacity() < INDEX_HEADER_SIZE + (long) graphCount * INDEX_ENTRY_SIZE) {
+            throw new IOException("Index of " + directory + " is truncated");
+        }
+        return new GraphStore(directory, index, graphCount, index.getInt(12));
+    }
+
+    @NotNull
+    private static MappedByteBuffer map(@NotNull File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            FileChannel channel = randomAccessFile.getChannel();
+            // The mapping stays valid after the channel is closed.
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    @NotNull
+    static File getSegmentFile(@NotNull File directory, int segment) {
+        return new File(directory, "segment-" + segment);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a signature's characters.
+     */
+    static long hash(@NotNull String signature) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < signature.length(); i++) {
+            hash ^= signature.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    public int getGraphCount() {
+        return mGraphCount;
+    }
+
+    public boolean contains(@NotNull String signature) throws IOException {
+        return find(signature) != null;
+    }
+
+    /**
+     * @return the graphs of the method with {@code signature}, or null if the store doesn't have it.
+     */
+    @Nullable
+    public GraphRecord read(@NotNull String signature) throws IOException {
+        DataInputStream in = find(signature);
+        return (in != null) ? new GraphReader(in).read() : null;
+    }
+
+    /**
+     * Walk the graphs of the method with {@code signature} in place.
+     *
+     * @return false if the store doesn't have the method.
+     */
+    public boolean accept(@NotNull String signature, @NotNull GraphReader.Visitor visitor) throws IOException {
+        DataInputStream in = find(signature);
+        return in != null && new GraphReader(in).accept(visitor);
+    }
+
+    /**
+     * @return a stream positioned at the record for {@code signature}, or null if there is none.
+     */
+    @Nullable
+    private DataInputStream find(@NotNull String signature) throws IOException {
+        if (mClosed) {
+            throw new IOException("Graph store " + mDirectory + " is closed");
+        }
+        long hash = hash(signature);
+        // Find the first entry with the hash; signatures that share it follow.
+        int low = 0;
+        int high = mGraphCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getEntryHash(middle) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int entry = low; entry < mGraphCount && getEntryHash(entry) == hash; entry++) {
+            long location = mIndex.getLong(INDEX_HEADER_SIZE + entry * INDEX_ENTRY_SIZE + 8);
+            ByteBuffer segment = getSegment((int) (location >>> 32)).duplicate();
+            int offset = (int) location;
+            segment.position(offset);
+            DataInputStream in = new DataInputStream(new BufferInputStream(segment));
+            in.readUnsignedByte();
+            if (signature.equals(in.readUTF())) {
+                segment.position(offset);
+                return in;
+            }
+        }
+        return null;
+    }
+
+    private long getEntryHash(int entry) {
+        return mIndex.getLong(INDEX_HEADER_SIZE + entry * INDEX_ENTRY_SIZE);
+    }
+
+    @NotNull
+    private ByteBuffer getSegment(int segment) throws IOException {
+        MappedByteBuffer buffer = mSegments.get(segment);
+        if (buffer == null) {
+            buffer = map(getSegmentFile(mDirectory, segment));
+            if (buffer.capacity() < 5 || buffer.getInt(0) != GraphWriter.MAGIC) {
+                throw new IOException("Segment " + segment + " of " + mDirectory + " is corrupt");
+            }
+            if (!mSegments.compareAndSet(segment, null, buffer)) {
+                buffer = mSegments.get(segment);
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * Mapped buffers are unmapped when they are garbage collected, so closing only drops the store's references.
+     */
+    @Override
+    public void close() {
+        mClosed = true;
+        for (int i = 0; i < mSegments.length(); i++) {
+            mSegments.set(i, null);
+        }
+    }
+
+    /**
+     * Reads a buffer from its position without copying it.
+     */
+    private static class BufferInputStream extends InputStream {
+
+        private final ByteBuffer mBuffer;
+
+        BufferInputStream(@NotNull ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return mBuffer.hasRemaining() ? mBuffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(@NotNull byte[] bytes, int offset, int length) {
+            if (!mBuffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, mBuffer.remaining());
+            mBuffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+}
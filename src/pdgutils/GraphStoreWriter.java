@@ -0,0 +1,180 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+
+/**
+ * Writes graphs to a directory that {@link GraphStore} can open. Records are appended to segment files as they are
+ * added, so only the index entries, 16 bytes per graph, are kept in memory until {@link #close()} writes the index.
+ */
+public class GraphStoreWriter implements Closeable {
+
+    private final File mDirectory;
+    private final long mSegmentSize;
+    private int mSegment = -1;
+    private DataOutputStream mOut;
+    private GraphWriter mWriter;
+    private long[] mHashes = new long[1024];
+    private long[] mLocations = new long[1024];
+    private int mGraphCount;
+
+    public GraphStoreWriter(@NotNull File directory) throws IOException {
+        this(directory, GraphStore.MAX_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param segmentSize size after which a new segment file is started
+     */
+    GraphStoreWriter(@NotNull File directory, long segmentSize) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Couldn't create " + directory);
+        }
+        mDirectory = directory;
+        mSegmentSize = Math.min(segmentSize, GraphStore.MAX_SEGMENT_SIZE);
+    }
+
+    /**
+     * Append a method's graphs. Text ranges are read from the PSI, so this must be called under a read action. Each
+     * signature may be added once; {@link #close()} checks this.
+     */
+    public void add(@NotNull String signature, @Nullable DenseControlFlowGraph controlFlowGraph,
+                    @Nullable ControlDependenceGraph controlDependenceGraph) throws IOException {
+        if (mOut == null || mOut.size() >= mSegmentSize) {
+            startSegment();
+        }
+        if (mGraphCount == mHashes.length) {
+            mHashes = Arrays.copyOf(mHashes, mGraphCount * 2);
+            mLocations = Arrays.copyOf(mLocations, mGraphCount * 2);
+        }
+        mHashes[mGraphCount] = GraphStore.hash(signature);
+        mLocations[mGraphCount] = ((long) mSegment << 32) | mOut.size();
+        mGraphCount++;
+        mWriter.write(signature, controlFlowGraph, controlDependenceGraph);
+    }
+
+    private void startSegment() throws IOException {
+        if (mOut != null) {
+            mOut.close();
+        }
+        mSegment++;
+        mOut = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(GraphStore.getSegmentFile(mDirectory, mSegment))));
+        mWriter = new GraphWriter(mOut);
+        mWriter.writeHeader();
+    }
+
+    public int getGraphCount() {
+        return mGraphCount;
+    }
+
+    /**
+     * Finish the last segment and write the index, sorted by signature hash.
+     *
+     * @throws IllegalArgumentException if graphs were added twice for a signature, as the store could only ever
+     *                                  return one of them. No index is written then.
+     */
+    @Override
+    public void close() throws IOException {
+        if (mOut != null) {
+            mOut.close();
+            mOut = null;
+        }
+        sortByHash(0, mGraphCount - 1);
+        checkSignatures();
+        File indexFile = new File(mDirectory, GraphStore.INDEX_FILE_NAME);
+        try (DataOutputStream index =
+                     new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile)))) {
+            index.writeInt(GraphWriter.MAGIC);
+            index.writeInt(GraphWriter.FORMAT_VERSION);
+            index.writeInt(mGraphCount);
+            index.writeInt(mSegment + 1);
+            for (int i = 0; i < mGraphCount; i++) {
+                index.writeLong(mHashes[i]);
+                index.writeLong(mLocations[i]);
+            }
+        }
+    }
+
+    /**
+     * Compare the signatures of entries that share a hash, read back from their records. Only a signature added twice
+     * or a hash collision leads to a read.
+     */
+    private void checkSignatures() throws IOException {
+        int runStart = 0;
+        for (int i = 1; i <= mGraphCount; i++) {
+            if (i < mGraphCount && mHashes[i] == mHashes[runStart]) {
+                continue;
+            }
+            if (i - runStart > 1) {
+                String[] signatures = new String[i - runStart];
+                for (int j = 0; j < signatures.length; j++) {
+                    signatures[j] = readSignature(mLocations[runStart + j]);
+                    for (int k = 0; k < j; k++) {
+                        if (signatures[k].equals(signatures[j])) {
+                            throw new IllegalArgumentException("Graphs for " + signatures[j] + " were added twice");
+                        }
+                    }
+                }
+            }
+            runStart = i;
+        }
+    }
+
+    @NotNull
+    private String readSignature(long location) throws IOException {
+        File segmentFile = GraphStore.getSegmentFile(mDirectory, (int) (location >>> 32));
+        try (RandomAccessFile segment = new RandomAccessFile(segmentFile, "r")) {
+            // Skip the record's flags byte.
+            segment.seek((int) location + 1);
+            return segment.readUTF();
+        }
+    }
+
+    /**
+     * Quicksort the hashes, keeping each location with its hash.
+     */
+    private void sortByHash(int low, int high) {
+        while (low < high) {
+            long pivot = mHashes[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (mHashes[i] < pivot) {
+                    i++;
+                }
+                while (mHashes[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i++, j--);
+                }
+            }
+            // Recurse into the smaller half, so that the stack stays shallow.
+            if (j - low < high - i) {
+                sortByHash(low, j);
+                low = i;
+            } else {
+                sortByHash(i, high);
+                high = j;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        long hash = mHashes[i];
+        mHashes[i] = mHashes[j];
+        mHashes[j] = hash;
+        long location = mLocations[i];
+        mLocations[i] = mLocations[j];
+        mLocations[j] = location;
+    }
+}
@@ -0,0 +1,174 @@
+package pdgutils;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streams graphs as text for debugging and for tools outside the IDE. Unlike the graphs' {@code toString()}, nothing
+ * is collected or sorted: each node is written with its edges, in the order of the graph's arrays, straight to the
+ * {@link Writer}. Memory use doesn't grow with the size of the graph, so whole modules can be dumped into one stream.
+ * <p>
+ * Each node is written with its {@link InstructionKind} and the text range of its element, and each edge with its type.
+ * Subclasses pick the syntax. Text ranges are read from the PSI, so graphs must be written under a read action.
+ */
+public abstract class GraphTextWriter implements Closeable, Flushable {
+
+    /**
+     * The rows a node's edges come from.
+     */
+    protected enum EdgeGroup {
+        /**
+         * Control flow successors of the node.
+         */
+        SUCCESSORS("successors"),
+        /**
+         * Nodes that the node is control dependent on.
+         */
+        CONTROLLERS("controllers"),
+        /**
+         * Nodes that depend on the node in a program dependence graph.
+         */
+        DEPENDENTS("dependents");
+
+        private final String mReadableName;
+
+        EdgeGroup(String readableName) {
+            mReadableName = readableName;
+        }
+
+        public String toString() {
+            return mReadableName;
+        }
+    }
+
+    protected final Writer mOut;
+
+    protected GraphTextWriter(@NotNull Writer out) {
+        mOut = out;
+    }
+
+    /**
+     * Write UTF-8 text to a stream, buffered.
+     */
+    protected GraphTextWriter(@NotNull OutputStream out) {
+        this(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Write one method's graphs. If both graphs are given, they must be over the same nodes.
+     */
+    public void write(@NotNull String name, @Nullable DenseControlFlowGraph controlFlowGraph,
+                      @Nullable ControlDependenceGraph controlDependenceGraph) throws IOException {
+        if (controlFlowGraph == null && controlDependenceGraph == null) {
+            throw new IllegalArgumentException("Nothing to write for " + name);
+        }
+        if (controlFlowGraph != null && controlDependenceGraph != null &&
+                controlFlowGraph.size() != controlDependenceGraph.size()) {
+            throw new IllegalArgumentException("Graphs for " + name + " have different nodes");
+        }
+        int nodeCount = (controlFlowGraph != null) ? controlFlowGraph.size() : controlDependenceGraph.size();
+        int exitNode = (controlFlowGraph != null) ? controlFlowGraph.getExitNode() : DenseControlFlowGraph.NO_NODE;
+        startGraph(name, nodeCount, exitNode);
+        for (int node = 0; node < nodeCount; node++) {
+            ControlFlowNode controlFlowNode = (controlFlowGraph != null) ? controlFlowGraph.getNode(node) :
+                    controlDependenceGraph.getNodes().get(node);
+            startNode(node, controlFlowNode, node == exitNode);
+            if (controlFlowGraph != null) {
+                for (int edge = controlFlowGraph.getSuccessorStart(node); edge < controlFlowGraph.getSuccessorEnd(node);
+                     edge++) {
+                    writeEdge(node, EdgeGroup.SUCCESSORS, controlFlowGraph.getSuccessor(edge),
+                            controlFlowGraph.getSuccessorType(edge).toString(), null);
+                }
+            }
+            if (controlDependenceGraph != null) {
+                for (int dependence = controlDependenceGraph.getDependenceStart(node);
+                     dependence < controlDependenceGraph.getDependenceEnd(node); dependence++) {
+                    writeEdge(node, EdgeGroup.CONTROLLERS, controlDependenceGraph.getDependenceTarget(dependence),
+                            controlDependenceGraph.getDependenceType(dependence).toString(), null);
+                }
+            }
+            endNode(node);
+        }
+        endGraph();
+    }
+
+    /**
+     * Write a program dependence graph. Control dependences are labeled with the type of control flow edge they were
+     * found on, and data dependences with the variable they carry.
+     */
+    public void write(@NotNull String name, @NotNull ProgramDependenceGraph graph) throws IOException {
+        startGraph(name, graph.size(), DenseControlFlowGraph.NO_NODE);
+        for (int node = 0; node < graph.size(); node++) {
+            startNode(node, graph.getNode(node), false);
+            for (int edge = graph.getOutgoingStart(node); edge < graph.getOutgoingEnd(node); edge++) {
+                if (graph.getEdgeKind(edge) == ProgramDependenceGraph.EdgeKind.CONTROL) {
+                    writeEdge(node, EdgeGroup.DEPENDENTS, graph.getEdgeTarget(edge),
+                            graph.getControlFlowEdgeType(edge).toString(), null);
+                } else {
+                    writeEdge(node, EdgeGroup.DEPENDENTS, graph.getEdgeTarget(edge), "data",
+                            graph.getVariable(edge).getName());
+                }
+            }
+            endNode(node);
+        }
+        endGraph();
+    }
+
+    /**
+     * @param exitNode id of the exit node, or {@link DenseControlFlowGraph#NO_NODE}
+     */
+    protected abstract void startGraph(@NotNull String name, int nodeCount, int exitNode) throws IOException;
+
+    protected abstract void startNode(int node, @NotNull ControlFlowNode controlFlowNode, boolean isExit)
+            throws IOException;
+
+    /**
+     * Write one edge of the node last started. Edges of a node come grouped by {@link EdgeGroup}, in enum order.
+     *
+     * @param type     the edge type, or {@code data} for data dependences
+     * @param variable the variable a data dependence carries, if any
+     */
+    protected abstract void writeEdge(int node, @NotNull EdgeGroup group, int target, @NotNull String type,
+                                      @Nullable String variable) throws IOException;
+
+    protected abstract void endNode(int node) throws IOException;
+
+    protected abstract void endGraph() throws IOException;
+
+    @NotNull
+    protected static InstructionKind getKind(@NotNull ControlFlowNode node) {
+        return InstructionKind.of(node.getInstruction());
+    }
+
+    @Nullable
+    protected static TextRange getTextRange(@NotNull ControlFlowNode node) {
+        PsiElement element = node.getElement();
+        return (element != null) ? element.getTextRange() : null;
+    }
+
+    /**
+     * Write text that goes inside a quoted string, escaped for the output syntax.
+     */
+    protected abstract void writeEscaped(@NotNull String text) throws IOException;
+
+    @Override
+    public void flush() throws IOException {
+        mOut.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mOut.close();
+    }
+}
@@ -0,0 +1,150 @@
+package pdgutils;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.psi.PsiElement;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes control flow and control dependence graphs in a compact binary format, one record at a time, straight from
+ * the graphs' arrays. {@link GraphReader} reads them back.
+ * <p>
+ * A stream starts with {@link #MAGIC} and {@link #FORMAT_VERSION}; indexes that store single records skip the header.
+ * Each record is:
+ * <ul>
+ * <li>a flags byte ({@link #HAS_CONTROL_FLOW}, {@link #HAS_CONTROL_DEPENDENCES}) and the graph's name</li>
+ * <li>the node count, then per node its {@link InstructionKind} code and the text range of its element. A range is
+ * its length plus one, or 0 if the node has no element, followed by its start as a delta from the previous start.</li>
+ * <li>for control flow, the exit node plus one, then per node its successor count and successors, sorted, each as a
+ * delta from the one before it (the first from the node itself), followed by the edge type's ordinal</li>
+ * <li>for control dependences, the same layout over each node's controllers</li>
+ * </ul>
+ * Counts and ids are unsigned varints and signed deltas are zigzag varints, so most values take one byte.
+ * <p>
+ * Text ranges are read from the PSI, so records must be written under a read action.
+ */
+public class GraphWriter {
+
+    public static final int MAGIC = 0x50444731;
+    public static final int FORMAT_VERSION = 1;
+
+    static final int HAS_CONTROL_FLOW = 1;
+    static final int HAS_CONTROL_DEPENDENCES = 2;
+
+    private final DataOutput mOut;
+    private long[] mRow = new long[16];
+
+    public GraphWriter(@NotNull DataOutput out) {
+        mOut = out;
+    }
+
+    public void writeHeader() throws IOException {
+        mOut.writeInt(MAGIC);
+        mOut.writeByte(FORMAT_VERSION);
+    }
+
+    /**
+     * Write one record. If both graphs are given, they must be over the same nodes.
+     */
+    public void write(@NotNull String name, @Nullable DenseControlFlowGraph controlFlowGraph,
+                      @Nullable ControlDependenceGraph controlDependenceGraph) throws IOException {
+        if (controlFlowGraph == null && controlDependenceGraph == null) {
+            throw new IllegalArgumentException("Nothing to write for " + name);
+        }
+        if (controlFlowGraph != null && controlDependenceGraph != null &&
+                controlFlowGraph.size() != controlDependenceGraph.size()) {
+            throw new IllegalArgumentException("Graphs for " + name + " have different nodes");
+        }
+        int flags = (controlFlowGraph != null ? HAS_CONTROL_FLOW : 0) |
+                (controlDependenceGraph != null ? HAS_CONTROL_DEPENDENCES : 0);
+        mOut.writeByte(flags);
+        mOut.writeUTF(name);
+
+        if (controlFlowGraph != null) {
+            writeNodes(controlFlowGraph.size(), controlFlowGraph, null);
+            writeVarInt(controlFlowGraph.getExitNode() + 1);
+            for (int node = 0; node < controlFlowGraph.size(); node++) {
+                int rowSize = 0;
+                for (int edge = controlFlowGraph.getSuccessorStart(node); edge < controlFlowGraph.getSuccessorEnd(node);
+                     edge++) {
+                    rowSize = addToRow(rowSize, controlFlowGraph.getSuccessor(edge),
+                            controlFlowGraph.getSuccessorType(edge));
+                }
+                writeRow(node, rowSize);
+            }
+        } else {
+            writeNodes(controlDependenceGraph.size(), null, controlDependenceGraph.getNodes());
+        }
+        if (controlDependenceGraph != null) {
+            for (int node = 0; node < controlDependenceGraph.size(); node++) {
+                int rowSize = 0;
+                for (int dependence = controlDependenceGraph.getDependenceStart(node);
+                     dependence < controlDependenceGraph.getDependenceEnd(node); dependence++) {
+                    rowSize = addToRow(rowSize, controlDependenceGraph.getDependenceTarget(dependence),
+                            controlDependenceGraph.getDependenceType(dependence));
+                }
+                writeRow(node, rowSize);
+            }
+        }
+    }
+
+    private void writeNodes(int nodeCount, @Nullable DenseControlFlowGraph graph, @Nullable List<ControlFlowNode> nodes)
+            throws IOException {
+        writeVarInt(nodeCount);
+        int previousStart = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            ControlFlowNode node = (graph != null) ? graph.getNode(i) : nodes.get(i);
+            mOut.writeByte(InstructionKind.of(node.getInstruction()).ordinal());
+            PsiElement element = node.getElement();
+            TextRange range = (element != null) ? element.getTextRange() : null;
+            if (range == null) {
+                writeVarInt(0);
+            } else {
+                writeVarInt(range.getLength() + 1);
+                writeSignedVarInt(range.getStartOffset() - previousStart);
+                previousStart = range.getStartOffset();
+            }
+        }
+    }
+
+    private int addToRow(int rowSize, int target, @NotNull ControlFlowEdgeType type) {
+        if (rowSize == mRow.length) {
+            mRow = Arrays.copyOf(mRow, rowSize * 2);
+        }
+        mRow[rowSize] = ((long) target << 8) | type.ordinal();
+        return rowSize + 1;
+    }
+
+    private void writeRow(int node, int rowSize) throws IOException {
+        Arrays.sort(mRow, 0, rowSize);
+        writeVarInt(rowSize);
+        int previous = node;
+        for (int i = 0; i < rowSize; i++) {
+            int target = (int) (mRow[i] >>> 8);
+            if (i == 0) {
+                writeSignedVarInt(target - previous);
+            } else {
+                writeVarInt(target - previous);
+            }
+            mOut.writeByte((int) (mRow[i] & 0xff));
+            previous = target;
+        }
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            mOut.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        mOut.writeByte(value);
+    }
+
+    private void writeSignedVarInt(int value) throws IOException {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+}
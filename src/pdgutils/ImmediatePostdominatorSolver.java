@@ -0,0 +1,100 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Computes immediate postdominators without materializing postdominator sets. Based on "A Simple, Fast Dominance
+ * Algorithm" by Cooper, Harvey, and Kennedy, run on the reverse control flow graph with the exit node as the root.
+ * Nodes that cannot reach the exit node are left without an immediate postdominator.
+ */
+public class ImmediatePostdominatorSolver {
+
+    private static final int UNDEFINED = DenseControlFlowGraph.NO_NODE;
+
+    @NotNull
+    public static ImmediatePostdominatorTree solve(@NotNull ControlFlowGraph controlFlowGraph) {
+        DenseControlFlowGraph denseGraph = controlFlowGraph.getDenseGraph();
+        return toTree(denseGraph, getImmediatePostdominators(denseGraph));
+    }
+
+    /**
+     * @param parents id of each node's immediate postdominator, as from {@link #getImmediatePostdominators}
+     */
+    @NotNull
+    public static ImmediatePostdominatorTree toTree(@NotNull DenseControlFlowGraph denseGraph, @NotNull int[] parents) {
+        Map<ControlFlowNode, ControlFlowNode> immediatePostdominators = new HashMap<>();
+        for (int i = 0; i < parents.length; i++) {
+            ControlFlowNode parent = (parents[i] != UNDEFINED) ? denseGraph.getNode(parents[i]) : null;
+            immediatePostdominators.put(denseGraph.getNode(i), parent);
+        }
+        return new ImmediatePostdominatorTree(immediatePostdominators);
+    }
+
+    /**
+     * @return id of the immediate postdominator of each node, or {@link DenseControlFlowGraph#NO_NODE} for the exit
+     * node and nodes that cannot reach it.
+     */
+    @NotNull
+    public static int[] getImmediatePostdominators(@NotNull DenseControlFlowGraph denseGraph) {
+        int[] parents = new int[denseGraph.size()];
+        Arrays.fill(parents, UNDEFINED);
+        int root = denseGraph.getExitNode();
+        if (root == DenseControlFlowGraph.NO_NODE) {
+            return parents;
+        }
+
+        int[] reversePostorder = denseGraph.getReversePostorder(root, true);
+        int[] postorderNumbers = new int[denseGraph.size()];
+        Arrays.fill(postorderNumbers, UNDEFINED);
+        for (int i = 0; i < reversePostorder.length; i++) {
+            postorderNumbers[reversePostorder[i]] = reversePostorder.length - 1 - i;
+        }
+
+        parents[root] = root;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int node : reversePostorder) {
+                if (node == root) {
+                    continue;
+                }
+                int newParent = UNDEFINED;
+                for (int edge = denseGraph.getSuccessorStart(node); edge < denseGraph.getSuccessorEnd(node); edge++) {
+                    int successor = denseGraph.getSuccessor(edge);
+                    if (parents[successor] == UNDEFINED) {
+                        continue;
+                    }
+                    newParent = (newParent == UNDEFINED) ? successor :
+                            intersect(successor, newParent, parents, postorderNumbers);
+                }
+                if (newParent != UNDEFINED && parents[node] != newParent) {
+                    parents[node] = newParent;
+                    changed = true;
+                }
+            }
+        }
+        parents[root] = UNDEFINED;
+        return parents;
+    }
+
+    /**
+     * @return the nearest common ancestor of two nodes whose parents have been found, walking up by postorder number.
+     */
+    static int intersect(int node1, int node2, int[] parents, int[] postorderNumbers) {
+        int finger1 = node1;
+        int finger2 = node2;
+        while (finger1 != finger2) {
+            while (postorderNumbers[finger1] < postorderNumbers[finger2]) {
+                finger1 = parents[finger1];
+            }
+            while (postorderNumbers[finger2] < postorderNumbers[finger1]) {
+                finger2 = parents[finger2];
+            }
+        }
+        return finger1;
+    }
+}
@@ -0,0 +1,107 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+
+public class ImmediatePostdominatorTree {
+
+    private final Map<ControlFlowNode, ControlFlowNode> mParents = new HashMap<>();
+    private final Map<ControlFlowNode, Set<ControlFlowNode>> mChildren = new HashMap<>();
+
+    public ImmediatePostdominatorTree(@NotNull PostdominatorIndex postdominatorIndex) {
+        for (ControlFlowNode node : postdominatorIndex.getNodes()) {
+            ControlFlowNode immediatePostdominator = getImmediatePostdominator(node, postdominatorIndex);
+            saveImmediatePostdominator(node, immediatePostdominator);
+        }
+    }
+
+    public ImmediatePostdominatorTree(@NotNull BitsetPostdominatorIndex postdominatorIndex) {
+        DenseControlFlowGraph graph = postdominatorIndex.getGraph();
+        for (int node = 0; node < graph.size(); node++) {
+            int immediatePostdominator = postdominatorIndex.getImmediatePostdominator(node);
+            saveImmediatePostdominator(graph.getNode(node), (immediatePostdominator != DenseControlFlowGraph.NO_NODE) ?
+                    graph.getNode(immediatePostdominator) : null);
+        }
+    }
+
+    public ImmediatePostdominatorTree(@NotNull Map<ControlFlowNode, ControlFlowNode> immediatePostdominators) {
+        for (Map.Entry<ControlFlowNode, ControlFlowNode> entry : immediatePostdominators.entrySet()) {
+            saveImmediatePostdominator(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void saveImmediatePostdominator(@NotNull ControlFlowNode node,
+                                            @Nullable ControlFlowNode immediatePostdominator) {
+        mParents.put(node, immediatePostdominator);
+        if (!mChildren.containsKey(immediatePostdominator)) {
+            mChildren.put(immediatePostdominator, new HashSet<>());
+        }
+        mChildren.get(immediatePostdominator).add(node);
+    }
+
+    @Nullable
+    private ControlFlowNode getImmediatePostdominator(@NotNull ControlFlowNode node,
+                                                      @NotNull PostdominatorIndex postdominatorIndex) {
+        Set<Postdominator> nodePostdominators = postdominatorIndex.getPostdominators(node);
+        nodePostdominators.removeIf(postdominator -> postdominator.getNode() == node);
+        try {
+            Postdominator immediatePostdominator = Collections.min(nodePostdominators,
+                    Comparator.comparingInt(Postdominator::getPathLength));
+            return immediatePostdominator.getNode();
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    public ControlFlowNode getParent(@NotNull ControlFlowNode node) {
+        return this.mParents.get(node);
+    }
+
+    /**
+     * @return id of each graph node's parent, or {@link DenseControlFlowGraph#NO_NODE} for roots.
+     */
+    @NotNull
+    public int[] getParentIds(@NotNull DenseControlFlowGraph graph) {
+        int[] parentIds = new int[graph.size()];
+        for (int node = 0; node < graph.size(); node++) {
+            ControlFlowNode parent = this.mParents.get(graph.getNode(node));
+            parentIds[node] = (parent != null) ? graph.getId(parent) : DenseControlFlowGraph.NO_NODE;
+        }
+        return parentIds;
+    }
+
+    /**
+     * @return whether {@code postdominator} is {@code node} or one of its ancestors in the tree.
+     */
+    public boolean isPostdominatedBy(@NotNull ControlFlowNode node, @NotNull ControlFlowNode postdominator) {
+        ControlFlowNode ancestor = node;
+        for (int depth = 0; ancestor != null && depth <= this.mParents.size(); depth++) {
+            if (ancestor == postdominator) {
+                return true;
+            }
+            ancestor = this.mParents.get(ancestor);
+        }
+        return false;
+    }
+
+    /**
+     * @return the node's children, as a read-only view, or null if it has none.
+     */
+    @Nullable
+    public Set<ControlFlowNode> getChildren(@NotNull ControlFlowNode node) {
+        Set<ControlFlowNode> children = this.mChildren.get(node);
+        return (children != null) ? Collections.unmodifiableSet(children) : null;
+    }
+
+    /**
+     * @return an immutable, array-backed copy of this tree over the ids of {@code graph}'s nodes, which can be shared
+     * between threads.
+     */
+    @NotNull
+    public PostdominatorTree freeze(@NotNull DenseControlFlowGraph graph) {
+        return new PostdominatorTree(graph, getParentIds(graph));
+    }
+}
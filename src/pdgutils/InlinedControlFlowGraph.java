@@ -0,0 +1,350 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * A control flow graph in which {@code finally} blocks are copied for each place they are entered from.
+ * <p>
+ * IntelliJ models a {@code finally} block as a subroutine: each path out of the {@code try} ends in a
+ * {@code CallInstruction} to the block, and the block ends in a {@code ReturnInstruction} with an edge back to every
+ * call site. Those return edges merge paths that never meet at run time, so every node after a {@code try} is reached
+ * through the return, and the return's branches make it a spurious controller. Here each call gets its own copy of
+ * the subroutine, whose returns only go back to that call. Nested {@code finally} blocks are copied within the copy of
+ * the block that holds them.
+ * <p>
+ * A subroutine is taken to span the instructions from its first instruction to its last return, which is how
+ * IntelliJ lays them out. Edges that leave that span, like an exception thrown out of the {@code finally} block, go
+ * to the copy of their target in the enclosing context. Copies are only made while the graph stays within a node
+ * budget; calls past the budget share one copy with returns to all of their call sites, as in the instruction graph.
+ * <p>
+ * The first copy of each instruction keeps its offset as its node id, so a graph without {@code finally} blocks
+ * comes out the same as the instruction graph. Further copies are numbered after the exit node.
+ */
+public class InlinedControlFlowGraph {
+
+    public static final int DEFAULT_MAX_GROWTH = 4;
+
+    private static final int ROOT_CONTEXT = 0;
+
+    private final DenseControlFlowGraph mInstructionGraph;
+    private final DenseControlFlowGraph mInlinedGraph;
+    private final int[] mInstructions;
+    private final int mSharedCallCount;
+
+    private InlinedControlFlowGraph(@NotNull DenseControlFlowGraph instructionGraph,
+                                    @NotNull DenseControlFlowGraph inlinedGraph, @NotNull int[] instructions,
+                                    int sharedCallCount) {
+        mInstructionGraph = instructionGraph;
+        mInlinedGraph = inlinedGraph;
+        mInstructions = instructions;
+        mSharedCallCount = sharedCallCount;
+    }
+
+    /**
+     * Inline the subroutines of a graph built by {@link ControlFlowGraphFactory#getDenseControlFlowGraph}, letting
+     * the graph grow to {@link #DEFAULT_MAX_GROWTH} times its size.
+     */
+    @NotNull
+    public static InlinedControlFlowGraph from(@NotNull DenseControlFlowGraph instructionGraph) {
+        return from(instructionGraph, instructionGraph.size() * DEFAULT_MAX_GROWTH);
+    }
+
+    /**
+     * @param maxNodes most nodes the inlined graph may have, unless the instruction graph is already bigger
+     */
+    @NotNull
+    public static InlinedControlFlowGraph from(@NotNull DenseControlFlowGraph instructionGraph, int maxNodes) {
+        return new Builder(instructionGraph, maxNodes).build();
+    }
+
+    @NotNull
+    public DenseControlFlowGraph getInstructionGraph() {
+        return mInstructionGraph;
+    }
+
+    @NotNull
+    public DenseControlFlowGraph getInlinedGraph() {
+        return mInlinedGraph;
+    }
+
+    /**
+     * @return offset of the instruction that a node of the inlined graph is a copy of.
+     */
+    public int getInstruction(int node) {
+        return mInstructions[node];
+    }
+
+    /**
+     * @return number of nodes added by copying subroutines.
+     */
+    public int getCopyCount() {
+        return mInlinedGraph.size() - mInstructionGraph.size();
+    }
+
+    /**
+     * @return number of calls that didn't get a copy of their subroutine because the graph reached its node budget.
+     */
+    public int getSharedCallCount() {
+        return mSharedCallCount;
+    }
+
+    @NotNull
+    public ControlDependenceGraph getControlDependences() {
+        return PostdominanceFrontier.getControlDependenceGraph(mInlinedGraph,
+                ImmediatePostdominatorSolver.getImmediatePostdominators(mInlinedGraph));
+    }
+
+    /**
+     * Walks the graph from the entry, one (instruction, context) pair at a time. A context is a chain of calls, and
+     * holds the node ids of the instructions in its subroutine's span.
+     */
+    private static class Builder {
+
+        private final DenseControlFlowGraph mGraph;
+        private final int mMaxNodes;
+        private final InstructionKind[] mKinds;
+        // Last instruction of the subroutine starting at each offset, or -1.
+        private final int[] mSubroutineEnds;
+        // Subroutine each return instruction returns from, or -1.
+        private final int[] mReturnSubroutines;
+        private final boolean[] mClaimed;
+
+        private int[] mContextParents = new int[16];
+        private int[] mContextCalls = new int[16];
+        private int[][] mContextNodes = new int[16][];
+        private int mContextCount;
+
+        private int[] mInstructions;
+        private int[] mNodeContexts;
+        private int mNodeCount;
+        private int[] mQueue;
+        private int mQueueStart;
+        private int mQueueEnd;
+
+        private int[] mEdgeSources = new int[16];
+        private int[] mEdgeTargets = new int[16];
+        private byte[] mEdgeTypes = new byte[16];
+        private int mEdgeCount;
+        private int mSharedCallCount;
+
+        private Builder(@NotNull DenseControlFlowGraph graph, int maxNodes) {
+            mGraph = graph;
+            mMaxNodes = maxNodes;
+            int size = graph.size();
+            mKinds = new InstructionKind[size];
+            for (int node = 0; node < size; node++) {
+                mKinds[node] = InstructionKind.of(graph.getNode(node).getInstruction());
+            }
+            mSubroutineEnds = new int[size];
+            mReturnSubroutines = new int[size];
+            mClaimed = new boolean[size];
+            mInstructions = new int[size];
+            mNodeContexts = new int[size];
+            mQueue = new int[size];
+            // Ids below the instruction count are kept for the first copy of each instruction.
+            mNodeCount = size;
+            findSubroutines();
+            int[] rootNodes = new int[size];
+            Arrays.fill(rootNodes, -1);
+            addContext(-1, -1, rootNodes);
+        }
+
+        /**
+         * A subroutine starts at the target of a call. Its returns are the return instructions whose edges all go to
+         * instructions right after calls to it.
+         */
+        private void findSubroutines() {
+            int size = mGraph.size();
+            int[] returnAddressSubroutines = new int[size + 1];
+            Arrays.fill(returnAddressSubroutines, -1);
+            Arrays.fill(mSubroutineEnds, -1);
+            Arrays.fill(mReturnSubroutines, -1);
+            for (int node = 0; node < size; node++) {
+                if (mKinds[node] == InstructionKind.CALL && getOutDegree(node) == 1) {
+                    returnAddressSubroutines[node + 1] = mGraph.getSuccessor(mGraph.getSuccessorStart(node));
+                }
+            }
+            for (int node = 0; node < size; node++) {
+                if (mKinds[node] != InstructionKind.RETURN || getOutDegree(node) == 0) {
+                    continue;
+                }
+                int subroutine = -1;
+                for (int edge = mGraph.getSuccessorStart(node); edge < mGraph.getSuccessorEnd(node); edge++) {
+                    int target = returnAddressSubroutines[mGraph.getSuccessor(edge)];
+                    if (target == -1 || (subroutine != -1 && subroutine != target)) {
+                        subroutine = -1;
+                        break;
+                    }
+                    subroutine = target;
+                }
+                if (subroutine != -1 && subroutine <= node) {
+                    mReturnSubroutines[node] = subroutine;
+                    mSubroutineEnds[subroutine] = Math.max(mSubroutineEnds[subroutine], node);
+                }
+            }
+        }
+
+        @NotNull
+        private InlinedControlFlowGraph build() {
+            int size = mGraph.size();
+            if (size > 0) {
+                visit(0, ROOT_CONTEXT);
+                drainQueue();
+            }
+            // Unreachable instructions are kept as they are.
+            for (int node = 0; node < size; node++) {
+                if (!mClaimed[node]) {
+                    visit(node, ROOT_CONTEXT);
+                    drainQueue();
+                }
+            }
+
+            ControlFlowNode[] nodes = new ControlFlowNode[mNodeCount];
+            for (int node = 0; node < mNodeCount; node++) {
+                ControlFlowNode instruction = mGraph.getNode(mInstructions[node]);
+                nodes[node] = new ControlFlowNode(instruction.getInstruction(), instruction.getElement());
+            }
+            DenseControlFlowGraph inlinedGraph = new DenseControlFlowGraph(nodes, mGraph.getExitNode(), mEdgeSources,
+                    mEdgeTargets, mEdgeTypes, mEdgeCount);
+            return new InlinedControlFlowGraph(mGraph, inlinedGraph, Arrays.copyOf(mInstructions, mNodeCount),
+                    mSharedCallCount);
+        }
+
+        private void drainQueue() {
+            while (mQueueStart < mQueueEnd) {
+                int node = mQueue[mQueueStart++];
+                addEdges(node, mInstructions[node], mNodeContexts[node]);
+            }
+        }
+
+        private void addEdges(int node, int instruction, int context) {
+            InstructionKind kind = mKinds[instruction];
+            if (kind == InstructionKind.CALL && getOutDegree(instruction) == 1) {
+                int edge = mGraph.getSuccessorStart(instruction);
+                int subroutine = mGraph.getSuccessor(edge);
+                if (canInline(instruction, subroutine)) {
+                    int[] contextNodes = new int[mSubroutineEnds[subroutine] - subroutine + 1];
+                    Arrays.fill(contextNodes, -1);
+                    int callContext = addContext(context, instruction, contextNodes);
+                    addEdge(node, visit(subroutine, callContext), mGraph.getSuccessorType(edge));
+                    return;
+                }
+            } else if (kind == InstructionKind.RETURN && context != ROOT_CONTEXT &&
+                    mReturnSubroutines[instruction] == getSubroutine(context)) {
+                int returnAddress = mContextCalls[context] + 1;
+                int parent = mContextParents[context];
+                boolean returned = false;
+                for (int edge = mGraph.getSuccessorStart(instruction); edge < mGraph.getSuccessorEnd(instruction);
+                     edge++) {
+                    if (mGraph.getSuccessor(edge) == returnAddress) {
+                        addEdge(node, visit(returnAddress, getContext(parent, returnAddress)),
+                                mGraph.getSuccessorType(edge));
+                        returned = true;
+                    }
+                }
+                // A return to a fixed offset that isn't this call's doesn't happen in this context; leave it be.
+                if (returned) {
+                    return;
+                }
+            }
+            for (int edge = mGraph.getSuccessorStart(instruction); edge < mGraph.getSuccessorEnd(instruction); edge++) {
+                int target = mGraph.getSuccessor(edge);
+                addEdge(node, visit(target, getContext(context, target)), mGraph.getSuccessorType(edge));
+            }
+        }
+
+        /**
+         * A subroutine can only be copied if its span is known, it doesn't call itself, and the copy fits.
+         */
+        private boolean canInline(int call, int subroutine) {
+            int end = mSubroutineEnds[subroutine];
+            if (end == -1 || (call >= subroutine && call <= end)) {
+                return false;
+            }
+            if ((long) mNodeCount + (end - subroutine + 1) > mMaxNodes) {
+                mSharedCallCount++;
+                return false;
+            }
+            return true;
+        }
+
+        private int getSubroutine(int context) {
+            return mGraph.getSuccessor(mGraph.getSuccessorStart(mContextCalls[context]));
+        }
+
+        /**
+         * @return the innermost context, starting from {@code context}, whose subroutine spans {@code instruction}.
+         */
+        private int getContext(int context, int instruction) {
+            while (context != ROOT_CONTEXT) {
+                int subroutine = getSubroutine(context);
+                if (instruction >= subroutine && instruction <= mSubroutineEnds[subroutine]) {
+                    break;
+                }
+                context = mContextParents[context];
+            }
+            return context;
+        }
+
+        /**
+         * @return the node for an instruction in a context, added and queued if it's new.
+         */
+        private int visit(int instruction, int context) {
+            int[] contextNodes = mContextNodes[context];
+            int index = (context == ROOT_CONTEXT) ? instruction : instruction - getSubroutine(context);
+            if (contextNodes[index] != -1) {
+                return contextNodes[index];
+            }
+            int node;
+            if (!mClaimed[instruction]) {
+                mClaimed[instruction] = true;
+                node = instruction;
+            } else {
+                if (mNodeCount == mInstructions.length) {
+                    int capacity = mNodeCount * 2;
+                    mInstructions = Arrays.copyOf(mInstructions, capacity);
+                    mNodeContexts = Arrays.copyOf(mNodeContexts, capacity);
+                    mQueue = Arrays.copyOf(mQueue, capacity);
+                }
+                node = mNodeCount++;
+            }
+            mInstructions[node] = instruction;
+            mNodeContexts[node] = context;
+            contextNodes[index] = node;
+            mQueue[mQueueEnd++] = node;
+            return node;
+        }
+
+        private int addContext(int parent, int call, @NotNull int[] nodes) {
+            if (mContextCount == mContextParents.length) {
+                int capacity = mContextCount * 2;
+                mContextParents = Arrays.copyOf(mContextParents, capacity);
+                mContextCalls = Arrays.copyOf(mContextCalls, capacity);
+                mContextNodes = Arrays.copyOf(mContextNodes, capacity);
+            }
+            mContextParents[mContextCount] = parent;
+            mContextCalls[mContextCount] = call;
+            mContextNodes[mContextCount] = nodes;
+            return mContextCount++;
+        }
+
+        private void addEdge(int from, int to, @NotNull ControlFlowEdgeType type) {
+            if (mEdgeCount == mEdgeSources.length) {
+                int capacity = mEdgeCount * 2;
+                mEdgeSources = Arrays.copyOf(mEdgeSources, capacity);
+                mEdgeTargets = Arrays.copyOf(mEdgeTargets, capacity);
+                mEdgeTypes = Arrays.copyOf(mEdgeTypes, capacity);
+            }
+            mEdgeSources[mEdgeCount] = from;
+            mEdgeTargets[mEdgeCount] = to;
+            mEdgeTypes[mEdgeCount] = (byte) type.ordinal();
+            mEdgeCount++;
+        }
+
+        private int getOutDegree(int node) {
+            return mGraph.getSuccessorEnd(node) - mGraph.getSuccessorStart(node);
+        }
+    }
+}
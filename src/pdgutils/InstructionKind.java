@@ -0,0 +1,78 @@
+package pdgutils;
+
+import com.intellij.psi.controlFlow.CallInstruction;
+import com.intellij.psi.controlFlow.ConditionalGoToInstruction;
+import com.intellij.psi.controlFlow.ConditionalThrowToInstruction;
+import com.intellij.psi.controlFlow.EmptyInstruction;
+import com.intellij.psi.controlFlow.GoToInstruction;
+import com.intellij.psi.controlFlow.Instruction;
+import com.intellij.psi.controlFlow.ReadVariableInstruction;
+import com.intellij.psi.controlFlow.ReturnInstruction;
+import com.intellij.psi.controlFlow.ThrowToInstruction;
+import com.intellij.psi.controlFlow.WriteVariableInstruction;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Stable codes for the kinds of instruction a node can hold, for formats that can't refer to instruction objects.
+ * Codes are written to disk, so new kinds must only be added at the end.
+ */
+public enum InstructionKind {
+    OTHER("Other"),
+    EMPTY("Empty"),
+    READ_VARIABLE("ReadVariable"),
+    WRITE_VARIABLE("WriteVariable"),
+    GOTO("GoTo"),
+    CONDITIONAL_GOTO("ConditionalGoTo"),
+    THROW_TO("ThrowTo"),
+    CONDITIONAL_THROW_TO("ConditionalThrowTo"),
+    CALL("Call"),
+    RETURN("Return"),
+    STATEMENT("Statement");
+
+    private static final InstructionKind[] VALUES = values();
+
+    private final String mReadableName;
+
+    InstructionKind(String readableName) {
+        mReadableName = readableName;
+    }
+
+    /**
+     * @return the name graphs use for this kind in {@code toString()}.
+     */
+    public String toString() {
+        return mReadableName;
+    }
+
+    @NotNull
+    public static InstructionKind fromCode(int code) {
+        return (code >= 0 && code < VALUES.length) ? VALUES[code] : OTHER;
+    }
+
+    @NotNull
+    public static InstructionKind of(@NotNull Instruction instruction) {
+        // Calls and returns are also gotos, so they are checked first.
+        if (instruction instanceof CallInstruction) {
+            return CALL;
+        } else if (instruction instanceof ReturnInstruction) {
+            return RETURN;
+        } else if (instruction instanceof GoToInstruction) {
+            return GOTO;
+        } else if (instruction instanceof ConditionalGoToInstruction) {
+            return CONDITIONAL_GOTO;
+        } else if (instruction instanceof ThrowToInstruction) {
+            return THROW_TO;
+        } else if (instruction instanceof ConditionalThrowToInstruction) {
+            return CONDITIONAL_THROW_TO;
+        } else if (instruction instanceof ReadVariableInstruction) {
+            return READ_VARIABLE;
+        } else if (instruction instanceof WriteVariableInstruction) {
+            return WRITE_VARIABLE;
+        } else if (instruction instanceof EmptyInstruction) {
+            return EMPTY;
+        } else if (instruction instanceof StatementInstruction) {
+            return STATEMENT;
+        }
+        return OTHER;
+    }
+}
@@ -0,0 +1,121 @@
+package pdgutils;
+
+import com.intellij.openapi.util.TextRange;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Streams graphs as JSON Lines. Each method starts with a line for the graph:
+ * <pre>
+ * {"graph":"name","nodeCount":3,"exitNode":2}
+ * </pre>
+ * followed by a line per node, which repeats the graph's name so that lines can be filtered on their own:
+ * <pre>
+ * {"graph":"name","node":0,"kind":"ConditionalGoTo","start":12,"end":18,"successors":[{"node":1,"type":"branch"}]}
+ * </pre>
+ * {@code start} and {@code end} are left out for nodes without an element, and {@code exitNode} for graphs without
+ * one. Edges are in arrays named after their {@link EdgeGroup}, and data dependences have a {@code variable}.
+ */
+public class JsonLinesGraphWriter extends GraphTextWriter {
+
+    private String mGraphName;
+    private EdgeGroup mGroup;
+
+    public JsonLinesGraphWriter(@NotNull Writer out) {
+        super(out);
+    }
+
+    public JsonLinesGraphWriter(@NotNull OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    protected void startGraph(@NotNull String name, int nodeCount, int exitNode) throws IOException {
+        mGraphName = name;
+        mOut.write("{\"graph\":\"");
+        writeEscaped(name);
+        mOut.write("\",\"nodeCount\":");
+        mOut.write(Integer.toString(nodeCount));
+        if (exitNode != DenseControlFlowGraph.NO_NODE) {
+            mOut.write(",\"exitNode\":");
+            mOut.write(Integer.toString(exitNode));
+        }
+        mOut.write("}\n");
+    }
+
+    @Override
+    protected void startNode(int node, @NotNull ControlFlowNode controlFlowNode, boolean isExit) throws IOException {
+        mGroup = null;
+        mOut.write("{\"graph\":\"");
+        writeEscaped(mGraphName);
+        mOut.write("\",\"node\":");
+        mOut.write(Integer.toString(node));
+        mOut.write(",\"kind\":\"");
+        mOut.write(getKind(controlFlowNode).toString());
+        mOut.write('"');
+        TextRange range = getTextRange(controlFlowNode);
+        if (range != null) {
+            mOut.write(",\"start\":");
+            mOut.write(Integer.toString(range.getStartOffset()));
+            mOut.write(",\"end\":");
+            mOut.write(Integer.toString(range.getEndOffset()));
+        }
+    }
+
+    @Override
+    protected void writeEdge(int node, @NotNull EdgeGroup group, int target, @NotNull String type,
+                             @Nullable String variable) throws IOException {
+        if (group != mGroup) {
+            mOut.write((mGroup != null) ? "],\"" : ",\"");
+            mOut.write(group.toString());
+            mOut.write("\":[");
+            mGroup = group;
+        } else {
+            mOut.write(',');
+        }
+        mOut.write("{\"node\":");
+        mOut.write(Integer.toString(target));
+        mOut.write(",\"type\":\"");
+        mOut.write(type);
+        mOut.write('"');
+        if (variable != null) {
+            mOut.write(",\"variable\":\"");
+            writeEscaped(variable);
+            mOut.write('"');
+        }
+        mOut.write('}');
+    }
+
+    /**
+     * Escape quotes and backslashes, and write control characters as unicode escapes, so that each line stays one
+     * JSON value.
+     */
+    @Override
+    protected void writeEscaped(@NotNull String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                mOut.write('\\');
+                mOut.write(c);
+            } else if (c < 0x20) {
+                mOut.write(String.format("\\u%04x", (int) c));
+            } else {
+                mOut.write(c);
+            }
+        }
+    }
+
+    @Override
+    protected void endNode(int node) throws IOException {
+        mOut.write((mGroup != null) ? "]}\n" : "}\n");
+    }
+
+    @Override
+    protected void endGraph() {
+        mGraphName = null;
+    }
+}
@@ -0,0 +1,28 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Values of a dataflow analysis. Values are mutable so that a solver can reuse them instead of allocating a new value
+ * every time a node is visited.
+ */
+public interface Lattice<V> {
+
+    /**
+     * @return a new value set to the top of the lattice, the identity of {@link #meet}.
+     */
+    @NotNull
+    V createTop();
+
+    /**
+     * Set {@code target} to the meet of {@code target} and {@code other}.
+     */
+    void meet(@NotNull V target, @NotNull V other);
+
+    /**
+     * Copy {@code source} into {@code target}.
+     *
+     * @return whether {@code target} changed.
+     */
+    boolean assign(@NotNull V target, @NotNull V source);
+}
@@ -0,0 +1,225 @@
+package pdgutils;
+
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.controlFlow.AnalysisCanceledException;
+import com.intellij.psi.controlFlow.ControlFlow;
+import com.intellij.psi.controlFlow.ControlFlowFactory;
+import com.intellij.psi.controlFlow.LocalsOrMyInstanceFieldsControlFlowPolicy;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Control dependences of a method that are only computed for the nodes they are asked for. Nothing is computed up
+ * front: the immediate postdominators and their tree are built on the first query, and each node's dependences are
+ * found on its first query and kept from then on. {@link ControlDependenceGraph#from} instead computes the frontier of
+ * every node, which is wasted on queries that only look at a few nodes of a few methods.
+ * <p>
+ * A node depends on the predecessors of the nodes it postdominates, other than the ones it postdominates itself.
+ * Those nodes are its subtree in the postdominator tree, so a query walks the subtree and checks each predecessor
+ * against the tree's preorder and postorder numbers. Like {@link PostdominanceFrontier}, a node only depends on itself
+ * through an edge to itself, and not through a longer loop. The dependences found are the same, in the same order,
+ * as in the {@link ControlDependenceGraph} built by {@link PostdominanceFrontier}.
+ * <p>
+ * Queries are synchronized, so a graph can be shared between threads.
+ */
+public class LazyControlDependenceGraph {
+
+    private static final int TYPE_BITS =
+            32 - Integer.numberOfLeadingZeros(ControlFlowEdgeType.values().length - 1);
+    private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+    private final DenseControlFlowGraph mGraph;
+    private PostdominatorTree mPostdominatorTree;
+    // Dependences are packed as (controller id << TYPE_BITS | edge type), and are null until a node is asked for.
+    private final int[][] mDependences;
+    private int mComputedNodeCount;
+    private long mVisitedNodeCount;
+
+    public LazyControlDependenceGraph(@NotNull DenseControlFlowGraph graph) {
+        mGraph = graph;
+        mDependences = new int[graph.size()][];
+    }
+
+    @NotNull
+    public static LazyControlDependenceGraph from(@NotNull ControlFlowGraph controlFlowGraph) {
+        return new LazyControlDependenceGraph(controlFlowGraph.getDenseGraph());
+    }
+
+    /**
+     * Get the graph for a method's body, memoized on the body until the method's file changes. Only the control flow
+     * is built here. Must be called in a read action.
+     *
+     * @return the graph, or null if the method has no body or IntelliJ couldn't build control flow for it.
+     */
+    @Nullable
+    public static LazyControlDependenceGraph forMethod(@NotNull PsiMethod method) {
+        PsiCodeBlock body = method.getBody();
+        if (body == null) {
+            return null;
+        }
+        return CachedValuesManager.getCachedValue(body, () -> {
+            LazyControlDependenceGraph graph;
+            try {
+                ControlFlow controlFlow = ControlFlowFactory.getInstance(body.getProject()).getControlFlow(body,
+                        LocalsOrMyInstanceFieldsControlFlowPolicy.getInstance());
+                graph = from(ControlFlowGraphFactory.getControlFlowGraph(controlFlow));
+            } catch (AnalysisCanceledException e) {
+                graph = null;
+            }
+            return CachedValueProvider.Result.create(graph, body);
+        });
+    }
+
+    @NotNull
+    public DenseControlFlowGraph getGraph() {
+        return mGraph;
+    }
+
+    public int size() {
+        return mGraph.size();
+    }
+
+    public synchronized int getDependenceCount(int node) {
+        return getDependences(node).length;
+    }
+
+    /**
+     * @param index an index in {@code [0, getDependenceCount(node))}
+     * @return id of the node that the dependence at {@code index} is on.
+     */
+    public synchronized int getDependenceTarget(int node, int index) {
+        return getDependences(node)[index] >>> TYPE_BITS;
+    }
+
+    @NotNull
+    public synchronized ControlFlowEdgeType getDependenceType(int node, int index) {
+        return ControlFlowEdgeType.fromOrdinal(getDependences(node)[index] & TYPE_MASK);
+    }
+
+    /**
+     * @return the dependences of a node, as edge objects.
+     */
+    @NotNull
+    public synchronized Set<ControlDependenceEdge> getDependenceEdges(int node) {
+        Set<ControlDependenceEdge> edges = new HashSet<>();
+        for (int dependence : getDependences(node)) {
+            edges.add(new ControlDependenceEdge(mGraph.getNode(node), mGraph.getNode(dependence >>> TYPE_BITS),
+                    ControlFlowEdgeType.fromOrdinal(dependence & TYPE_MASK)));
+        }
+        return edges;
+    }
+
+    /**
+     * @return the postdominator tree the dependences are found with, building it if no node has been asked for yet.
+     */
+    @NotNull
+    public synchronized PostdominatorTree getPostdominatorTree() {
+        if (mPostdominatorTree == null) {
+            mPostdominatorTree = new PostdominatorTree(mGraph,
+                    ImmediatePostdominatorSolver.getImmediatePostdominators(mGraph));
+        }
+        return mPostdominatorTree;
+    }
+
+    /**
+     * @return whether the postdominator tree has been built.
+     */
+    public synchronized boolean hasPostdominatorTree() {
+        return mPostdominatorTree != null;
+    }
+
+    /**
+     * @return number of nodes whose dependences have been computed.
+     */
+    public synchronized int getComputedNodeCount() {
+        return mComputedNodeCount;
+    }
+
+    /**
+     * @return number of nodes visited in postdominator subtrees across all queries so far.
+     */
+    public synchronized long getVisitedNodeCount() {
+        return mVisitedNodeCount;
+    }
+
+    /**
+     * Compute the dependences of every node not yet asked for.
+     */
+    @NotNull
+    public synchronized ControlDependenceGraph toControlDependenceGraph() {
+        int nodeCount = mGraph.size();
+        int[] dependenceOffsets = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            dependenceOffsets[node + 1] = dependenceOffsets[node] + getDependences(node).length;
+        }
+        int[] controllers = new int[dependenceOffsets[nodeCount]];
+        byte[] types = new byte[dependenceOffsets[nodeCount]];
+        ControlFlowNode[] nodes = new ControlFlowNode[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            nodes[node] = mGraph.getNode(node);
+            int dependence = dependenceOffsets[node];
+            for (int entry : mDependences[node]) {
+                controllers[dependence] = entry >>> TYPE_BITS;
+                types[dependence] = (byte) (entry & TYPE_MASK);
+                dependence++;
+            }
+        }
+        return new ControlDependenceGraph(Arrays.asList(nodes), dependenceOffsets, controllers, types);
+    }
+
+    @NotNull
+    private int[] getDependences(int node) {
+        if (mDependences[node] == null) {
+            mDependences[node] = computeDependences(node);
+            mComputedNodeCount++;
+        }
+        return mDependences[node];
+    }
+
+    @NotNull
+    private int[] computeDependences(int node) {
+        PostdominatorTree tree = getPostdominatorTree();
+        int[] dependences = new int[4];
+        int dependenceCount = 0;
+        int[] stack = new int[16];
+        int stackSize = 0;
+        stack[stackSize++] = node;
+        while (stackSize > 0) {
+            int postdominated = stack[--stackSize];
+            mVisitedNodeCount++;
+            for (int edge = mGraph.getPredecessorStart(postdominated);
+                 edge < mGraph.getPredecessorEnd(postdominated); edge++) {
+                int predecessor = mGraph.getPredecessor(edge);
+                boolean selfLoop = predecessor == node && postdominated == node;
+                if (tree.isPostdominatedBy(predecessor, node) && !selfLoop) {
+                    continue;
+                }
+                if (dependenceCount == dependences.length) {
+                    dependences = Arrays.copyOf(dependences, dependenceCount * 2);
+                }
+                dependences[dependenceCount++] = (predecessor << TYPE_BITS) | mGraph.getPredecessorType(edge).ordinal();
+            }
+            for (int i = tree.getChildStart(postdominated); i < tree.getChildEnd(postdominated); i++) {
+                if (stackSize == stack.length) {
+                    stack = Arrays.copyOf(stack, stackSize * 2);
+                }
+                stack[stackSize++] = tree.getChild(i);
+            }
+        }
+        Arrays.sort(dependences, 0, dependenceCount);
+        int uniqueCount = 0;
+        for (int i = 0; i < dependenceCount; i++) {
+            if (uniqueCount == 0 || dependences[uniqueCount - 1] != dependences[i]) {
+                dependences[uniqueCount++] = dependences[i];
+            }
+        }
+        return Arrays.copyOf(dependences, uniqueCount);
+    }
+}
@@ -0,0 +1,174 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Computes control dependences as postdominance frontiers, following "Efficiently Computing Static Single Assignment
+ * Form and the Control Dependence Graph" by Cytron et al. on the reverse control flow graph. A node's frontier is
+ * built in one bottom-up pass over the immediate postdominator tree from:
+ * <ul>
+ * <li>its local frontier: predecessors it doesn't immediately postdominate, and</li>
+ * <li>the frontiers of its children, minus itself and the nodes it immediately postdominates.</li>
+ * </ul>
+ * The tree is walked with an explicit stack, so deep nesting can't overflow the call stack. Each dependence is labeled
+ * with the type of the control flow edge it was found on.
+ */
+public class PostdominanceFrontier {
+
+    private static final int TYPE_BITS =
+            32 - Integer.numberOfLeadingZeros(ControlFlowEdgeType.values().length - 1);
+    private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+    private final DenseControlFlowGraph mGraph;
+    private final int[] mImmediatePostdominators;
+    private final int[] mChildOffsets;
+    private final int[] mChildren;
+
+    // Frontier entries are packed as (controller id << TYPE_BITS | edge type) and appended in postorder.
+    private int[] mFrontiers;
+    private int mFrontierSize;
+    private final int[] mFrontierStarts;
+    private final int[] mFrontierEnds;
+    private final int[] mLastAddedTo;
+
+    private PostdominanceFrontier(@NotNull DenseControlFlowGraph graph, @NotNull int[] immediatePostdominators) {
+        mGraph = graph;
+        mImmediatePostdominators = immediatePostdominators;
+        int nodeCount = graph.size();
+        mChildOffsets = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            if (immediatePostdominators[node] != DenseControlFlowGraph.NO_NODE) {
+                mChildOffsets[immediatePostdominators[node] + 1]++;
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            mChildOffsets[node + 1] += mChildOffsets[node];
+        }
+        mChildren = new int[mChildOffsets[nodeCount]];
+        int[] childFill = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            int parent = immediatePostdominators[node];
+            if (parent != DenseControlFlowGraph.NO_NODE) {
+                mChildren[mChildOffsets[parent] + childFill[parent]++] = node;
+            }
+        }
+        mFrontiers = new int[Math.max(16, graph.getEdgeCount())];
+        mFrontierStarts = new int[nodeCount];
+        mFrontierEnds = new int[nodeCount];
+        mLastAddedTo = new int[nodeCount << TYPE_BITS];
+        Arrays.fill(mLastAddedTo, DenseControlFlowGraph.NO_NODE);
+    }
+
+    @NotNull
+    public static ControlDependenceGraph getControlDependenceGraph(
+            @NotNull ControlFlowGraph controlFlowGraph,
+            @NotNull ImmediatePostdominatorTree immediatePostdominatorTree) {
+        DenseControlFlowGraph graph = controlFlowGraph.getDenseGraph();
+        return getControlDependenceGraph(graph, immediatePostdominatorTree.getParentIds(graph));
+    }
+
+    /**
+     * @param immediatePostdominators id of each node's immediate postdominator, or
+     *                                {@link DenseControlFlowGraph#NO_NODE}
+     */
+    @NotNull
+    public static ControlDependenceGraph getControlDependenceGraph(@NotNull DenseControlFlowGraph graph,
+                                                                   @NotNull int[] immediatePostdominators) {
+        PostdominanceFrontier frontier = new PostdominanceFrontier(graph, immediatePostdominators);
+        frontier.computeFrontiers();
+        return frontier.toControlDependenceGraph();
+    }
+
+    private void computeFrontiers() {
+        int nodeCount = mGraph.size();
+        int[] stack = new int[nodeCount];
+        int[] nextChild = new int[nodeCount];
+        boolean[] visited = new boolean[nodeCount];
+        // Start from the roots of the tree, then from any nodes left over because their parents form a cycle.
+        for (int pass = 0; pass < 2; pass++) {
+            for (int root = 0; root < nodeCount; root++) {
+                if (visited[root] ||
+                        (pass == 0 && mImmediatePostdominators[root] != DenseControlFlowGraph.NO_NODE)) {
+                    continue;
+                }
+                int stackSize = 0;
+                stack[stackSize++] = root;
+                visited[root] = true;
+                nextChild[root] = mChildOffsets[root];
+                while (stackSize > 0) {
+                    int node = stack[stackSize - 1];
+                    if (nextChild[node] < mChildOffsets[node + 1]) {
+                        int child = mChildren[nextChild[node]++];
+                        if (!visited[child]) {
+                            visited[child] = true;
+                            nextChild[child] = mChildOffsets[child];
+                            stack[stackSize++] = child;
+                        }
+                    } else {
+                        stackSize--;
+                        computeFrontier(node);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Compute the frontier of a node whose children's frontiers have all been computed.
+     */
+    private void computeFrontier(int node) {
+        mFrontierStarts[node] = mFrontierSize;
+        for (int edge = mGraph.getPredecessorStart(node); edge < mGraph.getPredecessorEnd(node); edge++) {
+            int predecessor = mGraph.getPredecessor(edge);
+            if (mImmediatePostdominators[predecessor] != node) {
+                addToFrontier(node, (predecessor << TYPE_BITS) | mGraph.getPredecessorType(edge).ordinal());
+            }
+        }
+        for (int i = mChildOffsets[node]; i < mChildOffsets[node + 1]; i++) {
+            int child = mChildren[i];
+            for (int j = mFrontierStarts[child]; j < mFrontierEnds[child]; j++) {
+                int controller = mFrontiers[j] >>> TYPE_BITS;
+                if (controller != node && mImmediatePostdominators[controller] != node) {
+                    addToFrontier(node, mFrontiers[j]);
+                }
+            }
+        }
+        mFrontierEnds[node] = mFrontierSize;
+    }
+
+    private void addToFrontier(int node, int entry) {
+        if (mLastAddedTo[entry] == node) {
+            return;
+        }
+        mLastAddedTo[entry] = node;
+        if (mFrontierSize == mFrontiers.length) {
+            mFrontiers = Arrays.copyOf(mFrontiers, mFrontiers.length * 2);
+        }
+        mFrontiers[mFrontierSize++] = entry;
+    }
+
+    @NotNull
+    private ControlDependenceGraph toControlDependenceGraph() {
+        int nodeCount = mGraph.size();
+        int[] dependenceOffsets = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            dependenceOffsets[node + 1] = dependenceOffsets[node] + (mFrontierEnds[node] - mFrontierStarts[node]);
+        }
+        int[] controllers = new int[dependenceOffsets[nodeCount]];
+        byte[] types = new byte[dependenceOffsets[nodeCount]];
+        ControlFlowNode[] nodes = new ControlFlowNode[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            nodes[node] = mGraph.getNode(node);
+            Arrays.sort(mFrontiers, mFrontierStarts[node], mFrontierEnds[node]);
+            int dependence = dependenceOffsets[node];
+            for (int j = mFrontierStarts[node]; j < mFrontierEnds[node]; j++) {
+                controllers[dependence] = mFrontiers[j] >>> TYPE_BITS;
+                types[dependence] = (byte) (mFrontiers[j] & TYPE_MASK);
+                dependence++;
+            }
+        }
+        return new ControlDependenceGraph(Arrays.asList(nodes), dependenceOffsets, controllers, types);
+    }
+}
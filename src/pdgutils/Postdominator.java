@@ -1,3 +1,5 @@
+package pdgutils;
+
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
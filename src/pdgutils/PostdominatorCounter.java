@@ -1,3 +1,5 @@
+package pdgutils;
+
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -1,3 +1,5 @@
+package pdgutils;
+
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
@@ -12,9 +14,12 @@ public class PostdominatorIndex {
         }
     }
 
+    /**
+     * @return the indexed nodes, as a read-only view.
+     */
     @NotNull
     public Set<ControlFlowNode> getNodes() {
-        return mIndex.keySet();
+        return Collections.unmodifiableSet(mIndex.keySet());
     }
 
     public void setPostdominator(@NotNull ControlFlowNode node, @NotNull ControlFlowNode postdominatorNode,
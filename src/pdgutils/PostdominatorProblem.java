@@ -0,0 +1,46 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Postdominator sets as a backward dataflow problem: a node's postdominators are the node itself plus the
+ * postdominators shared by all of its successors.
+ */
+public class PostdominatorProblem implements DataflowProblem<long[]> {
+
+    private final BitsetLattice mLattice;
+
+    public PostdominatorProblem(@NotNull DenseControlFlowGraph graph) {
+        mLattice = new BitsetLattice(graph.size(), BitsetLattice.Meet.INTERSECTION);
+    }
+
+    @NotNull
+    @Override
+    public Direction getDirection() {
+        return Direction.BACKWARD;
+    }
+
+    @NotNull
+    @Override
+    public Lattice<long[]> getLattice() {
+        return mLattice;
+    }
+
+    @NotNull
+    @Override
+    public TransferFunction<long[]> getTransferFunction() {
+        return (node, value) -> BitsetLattice.set(value, node);
+    }
+
+    @Override
+    public int getBoundaryNode(@NotNull DenseControlFlowGraph graph) {
+        return graph.getExitNode();
+    }
+
+    @Override
+    public void setBoundaryValue(@NotNull long[] value) {
+        Arrays.fill(value, 0L);
+    }
+}
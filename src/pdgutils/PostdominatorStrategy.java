@@ -0,0 +1,17 @@
+package pdgutils;
+
+public enum PostdominatorStrategy {
+    /**
+     * Seed every node with all nodes as postdominators and intersect successor sets to a fixpoint. Quadratic in
+     * memory; kept for cross-checking the faster strategies.
+     */
+    SET_INTERSECTION,
+    /**
+     * Intersect postdominator sets stored as bitsets over node ids, keeping only shortest path lengths.
+     */
+    BITSET_INTERSECTION,
+    /**
+     * Build the immediate postdominator tree directly on the reverse control flow graph.
+     */
+    COOPER_HARVEY_KENNEDY
+}
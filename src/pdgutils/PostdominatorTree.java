@@ -0,0 +1,124 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Immutable immediate postdominator tree over the node ids of a {@link DenseControlFlowGraph}. Children are stored as
+ * compressed sparse rows, and nodes are numbered in preorder and postorder so that postdominance is checked in
+ * constant time. Nothing is exposed that can be modified, so a tree can be shared between threads without locking or
+ * copying.
+ * <p>
+ * The exit node and nodes that cannot reach it have no parent and are roots.
+ */
+public class PostdominatorTree {
+
+    private final DenseControlFlowGraph mGraph;
+    private final int[] mParents;
+    private final int[] mChildOffsets;
+    private final int[] mChildren;
+    private final int[] mPreorder;
+    private final int[] mPostorder;
+
+    /**
+     * @param immediatePostdominators id of each node's immediate postdominator, or
+     *                                {@link DenseControlFlowGraph#NO_NODE}. Copied, so the caller may reuse it.
+     */
+    public PostdominatorTree(@NotNull DenseControlFlowGraph graph, @NotNull int[] immediatePostdominators) {
+        int nodeCount = graph.size();
+        mGraph = graph;
+        mParents = Arrays.copyOf(immediatePostdominators, nodeCount);
+        mChildOffsets = new int[nodeCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            if (mParents[node] != DenseControlFlowGraph.NO_NODE) {
+                mChildOffsets[mParents[node] + 1]++;
+            }
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            mChildOffsets[node + 1] += mChildOffsets[node];
+        }
+        mChildren = new int[mChildOffsets[nodeCount]];
+        int[] childFill = new int[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            int parent = mParents[node];
+            if (parent != DenseControlFlowGraph.NO_NODE) {
+                mChildren[mChildOffsets[parent] + childFill[parent]++] = node;
+            }
+        }
+
+        mPreorder = new int[nodeCount];
+        mPostorder = new int[nodeCount];
+        int[] stack = new int[nodeCount];
+        int[] nextChild = new int[nodeCount];
+        int preorderCounter = 0;
+        int postorderCounter = 0;
+        for (int root = 0; root < nodeCount; root++) {
+            if (mParents[root] != DenseControlFlowGraph.NO_NODE) {
+                continue;
+            }
+            int stackSize = 0;
+            stack[stackSize++] = root;
+            mPreorder[root] = preorderCounter++;
+            nextChild[root] = mChildOffsets[root];
+            while (stackSize > 0) {
+                int node = stack[stackSize - 1];
+                if (nextChild[node] < mChildOffsets[node + 1]) {
+                    int child = mChildren[nextChild[node]++];
+                    mPreorder[child] = preorderCounter++;
+                    nextChild[child] = mChildOffsets[child];
+                    stack[stackSize++] = child;
+                } else {
+                    mPostorder[node] = postorderCounter++;
+                    stackSize--;
+                }
+            }
+        }
+    }
+
+    @NotNull
+    public DenseControlFlowGraph getGraph() {
+        return mGraph;
+    }
+
+    public int size() {
+        return mParents.length;
+    }
+
+    /**
+     * @return id of the node's immediate postdominator, or {@link DenseControlFlowGraph#NO_NODE} for roots.
+     */
+    public int getParent(int node) {
+        return mParents[node];
+    }
+
+    public int getChildStart(int node) {
+        return mChildOffsets[node];
+    }
+
+    public int getChildEnd(int node) {
+        return mChildOffsets[node + 1];
+    }
+
+    public int getChild(int index) {
+        return mChildren[index];
+    }
+
+    /**
+     * @return position of the node in a preorder walk of the tree. A node's descendants follow it directly.
+     */
+    public int getPreorderNumber(int node) {
+        return mPreorder[node];
+    }
+
+    public int getPostorderNumber(int node) {
+        return mPostorder[node];
+    }
+
+    /**
+     * @return whether {@code postdominator} is {@code node} or one of its ancestors in the tree.
+     */
+    public boolean isPostdominatedBy(int node, int postdominator) {
+        return mPreorder[postdominator] <= mPreorder[node] && mPostorder[node] <= mPostorder[postdominator];
+    }
+}
@@ -0,0 +1,405 @@
+package pdgutils;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.controlFlow.AnalysisCanceledException;
+import com.intellij.psi.controlFlow.ControlFlow;
+import com.intellij.psi.controlFlow.ControlFlowFactory;
+import com.intellij.psi.controlFlow.ControlFlowPolicy;
+import com.intellij.psi.controlFlow.LocalsOrMyInstanceFieldsControlFlowPolicy;
+import com.intellij.psi.util.CachedValue;
+import com.intellij.psi.util.CachedValueProvider;
+import com.intellij.psi.util.CachedValuesManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Project-level cache of the graphs built for each code block. Each block's graphs live in a {@link CachedValue} that
+ * depends on the block, so they are rebuilt once the containing file's modification stamp changes. A rebuild starts
+ * from the block's previous graphs and lets {@link ControlDependenceUpdater} patch postdominators and control
+ * dependences where the edit left them alone. Blocks are evicted least-recently-used first once there are too many or
+ * their estimated size grows too large.
+ */
+public class ProgramDependenceCache {
+
+    private static final int DEFAULT_MAX_ENTRIES = 512;
+    private static final long DEFAULT_MAX_ESTIMATED_BYTES = 64L * 1024 * 1024;
+
+    private final Project mProject;
+    private final ControlFlowPolicy mPolicy;
+    private final int mMaxEntries;
+    private final long mMaxEstimatedBytes;
+    private final LinkedHashMap<PsiCodeBlock, Slot> mSlots = new LinkedHashMap<>(16, 0.75f, true);
+    private final ControlDependenceUpdater mUpdater = new ControlDependenceUpdater();
+    private long mEstimatedBytes;
+    private long mHits;
+    private long mMisses;
+    private long mEvictions;
+
+    public ProgramDependenceCache(@NotNull Project project) {
+        this(project, LocalsOrMyInstanceFieldsControlFlowPolicy.getInstance(), DEFAULT_MAX_ENTRIES,
+                DEFAULT_MAX_ESTIMATED_BYTES);
+    }
+
+    public ProgramDependenceCache(@NotNull Project project, @NotNull ControlFlowPolicy policy, int maxEntries,
+                                  long maxEstimatedBytes) {
+        mProject = project;
+        mPolicy = policy;
+        mMaxEntries = maxEntries;
+        mMaxEstimatedBytes = maxEstimatedBytes;
+    }
+
+    @NotNull
+    public static ProgramDependenceCache getInstance(@NotNull Project project) {
+        return ServiceManager.getService(project, ProgramDependenceCache.class);
+    }
+
+    /**
+     * Get a block's graphs, building them if they are missing or out of date. Graphs are built outside the cache's
+     * lock, so callers asking for different blocks don't wait for each other.
+     *
+     * @return graphs for the block, or null if IntelliJ couldn't build control flow for it.
+     */
+    @Nullable
+    public Entry get(@NotNull PsiCodeBlock block) {
+        Slot slot;
+        synchronized (this) {
+            if (!block.isValid()) {
+                remove(block);
+                return null;
+            }
+            slot = mSlots.get(block);
+            if (slot != null && slot.mCachedValue.hasUpToDateValue()) {
+                mHits++;
+                return slot.mCachedValue.getValue();
+            }
+            mMisses++;
+            // Edits replace blocks as well as change them, so drop the graphs of blocks that are gone.
+            removeInvalid();
+            if (slot == null) {
+                Slot newSlot = new Slot();
+                newSlot.mCachedValue = CachedValuesManager.getManager(mProject).createCachedValue(() -> {
+                    Entry entry = computeEntry(block, newSlot.mLastEntry);
+                    return CachedValueProvider.Result.create(entry, block);
+                }, false);
+                slot = newSlot;
+                mSlots.put(block, slot);
+            }
+        }
+        Entry entry = slot.mCachedValue.getValue();
+        if (entry != null) {
+            Slot entrySlot = slot;
+            entry.setGrowthListener(() -> account(block, entrySlot));
+        }
+        synchronized (this) {
+            slot.mLastEntry = entry;
+            account(block, slot);
+        }
+        return entry;
+    }
+
+    /**
+     * Get a block's graphs if they are cached and up to date, without building or caching anything, so that callers
+     * going over more blocks than the cache holds don't evict the blocks other callers are working on.
+     *
+     * @return the cached graphs, or null if there are none.
+     */
+    @Nullable
+    public synchronized Entry getIfCached(@NotNull PsiCodeBlock block) {
+        Slot slot = mSlots.get(block);
+        if (slot == null || !block.isValid() || !slot.mCachedValue.hasUpToDateValue()) {
+            return null;
+        }
+        mHits++;
+        return slot.mCachedValue.getValue();
+    }
+
+    /**
+     * Build a block's graphs with this cache's policy, without caching them.
+     *
+     * @return graphs for the block, or null if IntelliJ couldn't build control flow for it.
+     */
+    @Nullable
+    public Entry compute(@NotNull PsiCodeBlock block) {
+        return computeEntry(block, null);
+    }
+
+    /**
+     * Update the estimated size of a block's graphs, which grows as graphs are built lazily, then evict blocks if the
+     * cache has grown too large.
+     */
+    private synchronized void account(@NotNull PsiCodeBlock block, @NotNull Slot slot) {
+        if (mSlots.get(block) != slot) {
+            return;
+        }
+        Entry entry = slot.mLastEntry;
+        long estimatedBytes = (entry != null) ? entry.getEstimatedBytes() : 0;
+        mEstimatedBytes += estimatedBytes - slot.mEstimatedBytes;
+        slot.mEstimatedBytes = estimatedBytes;
+        evict(block);
+    }
+
+    /**
+     * @param lastEntry the block's graphs before it changed, if any
+     */
+    @Nullable
+    private Entry computeEntry(@NotNull PsiCodeBlock block, @Nullable Entry lastEntry) {
+        ControlFlow controlFlow;
+        try {
+            controlFlow = ControlFlowFactory.getInstance(mProject).getControlFlow(block, mPolicy);
+        } catch (AnalysisCanceledException e) {
+            return null;
+        }
+        ControlFlowGraph controlFlowGraph = ControlFlowGraphFactory.getControlFlowGraph(controlFlow);
+        if (lastEntry == null) {
+            return new Entry(controlFlowGraph);
+        }
+        ControlDependenceUpdater.Result result = mUpdater.update(lastEntry.mControlFlowGraph.getDenseGraph(),
+                lastEntry.mImmediatePostdominators, lastEntry.mControlDependenceGraph,
+                controlFlowGraph.getDenseGraph());
+        return new Entry(controlFlowGraph, result.getImmediatePostdominators(), result.getControlDependenceGraph());
+    }
+
+    /**
+     * Evict least-recently-used blocks, other than the one just asked for, until the cache fits its bounds.
+     */
+    private void evict(@NotNull PsiCodeBlock keep) {
+        Iterator<Map.Entry<PsiCodeBlock, Slot>> iterator = mSlots.entrySet().iterator();
+        while (iterator.hasNext() && (mSlots.size() > mMaxEntries || mEstimatedBytes > mMaxEstimatedBytes)) {
+            Map.Entry<PsiCodeBlock, Slot> eldest = iterator.next();
+            if (eldest.getKey() == keep) {
+                continue;
+            }
+            mEstimatedBytes -= eldest.getValue().mEstimatedBytes;
+            iterator.remove();
+            mEvictions++;
+        }
+    }
+
+    private void removeInvalid() {
+        Iterator<Map.Entry<PsiCodeBlock, Slot>> iterator = mSlots.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<PsiCodeBlock, Slot> slot = iterator.next();
+            if (!slot.getKey().isValid()) {
+                mEstimatedBytes -= slot.getValue().mEstimatedBytes;
+                iterator.remove();
+            }
+        }
+    }
+
+    private void remove(@NotNull PsiCodeBlock block) {
+        Slot slot = mSlots.remove(block);
+        if (slot != null) {
+            mEstimatedBytes -= slot.mEstimatedBytes;
+        }
+    }
+
+    public synchronized void clear() {
+        mSlots.clear();
+        mEstimatedBytes = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return mHits;
+    }
+
+    public synchronized long getMissCount() {
+        return mMisses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictions;
+    }
+
+    /**
+     * @return counts of incremental updates of changed blocks and of fallbacks to full rebuilds.
+     */
+    @NotNull
+    public ControlDependenceUpdater getUpdater() {
+        return mUpdater;
+    }
+
+    public synchronized int size() {
+        return mSlots.size();
+    }
+
+    public synchronized long getEstimatedBytes() {
+        return mEstimatedBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "entries=" + mSlots.size() + " estimatedBytes=" + mEstimatedBytes + " hits=" + mHits +
+                " misses=" + mMisses + " evictions=" + mEvictions + " " + mUpdater;
+    }
+
+    private static class Slot {
+
+        private CachedValue<Entry> mCachedValue;
+        // Read by the cached value's provider, which runs outside the cache's lock.
+        private volatile Entry mLastEntry;
+        private long mEstimatedBytes;
+    }
+
+    /**
+     * Graphs for one code block. The postdominator index, postdominator tree and program dependence graph aren't
+     * needed to build the control dependence graph, so they are only computed the first time they are asked for.
+     */
+    public static class Entry {
+
+        private static final long BYTES_PER_NODE = 128;
+        private static final long BYTES_PER_EDGE = 10;
+        private static final long BYTES_PER_DEPENDENCE = 5;
+        // A tree keeps a few int arrays indexed by node.
+        private static final long BYTES_PER_TREE_NODE = 16;
+
+        private final ControlFlowGraph mControlFlowGraph;
+        private final int[] mImmediatePostdominators;
+        private final ControlDependenceGraph mControlDependenceGraph;
+        private ImmediatePostdominatorTree mImmediatePostdominatorTree;
+        private PostdominatorTree mPostdominatorTree;
+        private BitsetPostdominatorIndex mPostdominatorIndex;
+        private ProgramDependenceGraph mProgramDependenceGraph;
+        private volatile Runnable mGrowthListener;
+
+        public Entry(@NotNull ControlFlowGraph controlFlowGraph) {
+            mControlFlowGraph = controlFlowGraph;
+            mImmediatePostdominators =
+                    ImmediatePostdominatorSolver.getImmediatePostdominators(controlFlowGraph.getDenseGraph());
+            mControlDependenceGraph = PostdominanceFrontier.getControlDependenceGraph(controlFlowGraph.getDenseGraph(),
+                    mImmediatePostdominators);
+        }
+
+        private Entry(@NotNull ControlFlowGraph controlFlowGraph, @NotNull int[] immediatePostdominators,
+                      @NotNull ControlDependenceGraph controlDependenceGraph) {
+            mControlFlowGraph = controlFlowGraph;
+            mImmediatePostdominators = immediatePostdominators;
+            mControlDependenceGraph = controlDependenceGraph;
+        }
+
+        @NotNull
+        public ControlFlowGraph getControlFlowGraph() {
+            return mControlFlowGraph;
+        }
+
+        @NotNull
+        public BitsetPostdominatorIndex getPostdominatorIndex() {
+            BitsetPostdominatorIndex result;
+            boolean built = false;
+            synchronized (this) {
+                if (mPostdominatorIndex == null) {
+                    mPostdominatorIndex = BitsetPostdominatorIndex.getPostdominators(mControlFlowGraph);
+                    built = true;
+                }
+                result = mPostdominatorIndex;
+            }
+            if (built) {
+                grown();
+            }
+            return result;
+        }
+
+        @NotNull
+        public ImmediatePostdominatorTree getImmediatePostdominatorTree() {
+            ImmediatePostdominatorTree result;
+            boolean built = false;
+            synchronized (this) {
+                if (mImmediatePostdominatorTree == null) {
+                    mImmediatePostdominatorTree = ImmediatePostdominatorSolver.toTree(mControlFlowGraph.getDenseGraph(),
+                            mImmediatePostdominators);
+                    built = true;
+                }
+                result = mImmediatePostdominatorTree;
+            }
+            if (built) {
+                grown();
+            }
+            return result;
+        }
+
+        /**
+         * @return the immediate postdominator tree as an immutable snapshot that can be shared between threads.
+         */
+        @NotNull
+        public PostdominatorTree getPostdominatorTree() {
+            PostdominatorTree result;
+            boolean built = false;
+            synchronized (this) {
+                if (mPostdominatorTree == null) {
+                    mPostdominatorTree = new PostdominatorTree(mControlFlowGraph.getDenseGraph(),
+                            mImmediatePostdominators);
+                    built = true;
+                }
+                result = mPostdominatorTree;
+            }
+            if (built) {
+                grown();
+            }
+            return result;
+        }
+
+        @NotNull
+        public ControlDependenceGraph getControlDependenceGraph() {
+            return mControlDependenceGraph;
+        }
+
+        @NotNull
+        public ProgramDependenceGraph getProgramDependenceGraph() {
+            ProgramDependenceGraph result;
+            boolean built = false;
+            synchronized (this) {
+                if (mProgramDependenceGraph == null) {
+                    mProgramDependenceGraph = ProgramDependenceGraph.from(mControlDependenceGraph,
+                            DataDependenceGraph.from(mControlFlowGraph));
+                    built = true;
+                }
+                result = mProgramDependenceGraph;
+            }
+            if (built) {
+                grown();
+            }
+            return result;
+        }
+
+        /**
+         * @return rough size of the graphs, including the lazily built ones that have been built so far.
+         */
+        public synchronized long getEstimatedBytes() {
+            DenseControlFlowGraph denseGraph = mControlFlowGraph.getDenseGraph();
+            long bytes = denseGraph.size() * BYTES_PER_NODE + denseGraph.getEdgeCount() * BYTES_PER_EDGE +
+                    mControlDependenceGraph.getDependenceCount() * BYTES_PER_DEPENDENCE;
+            if (mImmediatePostdominatorTree != null) {
+                bytes += denseGraph.size() * BYTES_PER_TREE_NODE;
+            }
+            if (mPostdominatorTree != null) {
+                bytes += denseGraph.size() * BYTES_PER_TREE_NODE;
+            }
+            if (mPostdominatorIndex != null) {
+                bytes += mPostdominatorIndex.getEstimatedBytes();
+            }
+            if (mProgramDependenceGraph != null) {
+                bytes += mProgramDependenceGraph.getEstimatedBytes();
+            }
+            return bytes;
+        }
+
+        /**
+         * Called, outside the entry's lock, each time a lazily built graph makes the entry larger.
+         */
+        void setGrowthListener(@Nullable Runnable listener) {
+            mGrowthListener = listener;
+        }
+
+        private void grown() {
+            Runnable listener = mGrowthListener;
+            if (listener != null) {
+                listener.run();
+            }
+        }
+    }
+}
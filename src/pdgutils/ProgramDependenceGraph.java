@@ -0,0 +1,253 @@
+package pdgutils;
+
+import com.intellij.psi.PsiVariable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Control and data dependences of one method in a single int-indexed edge table. Each edge points from the node that
+ * is depended on (a branch, or a variable write) to the node that depends on it. Edges are sorted by source, so the
+ * outgoing edges of node {@code i} are edges {@code [getOutgoingStart(i), getOutgoingEnd(i))}; incoming edges are
+ * found through a second row index over edge ids. Sources are stored per edge too, so slices walking incoming edges
+ * read them in constant time.
+ * <p>
+ * Each edge takes four ints: source, target, label and its slot in the incoming index. The label packs the edge kind
+ * into its low bit, above which is the {@link ControlFlowEdgeType} ordinal of a control edge or the variable index of a
+ * data edge.
+ */
+public class ProgramDependenceGraph {
+
+    public enum EdgeKind {
+        CONTROL,
+        DATA
+    }
+
+    private static final int KIND_BITS = 1;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+    private static final long ARRAY_HEADER_BYTES = 16;
+    private static final long REFERENCE_BYTES = 8;
+
+    private final List<ControlFlowNode> mNodes;
+    private final List<PsiVariable> mVariables;
+    private final int[] mOutgoingOffsets;
+    private final int[] mSources;
+    private final int[] mTargets;
+    private final int[] mLabels;
+    private final int[] mIncomingOffsets;
+    private final int[] mIncomingEdges;
+
+    private ProgramDependenceGraph(@NotNull List<ControlFlowNode> nodes, @NotNull List<PsiVariable> variables,
+                                   @NotNull int[] edgeSources, @NotNull int[] edgeTargets, @NotNull int[] edgeLabels) {
+        mNodes = nodes;
+        mVariables = variables;
+        int nodeCount = nodes.size();
+        int edgeCount = edgeSources.length;
+        mOutgoingOffsets = new int[nodeCount + 1];
+        mIncomingOffsets = new int[nodeCount + 1];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            mOutgoingOffsets[edgeSources[edge] + 1]++;
+            mIncomingOffsets[edgeTargets[edge] + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            mOutgoingOffsets[node + 1] += mOutgoingOffsets[node];
+            mIncomingOffsets[node + 1] += mIncomingOffsets[node];
+        }
+        mSources = new int[edgeCount];
+        mTargets = new int[edgeCount];
+        mLabels = new int[edgeCount];
+        int[] fill = new int[nodeCount];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int source = edgeSources[edge];
+            int index = mOutgoingOffsets[source] + fill[source]++;
+            mSources[index] = source;
+            mTargets[index] = edgeTargets[edge];
+            mLabels[index] = edgeLabels[edge];
+        }
+        mIncomingEdges = new int[edgeCount];
+        Arrays.fill(fill, 0);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int target = mTargets[edge];
+            mIncomingEdges[mIncomingOffsets[target] + fill[target]++] = edge;
+        }
+    }
+
+    @NotNull
+    public static ProgramDependenceGraph from(@NotNull ControlFlowGraph controlFlowGraph) {
+        DenseControlFlowGraph graph = controlFlowGraph.getDenseGraph();
+        ControlDependenceGraph controlDependenceGraph = PostdominanceFrontier.getControlDependenceGraph(graph,
+                ImmediatePostdominatorSolver.getImmediatePostdominators(graph));
+        return from(controlDependenceGraph, DataDependenceGraph.from(graph));
+    }
+
+    /**
+     * Combine control and data dependences computed over the same nodes.
+     */
+    @NotNull
+    public static ProgramDependenceGraph from(@NotNull ControlDependenceGraph controlDependenceGraph,
+                                              @NotNull DataDependenceGraph dataDependenceGraph) {
+        if (controlDependenceGraph.size() != dataDependenceGraph.size()) {
+            throw new IllegalArgumentException("Control and data dependences are over different nodes");
+        }
+        int edgeCount = controlDependenceGraph.getDependenceCount() + dataDependenceGraph.getDependenceCount();
+        int[] sources = new int[edgeCount];
+        int[] targets = new int[edgeCount];
+        int[] labels = new int[edgeCount];
+        int edge = 0;
+        for (int node = 0; node < controlDependenceGraph.size(); node++) {
+            for (int dependence = controlDependenceGraph.getDependenceStart(node);
+                 dependence < controlDependenceGraph.getDependenceEnd(node); dependence++) {
+                sources[edge] = controlDependenceGraph.getDependenceTarget(dependence);
+                targets[edge] = node;
+                labels[edge] = pack(EdgeKind.CONTROL, controlDependenceGraph.getDependenceType(dependence).ordinal());
+                edge++;
+            }
+        }
+        for (int node = 0; node < dataDependenceGraph.size(); node++) {
+            for (int dependence = dataDependenceGraph.getDependenceStart(node);
+                 dependence < dataDependenceGraph.getDependenceEnd(node); dependence++) {
+                sources[edge] = dataDependenceGraph.getDependenceTarget(dependence);
+                targets[edge] = node;
+                labels[edge] = pack(EdgeKind.DATA, dataDependenceGraph.getDependenceVariableIndex(dependence));
+                edge++;
+            }
+        }
+        return new ProgramDependenceGraph(controlDependenceGraph.getNodes(), dataDependenceGraph.getVariables(),
+                sources, targets, labels);
+    }
+
+    private static int pack(@NotNull EdgeKind kind, int value) {
+        return (value << KIND_BITS) | kind.ordinal();
+    }
+
+    public int size() {
+        return mNodes.size();
+    }
+
+    @NotNull
+    public List<ControlFlowNode> getNodes() {
+        return mNodes;
+    }
+
+    @NotNull
+    public ControlFlowNode getNode(int node) {
+        return mNodes.get(node);
+    }
+
+    @NotNull
+    public List<PsiVariable> getVariables() {
+        return mVariables;
+    }
+
+    public int getEdgeCount() {
+        return mTargets.length;
+    }
+
+    public int getOutgoingStart(int node) {
+        return mOutgoingOffsets[node];
+    }
+
+    public int getOutgoingEnd(int node) {
+        return mOutgoingOffsets[node + 1];
+    }
+
+    public int getIncomingStart(int node) {
+        return mIncomingOffsets[node];
+    }
+
+    public int getIncomingEnd(int node) {
+        return mIncomingOffsets[node + 1];
+    }
+
+    /**
+     * @param index an index in {@code [getIncomingStart(node), getIncomingEnd(node))}
+     * @return id of the incoming edge at that index.
+     */
+    public int getIncomingEdge(int index) {
+        return mIncomingEdges[index];
+    }
+
+    /**
+     * @return the node that is depended on.
+     */
+    public int getEdgeSource(int edge) {
+        return mSources[edge];
+    }
+
+    /**
+     * @return the node that depends on the source.
+     */
+    public int getEdgeTarget(int edge) {
+        return mTargets[edge];
+    }
+
+    @NotNull
+    public EdgeKind getEdgeKind(int edge) {
+        return ((mLabels[edge] & KIND_MASK) == EdgeKind.CONTROL.ordinal()) ? EdgeKind.CONTROL : EdgeKind.DATA;
+    }
+
+    /**
+     * @return the type of control flow edge a control dependence was found on.
+     */
+    @NotNull
+    public ControlFlowEdgeType getControlFlowEdgeType(int edge) {
+        if (getEdgeKind(edge) != EdgeKind.CONTROL) {
+            throw new IllegalArgumentException("Edge " + edge + " is not a control dependence");
+        }
+        return ControlFlowEdgeType.fromOrdinal(mLabels[edge] >>> KIND_BITS);
+    }
+
+    /**
+     * @return the variable a data dependence carries.
+     */
+    @NotNull
+    public PsiVariable getVariable(int edge) {
+        if (getEdgeKind(edge) != EdgeKind.DATA) {
+            throw new IllegalArgumentException("Edge " + edge + " is not a data dependence");
+        }
+        return mVariables.get(mLabels[edge] >>> KIND_BITS);
+    }
+
+    /**
+     * @return bytes held by the arrays of this graph, not counting the nodes and variables themselves.
+     */
+    public long getEstimatedBytes() {
+        return getIntArrayBytes(mOutgoingOffsets.length) + getIntArrayBytes(mIncomingOffsets.length) +
+                getIntArrayBytes(mSources.length) + getIntArrayBytes(mTargets.length) +
+                getIntArrayBytes(mLabels.length) + getIntArrayBytes(mIncomingEdges.length) +
+                ARRAY_HEADER_BYTES + mNodes.size() * REFERENCE_BYTES;
+    }
+
+    /**
+     * @return bytes used for each edge, leaving out the per-node row offsets.
+     */
+    public static long getBytesPerEdge() {
+        return 4 * Integer.BYTES;
+    }
+
+    private static long getIntArrayBytes(int length) {
+        return ARRAY_HEADER_BYTES + (long) length * Integer.BYTES;
+    }
+
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < mNodes.size(); i++) {
+            ControlFlowNode node = mNodes.get(i);
+            buffer.append(Integer.toString(i));
+            buffer.append(": ");
+            buffer.append(node.getInstruction().getClass().getSimpleName().replace("Instruction", ""));
+            buffer.append(" ->");
+            for (int edge = getOutgoingStart(i); edge < getOutgoingEnd(i); edge++) {
+                buffer.append(" ").append(getEdgeTarget(edge)).append(".");
+                if (getEdgeKind(edge) == EdgeKind.CONTROL) {
+                    buffer.append(getControlFlowEdgeType(edge));
+                } else {
+                    buffer.append(getVariable(edge).getName());
+                }
+            }
+            buffer.append("\n");
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,208 @@
+package pdgutils;
+
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Slices a {@link ProgramDependenceGraph}. A backward slice holds every node the seeds depend on, directly or through
+ * other nodes; a forward slice holds every node that depends on the seeds.
+ * <p>
+ * The worklist and visited bitset are allocated once per slicer and cleared after each query by walking only the
+ * nodes that query visited, so repeated queries over the same graph don't allocate. A slicer is not thread-safe.
+ */
+public class ProgramSlicer {
+
+    public enum Direction {
+        BACKWARD,
+        FORWARD
+    }
+
+    /**
+     * Number of seeds whose slices {@link #sliceEach} can compute in one traversal.
+     */
+    public static final int MAX_BATCH_SIZE = Long.SIZE;
+
+    private final ProgramDependenceGraph mGraph;
+    private final int[] mWorklist;
+    private final long[] mVisited;
+    // Ids of the graph's nodes, built the first time seeds are given as nodes.
+    private Map<ControlFlowNode, Integer> mIds;
+
+    public ProgramSlicer(@NotNull ProgramDependenceGraph graph) {
+        mGraph = graph;
+        mWorklist = new int[graph.size()];
+        mVisited = new long[BitsetLattice.getWordCount(graph.size())];
+    }
+
+    @NotNull
+    public ProgramDependenceGraph getGraph() {
+        return mGraph;
+    }
+
+    /**
+     * Compute the slice of all seeds together in one traversal.
+     *
+     * @param seeds     ids of the seed nodes, in the first {@code seedCount} entries
+     * @param slice     receives the ids of the nodes in the slice, in the order they were found. Must have room for
+     *                  {@link ProgramDependenceGraph#size()} nodes.
+     * @return the number of nodes in the slice, seeds included.
+     */
+    public int slice(@NotNull int[] seeds, int seedCount, @NotNull Direction direction, @NotNull int[] slice) {
+        int tail = 0;
+        for (int i = 0; i < seedCount; i++) {
+            int seed = seeds[i];
+            if (!BitsetLattice.get(mVisited, seed)) {
+                BitsetLattice.set(mVisited, seed);
+                mWorklist[tail++] = seed;
+            }
+        }
+        int head = 0;
+        while (head < tail) {
+            int node = mWorklist[head++];
+            if (direction == Direction.BACKWARD) {
+                for (int i = mGraph.getIncomingStart(node); i < mGraph.getIncomingEnd(node); i++) {
+                    int next = mGraph.getEdgeSource(mGraph.getIncomingEdge(i));
+                    if (!BitsetLattice.get(mVisited, next)) {
+                        BitsetLattice.set(mVisited, next);
+                        mWorklist[tail++] = next;
+                    }
+                }
+            } else {
+                for (int edge = mGraph.getOutgoingStart(node); edge < mGraph.getOutgoingEnd(node); edge++) {
+                    int next = mGraph.getEdgeTarget(edge);
+                    if (!BitsetLattice.get(mVisited, next)) {
+                        BitsetLattice.set(mVisited, next);
+                        mWorklist[tail++] = next;
+                    }
+                }
+            }
+        }
+        // Every visited node went through the worklist, so clearing their bits leaves the bitset empty.
+        for (int i = 0; i < tail; i++) {
+            mVisited[mWorklist[i] >>> 6] = 0L;
+        }
+        System.arraycopy(mWorklist, 0, slice, 0, tail);
+        return tail;
+    }
+
+    /**
+     * Compute the slice of each seed separately, all in one traversal. Bit {@code i} of a node's mask is set if the
+     * node is in the slice of {@code seeds[i]}.
+     *
+     * @param seedCount at most {@link #MAX_BATCH_SIZE}
+     * @param masks     receives a mask for every node. Must have room for {@link ProgramDependenceGraph#size()} masks.
+     */
+    public void sliceEach(@NotNull int[] seeds, int seedCount, @NotNull Direction direction, @NotNull long[] masks) {
+        if (seedCount > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Can't slice more than " + MAX_BATCH_SIZE + " seeds at once");
+        }
+        Arrays.fill(masks, 0, mGraph.size(), 0L);
+        // The worklist is used as a ring buffer. The visited bitset marks the nodes that are in it.
+        int nodeCount = mGraph.size();
+        int head = 0;
+        int size = 0;
+        for (int i = 0; i < seedCount; i++) {
+            int seed = seeds[i];
+            masks[seed] |= 1L << i;
+            if (!BitsetLattice.get(mVisited, seed)) {
+                BitsetLattice.set(mVisited, seed);
+                mWorklist[(head + size++) % nodeCount] = seed;
+            }
+        }
+        while (size > 0) {
+            int node = mWorklist[head];
+            head = (head + 1) % nodeCount;
+            size--;
+            mVisited[node >>> 6] &= ~(1L << node);
+            long mask = masks[node];
+            if (direction == Direction.BACKWARD) {
+                for (int i = mGraph.getIncomingStart(node); i < mGraph.getIncomingEnd(node); i++) {
+                    int next = mGraph.getEdgeSource(mGraph.getIncomingEdge(i));
+                    if ((masks[next] | mask) != masks[next]) {
+                        masks[next] |= mask;
+                        if (!BitsetLattice.get(mVisited, next)) {
+                            BitsetLattice.set(mVisited, next);
+                            mWorklist[(head + size++) % nodeCount] = next;
+                        }
+                    }
+                }
+            } else {
+                for (int edge = mGraph.getOutgoingStart(node); edge < mGraph.getOutgoingEnd(node); edge++) {
+                    int next = mGraph.getEdgeTarget(edge);
+                    if ((masks[next] | mask) != masks[next]) {
+                        masks[next] |= mask;
+                        if (!BitsetLattice.get(mVisited, next)) {
+                            BitsetLattice.set(mVisited, next);
+                            mWorklist[(head + size++) % nodeCount] = next;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the slice of the seed nodes, which must belong to this slicer's graph.
+     */
+    @NotNull
+    public Set<ControlFlowNode> slice(@NotNull Collection<ControlFlowNode> seeds, @NotNull Direction direction) {
+        if (mIds == null) {
+            mIds = new IdentityHashMap<>(mGraph.size());
+            for (int node = 0; node < mGraph.size(); node++) {
+                mIds.put(mGraph.getNode(node), node);
+            }
+        }
+        int[] seedIds = new int[seeds.size()];
+        int seedCount = 0;
+        for (ControlFlowNode seed : seeds) {
+            Integer id = mIds.get(seed);
+            if (id == null) {
+                throw new IllegalArgumentException("Seed " + seed + " is not in the sliced graph");
+            }
+            seedIds[seedCount++] = id;
+        }
+        return toNodes(seedIds, seedCount, direction);
+    }
+
+    /**
+     * @return the slice of every node whose element is one of {@code elements} or inside one of them.
+     */
+    @NotNull
+    public Set<ControlFlowNode> sliceElements(@NotNull Collection<? extends PsiElement> elements,
+                                              @NotNull Direction direction) {
+        int[] seedIds = new int[mGraph.size()];
+        int seedCount = 0;
+        for (int node = 0; node < mGraph.size(); node++) {
+            PsiElement element = mGraph.getNode(node).getElement();
+            if (element == null) {
+                continue;
+            }
+            for (PsiElement seed : elements) {
+                if (PsiTreeUtil.isAncestor(seed, element, false)) {
+                    seedIds[seedCount++] = node;
+                    break;
+                }
+            }
+        }
+        return toNodes(seedIds, seedCount, direction);
+    }
+
+    @NotNull
+    private Set<ControlFlowNode> toNodes(@NotNull int[] seeds, int seedCount, @NotNull Direction direction) {
+        int[] slice = new int[mGraph.size()];
+        int sliceSize = slice(seeds, seedCount, direction, slice);
+        Set<ControlFlowNode> nodes = new LinkedHashSet<>();
+        for (int i = 0; i < sliceSize; i++) {
+            nodes.add(mGraph.getNode(slice[i]));
+        }
+        return nodes;
+    }
+}
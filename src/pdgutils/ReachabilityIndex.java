@@ -0,0 +1,380 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Precomputed answers to "is there a path from node {@code a} to node {@code b}?" over a control flow graph, or over a
+ * control dependence graph, where a path means {@code a} is transitively control dependent on {@code b}.
+ * <p>
+ * The transitive closure is compressed with the interval scheme of "Efficient Management of Transitive Relationships
+ * in Large Data and Knowledge Bases" by Agrawal, Borgida and Jagadish. Strongly connected components are collapsed,
+ * the components are numbered in postorder along a spanning forest, and each component stores the sorted, disjoint
+ * intervals of postorder numbers it can reach. A query is a binary search in one list. Structured code reaches long
+ * runs of consecutive numbers, so most lists hold a handful of intervals.
+ * <p>
+ * If the intervals of a large graph would take more than the memory budget, building stops and queries fall back to a
+ * depth-first search of the condensed graph, pruned two ways: a component can only reach components with lower
+ * numbers, and it reaches everything below it in the spanning forest. Postdominance, the other common query, is
+ * answered in constant time by {@link PostdominatorTree}.
+ * <p>
+ * An index is immutable once built, apart from the scratch space of the fallback search, which is guarded by a lock.
+ */
+public class ReachabilityIndex {
+
+    public static final int DEFAULT_MAX_INTERVALS = 1 << 20;
+
+    private static final int BYTES_PER_INTERVAL = 8;
+    // A component and an offset per node, and a target per edge.
+    private static final int BYTES_PER_NODE = 8;
+    private static final int BYTES_PER_EDGE = 4;
+    // A postorder number, a low, a condensed edge offset and an interval offset, or a worklist slot once the
+    // intervals are dropped, plus the cyclic flag.
+    private static final int BYTES_PER_COMPONENT = 4 * 4 + 1;
+
+    private final int[] mOffsets;
+    private final int[] mTargets;
+    private final int[] mComponents;
+    private final boolean[] mCyclic;
+    private final int[] mComponentOffsets;
+    private final int[] mComponentTargets;
+    private final int[] mLows;
+    private final int[] mPostorder;
+    private final int[] mIntervalOffsets;
+    private final int[] mIntervalStarts;
+    private final int[] mIntervalEnds;
+    private int[] mWorklist;
+    private long[] mVisited;
+
+    /**
+     * @param offsets      the edges of node {@code i} are {@code targets[offsets[i]]} up to
+     *                     {@code targets[offsets[i + 1]]}
+     * @param maxIntervals intervals to store before falling back to searching
+     */
+    ReachabilityIndex(@NotNull int[] offsets, @NotNull int[] targets, int maxIntervals) {
+        mOffsets = offsets;
+        mTargets = targets;
+        int nodeCount = offsets.length - 1;
+        mComponents = new int[nodeCount];
+        int componentCount = findComponents();
+        mCyclic = new boolean[componentCount];
+
+        // Condense the graph. Components are already numbered so that edges only lead to lower numbers.
+        int[] componentOffsets = new int[componentCount + 1];
+        for (int node = 0; node < nodeCount; node++) {
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                if (mComponents[targets[edge]] != mComponents[node]) {
+                    componentOffsets[mComponents[node] + 1]++;
+                } else {
+                    mCyclic[mComponents[node]] = true;
+                }
+            }
+        }
+        for (int component = 0; component < componentCount; component++) {
+            componentOffsets[component + 1] += componentOffsets[component];
+        }
+        int[] componentTargets = new int[componentOffsets[componentCount]];
+        int[] fill = Arrays.copyOf(componentOffsets, componentCount);
+        for (int node = 0; node < nodeCount; node++) {
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                if (mComponents[targets[edge]] != mComponents[node]) {
+                    componentTargets[fill[mComponents[node]]++] = mComponents[targets[edge]];
+                }
+            }
+        }
+
+        mComponentOffsets = componentOffsets;
+        mComponentTargets = componentTargets;
+        mPostorder = new int[componentCount];
+        mLows = new int[componentCount];
+        numberSpanningForest();
+        int[] lows = mLows;
+
+        // Successors have lower component numbers, so their intervals are done before they are merged.
+        int[] intervalOffsets = new int[componentCount + 1];
+        int[] starts = new int[Math.max(16, componentCount)];
+        int[] ends = new int[starts.length];
+        long[] scratch = new long[16];
+        int intervalCount = 0;
+        boolean withinBudget = true;
+        for (int component = 0; component < componentCount && withinBudget; component++) {
+            int scratchSize = 0;
+            scratch[scratchSize++] = ((long) lows[component] << 32) | mPostorder[component];
+            for (int edge = componentOffsets[component]; edge < componentOffsets[component + 1]; edge++) {
+                int successor = componentTargets[edge];
+                int successorIntervals = intervalOffsets[successor + 1] - intervalOffsets[successor];
+                if (scratchSize + successorIntervals > scratch.length) {
+                    scratch = Arrays.copyOf(scratch, Math.max(scratch.length * 2, scratchSize + successorIntervals));
+                }
+                for (int i = intervalOffsets[successor]; i < intervalOffsets[successor + 1]; i++) {
+                    scratch[scratchSize++] = ((long) starts[i] << 32) | ends[i];
+                }
+            }
+            Arrays.sort(scratch, 0, scratchSize);
+            for (int i = 0; i < scratchSize; i++) {
+                int start = (int) (scratch[i] >>> 32);
+                int end = (int) scratch[i];
+                if (intervalCount > intervalOffsets[component] && start <= ends[intervalCount - 1] + 1) {
+                    ends[intervalCount - 1] = Math.max(ends[intervalCount - 1], end);
+                    continue;
+                }
+                if (intervalCount == maxIntervals) {
+                    withinBudget = false;
+                    break;
+                }
+                if (intervalCount == starts.length) {
+                    starts = Arrays.copyOf(starts, Math.min(intervalCount * 2, maxIntervals));
+                    ends = Arrays.copyOf(ends, starts.length);
+                }
+                starts[intervalCount] = start;
+                ends[intervalCount] = end;
+                intervalCount++;
+            }
+            intervalOffsets[component + 1] = intervalCount;
+        }
+        if (withinBudget) {
+            mIntervalOffsets = intervalOffsets;
+            mIntervalStarts = Arrays.copyOf(starts, intervalCount);
+            mIntervalEnds = Arrays.copyOf(ends, intervalCount);
+        } else {
+            mIntervalOffsets = null;
+            mIntervalStarts = null;
+            mIntervalEnds = null;
+        }
+    }
+
+    @NotNull
+    public static ReachabilityIndex forControlFlow(@NotNull DenseControlFlowGraph graph) {
+        return forControlFlow(graph, DEFAULT_MAX_INTERVALS);
+    }
+
+    @NotNull
+    public static ReachabilityIndex forControlFlow(@NotNull DenseControlFlowGraph graph, int maxIntervals) {
+        int[] offsets = new int[graph.size() + 1];
+        for (int node = 0; node < graph.size(); node++) {
+            offsets[node + 1] = graph.getSuccessorEnd(node);
+        }
+        int[] targets = new int[graph.getEdgeCount()];
+        for (int edge = 0; edge < targets.length; edge++) {
+            targets[edge] = graph.getSuccessor(edge);
+        }
+        return new ReachabilityIndex(offsets, targets, maxIntervals);
+    }
+
+    /**
+     * Index the graph in which each node has an edge to every node it is control dependent on.
+     */
+    @NotNull
+    public static ReachabilityIndex forControlDependences(@NotNull ControlDependenceGraph graph) {
+        return forControlDependences(graph, DEFAULT_MAX_INTERVALS);
+    }
+
+    @NotNull
+    public static ReachabilityIndex forControlDependences(@NotNull ControlDependenceGraph graph, int maxIntervals) {
+        int[] offsets = new int[graph.size() + 1];
+        for (int node = 0; node < graph.size(); node++) {
+            offsets[node + 1] = graph.getDependenceEnd(node);
+        }
+        int[] targets = new int[graph.getDependenceCount()];
+        for (int dependence = 0; dependence < targets.length; dependence++) {
+            targets[dependence] = graph.getDependenceTarget(dependence);
+        }
+        return new ReachabilityIndex(offsets, targets, maxIntervals);
+    }
+
+    /**
+     * Tarjan's algorithm, iteratively. Components are numbered in the order they are completed, which is a reverse
+     * topological order of the condensed graph.
+     *
+     * @return the number of components.
+     */
+    private int findComponents() {
+        int nodeCount = mComponents.length;
+        int[] indexes = new int[nodeCount];
+        int[] lowLinks = new int[nodeCount];
+        Arrays.fill(indexes, -1);
+        Arrays.fill(mComponents, -1);
+        int[] callStack = new int[nodeCount];
+        int[] nextEdge = new int[nodeCount];
+        int[] componentStack = new int[nodeCount];
+        int componentStackSize = 0;
+        int index = 0;
+        int componentCount = 0;
+        for (int root = 0; root < nodeCount; root++) {
+            if (indexes[root] != -1) {
+                continue;
+            }
+            int callStackSize = 0;
+            callStack[callStackSize++] = root;
+            indexes[root] = lowLinks[root] = index++;
+            nextEdge[root] = mOffsets[root];
+            componentStack[componentStackSize++] = root;
+            while (callStackSize > 0) {
+                int node = callStack[callStackSize - 1];
+                if (nextEdge[node] < mOffsets[node + 1]) {
+                    int successor = mTargets[nextEdge[node]++];
+                    if (indexes[successor] == -1) {
+                        indexes[successor] = lowLinks[successor] = index++;
+                        nextEdge[successor] = mOffsets[successor];
+                        componentStack[componentStackSize++] = successor;
+                        callStack[callStackSize++] = successor;
+                    } else if (mComponents[successor] == -1) {
+                        lowLinks[node] = Math.min(lowLinks[node], indexes[successor]);
+                    }
+                    continue;
+                }
+                callStackSize--;
+                if (callStackSize > 0) {
+                    int parent = callStack[callStackSize - 1];
+                    lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[node]);
+                }
+                if (lowLinks[node] == indexes[node]) {
+                    int member;
+                    do {
+                        member = componentStack[--componentStackSize];
+                        mComponents[member] = componentCount;
+                    } while (member != node);
+                    componentCount++;
+                }
+            }
+        }
+        return componentCount;
+    }
+
+    /**
+     * Number components in postorder along a depth-first spanning forest of the condensed graph. A component's tree
+     * descendants are then exactly the numbers {@code [lows[c], postorder[c]]}.
+     */
+    private void numberSpanningForest() {
+        int[] offsets = mComponentOffsets;
+        int[] targets = mComponentTargets;
+        int[] lows = mLows;
+        int componentCount = mPostorder.length;
+        boolean[] visited = new boolean[componentCount];
+        int[] stack = new int[componentCount];
+        int[] nextEdge = new int[componentCount];
+        int counter = 0;
+        // Roots are tried from the highest number, so that sources come first and trees are large.
+        for (int root = componentCount - 1; root >= 0; root--) {
+            if (visited[root]) {
+                continue;
+            }
+            int stackSize = 0;
+            stack[stackSize++] = root;
+            visited[root] = true;
+            lows[root] = counter;
+            nextEdge[root] = offsets[root];
+            while (stackSize > 0) {
+                int component = stack[stackSize - 1];
+                if (nextEdge[component] < offsets[component + 1]) {
+                    int successor = targets[nextEdge[component]++];
+                    if (!visited[successor]) {
+                        visited[successor] = true;
+                        lows[successor] = counter;
+                        nextEdge[successor] = offsets[successor];
+                        stack[stackSize++] = successor;
+                    }
+                } else {
+                    mPostorder[component] = counter++;
+                    stackSize--;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return mComponents.length;
+    }
+
+    /**
+     * @return whether there is a path of one or more edges from {@code from} to {@code to}.
+     */
+    public boolean reaches(int from, int to) {
+        int fromComponent = mComponents[from];
+        int toComponent = mComponents[to];
+        if (fromComponent == toComponent) {
+            return mCyclic[fromComponent];
+        }
+        if (toComponent > fromComponent) {
+            return false;
+        }
+        if (mIntervalOffsets == null) {
+            return search(fromComponent, toComponent);
+        }
+        int target = mPostorder[toComponent];
+        int low = mIntervalOffsets[fromComponent];
+        int high = mIntervalOffsets[fromComponent + 1] - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (mIntervalEnds[middle] < target) {
+                low = middle + 1;
+            } else if (mIntervalStarts[middle] > target) {
+                high = middle - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether queries are answered from the compressed closure rather than by searching.
+     */
+    public boolean isCompressed() {
+        return mIntervalOffsets != null;
+    }
+
+    public int getIntervalCount() {
+        return (mIntervalStarts != null) ? mIntervalStarts.length : 0;
+    }
+
+    /**
+     * @return rough size of the index, including the copy of the graph's edges it keeps.
+     */
+    public long getEstimatedBytes() {
+        return (long) mComponents.length * BYTES_PER_NODE + (long) mTargets.length * BYTES_PER_EDGE +
+                (long) mPostorder.length * BYTES_PER_COMPONENT + (long) mComponentTargets.length * BYTES_PER_EDGE +
+                (long) getIntervalCount() * BYTES_PER_INTERVAL;
+    }
+
+    /**
+     * @return whether one component reaches another with a lower number.
+     */
+    private synchronized boolean search(int fromComponent, int toComponent) {
+        int componentCount = mPostorder.length;
+        if (mWorklist == null) {
+            mWorklist = new int[componentCount];
+            mVisited = new long[BitsetLattice.getWordCount(componentCount)];
+        }
+        int target = mPostorder[toComponent];
+        int stackSize = 0;
+        int visitedCount = 0;
+        boolean found = false;
+        mWorklist[stackSize++] = fromComponent;
+        BitsetLattice.set(mVisited, fromComponent);
+        // Visited components are kept at the end of the worklist, so their bits can be cleared afterwards.
+        while (stackSize > 0) {
+            int component = mWorklist[--stackSize];
+            mWorklist[componentCount - 1 - visitedCount++] = component;
+            if (mLows[component] <= target && target <= mPostorder[component]) {
+                found = true;
+                break;
+            }
+            for (int edge = mComponentOffsets[component]; edge < mComponentOffsets[component + 1]; edge++) {
+                int successor = mComponentTargets[edge];
+                if (successor >= toComponent && !BitsetLattice.get(mVisited, successor)) {
+                    BitsetLattice.set(mVisited, successor);
+                    mWorklist[stackSize++] = successor;
+                }
+            }
+        }
+        for (int i = 0; i < stackSize; i++) {
+            mVisited[mWorklist[i] >>> 6] = 0L;
+        }
+        for (int i = 0; i < visitedCount; i++) {
+            mVisited[mWorklist[componentCount - 1 - i] >>> 6] = 0L;
+        }
+        return found;
+    }
+}
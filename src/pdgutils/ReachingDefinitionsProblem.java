@@ -0,0 +1,140 @@
+package pdgutils;
+
+import com.intellij.psi.PsiVariable;
+import com.intellij.psi.controlFlow.WriteVariableInstruction;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reaching definitions as a forward dataflow problem over bitsets of definition ids. Every
+ * {@link WriteVariableInstruction} is a definition. A definition kills all other definitions of the same variable, using
+ * one precomputed bitset per variable.
+ */
+public class ReachingDefinitionsProblem implements DataflowProblem<long[]> {
+
+    private final int[] mDefinitionNodes;
+    private final int[] mNodeDefinitions;
+    private final int[] mDefinitionVariables;
+    private final List<PsiVariable> mVariables = new ArrayList<>();
+    private final Map<PsiVariable, Integer> mVariableIndexes = new HashMap<>();
+    private final long[][] mVariableDefinitions;
+    private final BitsetLattice mLattice;
+
+    public ReachingDefinitionsProblem(@NotNull DenseControlFlowGraph graph) {
+        mNodeDefinitions = new int[graph.size()];
+        Arrays.fill(mNodeDefinitions, DenseControlFlowGraph.NO_NODE);
+        int definitionCount = 0;
+        for (int node = 0; node < graph.size(); node++) {
+            if (graph.getNode(node).getInstruction() instanceof WriteVariableInstruction) {
+                mNodeDefinitions[node] = definitionCount++;
+            }
+        }
+        mDefinitionNodes = new int[definitionCount];
+        mDefinitionVariables = new int[definitionCount];
+        for (int node = 0; node < graph.size(); node++) {
+            int definition = mNodeDefinitions[node];
+            if (definition != DenseControlFlowGraph.NO_NODE) {
+                mDefinitionNodes[definition] = node;
+                PsiVariable variable = ((WriteVariableInstruction) graph.getNode(node).getInstruction()).variable;
+                mDefinitionVariables[definition] = getOrAddVariableIndex(variable);
+            }
+        }
+        mLattice = new BitsetLattice(definitionCount, BitsetLattice.Meet.UNION);
+        mVariableDefinitions = new long[mVariables.size()][];
+        for (int variable = 0; variable < mVariables.size(); variable++) {
+            mVariableDefinitions[variable] = new long[BitsetLattice.getWordCount(definitionCount)];
+        }
+        for (int definition = 0; definition < definitionCount; definition++) {
+            BitsetLattice.set(mVariableDefinitions[mDefinitionVariables[definition]], definition);
+        }
+    }
+
+    private int getOrAddVariableIndex(@NotNull PsiVariable variable) {
+        Integer index = mVariableIndexes.get(variable);
+        if (index == null) {
+            index = mVariables.size();
+            mVariables.add(variable);
+            mVariableIndexes.put(variable, index);
+        }
+        return index;
+    }
+
+    public int getDefinitionCount() {
+        return mDefinitionNodes.length;
+    }
+
+    /**
+     * @return id of the node that makes a definition.
+     */
+    public int getDefinitionNode(int definition) {
+        return mDefinitionNodes[definition];
+    }
+
+    public int getDefinitionVariable(int definition) {
+        return mDefinitionVariables[definition];
+    }
+
+    /**
+     * @return bitset of the definitions of a variable in {@link #getVariables()}.
+     */
+    @NotNull
+    public long[] getVariableDefinitions(int variable) {
+        return mVariableDefinitions[variable];
+    }
+
+    @NotNull
+    public List<PsiVariable> getVariables() {
+        return mVariables;
+    }
+
+    /**
+     * @return index of a variable in {@link #getVariables()}, or -1 if it is never defined.
+     */
+    public int getVariableIndex(@Nullable PsiVariable variable) {
+        Integer index = mVariableIndexes.get(variable);
+        return (index != null) ? index : -1;
+    }
+
+    @NotNull
+    @Override
+    public Direction getDirection() {
+        return Direction.FORWARD;
+    }
+
+    @NotNull
+    @Override
+    public Lattice<long[]> getLattice() {
+        return mLattice;
+    }
+
+    @NotNull
+    @Override
+    public TransferFunction<long[]> getTransferFunction() {
+        return (node, value) -> {
+            int definition = mNodeDefinitions[node];
+            if (definition != DenseControlFlowGraph.NO_NODE) {
+                long[] killed = mVariableDefinitions[mDefinitionVariables[definition]];
+                for (int word = 0; word < value.length; word++) {
+                    value[word] &= ~killed[word];
+                }
+                BitsetLattice.set(value, definition);
+            }
+        };
+    }
+
+    @Override
+    public int getBoundaryNode(@NotNull DenseControlFlowGraph graph) {
+        return (graph.size() > 0) ? 0 : DenseControlFlowGraph.NO_NODE;
+    }
+
+    @Override
+    public void setBoundaryValue(@NotNull long[] value) {
+        Arrays.fill(value, 0L);
+    }
+}
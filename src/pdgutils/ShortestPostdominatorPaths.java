@@ -1,3 +1,5 @@
+package pdgutils;
+
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
@@ -0,0 +1,36 @@
+package pdgutils;
+
+import com.intellij.psi.controlFlow.SimpleInstruction;
+
+/**
+ * Stands in for a run of straight-line instructions that were consolidated into one basic block.
+ */
+public class StatementInstruction extends SimpleInstruction {
+
+    private final int mStartOffset;
+    private final int mEndOffset;
+
+    public StatementInstruction(int startOffset, int endOffset) {
+        mStartOffset = startOffset;
+        mEndOffset = endOffset;
+    }
+
+    /**
+     * @return offset of the first consolidated instruction.
+     */
+    public int getStartOffset() {
+        return mStartOffset;
+    }
+
+    /**
+     * @return offset just past the last consolidated instruction.
+     */
+    public int getEndOffset() {
+        return mEndOffset;
+    }
+
+    @Override
+    public String toString() {
+        return "STATEMENT";
+    }
+}
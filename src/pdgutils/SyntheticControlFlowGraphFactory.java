@@ -0,0 +1,359 @@
+package pdgutils;
+
+import com.intellij.psi.controlFlow.ConditionalGoToInstruction;
+import com.intellij.psi.controlFlow.ConditionalThrowToInstruction;
+import com.intellij.psi.controlFlow.EmptyInstruction;
+import com.intellij.psi.controlFlow.GoToInstruction;
+import com.intellij.psi.controlFlow.Instruction;
+import com.intellij.psi.controlFlow.ThrowToInstruction;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates control flow graphs without PSI, for benchmarking and stress testing at sizes far beyond the test
+ * programs. Instructions are laid out the way IntelliJ lays out a method body: if/else chains, switch statements,
+ * loops with back edges, and try/finally blocks whose finally body is a subroutine called from the end of the try
+ * block and from an exception handler. Statements inside a try block may throw to its handler, and statements outside
+ * one may throw to the exit node.
+ * <p>
+ * Generation is driven by a seeded {@link Random}, so the same seed and settings always give the same graph. Calls
+ * and returns use {@link GoToInstruction}s, as IntelliJ's own call and return instructions need its control flow
+ * stack; a return has an edge back to every call site.
+ */
+public class SyntheticControlFlowGraphFactory {
+
+    public enum Shape {
+        STATEMENT,
+        IF_ELSE,
+        SWITCH,
+        LOOP,
+        TRY_FINALLY
+    }
+
+    /**
+     * Deepest nesting {@link #setMaxDepth} allows. Each level takes two frames of the generator's recursion, so this
+     * keeps generation well within a default thread stack.
+     */
+    public static final int MAX_DEPTH = 256;
+
+    private static final int[] MIN_SIZES = {1, 4, 5, 3, 7};
+
+    private static final byte KIND_STATEMENT = 0;
+    private static final byte KIND_CONDITIONAL_GOTO = 1;
+    private static final byte KIND_GOTO = 2;
+    private static final byte KIND_CONDITIONAL_THROW = 3;
+    private static final byte KIND_THROW = 4;
+
+    private final long mSeed;
+    private final int[] mWeights = {8, 3, 1, 2, 1};
+    private int mMaxDepth = 32;
+    private int mMaxSwitchCases = 16;
+    private double mThrowProbability = 0.2;
+
+    // State of the graph being generated. Edge targets are offsets, or ~label for labels placed later.
+    private Random mRandom;
+    private byte[] mKinds;
+    private int mSize;
+    private int[] mEdgeSources;
+    private int[] mEdgeTargets;
+    private byte[] mEdgeTypes;
+    private int mEdgeCount;
+    private int[] mLabels;
+    private int mLabelCount;
+
+    public SyntheticControlFlowGraphFactory(long seed) {
+        mSeed = seed;
+    }
+
+    /**
+     * Set how often each shape is picked, relative to the others.
+     */
+    public void setWeight(@NotNull Shape shape, int weight) {
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weight of " + shape + " must not be negative: " + weight);
+        }
+        mWeights[shape.ordinal()] = weight;
+    }
+
+    /**
+     * Set how deeply shapes may nest inside each other, up to {@link #MAX_DEPTH}.
+     */
+    public void setMaxDepth(int maxDepth) {
+        if (maxDepth < 0 || maxDepth > MAX_DEPTH) {
+            throw new IllegalArgumentException("Maximum depth must be in [0, " + MAX_DEPTH + "]: " + maxDepth);
+        }
+        mMaxDepth = maxDepth;
+    }
+
+    /**
+     * Set the most cases a switch may have, not counting its default.
+     */
+    public void setMaxSwitchCases(int maxSwitchCases) {
+        if (maxSwitchCases < 1) {
+            throw new IllegalArgumentException("A switch needs at least one case: " + maxSwitchCases);
+        }
+        mMaxSwitchCases = maxSwitchCases;
+    }
+
+    /**
+     * Set the chance that a statement may throw.
+     */
+    public void setThrowProbability(double throwProbability) {
+        if (!(throwProbability >= 0 && throwProbability <= 1)) {
+            throw new IllegalArgumentException("Throw probability must be in [0, 1]: " + throwProbability);
+        }
+        mThrowProbability = throwProbability;
+    }
+
+    @NotNull
+    public ControlFlowGraph getControlFlowGraph(int instructionCount) {
+        return new ControlFlowGraph(getDenseControlFlowGraph(instructionCount));
+    }
+
+    /**
+     * @return a graph of exactly {@code instructionCount} instructions, followed by an exit node.
+     */
+    @NotNull
+    public DenseControlFlowGraph getDenseControlFlowGraph(int instructionCount) {
+        if (instructionCount < 0) {
+            throw new IllegalArgumentException("Instruction count must not be negative: " + instructionCount);
+        }
+        mRandom = new Random(mSeed);
+        mKinds = new byte[instructionCount];
+        mSize = 0;
+        mEdgeSources = new int[Math.max(16, instructionCount * 2)];
+        mEdgeTargets = new int[mEdgeSources.length];
+        mEdgeTypes = new byte[mEdgeSources.length];
+        mEdgeCount = 0;
+        mLabels = new int[16];
+        mLabelCount = 0;
+
+        int exitLabel = newLabel();
+        generateRegion(instructionCount, 0, exitLabel);
+        placeLabel(exitLabel);
+        return toGraph();
+    }
+
+    private void generateRegion(int budget, int depth, int throwLabel) {
+        while (budget > 0) {
+            Shape shape = (depth < mMaxDepth) ? pickShape() : Shape.STATEMENT;
+            if (budget < MIN_SIZES[shape.ordinal()]) {
+                shape = Shape.STATEMENT;
+            }
+            int size = (shape == Shape.STATEMENT) ? 1 : MIN_SIZES[shape.ordinal()] + mRandom.nextInt(
+                    budget - MIN_SIZES[shape.ordinal()] + 1);
+            switch (shape) {
+                case IF_ELSE:
+                    generateIfElse(size, depth + 1, throwLabel);
+                    break;
+                case SWITCH:
+                    generateSwitch(size, depth + 1, throwLabel);
+                    break;
+                case LOOP:
+                    generateLoop(size, depth + 1, throwLabel);
+                    break;
+                case TRY_FINALLY:
+                    generateTryFinally(size, depth + 1, throwLabel);
+                    break;
+                default:
+                    generateStatement(throwLabel);
+            }
+            budget -= size;
+        }
+    }
+
+    @NotNull
+    private Shape pickShape() {
+        int total = 0;
+        for (int weight : mWeights) {
+            total += weight;
+        }
+        int pick = mRandom.nextInt(Math.max(1, total));
+        for (Shape shape : Shape.values()) {
+            pick -= mWeights[shape.ordinal()];
+            if (pick < 0) {
+                return shape;
+            }
+        }
+        return Shape.STATEMENT;
+    }
+
+    private void generateStatement(int throwLabel) {
+        if (mRandom.nextDouble() < mThrowProbability) {
+            int node = emit(KIND_CONDITIONAL_THROW);
+            addEdge(node, ~throwLabel, ControlFlowEdgeType.EXCEPTION);
+            addEdge(node, node + 1, ControlFlowEdgeType.NORMAL);
+        } else {
+            int node = emit(KIND_STATEMENT);
+            addEdge(node, node + 1, ControlFlowEdgeType.NORMAL);
+        }
+    }
+
+    /**
+     * condition, then branch, goto end, else branch.
+     */
+    private void generateIfElse(int size, int depth, int throwLabel) {
+        int elseLabel = newLabel();
+        int endLabel = newLabel();
+        int thenSize = 1 + mRandom.nextInt(size - 3);
+        int condition = emit(KIND_CONDITIONAL_GOTO);
+        addEdge(condition, condition + 1, ControlFlowEdgeType.BRANCH);
+        addEdge(condition, ~elseLabel, ControlFlowEdgeType.BRANCH);
+        generateRegion(thenSize, depth, throwLabel);
+        int jump = emit(KIND_GOTO);
+        addEdge(jump, ~endLabel, ControlFlowEdgeType.NORMAL);
+        placeLabel(elseLabel);
+        generateRegion(size - 2 - thenSize, depth, throwLabel);
+        placeLabel(endLabel);
+    }
+
+    /**
+     * One condition per case, jumping to its body, then a jump to the default body. Each body but the last breaks to
+     * the end; the last falls through.
+     */
+    private void generateSwitch(int size, int depth, int throwLabel) {
+        int cases = Math.min(mMaxSwitchCases, Math.max(1, (size - 2) / 3));
+        cases = 1 + mRandom.nextInt(cases);
+        int[] caseLabels = new int[cases + 1];
+        for (int i = 0; i <= cases; i++) {
+            caseLabels[i] = newLabel();
+        }
+        int endLabel = newLabel();
+        for (int i = 0; i < cases; i++) {
+            int condition = emit(KIND_CONDITIONAL_GOTO);
+            addEdge(condition, condition + 1, ControlFlowEdgeType.BRANCH);
+            addEdge(condition, ~caseLabels[i], ControlFlowEdgeType.BRANCH);
+        }
+        int jump = emit(KIND_GOTO);
+        addEdge(jump, ~caseLabels[cases], ControlFlowEdgeType.NORMAL);
+        // Split what's left over the case bodies and their breaks, leaving at least one instruction per body.
+        int bodyBudget = size - cases - 1 - cases;
+        for (int i = 0; i <= cases; i++) {
+            placeLabel(caseLabels[i]);
+            int remainingBodies = cases - i;
+            int bodySize = (remainingBodies == 0) ? bodyBudget :
+                    1 + mRandom.nextInt(Math.max(1, bodyBudget - remainingBodies));
+            bodySize = Math.min(bodySize, bodyBudget - remainingBodies);
+            generateRegion(bodySize, depth, throwLabel);
+            bodyBudget -= bodySize;
+            if (i < cases) {
+                int breakJump = emit(KIND_GOTO);
+                addEdge(breakJump, ~endLabel, ControlFlowEdgeType.NORMAL);
+            }
+        }
+        placeLabel(endLabel);
+    }
+
+    /**
+     * Loop condition, body, jump back to the condition.
+     */
+    private void generateLoop(int size, int depth, int throwLabel) {
+        int endLabel = newLabel();
+        int condition = emit(KIND_CONDITIONAL_GOTO);
+        addEdge(condition, condition + 1, ControlFlowEdgeType.BRANCH);
+        addEdge(condition, ~endLabel, ControlFlowEdgeType.BRANCH);
+        generateRegion(size - 2, depth, throwLabel);
+        int jump = emit(KIND_GOTO);
+        addEdge(jump, condition, ControlFlowEdgeType.NORMAL);
+        placeLabel(endLabel);
+    }
+
+    /**
+     * Try body, call to finally, jump to end; handler calling finally and rethrowing; finally body and its return.
+     */
+    private void generateTryFinally(int size, int depth, int throwLabel) {
+        int handlerLabel = newLabel();
+        int finallyLabel = newLabel();
+        int endLabel = newLabel();
+        int trySize = 1 + mRandom.nextInt(size - 6);
+        generateRegion(trySize, depth, handlerLabel);
+        int normalCall = emit(KIND_GOTO);
+        addEdge(normalCall, ~finallyLabel, ControlFlowEdgeType.NORMAL);
+        int jump = emit(KIND_GOTO);
+        addEdge(jump, ~endLabel, ControlFlowEdgeType.NORMAL);
+        placeLabel(handlerLabel);
+        int handlerCall = emit(KIND_GOTO);
+        addEdge(handlerCall, ~finallyLabel, ControlFlowEdgeType.NORMAL);
+        int rethrow = emit(KIND_THROW);
+        addEdge(rethrow, ~throwLabel, ControlFlowEdgeType.NORMAL);
+        placeLabel(finallyLabel);
+        generateRegion(size - 5 - trySize, depth, throwLabel);
+        int ret = emit(KIND_GOTO);
+        addEdge(ret, normalCall + 1, ControlFlowEdgeType.NORMAL);
+        addEdge(ret, handlerCall + 1, ControlFlowEdgeType.NORMAL);
+        placeLabel(endLabel);
+    }
+
+    private int emit(byte kind) {
+        mKinds[mSize] = kind;
+        return mSize++;
+    }
+
+    private void addEdge(int from, int to, @NotNull ControlFlowEdgeType type) {
+        if (mEdgeCount == mEdgeSources.length) {
+            mEdgeSources = Arrays.copyOf(mEdgeSources, mEdgeCount * 2);
+            mEdgeTargets = Arrays.copyOf(mEdgeTargets, mEdgeCount * 2);
+            mEdgeTypes = Arrays.copyOf(mEdgeTypes, mEdgeCount * 2);
+        }
+        mEdgeSources[mEdgeCount] = from;
+        mEdgeTargets[mEdgeCount] = to;
+        mEdgeTypes[mEdgeCount] = (byte) type.ordinal();
+        mEdgeCount++;
+    }
+
+    private int newLabel() {
+        if (mLabelCount == mLabels.length) {
+            mLabels = Arrays.copyOf(mLabels, mLabelCount * 2);
+        }
+        mLabels[mLabelCount] = DenseControlFlowGraph.NO_NODE;
+        return mLabelCount++;
+    }
+
+    /**
+     * Point a label at the next instruction to be emitted.
+     */
+    private void placeLabel(int label) {
+        mLabels[label] = mSize;
+    }
+
+    @NotNull
+    private DenseControlFlowGraph toGraph() {
+        // An instruction's own target is where its first edge that doesn't fall through goes.
+        int[] targets = new int[mSize];
+        Arrays.fill(targets, DenseControlFlowGraph.NO_NODE);
+        for (int edge = 0; edge < mEdgeCount; edge++) {
+            if (mEdgeTargets[edge] < 0) {
+                mEdgeTargets[edge] = mLabels[~mEdgeTargets[edge]];
+            }
+            int source = mEdgeSources[edge];
+            if (targets[source] == DenseControlFlowGraph.NO_NODE && mEdgeTargets[edge] != source + 1) {
+                targets[source] = mEdgeTargets[edge];
+            }
+        }
+        ControlFlowNode[] nodes = new ControlFlowNode[mSize + 1];
+        for (int node = 0; node < mSize; node++) {
+            int target = (targets[node] != DenseControlFlowGraph.NO_NODE) ? targets[node] : node + 1;
+            nodes[node] = new ControlFlowNode(getInstruction(mKinds[node], target), null);
+        }
+        nodes[mSize] = new ControlFlowNode(EmptyInstruction.INSTANCE, null);
+        return new DenseControlFlowGraph(nodes, mSize, mEdgeSources, mEdgeTargets, mEdgeTypes, mEdgeCount);
+    }
+
+    @NotNull
+    private static Instruction getInstruction(byte kind, int target) {
+        switch (kind) {
+            case KIND_CONDITIONAL_GOTO:
+                return new ConditionalGoToInstruction(target, null);
+            case KIND_GOTO:
+                return new GoToInstruction(target);
+            case KIND_CONDITIONAL_THROW:
+                return new ConditionalThrowToInstruction(target, null);
+            case KIND_THROW:
+                return new ThrowToInstruction(target);
+            default:
+                return EmptyInstruction.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,842 @@
+package pdgutils;
+
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiExpression;
+import com.intellij.psi.PsiLambdaExpression;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.PsiMethodCallExpression;
+import com.intellij.psi.PsiParameter;
+import com.intellij.psi.PsiReturnStatement;
+import com.intellij.psi.PsiStatement;
+import com.intellij.psi.PsiType;
+import com.intellij.psi.controlFlow.ReadVariableInstruction;
+import com.intellij.psi.util.PsiTreeUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Program dependence graphs of several methods linked into one system dependence graph, following "Interprocedural
+ * Slicing Using Dependence Graphs" by Horwitz, Reps and Binkley.
+ * <p>
+ * Each method gets an entry node, a formal-in node per parameter and, unless it is void, a formal-out node for its
+ * result, next to the nodes of its program dependence graph. IntelliJ's control flow has no instructions for method
+ * calls (its {@code CallInstruction} enters a {@code finally} block), so call sites are found from the
+ * {@link PsiMethodCallExpression}s around the elements of each method's nodes. Each call site gets a call node, an
+ * actual-in node per argument and an actual-out node for the result. Call edges link call nodes to entries, and
+ * parameter-in and parameter-out edges link actual nodes to formal nodes.
+ * <p>
+ * Summary edges from an actual-in to an actual-out mark that the argument can reach the result through the callee.
+ * They are found with the worklist algorithm of "Speeding up Slicing" by Reps, Horwitz, Sagiv and Rosay. Which
+ * parameters reach a callee's result is worked out once per callee and shared by all of its call sites. Calls to
+ * methods outside the graph are assumed to pass every argument to their result.
+ * <p>
+ * Nodes and edges use global int ids. Like the {@link ProgramDependenceGraph}, each edge points from the node that is
+ * depended on to the node that depends on it, and edges are sorted by source with a second row index for incoming
+ * edges. A graph is immutable once built.
+ */
+public class SystemDependenceGraph {
+
+    public enum NodeKind {
+        STATEMENT,
+        ENTRY,
+        FORMAL_IN,
+        FORMAL_OUT,
+        CALL,
+        ACTUAL_IN,
+        ACTUAL_OUT
+    }
+
+    public enum EdgeKind {
+        CONTROL,
+        DATA,
+        CALL,
+        PARAMETER_IN,
+        PARAMETER_OUT,
+        SUMMARY
+    }
+
+    private static final NodeKind[] NODE_KINDS = NodeKind.values();
+    private static final EdgeKind[] EDGE_KINDS = EdgeKind.values();
+
+    private final List<PsiMethod> mMethods;
+    private final List<ProgramDependenceGraph> mMethodGraphs;
+    private final int[] mEntries;
+    private final List<PsiMethodCallExpression> mCalls;
+    private final int[] mCallNodes;
+    private final int[] mCallees;
+    private final byte[] mNodeKinds;
+    private final int[] mNodeMethods;
+    private final int[] mNodeLocals;
+    private final int[] mOutgoingOffsets;
+    private final int[] mSources;
+    private final int[] mTargets;
+    private final byte[] mEdgeKinds;
+    private final int[] mIncomingOffsets;
+    private final int[] mIncomingEdges;
+    private final int mSummaryEdgeCount;
+
+    private SystemDependenceGraph(@NotNull Builder builder) {
+        mMethods = builder.mMethods;
+        mMethodGraphs = builder.mMethodGraphs;
+        mEntries = Arrays.copyOf(builder.mEntries, builder.mMethods.size());
+        mCalls = builder.mCalls;
+        mCallNodes = Arrays.copyOf(builder.mCallNodes, builder.mCalls.size());
+        mCallees = Arrays.copyOf(builder.mCallees, builder.mCalls.size());
+        int nodeCount = builder.mNodeCount;
+        mNodeKinds = Arrays.copyOf(builder.mNodeKinds, nodeCount);
+        mNodeMethods = Arrays.copyOf(builder.mNodeMethods, nodeCount);
+        mNodeLocals = Arrays.copyOf(builder.mNodeLocals, nodeCount);
+        int edgeCount = builder.mEdgeCount;
+
+        mOutgoingOffsets = new int[nodeCount + 1];
+        mIncomingOffsets = new int[nodeCount + 1];
+        for (int edge = 0; edge < edgeCount; edge++) {
+            mOutgoingOffsets[builder.mEdgeSources[edge] + 1]++;
+            mIncomingOffsets[builder.mEdgeTargets[edge] + 1]++;
+        }
+        for (int node = 0; node < nodeCount; node++) {
+            mOutgoingOffsets[node + 1] += mOutgoingOffsets[node];
+            mIncomingOffsets[node + 1] += mIncomingOffsets[node];
+        }
+        mSources = new int[edgeCount];
+        mTargets = new int[edgeCount];
+        mEdgeKinds = new byte[edgeCount];
+        int[] fill = new int[nodeCount];
+        int summaryEdgeCount = 0;
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int source = builder.mEdgeSources[edge];
+            int index = mOutgoingOffsets[source] + fill[source]++;
+            mSources[index] = source;
+            mTargets[index] = builder.mEdgeTargets[edge];
+            mEdgeKinds[index] = builder.mEdgeKinds[edge];
+            if (builder.mEdgeKinds[edge] == EdgeKind.SUMMARY.ordinal()) {
+                summaryEdgeCount++;
+            }
+        }
+        mSummaryEdgeCount = summaryEdgeCount;
+        mIncomingEdges = new int[edgeCount];
+        Arrays.fill(fill, 0);
+        for (int edge = 0; edge < edgeCount; edge++) {
+            int target = mTargets[edge];
+            mIncomingEdges[mIncomingOffsets[target] + fill[target]++] = edge;
+        }
+    }
+
+    /**
+     * Link the methods that have bodies IntelliJ can build control flow for. Program dependence graphs are taken
+     * from the project's {@link ProgramDependenceCache} when it has them, and built without caching otherwise, since
+     * a module's worth of methods would evict everything else from it. Must be called in a read action.
+     */
+    @NotNull
+    public static SystemDependenceGraph from(@NotNull Collection<PsiMethod> methods) {
+        Builder builder = new Builder();
+        Map<PsiMethod, Integer> methodIndexes = new HashMap<>();
+        for (PsiMethod method : methods) {
+            PsiCodeBlock body = method.getBody();
+            if (body == null || methodIndexes.containsKey(method)) {
+                continue;
+            }
+            ProgramDependenceCache cache = ProgramDependenceCache.getInstance(method.getProject());
+            ProgramDependenceCache.Entry entry = cache.getIfCached(body);
+            if (entry == null) {
+                entry = cache.compute(body);
+            }
+            if (entry == null) {
+                continue;
+            }
+            ProgramDependenceGraph graph = entry.getProgramDependenceGraph();
+            int methodIndex = builder.addMethod(method, graph, method.getParameterList().getParametersCount(),
+                    hasResult(method));
+            methodIndexes.put(method, methodIndex);
+            linkFormals(builder, methodIndex);
+        }
+        for (int methodIndex = 0; methodIndex < builder.mMethods.size(); methodIndex++) {
+            addCalls(builder, methodIndex, methodIndexes);
+        }
+        return builder.build();
+    }
+
+    private static boolean hasResult(@NotNull PsiMethod method) {
+        return method.getReturnType() != null && !PsiType.VOID.equals(method.getReturnType());
+    }
+
+    /**
+     * Add data edges from formal-ins to reads of their parameters, and from the reads in returned values to the
+     * formal-out.
+     */
+    private static void linkFormals(@NotNull Builder builder, int methodIndex) {
+        PsiMethod method = builder.mMethods.get(methodIndex);
+        ProgramDependenceGraph graph = builder.mMethodGraphs.get(methodIndex);
+        PsiParameter[] parameters = method.getParameterList().getParameters();
+        int formalOut = builder.getFormalOut(methodIndex);
+        for (int node = 0; node < graph.size(); node++) {
+            ControlFlowNode controlFlowNode = graph.getNode(node);
+            if (!(controlFlowNode.getInstruction() instanceof ReadVariableInstruction)) {
+                continue;
+            }
+            PsiElement read = ((ReadVariableInstruction) controlFlowNode.getInstruction()).variable;
+            for (int parameter = 0; parameter < parameters.length; parameter++) {
+                if (parameters[parameter].equals(read)) {
+                    builder.addEdge(builder.getFormalIn(methodIndex, parameter),
+                            builder.getStatementNode(methodIndex, node), EdgeKind.DATA);
+                }
+            }
+            PsiElement element = controlFlowNode.getElement();
+            if (formalOut != Builder.NO_NODE && element != null && isReturned(element, method)) {
+                builder.addEdge(builder.getStatementNode(methodIndex, node), formalOut, EdgeKind.DATA);
+            }
+        }
+    }
+
+    /**
+     * @return whether an element is part of a value that {@code method} returns.
+     */
+    private static boolean isReturned(@NotNull PsiElement element, @NotNull PsiMethod method) {
+        PsiReturnStatement returnStatement = PsiTreeUtil.getParentOfType(element, PsiReturnStatement.class, false);
+        return returnStatement != null && returnStatement.getReturnValue() != null &&
+                PsiTreeUtil.isAncestor(returnStatement.getReturnValue(), element, false) &&
+                getOwner(returnStatement) == method;
+    }
+
+    /**
+     * @return the method or lambda whose control flow holds an element.
+     */
+    @Nullable
+    private static PsiElement getOwner(@NotNull PsiElement element) {
+        PsiElement owner = PsiTreeUtil.getParentOfType(element, PsiMethod.class, PsiLambdaExpression.class,
+                PsiClass.class);
+        return (owner instanceof PsiClass) ? null : owner;
+    }
+
+    private static void addCalls(@NotNull Builder builder, int methodIndex,
+                                 @NotNull Map<PsiMethod, Integer> methodIndexes) {
+        PsiMethod method = builder.mMethods.get(methodIndex);
+        ProgramDependenceGraph graph = builder.mMethodGraphs.get(methodIndex);
+        PsiCodeBlock body = method.getBody();
+
+        // Walk up from each node's element once, rather than looking at every node for every call.
+        Map<PsiElement, List<Integer>> nodesByElement = new HashMap<>();
+        Map<PsiStatement, Integer> firstNodes = new HashMap<>();
+        Map<PsiMethodCallExpression, List<Integer>> readsInCalls = new HashMap<>();
+        for (int node = 0; node < graph.size(); node++) {
+            PsiElement element = graph.getNode(node).getElement();
+            if (element == null) {
+                continue;
+            }
+            nodesByElement.computeIfAbsent(element, key -> new ArrayList<>()).add(node);
+            boolean read = graph.getNode(node).getInstruction() instanceof ReadVariableInstruction;
+            for (PsiElement ancestor = element; ancestor != null && ancestor != body; ancestor = ancestor.getParent()) {
+                if (ancestor instanceof PsiStatement) {
+                    firstNodes.putIfAbsent((PsiStatement) ancestor, node);
+                }
+                if (read && ancestor != element && ancestor instanceof PsiMethodCallExpression) {
+                    readsInCalls.computeIfAbsent((PsiMethodCallExpression) ancestor, key -> new ArrayList<>())
+                            .add(node);
+                }
+            }
+        }
+
+        Map<PsiMethodCallExpression, Integer> callSites = new LinkedHashMap<>();
+        for (PsiMethodCallExpression call : PsiTreeUtil.findChildrenOfType(body, PsiMethodCallExpression.class)) {
+            if (getOwner(call) != method) {
+                continue;
+            }
+            PsiMethod callee = call.resolveMethod();
+            Integer calleeIndex = (callee != null) ? methodIndexes.get(callee) : null;
+            PsiExpression[] arguments = call.getArgumentList().getExpressions();
+            boolean hasResult = (callee == null) || hasResult(callee);
+            PsiStatement statement = PsiTreeUtil.getParentOfType(call, PsiStatement.class);
+            Integer firstNode = (statement != null) ? firstNodes.get(statement) : null;
+            int callSite = builder.addCallSite(methodIndex, call, (calleeIndex != null) ? calleeIndex : -1,
+                    arguments.length, hasResult, (firstNode != null) ? firstNode : Builder.NO_NODE);
+            callSites.put(call, callSite);
+            if (statement == null) {
+                continue;
+            }
+
+            for (int node : readsInCalls.getOrDefault(call, Collections.emptyList())) {
+                int argument = getArgumentIndex(arguments, graph.getNode(node).getElement());
+                int target = (argument >= 0) ? builder.getActualIn(callSite, argument) :
+                        builder.getCallNode(callSite);
+                builder.addEdge(builder.getStatementNode(methodIndex, node), target, EdgeKind.DATA);
+            }
+            if (hasResult) {
+                // Nodes for the expressions around the call, up to its statement, use its result.
+                for (PsiElement ancestor = call.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+                    for (int node : nodesByElement.getOrDefault(ancestor, Collections.emptyList())) {
+                        builder.addEdge(builder.getActualOut(callSite), builder.getStatementNode(methodIndex, node),
+                                EdgeKind.DATA);
+                    }
+                    if (ancestor == statement) {
+                        break;
+                    }
+                }
+            }
+            if (hasResult && builder.getFormalOut(methodIndex) != Builder.NO_NODE && isReturned(call, method)) {
+                builder.addEdge(builder.getActualOut(callSite), builder.getFormalOut(methodIndex), EdgeKind.DATA);
+            }
+        }
+        // Results of calls nested in the arguments of other calls.
+        for (Map.Entry<PsiMethodCallExpression, Integer> callSite : callSites.entrySet()) {
+            if (builder.getActualOut(callSite.getValue()) == Builder.NO_NODE) {
+                continue;
+            }
+            PsiMethodCallExpression outerCall =
+                    PsiTreeUtil.getParentOfType(callSite.getKey(), PsiMethodCallExpression.class, true);
+            Integer outerCallSite = (outerCall != null) ? callSites.get(outerCall) : null;
+            if (outerCallSite == null) {
+                continue;
+            }
+            int argument = getArgumentIndex(outerCall.getArgumentList().getExpressions(), callSite.getKey());
+            int target = (argument >= 0) ? builder.getActualIn(outerCallSite, argument) :
+                    builder.getCallNode(outerCallSite);
+            builder.addEdge(builder.getActualOut(callSite.getValue()), target, EdgeKind.DATA);
+        }
+    }
+
+    /**
+     * @return index of the argument that holds an element, or -1 if it's elsewhere in the call, like the qualifier.
+     */
+    private static int getArgumentIndex(@NotNull PsiExpression[] arguments, @NotNull PsiElement element) {
+        for (int argument = 0; argument < arguments.length; argument++) {
+            if (PsiTreeUtil.isAncestor(arguments[argument], element, false)) {
+                return argument;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return mNodeKinds.length;
+    }
+
+    public int getMethodCount() {
+        return mMethods.size();
+    }
+
+    @Nullable
+    public PsiMethod getMethod(int methodIndex) {
+        return mMethods.get(methodIndex);
+    }
+
+    @NotNull
+    public ProgramDependenceGraph getMethodGraph(int methodIndex) {
+        return mMethodGraphs.get(methodIndex);
+    }
+
+    public int getEntryNode(int methodIndex) {
+        return mEntries[methodIndex];
+    }
+
+    /**
+     * @return the node for node {@code node} of a method's program dependence graph.
+     */
+    public int getStatementNode(int methodIndex, int node) {
+        return mEntries[methodIndex] + 1 + node;
+    }
+
+    public int getCallSiteCount() {
+        return mCalls.size();
+    }
+
+    @Nullable
+    public PsiMethodCallExpression getCall(int callSite) {
+        return mCalls.get(callSite);
+    }
+
+    public int getCallNode(int callSite) {
+        return mCallNodes[callSite];
+    }
+
+    /**
+     * @return index of the called method, or -1 if it isn't in this graph.
+     */
+    public int getCallee(int callSite) {
+        return mCallees[callSite];
+    }
+
+    @NotNull
+    public NodeKind getNodeKind(int node) {
+        return NODE_KINDS[mNodeKinds[node]];
+    }
+
+    /**
+     * @return index of the method a node belongs to.
+     */
+    public int getNodeMethod(int node) {
+        return mNodeMethods[node];
+    }
+
+    /**
+     * @return the node's id in its method's program dependence graph for statements, its parameter or argument index
+     * for formal-ins and actual-ins, its call site for calls and actual-outs, and -1 otherwise.
+     */
+    public int getNodeLocal(int node) {
+        return mNodeLocals[node];
+    }
+
+    /**
+     * @return the control flow node behind a statement node, or null for the nodes this graph adds.
+     */
+    @Nullable
+    public ControlFlowNode getControlFlowNode(int node) {
+        if (getNodeKind(node) != NodeKind.STATEMENT) {
+            return null;
+        }
+        return mMethodGraphs.get(mNodeMethods[node]).getNode(mNodeLocals[node]);
+    }
+
+    public int getEdgeCount() {
+        return mTargets.length;
+    }
+
+    /**
+     * @return summary edges, both those worked out from callees and those assumed at calls to methods outside the
+     * graph.
+     */
+    public int getSummaryEdgeCount() {
+        return mSummaryEdgeCount;
+    }
+
+    public int getOutgoingStart(int node) {
+        return mOutgoingOffsets[node];
+    }
+
+    public int getOutgoingEnd(int node) {
+        return mOutgoingOffsets[node + 1];
+    }
+
+    public int getIncomingStart(int node) {
+        return mIncomingOffsets[node];
+    }
+
+    public int getIncomingEnd(int node) {
+        return mIncomingOffsets[node + 1];
+    }
+
+    /**
+     * @param index an index in {@code [getIncomingStart(node), getIncomingEnd(node))}
+     * @return id of the incoming edge at that index.
+     */
+    public int getIncomingEdge(int index) {
+        return mIncomingEdges[index];
+    }
+
+    /**
+     * @return the node that is depended on.
+     */
+    public int getEdgeSource(int edge) {
+        return mSources[edge];
+    }
+
+    /**
+     * @return the node that depends on the source.
+     */
+    public int getEdgeTarget(int edge) {
+        return mTargets[edge];
+    }
+
+    @NotNull
+    public EdgeKind getEdgeKind(int edge) {
+        return EDGE_KINDS[mEdgeKinds[edge]];
+    }
+
+    /**
+     * Slice across methods in the two passes of Horwitz, Reps and Binkley, so that only paths that return to the
+     * call they came from are followed. The first pass climbs out into callers but only steps over calls through
+     * summary edges, and the second pass descends into callees but doesn't climb back out of them.
+     *
+     * @return ids of the nodes in the slice, seeds included, in the order they were found.
+     */
+    @NotNull
+    public int[] slice(@NotNull int[] seeds, @NotNull ProgramSlicer.Direction direction) {
+        int[] worklist = new int[size()];
+        long[] visited = new long[BitsetLattice.getWordCount(size())];
+        int tail = 0;
+        for (int seed : seeds) {
+            if (!BitsetLattice.get(visited, seed)) {
+                BitsetLattice.set(visited, seed);
+                worklist[tail++] = seed;
+            }
+        }
+        boolean backward = direction == ProgramSlicer.Direction.BACKWARD;
+        // The first pass doesn't descend into callees, and the second doesn't climb back out of them.
+        EdgeKind[] exits = {EdgeKind.PARAMETER_OUT, null};
+        EdgeKind[] entries = {EdgeKind.PARAMETER_IN, EdgeKind.CALL};
+        tail = traverse(worklist, 0, tail, visited, backward, backward ? exits : entries);
+        tail = traverse(worklist, 0, tail, visited, backward, backward ? entries : exits);
+        return Arrays.copyOf(worklist, tail);
+    }
+
+    /**
+     * Visit the nodes in {@code [head, tail)} of the worklist and everything they reach without crossing the skipped
+     * edge kinds.
+     *
+     * @return the new tail of the worklist.
+     */
+    private int traverse(@NotNull int[] worklist, int head, int tail, @NotNull long[] visited, boolean backward,
+                         @NotNull EdgeKind[] skipped) {
+        while (head < tail) {
+            int node = worklist[head++];
+            int start = backward ? getIncomingStart(node) : getOutgoingStart(node);
+            int end = backward ? getIncomingEnd(node) : getOutgoingEnd(node);
+            for (int i = start; i < end; i++) {
+                int edge = backward ? getIncomingEdge(i) : i;
+                EdgeKind kind = getEdgeKind(edge);
+                if (kind == skipped[0] || kind == skipped[1]) {
+                    continue;
+                }
+                int next = backward ? getEdgeSource(edge) : getEdgeTarget(edge);
+                if (!BitsetLattice.get(visited, next)) {
+                    BitsetLattice.set(visited, next);
+                    worklist[tail++] = next;
+                }
+            }
+        }
+        return tail;
+    }
+
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        for (int node = 0; node < size(); node++) {
+            buffer.append(node).append(": ").append(getNodeMethod(node)).append(".");
+            ControlFlowNode controlFlowNode = getControlFlowNode(node);
+            if (controlFlowNode != null) {
+                buffer.append(controlFlowNode.getInstruction().getClass().getSimpleName().replace("Instruction", ""));
+            } else {
+                buffer.append(getNodeKind(node));
+                if (getNodeLocal(node) != -1) {
+                    buffer.append(" ").append(getNodeLocal(node));
+                }
+            }
+            buffer.append(" ->");
+            for (int edge = getOutgoingStart(node); edge < getOutgoingEnd(node); edge++) {
+                buffer.append(" ").append(getEdgeTarget(edge)).append(".")
+                        .append(getEdgeKind(edge).name().toLowerCase());
+            }
+            buffer.append("\n");
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Collects nodes and edges, then adds summary edges. Methods must all be added before calls to them.
+     */
+    static class Builder {
+
+        static final int NO_NODE = -1;
+
+        private final List<PsiMethod> mMethods = new ArrayList<>();
+        private final List<ProgramDependenceGraph> mMethodGraphs = new ArrayList<>();
+        private int[] mEntries = new int[16];
+        private int[] mParameterCounts = new int[16];
+        private int[] mFormalOuts = new int[16];
+        private final List<PsiMethodCallExpression> mCalls = new ArrayList<>();
+        private int[] mCallNodes = new int[16];
+        private int[] mCallees = new int[16];
+        private int[] mArgumentCounts = new int[16];
+        private int[] mActualOuts = new int[16];
+
+        private byte[] mNodeKinds = new byte[64];
+        private int[] mNodeMethods = new int[64];
+        private int[] mNodeLocals = new int[64];
+        private int mNodeCount;
+        private int[] mEdgeSources = new int[64];
+        private int[] mEdgeTargets = new int[64];
+        private byte[] mEdgeKinds = new byte[64];
+        private int mEdgeCount;
+
+        /**
+         * Add a method's entry, its graph's nodes and edges, and its formal nodes. Nodes with no control dependences
+         * are made control dependent on the entry.
+         *
+         * @return index of the method.
+         */
+        int addMethod(@Nullable PsiMethod method, @NotNull ProgramDependenceGraph graph, int parameterCount,
+                      boolean hasResult) {
+            int methodIndex = mMethods.size();
+            mMethods.add(method);
+            mMethodGraphs.add(graph);
+            if (methodIndex == mEntries.length) {
+                mEntries = Arrays.copyOf(mEntries, methodIndex * 2);
+                mParameterCounts = Arrays.copyOf(mParameterCounts, methodIndex * 2);
+                mFormalOuts = Arrays.copyOf(mFormalOuts, methodIndex * 2);
+            }
+            int entry = addNode(NodeKind.ENTRY, methodIndex, -1);
+            mEntries[methodIndex] = entry;
+            mParameterCounts[methodIndex] = parameterCount;
+            for (int node = 0; node < graph.size(); node++) {
+                addNode(NodeKind.STATEMENT, methodIndex, node);
+            }
+            for (int parameter = 0; parameter < parameterCount; parameter++) {
+                addEdge(entry, addNode(NodeKind.FORMAL_IN, methodIndex, parameter), EdgeKind.CONTROL);
+            }
+            mFormalOuts[methodIndex] = hasResult ? addNode(NodeKind.FORMAL_OUT, methodIndex, -1) : NO_NODE;
+            if (hasResult) {
+                addEdge(entry, mFormalOuts[methodIndex], EdgeKind.CONTROL);
+            }
+
+            for (int node = 0; node < graph.size(); node++) {
+                boolean controlled = false;
+                for (int i = graph.getIncomingStart(node); i < graph.getIncomingEnd(node); i++) {
+                    int edge = graph.getIncomingEdge(i);
+                    controlled |= graph.getEdgeKind(edge) == ProgramDependenceGraph.EdgeKind.CONTROL;
+                }
+                if (!controlled) {
+                    addEdge(entry, getStatementNode(methodIndex, node), EdgeKind.CONTROL);
+                }
+                for (int edge = graph.getOutgoingStart(node); edge < graph.getOutgoingEnd(node); edge++) {
+                    EdgeKind kind = (graph.getEdgeKind(edge) == ProgramDependenceGraph.EdgeKind.CONTROL) ?
+                            EdgeKind.CONTROL : EdgeKind.DATA;
+                    addEdge(getStatementNode(methodIndex, node),
+                            getStatementNode(methodIndex, graph.getEdgeTarget(edge)), kind);
+                }
+            }
+            return methodIndex;
+        }
+
+        /**
+         * Add a call node with its actual nodes. The call node gets the control dependences of {@code anchor}, the
+         * first node of the statement holding the call, or of the entry if there is none.
+         *
+         * @param callee index of the called method, or -1 if it isn't in the graph
+         * @return index of the call site.
+         */
+        int addCallSite(int methodIndex, @Nullable PsiMethodCallExpression call, int callee, int argumentCount,
+                        boolean hasResult, int anchor) {
+            int callSite = mCalls.size();
+            mCalls.add(call);
+            if (callSite == mCallNodes.length) {
+                mCallNodes = Arrays.copyOf(mCallNodes, callSite * 2);
+                mCallees = Arrays.copyOf(mCallees, callSite * 2);
+                mArgumentCounts = Arrays.copyOf(mArgumentCounts, callSite * 2);
+                mActualOuts = Arrays.copyOf(mActualOuts, callSite * 2);
+            }
+            int callNode = addNode(NodeKind.CALL, methodIndex, callSite);
+            mCallNodes[callSite] = callNode;
+            mCallees[callSite] = callee;
+            mArgumentCounts[callSite] = argumentCount;
+
+            ProgramDependenceGraph graph = mMethodGraphs.get(methodIndex);
+            boolean controlled = false;
+            if (anchor != NO_NODE) {
+                for (int i = graph.getIncomingStart(anchor); i < graph.getIncomingEnd(anchor); i++) {
+                    int edge = graph.getIncomingEdge(i);
+                    if (graph.getEdgeKind(edge) == ProgramDependenceGraph.EdgeKind.CONTROL) {
+                        addEdge(getStatementNode(methodIndex, graph.getEdgeSource(edge)), callNode, EdgeKind.CONTROL);
+                        controlled = true;
+                    }
+                }
+            }
+            if (!controlled) {
+                addEdge(mEntries[methodIndex], callNode, EdgeKind.CONTROL);
+            }
+
+            for (int argument = 0; argument < argumentCount; argument++) {
+                addEdge(callNode, addNode(NodeKind.ACTUAL_IN, methodIndex, argument), EdgeKind.CONTROL);
+            }
+            mActualOuts[callSite] = hasResult ? addNode(NodeKind.ACTUAL_OUT, methodIndex, callSite) : NO_NODE;
+            if (hasResult) {
+                addEdge(callNode, mActualOuts[callSite], EdgeKind.CONTROL);
+            }
+
+            if (callee != -1) {
+                addEdge(callNode, mEntries[callee], EdgeKind.CALL);
+                for (int argument = 0; argument < argumentCount; argument++) {
+                    int parameter = getParameter(callee, argument);
+                    if (parameter != -1) {
+                        addEdge(getActualIn(callSite, argument), getFormalIn(callee, parameter),
+                                EdgeKind.PARAMETER_IN);
+                    }
+                }
+                if (hasResult && mFormalOuts[callee] != NO_NODE) {
+                    addEdge(mFormalOuts[callee], mActualOuts[callSite], EdgeKind.PARAMETER_OUT);
+                }
+            } else if (hasResult) {
+                for (int argument = 0; argument < argumentCount; argument++) {
+                    addEdge(getActualIn(callSite, argument), mActualOuts[callSite], EdgeKind.SUMMARY);
+                }
+            }
+            return callSite;
+        }
+
+        /**
+         * @return the parameter an argument is passed to. Extra arguments go to a trailing varargs parameter.
+         */
+        private int getParameter(int callee, int argument) {
+            int parameterCount = mParameterCounts[callee];
+            return (parameterCount == 0) ? -1 : Math.min(argument, parameterCount - 1);
+        }
+
+        int getStatementNode(int methodIndex, int node) {
+            return mEntries[methodIndex] + 1 + node;
+        }
+
+        int getFormalIn(int methodIndex, int parameter) {
+            return getStatementNode(methodIndex, mMethodGraphs.get(methodIndex).size()) + parameter;
+        }
+
+        int getFormalOut(int methodIndex) {
+            return mFormalOuts[methodIndex];
+        }
+
+        int getCallNode(int callSite) {
+            return mCallNodes[callSite];
+        }
+
+        int getActualIn(int callSite, int argument) {
+            return mCallNodes[callSite] + 1 + argument;
+        }
+
+        int getActualOut(int callSite) {
+            return mActualOuts[callSite];
+        }
+
+        private int addNode(@NotNull NodeKind kind, int methodIndex, int local) {
+            if (mNodeCount == mNodeKinds.length) {
+                int capacity = mNodeCount * 2;
+                mNodeKinds = Arrays.copyOf(mNodeKinds, capacity);
+                mNodeMethods = Arrays.copyOf(mNodeMethods, capacity);
+                mNodeLocals = Arrays.copyOf(mNodeLocals, capacity);
+            }
+            mNodeKinds[mNodeCount] = (byte) kind.ordinal();
+            mNodeMethods[mNodeCount] = methodIndex;
+            mNodeLocals[mNodeCount] = local;
+            return mNodeCount++;
+        }
+
+        void addEdge(int source, int target, @NotNull EdgeKind kind) {
+            if (mEdgeCount == mEdgeSources.length) {
+                int capacity = mEdgeCount * 2;
+                mEdgeSources = Arrays.copyOf(mEdgeSources, capacity);
+                mEdgeTargets = Arrays.copyOf(mEdgeTargets, capacity);
+                mEdgeKinds = Arrays.copyOf(mEdgeKinds, capacity);
+            }
+            mEdgeSources[mEdgeCount] = source;
+            mEdgeTargets[mEdgeCount] = target;
+            mEdgeKinds[mEdgeCount] = (byte) kind.ordinal();
+            mEdgeCount++;
+        }
+
+        @NotNull
+        SystemDependenceGraph build() {
+            boolean[][] summaries = computeSummaries();
+            for (int callSite = 0; callSite < mCalls.size(); callSite++) {
+                int callee = mCallees[callSite];
+                if (callee == -1 || mActualOuts[callSite] == NO_NODE) {
+                    continue;
+                }
+                for (int argument = 0; argument < mArgumentCounts[callSite]; argument++) {
+                    int parameter = getParameter(callee, argument);
+                    if (parameter != -1 && summaries[callee][parameter]) {
+                        addEdge(getActualIn(callSite, argument), mActualOuts[callSite], EdgeKind.SUMMARY);
+                    }
+                }
+            }
+            return new SystemDependenceGraph(this);
+        }
+
+        /**
+         * Walk back from each formal-out over control, data and summary edges, marking the nodes that reach it.
+         * Reaching a formal-in means its parameter reaches the result, which adds a summary edge at every call of the
+         * method. Each method has at most one formal-out, so one mark per node is enough.
+         *
+         * @return for each method, which parameters reach its result.
+         */
+        @NotNull
+        private boolean[][] computeSummaries() {
+            int nodeCount = mNodeCount;
+            int[] incomingOffsets = new int[nodeCount + 1];
+            for (int edge = 0; edge < mEdgeCount; edge++) {
+                incomingOffsets[mEdgeTargets[edge] + 1]++;
+            }
+            for (int node = 0; node < nodeCount; node++) {
+                incomingOffsets[node + 1] += incomingOffsets[node];
+            }
+            int[] incomingEdges = new int[mEdgeCount];
+            int[] fill = new int[nodeCount];
+            for (int edge = 0; edge < mEdgeCount; edge++) {
+                int target = mEdgeTargets[edge];
+                incomingEdges[incomingOffsets[target] + fill[target]++] = edge;
+            }
+            List<List<Integer>> calls = new ArrayList<>();
+            boolean[][] summaries = new boolean[mMethods.size()][];
+            for (int methodIndex = 0; methodIndex < mMethods.size(); methodIndex++) {
+                calls.add(new ArrayList<>());
+                summaries[methodIndex] = new boolean[mParameterCounts[methodIndex]];
+            }
+            for (int callSite = 0; callSite < mCalls.size(); callSite++) {
+                if (mCallees[callSite] != -1) {
+                    calls.get(mCallees[callSite]).add(callSite);
+                }
+            }
+
+            boolean[] reaches = new boolean[nodeCount];
+            int[] worklist = new int[nodeCount];
+            int size = 0;
+            for (int methodIndex = 0; methodIndex < mMethods.size(); methodIndex++) {
+                if (mFormalOuts[methodIndex] != NO_NODE) {
+                    reaches[mFormalOuts[methodIndex]] = true;
+                    worklist[size++] = mFormalOuts[methodIndex];
+                }
+            }
+            while (size > 0) {
+                int node = worklist[--size];
+                NodeKind kind = NODE_KINDS[mNodeKinds[node]];
+                if (kind == NodeKind.FORMAL_IN) {
+                    int methodIndex = mNodeMethods[node];
+                    int parameter = mNodeLocals[node];
+                    summaries[methodIndex][parameter] = true;
+                    // Callers whose result already reaches their own formal-out now also reach it from the argument.
+                    for (int callSite : calls.get(methodIndex)) {
+                        if (mActualOuts[callSite] == NO_NODE || !reaches[mActualOuts[callSite]]) {
+                            continue;
+                        }
+                        for (int argument = 0; argument < mArgumentCounts[callSite]; argument++) {
+                            int actualIn = getActualIn(callSite, argument);
+                            if (getParameter(methodIndex, argument) == parameter && !reaches[actualIn]) {
+                                reaches[actualIn] = true;
+                                worklist[size++] = actualIn;
+                            }
+                        }
+                    }
+                    continue;
+                }
+                if (kind == NodeKind.ACTUAL_OUT) {
+                    int callSite = mNodeLocals[node];
+                    int callee = mCallees[callSite];
+                    for (int argument = 0; callee != -1 && argument < mArgumentCounts[callSite]; argument++) {
+                        int parameter = getParameter(callee, argument);
+                        int actualIn = getActualIn(callSite, argument);
+                        if (parameter != -1 && summaries[callee][parameter] && !reaches[actualIn]) {
+                            reaches[actualIn] = true;
+                            worklist[size++] = actualIn;
+                        }
+                    }
+                }
+                for (int i = incomingOffsets[node]; i < incomingOffsets[node + 1]; i++) {
+                    int edge = incomingEdges[i];
+                    EdgeKind edgeKind = EDGE_KINDS[mEdgeKinds[edge]];
+                    int source = mEdgeSources[edge];
+                    if ((edgeKind == EdgeKind.CONTROL || edgeKind == EdgeKind.DATA || edgeKind == EdgeKind.SUMMARY) &&
+                            !reaches[source]) {
+                        reaches[source] = true;
+                        worklist[size++] = source;
+                    }
+                }
+            }
+            return summaries;
+        }
+    }
+}
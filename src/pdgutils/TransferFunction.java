@@ -0,0 +1,11 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+public interface TransferFunction<V> {
+
+    /**
+     * Transform, in place, the value flowing into {@code node} into the value flowing out of it.
+     */
+    void apply(int node, @NotNull V value);
+}
@@ -0,0 +1,94 @@
+package pdgutils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Solves dataflow problems with a worklist. Nodes are visited in reverse postorder of the graph values flow along:
+ * the reverse control flow graph for backward problems, and the control flow graph for forward problems. After the
+ * first pass, a node is only visited again when the value of one of the nodes it reads from has changed.
+ * <p>
+ * Nodes that values cannot flow to from the boundary node are never visited, and are ignored when taking the meet
+ * of a node's inputs.
+ */
+public class WorklistSolver {
+
+    @NotNull
+    public static <V> DataflowSolution<V> solve(@NotNull DenseControlFlowGraph graph,
+                                                @NotNull DataflowProblem<V> problem) {
+        boolean backward = problem.getDirection() == DataflowProblem.Direction.BACKWARD;
+        Lattice<V> lattice = problem.getLattice();
+        TransferFunction<V> transferFunction = problem.getTransferFunction();
+        DataflowMetrics metrics = new DataflowMetrics();
+
+        Object[] values = new Object[graph.size()];
+        for (int node = 0; node < graph.size(); node++) {
+            values[node] = lattice.createTop();
+        }
+        boolean[] reached = new boolean[graph.size()];
+        int boundaryNode = problem.getBoundaryNode(graph);
+        if (boundaryNode == DenseControlFlowGraph.NO_NODE) {
+            return new DataflowSolution<>(values, reached, metrics);
+        }
+
+        int[] order = graph.getReversePostorder(boundaryNode, backward);
+        int[] positions = new int[graph.size()];
+        for (int position = 0; position < order.length; position++) {
+            positions[order[position]] = position;
+            reached[order[position]] = true;
+        }
+        boolean[] pending = new boolean[order.length];
+        Arrays.fill(pending, true);
+        int pendingCount = order.length;
+
+        V top = lattice.createTop();
+        V boundaryValue = lattice.createTop();
+        problem.setBoundaryValue(boundaryValue);
+        V scratch = lattice.createTop();
+
+        while (pendingCount > 0) {
+            metrics.countIteration();
+            for (int position = 0; position < order.length; position++) {
+                if (!pending[position]) {
+                    continue;
+                }
+                pending[position] = false;
+                pendingCount--;
+                int node = order[position];
+
+                lattice.assign(scratch, (node == boundaryNode) ? boundaryValue : top);
+                int setOperations = 1;
+                int inputStart = backward ? graph.getSuccessorStart(node) : graph.getPredecessorStart(node);
+                int inputEnd = backward ? graph.getSuccessorEnd(node) : graph.getPredecessorEnd(node);
+                for (int edge = inputStart; edge < inputEnd; edge++) {
+                    int input = backward ? graph.getSuccessor(edge) : graph.getPredecessor(edge);
+                    if (reached[input]) {
+                        @SuppressWarnings("unchecked") V inputValue = (V) values[input];
+                        lattice.meet(scratch, inputValue);
+                        setOperations++;
+                    }
+                }
+                transferFunction.apply(node, scratch);
+                metrics.countNodeVisit();
+
+                @SuppressWarnings("unchecked") V value = (V) values[node];
+                boolean changed = lattice.assign(value, scratch);
+                metrics.countSetOperations(setOperations + 1);
+                if (!changed) {
+                    continue;
+                }
+                int dependentStart = backward ? graph.getPredecessorStart(node) : graph.getSuccessorStart(node);
+                int dependentEnd = backward ? graph.getPredecessorEnd(node) : graph.getSuccessorEnd(node);
+                for (int edge = dependentStart; edge < dependentEnd; edge++) {
+                    int dependent = backward ? graph.getPredecessor(edge) : graph.getSuccessor(edge);
+                    if (reached[dependent] && !pending[positions[dependent]]) {
+                        pending[positions[dependent]] = true;
+                        pendingCount++;
+                    }
+                }
+            }
+        }
+        return new DataflowSolution<>(values, reached, metrics);
+    }
+}
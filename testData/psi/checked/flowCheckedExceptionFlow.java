@@ -0,0 +1,21 @@
+// LocalsOrMyInstanceFieldsControlFlowPolicy
+
+public class a {
+  void f(int i) {<caret>
+      try {
+        check(i);
+        read(i);
+        i = 1;
+      } catch (java.io.IOException e) {
+        i = 2;
+      } catch (RuntimeException e) {
+        i = 3;
+      }
+  }
+
+  void check(int i) {
+  }
+
+  void read(int i) throws java.io.IOException {
+  }
+}
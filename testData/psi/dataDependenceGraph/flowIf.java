@@ -0,0 +1,10 @@
+// LocalsOrMyInstanceFieldsControlFlowPolicy
+public class a {
+  void f() {<caret>
+    int i = 0;
+    if (i==0) {
+      i = 5;
+      i = 9;
+    }
+  }
+}
\ No newline at end of file
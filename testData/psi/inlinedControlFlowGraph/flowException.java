@@ -0,0 +1,17 @@
+// LocalsOrMyInstanceFieldsControlFlowPolicy
+
+public class a {
+  void f(int i) throws java.lang.Exception {<caret>
+      i = 5;
+      try {
+        f(i);
+      } catch (java.lang.Exception e) {
+        i = 0;
+      }
+      finally {
+        i = 9;
+      }
+
+
+  }
+}
\ No newline at end of file
@@ -0,0 +1,22 @@
+// LocalsOrMyInstanceFieldsControlFlowPolicy
+public class a {
+  int last;
+
+  int add(int p, int q) {
+    return p + q;
+  }
+
+  void log(int v) {
+    last = v;
+  }
+
+  int twice(int x) {
+    int y = add(add(x, 1), x);
+    log(y);
+    return other(y);
+  }
+
+  int other(int z) {
+    return z;
+  }
+}
@@ -0,0 +1,89 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Method keys, indexed summaries and the methods found by
+ * {@link ControlDependenceIndex#getMethodsWithReturnDependentOn}.
+ */
+public class ControlDependenceIndexTest extends LightCodeInsightTestCase {
+
+    private static final String SOURCE =
+            "package a;\n" +
+            "class A {\n" +
+            "    void risky() throws java.io.IOException {}\n" +
+            "    int recover() { try { risky(); } catch (java.io.IOException e) { return 1; } return 0; }\n" +
+            "    int plain(int x) { if (x > 0) { return 1; } return 0; }\n" +
+            "    void tasks(java.util.List< String > names, int[] counts) {\n" +
+            "        Runnable first = new Runnable() { public void run() { plain(1); } };\n" +
+            "        Runnable second = new Runnable() {\n" +
+            "            public void run() { try { risky(); } catch (java.io.IOException e) { return; } }\n" +
+            "        };\n" +
+            "        class Local { int run() { return 2; } }\n" +
+            "    }\n" +
+            "    static class Inner { int run() { return 3; } }\n" +
+            "}\n";
+
+    public void testMethodKeys() {
+        configureFromFileText("A.java", SOURCE);
+        Set<String> keys = new HashSet<>();
+        for (PsiMethod method : PsiTreeUtil.findChildrenOfType(getFile(), PsiMethod.class)) {
+            String key = ControlDependenceIndex.getMethodKey(method);
+            assertTrue("Duplicate key " + key, keys.add(key));
+        }
+        String tasks = "a.A#tasks(java.util.List<String>,int[])";
+        assertEquals(new HashSet<>(Arrays.asList("a.A#risky()", "a.A#recover()", "a.A#plain(int)", tasks,
+                tasks + "$1#run()", tasks + "$2#run()", tasks + "$3Local#run()", "a.A.Inner#run()")), keys);
+
+        for (PsiMethod method : PsiTreeUtil.findChildrenOfType(getFile(), PsiMethod.class)) {
+            assertNotNull(ControlDependenceIndex.getMethodKey(method), ControlDependenceIndex.getSummary(method));
+        }
+    }
+
+    public void testMethodsWithReturnDependentOn() {
+        configureFromFileText("A.java", SOURCE);
+        GlobalSearchScope scope = GlobalSearchScope.fileScope(getFile());
+        List<String> methods = ControlDependenceIndex.getMethodsWithReturnDependentOn(getProject(), scope,
+                ControlFlowEdgeType.BRANCH);
+        assertEquals(Collections.singletonList("a.A#plain(int)"), methods);
+        // Exception flow is left out of the index, so the returns in catch blocks aren't found.
+        assertEquals(Collections.emptyList(), ControlDependenceIndex.getMethodsWithReturnDependentOn(getProject(),
+                scope, ControlFlowEdgeType.EXCEPTION));
+    }
+
+    public void testInvalidatedByEdit() {
+        configureFromFileText("A.java", SOURCE);
+        ControlDependenceSummary summary = ControlDependenceIndex.getSummary(getRecover());
+        assertNotNull(summary);
+        Document document = PsiDocumentManager.getInstance(getProject()).getDocument(getFile());
+        assertNotNull(document);
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> {
+            document.insertString(document.getText().indexOf("return 0; }"), "int y = 2; ");
+            PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+        });
+        ControlDependenceSummary updated = ControlDependenceIndex.getSummary(getRecover());
+        assertNotNull(updated);
+        // The new local adds a write before the last return of recover().
+        assertFalse(Arrays.equals(summary.getReturnNodes(), updated.getReturnNodes()));
+    }
+
+    private PsiMethod getRecover() {
+        return ((PsiJavaFile) getFile()).getClasses()[0].findMethodsByName("recover", false)[0];
+    }
+}
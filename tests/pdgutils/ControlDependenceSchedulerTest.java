@@ -0,0 +1,102 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorBase;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.psi.controlFlow.ControlFlowFactory;
+import com.intellij.psi.controlFlow.LocalsOrMyInstanceFieldsControlFlowPolicy;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Graphs built on the scheduler's pool match those built one method at a time.
+ */
+public class ControlDependenceSchedulerTest extends LightCodeInsightTestCase {
+
+    private static final String SOURCE =
+            "class A {\n" +
+            "    int a(int x) { if (x > 0) { x++; } return x; }\n" +
+            "    int b(int x) { while (x > 0) { x--; } return x; }\n" +
+            "    void tasks() {\n" +
+            "        Runnable first = new Runnable() { public void run() { int y = 0; if (y > 1) y--; } };\n" +
+            "        Runnable second = new Runnable() { public void run() { for (int i = 0; i < 3; i++) {} } };\n" +
+            "    }\n" +
+            "    abstract static class B { abstract void c(); }\n" +
+            "}\n";
+
+    /**
+     * Analyse the file on a pooled thread, since read actions that give way to writes can't run on the event
+     * dispatch thread.
+     */
+    private static Map<String, ControlDependenceGraph> analyze(ProgressIndicator indicator) throws Exception {
+        List<VirtualFile> files = Collections.singletonList(getFile().getVirtualFile());
+        try {
+            return ApplicationManager.getApplication().executeOnPooledThread(() ->
+                    new ControlDependenceScheduler(getProject(), 3).analyze(files, indicator)).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ProcessCanceledException) {
+                throw (ProcessCanceledException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    public void testAnalyze() throws Exception {
+        configureFromFileText("A.java", SOURCE);
+        Map<String, String> expected = new HashMap<>();
+        for (PsiMethod method : PsiTreeUtil.findChildrenOfType(getFile(), PsiMethod.class)) {
+            if (method.getBody() != null) {
+                expected.put(ControlDependenceIndex.getMethodKey(method), ControlDependenceGraph.from(
+                        ControlFlowGraphFactory.getControlFlowGraph(ControlFlowFactory.getInstance(getProject())
+                                .getControlFlow(method.getBody(), LocalsOrMyInstanceFieldsControlFlowPolicy
+                                        .getInstance()))).toString());
+            }
+        }
+        // Both anonymous run() methods are kept.
+        assertEquals(5, expected.size());
+
+        List<Double> fractions = new ArrayList<>();
+        ProgressIndicator indicator = new ProgressIndicatorBase() {
+            @Override
+            public synchronized void setFraction(double fraction) {
+                fractions.add(fraction);
+                super.setFraction(fraction);
+            }
+        };
+        Map<String, ControlDependenceGraph> results = analyze(indicator);
+        assertEquals(expected.keySet(), results.keySet());
+        for (Map.Entry<String, String> entry : expected.entrySet()) {
+            assertEquals(entry.getKey(), entry.getValue(), results.get(entry.getKey()).toString());
+        }
+        assertEquals(1.0, indicator.getFraction(), 0);
+        // One update per method and one for the file, never going back.
+        assertEquals(6, fractions.size());
+        for (int i = 1; i < fractions.size(); i++) {
+            assertTrue(fractions.toString(), fractions.get(i) >= fractions.get(i - 1));
+        }
+    }
+
+    public void testCancelled() throws Exception {
+        configureFromFileText("A.java", SOURCE);
+        ProgressIndicator indicator = new ProgressIndicatorBase();
+        indicator.cancel();
+        try {
+            analyze(indicator);
+            fail("Expected a cancelled run to throw");
+        } catch (ProcessCanceledException expected) {
+        }
+    }
+}
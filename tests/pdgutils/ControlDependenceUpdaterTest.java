@@ -0,0 +1,210 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import com.intellij.psi.controlFlow.EmptyInstruction;
+import com.intellij.psi.controlFlow.GoToInstruction;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Updates after inserting and removing instructions in generated graphs give the same immediate postdominators and
+ * control dependences as building them from scratch.
+ */
+public class ControlDependenceUpdaterTest extends TestCase {
+
+    private static final int SEED_COUNT = 40;
+    private static final int EDITS_PER_SEED = 6;
+
+    /**
+     * Copy a graph with a statement inserted before {@code position}: edges into {@code position} now go to the new
+     * statement, which falls through to the old node.
+     */
+    private static DenseControlFlowGraph insertStatement(DenseControlFlowGraph graph, int position) {
+        int nodeCount = graph.size() + 1;
+        ControlFlowNode[] nodes = new ControlFlowNode[nodeCount];
+        int[] sources = new int[graph.getEdgeCount() + 1];
+        int[] targets = new int[sources.length];
+        byte[] types = new byte[sources.length];
+        int edgeCount = 0;
+        for (int node = 0; node < graph.size(); node++) {
+            int newNode = (node < position) ? node : node + 1;
+            nodes[newNode] = new ControlFlowNode(graph.getNode(node).getInstruction(), null);
+            for (int edge = graph.getSuccessorStart(node); edge < graph.getSuccessorEnd(node); edge++) {
+                int successor = graph.getSuccessor(edge);
+                sources[edgeCount] = newNode;
+                targets[edgeCount] = (successor < position) ? successor : (successor == position) ? position :
+                        successor + 1;
+                types[edgeCount++] = (byte) graph.getSuccessorType(edge).ordinal();
+            }
+        }
+        nodes[position] = new ControlFlowNode(EmptyInstruction.INSTANCE, null);
+        sources[edgeCount] = position;
+        targets[edgeCount] = position + 1;
+        types[edgeCount++] = (byte) ControlFlowEdgeType.NORMAL.ordinal();
+        int exitNode = graph.getExitNode() < position ? graph.getExitNode() : graph.getExitNode() + 1;
+        return new DenseControlFlowGraph(nodes, exitNode, sources, targets, types, edgeCount);
+    }
+
+    /**
+     * Copy a graph without a node that has a single successor other than itself; edges into the node go to that
+     * successor instead.
+     */
+    private static DenseControlFlowGraph removeNode(DenseControlFlowGraph graph, int removed) {
+        int replacement = graph.getSuccessor(graph.getSuccessorStart(removed));
+        ControlFlowNode[] nodes = new ControlFlowNode[graph.size() - 1];
+        int[] sources = new int[graph.getEdgeCount()];
+        int[] targets = new int[sources.length];
+        byte[] types = new byte[sources.length];
+        int edgeCount = 0;
+        for (int node = 0; node < graph.size(); node++) {
+            if (node == removed) {
+                continue;
+            }
+            nodes[shift(node, removed)] = new ControlFlowNode(graph.getNode(node).getInstruction(), null);
+            for (int edge = graph.getSuccessorStart(node); edge < graph.getSuccessorEnd(node); edge++) {
+                int successor = graph.getSuccessor(edge);
+                sources[edgeCount] = shift(node, removed);
+                targets[edgeCount] = shift((successor == removed) ? replacement : successor, removed);
+                types[edgeCount++] = (byte) graph.getSuccessorType(edge).ordinal();
+            }
+        }
+        return new DenseControlFlowGraph(nodes, shift(graph.getExitNode(), removed), sources, targets, types,
+                edgeCount);
+    }
+
+    private static int shift(int node, int removed) {
+        return (node > removed) ? node - 1 : node;
+    }
+
+    private static boolean isRemovable(DenseControlFlowGraph graph, int node) {
+        return node != graph.getExitNode() && graph.getSuccessorEnd(node) - graph.getSuccessorStart(node) == 1 &&
+                graph.getSuccessor(graph.getSuccessorStart(node)) != node;
+    }
+
+    /**
+     * Update from {@code oldGraph} to {@code newGraph} and check the result against a rebuild.
+     */
+    private static ControlDependenceUpdater.Result checkUpdate(ControlDependenceUpdater updater, String message,
+                                                               DenseControlFlowGraph oldGraph,
+                                                               DenseControlFlowGraph newGraph) {
+        int[] oldImmediatePostdominators = ImmediatePostdominatorSolver.getImmediatePostdominators(oldGraph);
+        ControlDependenceGraph oldDependences =
+                PostdominanceFrontier.getControlDependenceGraph(oldGraph, oldImmediatePostdominators);
+        ControlDependenceUpdater.Result result =
+                updater.update(oldGraph, oldImmediatePostdominators, oldDependences, newGraph);
+        int[] expectedImmediatePostdominators = ImmediatePostdominatorSolver.getImmediatePostdominators(newGraph);
+        assertEquals(message, Arrays.toString(expectedImmediatePostdominators),
+                Arrays.toString(result.getImmediatePostdominators()));
+        assertEquals(message, PostdominanceFrontier.getControlDependenceGraph(newGraph,
+                expectedImmediatePostdominators).toString(), result.getControlDependenceGraph().toString());
+        return result;
+    }
+
+    public void testEdits() {
+        ControlDependenceUpdater updater = new ControlDependenceUpdater(1);
+        for (long seed = 0; seed < SEED_COUNT; seed++) {
+            SyntheticControlFlowGraphFactory factory = new SyntheticControlFlowGraphFactory(seed);
+            factory.setThrowProbability((seed % 3) / 4.0);
+            DenseControlFlowGraph graph = factory.getDenseControlFlowGraph(20 + (int) seed * 5);
+            Random random = new Random(seed);
+            for (int i = 0; i < EDITS_PER_SEED; i++) {
+                int node = random.nextInt(graph.size());
+                DenseControlFlowGraph edited;
+                String message;
+                if (i % 2 == 1 && isRemovable(graph, node)) {
+                    edited = removeNode(graph, node);
+                    message = "Seed " + seed + ", remove " + node;
+                } else {
+                    edited = insertStatement(graph, node);
+                    message = "Seed " + seed + ", insert before " + node;
+                }
+                assertTrue(message, checkUpdate(updater, message, graph, edited).isIncremental());
+                graph = edited;
+            }
+        }
+        assertEquals(0, updater.getFullRebuildCount());
+        assertEquals(SEED_COUNT * EDITS_PER_SEED, updater.getIncrementalUpdateCount());
+    }
+
+    public void testUnchangedGraph() {
+        ControlDependenceUpdater updater = new ControlDependenceUpdater();
+        DenseControlFlowGraph graph = new SyntheticControlFlowGraphFactory(3).getDenseControlFlowGraph(100);
+        ControlDependenceUpdater.Result result = checkUpdate(updater, "Unchanged", graph,
+                new SyntheticControlFlowGraphFactory(3).getDenseControlFlowGraph(100));
+        assertTrue(result.isIncremental());
+        assertEquals(0, updater.getAffectedNodeCount());
+    }
+
+    /**
+     * Few nodes reach a statement inserted at the entry, but every node reaches one inserted before the exit.
+     */
+    public void testFallsBackWhenTooMuchIsAffected() {
+        ControlDependenceUpdater updater = new ControlDependenceUpdater(0.25);
+        DenseControlFlowGraph graph = new SyntheticControlFlowGraphFactory(5).getDenseControlFlowGraph(200);
+        ControlDependenceUpdater.Result result = checkUpdate(updater, "Insert before entry", graph,
+                insertStatement(graph, 0));
+        assertTrue(result.isIncremental());
+
+        updater = new ControlDependenceUpdater(0.25);
+        result = checkUpdate(updater, "Insert before exit", graph, insertStatement(graph, graph.getExitNode()));
+        assertFalse(result.isIncremental());
+        assertEquals(1, updater.getFullRebuildCount());
+        assertEquals(0, updater.getIncrementalUpdateCount());
+    }
+
+    /**
+     * Copy a graph with a jump to the exit after it, as if from dead code at the end of the method.
+     */
+    private static DenseControlFlowGraph appendJumpToExit(DenseControlFlowGraph graph) {
+        ControlFlowNode[] nodes = new ControlFlowNode[graph.size() + 1];
+        int[] sources = new int[graph.getEdgeCount() + 1];
+        int[] targets = new int[sources.length];
+        byte[] types = new byte[sources.length];
+        int edgeCount = 0;
+        for (int node = 0; node < graph.size(); node++) {
+            nodes[node] = new ControlFlowNode(graph.getNode(node).getInstruction(), null);
+            for (int edge = graph.getSuccessorStart(node); edge < graph.getSuccessorEnd(node); edge++) {
+                sources[edgeCount] = node;
+                targets[edgeCount] = graph.getSuccessor(edge);
+                types[edgeCount++] = (byte) graph.getSuccessorType(edge).ordinal();
+            }
+        }
+        nodes[graph.size()] = new ControlFlowNode(new GoToInstruction(graph.getExitNode()), null);
+        sources[edgeCount] = graph.size();
+        targets[edgeCount] = graph.getExitNode();
+        types[edgeCount++] = (byte) ControlFlowEdgeType.NORMAL.ordinal();
+        return new DenseControlFlowGraph(nodes, graph.getExitNode(), sources, targets, types, edgeCount);
+    }
+
+    /**
+     * An edit that ends the prefix, and a last node that isn't the exit, so that the old exit isn't lined up with
+     * anything.
+     */
+    public void testFallsBackWhenExitIsNotAligned() {
+        ControlDependenceUpdater updater = new ControlDependenceUpdater(1);
+        DenseControlFlowGraph graph = new SyntheticControlFlowGraphFactory(9).getDenseControlFlowGraph(50);
+        int branch = 0;
+        while (graph.getNode(branch).getInstruction() instanceof EmptyInstruction) {
+            branch++;
+        }
+        DenseControlFlowGraph edited = appendJumpToExit(insertStatement(graph, branch));
+
+        assertFalse(checkUpdate(updater, "Unaligned exit", graph, edited).isIncremental());
+        assertEquals(1, updater.getFullRebuildCount());
+        assertEquals(0, updater.getIncrementalUpdateCount());
+    }
+
+    public void testWithoutPreviousGraph() {
+        ControlDependenceUpdater updater = new ControlDependenceUpdater();
+        DenseControlFlowGraph graph = new SyntheticControlFlowGraphFactory(1).getDenseControlFlowGraph(30);
+        ControlDependenceUpdater.Result result = updater.update(null, null, null, graph);
+        assertFalse(result.isIncremental());
+        assertEquals(Arrays.toString(ImmediatePostdominatorSolver.getImmediatePostdominators(graph)),
+                Arrays.toString(result.getImmediatePostdominators()));
+        assertEquals(1, updater.getFullRebuildCount());
+    }
+}
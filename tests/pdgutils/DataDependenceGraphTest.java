@@ -1,6 +1,8 @@
 // Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
 // found in the LICENSE file.
 
+package pdgutils;
+
 import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
 import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.util.text.StringUtil;
@@ -23,9 +25,9 @@ import java.util.regex.Pattern;
 /**
  * @author andrewhead
  */
-public class ControlFlowDependenceTest extends LightCodeInsightTestCase {
+public class DataDependenceGraphTest extends LightCodeInsightTestCase {
     @NonNls
-    private static final String TEST_DIR_PATH = "testData/psi/controlDependenceGraph";
+    private static final String TEST_DIR_PATH = "testData/psi/dataDependenceGraph";
 
     private static void doTestFor(final File file) throws Exception {
         String contents = StringUtil.convertLineSeparators(FileUtil.loadFile(file));
@@ -49,18 +51,17 @@ public class ControlFlowDependenceTest extends LightCodeInsightTestCase {
 
         ControlFlow controlFlow = ControlFlowFactory.getInstance(getProject()).getControlFlow(element, policy);
         ControlFlowGraph controlFlowGraph = ControlFlowGraphFactory.getControlFlowGraph(controlFlow);
-        ControlDependenceGraph controlDependenceGraph = ControlDependenceGraph.from(controlFlowGraph);
-        String result = controlDependenceGraph.toString().trim();
 
         final String expectedFullPath = StringUtil.trimEnd(file.getPath(), ".java") + ".txt";
         VirtualFile expectedFile = LocalFileSystem.getInstance().findFileByPath(expectedFullPath);
         String expected = LoadTextUtil.loadText(expectedFile).toString().trim();
         expected = expected.replaceAll("\r", "");
+
+        DataDependenceGraph dataDependenceGraph = DataDependenceGraph.from(controlFlowGraph);
+        String result = dataDependenceGraph.toString().trim();
         assertEquals("Text mismatch (in file " + expectedFullPath + "):\n", expected, result);
     }
 
-    // Not sure why this is failing on some simple tests (like flow3). It looks like the branching, reading, and
-    // writing structure is correctly captured. So maybe we should just update the test output.
     private static void doAllTests() throws Exception {
         File testDir = new File(TEST_DIR_PATH);
         final File[] files = testDir.listFiles((dir, name) -> name.endsWith(".java"));
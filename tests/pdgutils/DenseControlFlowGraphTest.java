@@ -0,0 +1,103 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import com.intellij.psi.controlFlow.EmptyInstruction;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Node lookups in graphs that share node objects with other graphs.
+ */
+public class DenseControlFlowGraphTest extends TestCase {
+
+    private static ControlFlowNode[] createNodes(int count) {
+        ControlFlowNode[] nodes = new ControlFlowNode[count];
+        for (int i = 0; i < count; i++) {
+            nodes[i] = new ControlFlowNode(EmptyInstruction.INSTANCE, null);
+        }
+        return nodes;
+    }
+
+    /**
+     * Build a chain over {@code nodes}, in the given order.
+     */
+    private static DenseControlFlowGraph createChain(ControlFlowNode... nodes) {
+        int[] sources = new int[nodes.length - 1];
+        int[] targets = new int[nodes.length - 1];
+        byte[] types = new byte[nodes.length - 1];
+        for (int i = 0; i < nodes.length - 1; i++) {
+            sources[i] = i;
+            targets[i] = i + 1;
+            types[i] = (byte) ControlFlowEdgeType.NORMAL.ordinal();
+        }
+        return new DenseControlFlowGraph(nodes.clone(), nodes.length - 1, sources, targets, types, nodes.length - 1);
+    }
+
+    public void testIdsSurviveRenumbering() {
+        ControlFlowNode[] nodes = createNodes(3);
+        DenseControlFlowGraph graph = createChain(nodes[0], nodes[1], nodes[2]);
+        DenseControlFlowGraph reversed = createChain(nodes[2], nodes[1], nodes[0]);
+        for (int i = 0; i < nodes.length; i++) {
+            assertEquals(i, graph.getId(nodes[i]));
+            assertEquals(nodes.length - 1 - i, reversed.getId(nodes[i]));
+        }
+    }
+
+    public void testForeignNodes() {
+        ControlFlowNode[] nodes = createNodes(3);
+        ControlFlowNode foreign = createNodes(1)[0];
+        DenseControlFlowGraph denseGraph = createChain(nodes);
+        assertEquals(DenseControlFlowGraph.NO_NODE, denseGraph.getId(foreign));
+
+        ControlFlowGraph view = new ControlFlowGraph(denseGraph);
+        assertTrue(view.getSuccessors(foreign).isEmpty());
+        assertNull(view.getEdgesTo(foreign));
+        assertEquals(1, view.getSuccessors(nodes[0]).size());
+        assertEquals(1, view.getEdgesTo(nodes[2]).size());
+    }
+
+    public void testBuilderAfterRenumbering() {
+        ControlFlowNode[] nodes = createNodes(3);
+        ControlFlowGraph graph = new ControlFlowGraph();
+        for (ControlFlowNode node : nodes) {
+            graph.addNode(node);
+        }
+        graph.addEdge(nodes[0], nodes[1], ControlFlowEdgeType.NORMAL);
+        graph.addEdge(nodes[1], nodes[2], ControlFlowEdgeType.BRANCH);
+        graph.setExitNode(nodes[2]);
+        String expected = graph.toString();
+
+        // Renumber the shared nodes, then make the builder rebuild its dense graph.
+        createChain(nodes[2], nodes[0], nodes[1]);
+        graph.addNode(createNodes(1)[0]);
+        assertTrue(graph.toString().startsWith(expected));
+        assertEquals(2, graph.getDenseGraph().getExitNode());
+        assertTrue(graph.getSuccessors(nodes[1]).contains(nodes[2]));
+    }
+
+    public void testSuccessorsListedOnce() {
+        ControlFlowNode[] nodes = createNodes(3);
+        ControlFlowGraph graph = new ControlFlowGraph();
+        for (ControlFlowNode node : nodes) {
+            graph.addNode(node);
+        }
+        graph.addEdge(nodes[0], nodes[1], ControlFlowEdgeType.NORMAL);
+        graph.addEdge(nodes[0], nodes[1], ControlFlowEdgeType.EXCEPTION);
+        graph.addEdge(nodes[0], nodes[2], ControlFlowEdgeType.EXCEPTION);
+        graph.setExitNode(nodes[2]);
+        Set<ControlFlowNode> successors = graph.getSuccessors(nodes[0]);
+        assertEquals(new HashSet<>(Arrays.asList(nodes[1], nodes[2])), successors);
+        assertEquals(2, successors.size());
+        assertFalse(successors.contains(nodes[0]));
+        try {
+            successors.add(nodes[0]);
+            fail("Successors accepted an added node");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+}
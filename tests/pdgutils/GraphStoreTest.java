@@ -0,0 +1,168 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import com.intellij.openapi.util.io.FileUtil;
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Graphs written to a {@link GraphStoreWriter} are found by signature in the {@link GraphStore} opened on them.
+ */
+public class GraphStoreTest extends TestCase {
+
+    private static final int GRAPH_COUNT = 300;
+
+    private File mDirectory;
+    private List<ControlDependenceGraph> mGraphs;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        mDirectory = FileUtil.createTempDirectory("graphStore", null);
+        mGraphs = new ArrayList<>();
+        // Small segments, so that the graphs are spread over many of them.
+        try (GraphStoreWriter writer = new GraphStoreWriter(mDirectory, 512)) {
+            for (int i = 0; i < GRAPH_COUNT; i++) {
+                DenseControlFlowGraph graph =
+                        new SyntheticControlFlowGraphFactory(i).getDenseControlFlowGraph(5 + i % 40);
+                ControlDependenceGraph dependences = PostdominanceFrontier.getControlDependenceGraph(graph,
+                        ImmediatePostdominatorSolver.getImmediatePostdominators(graph));
+                mGraphs.add(dependences);
+                writer.add(getSignature(i), graph, dependences);
+            }
+            assertEquals(GRAPH_COUNT, writer.getGraphCount());
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtil.delete(mDirectory);
+        super.tearDown();
+    }
+
+    private static String getSignature(int i) {
+        return "a.B#m" + i + "(int)";
+    }
+
+    private static int getSegmentCount(File directory) {
+        int count = 0;
+        while (GraphStore.getSegmentFile(directory, count).exists()) {
+            count++;
+        }
+        return count;
+    }
+
+    public void testLookupAcrossSegments() throws IOException {
+        assertTrue(getSegmentCount(mDirectory) > 10);
+        try (GraphStore store = GraphStore.open(mDirectory)) {
+            assertEquals(GRAPH_COUNT, store.getGraphCount());
+            // Look graphs up out of order, so segments are mapped in no particular order.
+            for (int i = GRAPH_COUNT - 1; i >= 0; i -= 2) {
+                assertEquals(mGraphs.get(i).toString(), store.read(getSignature(i)).toString());
+            }
+            for (int i = 0; i < GRAPH_COUNT; i += 2) {
+                GraphRecord record = store.read(getSignature(i));
+                assertEquals(getSignature(i), record.getName());
+                assertEquals(mGraphs.get(i).toString(), record.toString());
+            }
+            assertNull(store.read("a.B#missing()"));
+            assertFalse(store.contains("a.B#m" + GRAPH_COUNT + "(int)"));
+        }
+    }
+
+    public void testVisitor() throws IOException {
+        try (GraphStore store = GraphStore.open(mDirectory)) {
+            int[] nodeCount = new int[1];
+            assertTrue(store.accept(getSignature(7), new GraphReader.Visitor() {
+                @Override
+                public void visitNode(int node, InstructionKind kind, int startOffset, int endOffset) {
+                    nodeCount[0]++;
+                }
+            }));
+            assertEquals(mGraphs.get(7).size(), nodeCount[0]);
+            assertFalse(store.accept("a.B#missing()", new GraphReader.Visitor() {
+            }));
+        }
+    }
+
+    /**
+     * Give every index entry the hash of one signature, so that a lookup of it has to check the signature of every
+     * record, and a lookup of anything else finds nothing.
+     */
+    public void testHashCollisions() throws IOException {
+        String collidingSignature = getSignature(GRAPH_COUNT / 2);
+        try (RandomAccessFile index = new RandomAccessFile(new File(mDirectory, GraphStore.INDEX_FILE_NAME), "rw")) {
+            for (int entry = 0; entry < GRAPH_COUNT; entry++) {
+                index.seek(16 + entry * 16L);
+                index.writeLong(GraphStore.hash(collidingSignature));
+            }
+        }
+        try (GraphStore store = GraphStore.open(mDirectory)) {
+            assertEquals(mGraphs.get(GRAPH_COUNT / 2).toString(), store.read(collidingSignature).toString());
+            assertNull(store.read(getSignature(0)));
+        }
+    }
+
+    public void testConcurrentReads() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (GraphStore store = GraphStore.open(mDirectory)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                int first = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = first; i < GRAPH_COUNT; i += 3) {
+                        assertEquals(mGraphs.get(i).toString(), store.read(getSignature(i)).toString());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    public void testReadAfterClose() throws IOException {
+        GraphStore store = GraphStore.open(mDirectory);
+        assertTrue(store.contains(getSignature(0)));
+        store.close();
+        try {
+            store.read(getSignature(0));
+            fail("Expected reads of a closed store to fail");
+        } catch (IOException expected) {
+        }
+    }
+
+    public void testDuplicateSignature() throws IOException {
+        File directory = FileUtil.createTempDirectory("graphStore", null);
+        try {
+            GraphStoreWriter writer = new GraphStoreWriter(directory, 1);
+            DenseControlFlowGraph graph = new SyntheticControlFlowGraphFactory(0).getDenseControlFlowGraph(10);
+            writer.add("a.B#m()", graph, null);
+            writer.add("a.B#n()", graph, null);
+            writer.add("a.B#m()", graph, null);
+            assertEquals(3, writer.getGraphCount());
+            try {
+                writer.close();
+                fail("Expected a duplicate signature to be rejected");
+            } catch (IllegalArgumentException expected) {
+                assertTrue(expected.getMessage().contains("a.B#m()"));
+            }
+            assertFalse(new File(directory, GraphStore.INDEX_FILE_NAME).exists());
+        } finally {
+            FileUtil.delete(directory);
+        }
+    }
+}
@@ -0,0 +1,366 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * DOT output parses the way Graphviz reads it and each JSON Lines line is a JSON object, with names that need escaping
+ * in each syntax read back as they were written.
+ */
+public class GraphTextWriterTest extends TestCase {
+
+    private static final String AWKWARD_NAME = "A#m(\"q\" & \\n\r\n\u0001)\\";
+
+    private static final class Graph {
+        final String mName;
+        final DenseControlFlowGraph mControlFlowGraph;
+        final ControlDependenceGraph mControlDependenceGraph;
+
+        Graph(String name, long seed) {
+            ControlFlowGraph graph = new SyntheticControlFlowGraphFactory(seed).getControlFlowGraph(20);
+            mName = name;
+            mControlFlowGraph = graph.getDenseGraph();
+            mControlDependenceGraph = ControlDependenceGraph.from(graph);
+        }
+
+        int getEdgeCount() {
+            return mControlFlowGraph.getEdgeCount() + mControlDependenceGraph.getDependenceCount();
+        }
+    }
+
+    private static List<Graph> getGraphs() {
+        List<Graph> graphs = new ArrayList<>();
+        graphs.add(new Graph(AWKWARD_NAME, 1));
+        graphs.add(new Graph("B#n()", 2));
+        return graphs;
+    }
+
+    private static String write(GraphTextWriter writer, StringWriter text, List<Graph> graphs) throws IOException {
+        for (Graph graph : graphs) {
+            writer.write(graph.mName, graph.mControlFlowGraph, graph.mControlDependenceGraph);
+        }
+        writer.close();
+        return text.toString();
+    }
+
+    public void testDot() throws IOException {
+        List<Graph> graphs = getGraphs();
+        StringWriter text = new StringWriter();
+        DotParser parser = new DotParser(write(new DotGraphWriter(text), text, graphs));
+        for (Graph graph : graphs) {
+            DotGraph parsed = parser.parseGraph();
+            assertEquals(graph.mName.replace("\r", ""), parsed.mName);
+            assertEquals(graph.mControlFlowGraph.size(), parsed.mNodes.size());
+            assertEquals(graph.getEdgeCount(), parsed.mEdgeCount);
+            for (int node = 0; node < graph.mControlFlowGraph.size(); node++) {
+                Map<String, String> attributes = parsed.mNodes.get("n" + node);
+                assertNotNull(attributes);
+                assertTrue(attributes.get("label").startsWith(node + ": "));
+                assertEquals(node == graph.mControlFlowGraph.getExitNode(), attributes.containsKey("peripheries"));
+            }
+        }
+        assertTrue(parser.atEnd());
+    }
+
+    public void testJsonLines() throws IOException {
+        List<Graph> graphs = getGraphs();
+        StringWriter text = new StringWriter();
+        String[] lines = write(new JsonLinesGraphWriter(text), text, graphs).split("\n", -1);
+        assertEquals("", lines[lines.length - 1]);
+        int line = 0;
+        for (Graph graph : graphs) {
+            Map<?, ?> header = (Map<?, ?>) new JsonParser(lines[line++]).parseLine();
+            assertEquals(graph.mName, header.get("graph"));
+            assertEquals((double) graph.mControlFlowGraph.size(), header.get("nodeCount"));
+            assertEquals((double) graph.mControlFlowGraph.getExitNode(), header.get("exitNode"));
+            int edgeCount = 0;
+            for (int node = 0; node < graph.mControlFlowGraph.size(); node++) {
+                Map<?, ?> parsed = (Map<?, ?>) new JsonParser(lines[line++]).parseLine();
+                assertEquals(graph.mName, parsed.get("graph"));
+                assertEquals((double) node, parsed.get("node"));
+                for (String group : new String[]{"successors", "controllers"}) {
+                    if (parsed.containsKey(group)) {
+                        edgeCount += ((List<?>) parsed.get(group)).size();
+                    }
+                }
+            }
+            assertEquals(graph.getEdgeCount(), edgeCount);
+        }
+        assertEquals(lines.length - 1, line);
+    }
+
+    private static final class DotGraph {
+        String mName;
+        final Map<String, Map<String, String>> mNodes = new LinkedHashMap<>();
+        int mEdgeCount;
+    }
+
+    /**
+     * Reads the part of the DOT language the writer uses, tokenizing quoted strings the way Graphviz does: a backslash
+     * escapes a following quote and is otherwise kept. Labels are then decoded like Graphviz's, for the escapes the
+     * writer uses.
+     */
+    private static final class DotParser {
+        private final String mText;
+        private int mPosition;
+
+        DotParser(String text) {
+            mText = text;
+        }
+
+        boolean atEnd() {
+            skipWhitespace();
+            return mPosition == mText.length();
+        }
+
+        DotGraph parseGraph() {
+            DotGraph graph = new DotGraph();
+            expect("digraph");
+            graph.mName = decode(readId());
+            expect("{");
+            Set<String> endpoints = new HashSet<>();
+            while (!peek("}")) {
+                String id = readId();
+                if (peek("->")) {
+                    expect("->");
+                    endpoints.add(id);
+                    endpoints.add(readId());
+                    readAttributes();
+                    graph.mEdgeCount++;
+                } else {
+                    Map<String, String> attributes = readAttributes();
+                    if (!id.equals("node") && !id.equals("edge") && !id.equals("graph")) {
+                        assertNull("Node " + id + " declared twice", graph.mNodes.put(id, attributes));
+                    }
+                }
+                expect(";");
+            }
+            expect("}");
+            // Edges can come before the nodes they point to, but every node they name should be declared.
+            assertTrue(graph.mNodes.keySet().containsAll(endpoints));
+            return graph;
+        }
+
+        private Map<String, String> readAttributes() {
+            Map<String, String> attributes = new LinkedHashMap<>();
+            if (!peek("[")) {
+                return attributes;
+            }
+            expect("[");
+            while (!peek("]")) {
+                String key = readId();
+                expect("=");
+                attributes.put(key, decode(readId()));
+                if (peek(",")) {
+                    expect(",");
+                }
+            }
+            expect("]");
+            return attributes;
+        }
+
+        private String readId() {
+            skipWhitespace();
+            StringBuilder id = new StringBuilder();
+            if (mPosition < mText.length() && mText.charAt(mPosition) == '"') {
+                mPosition++;
+                while (true) {
+                    assertTrue("Unterminated string", mPosition < mText.length());
+                    char c = mText.charAt(mPosition++);
+                    if (c == '"') {
+                        return id.toString();
+                    }
+                    if (c == '\\' && mPosition < mText.length() && mText.charAt(mPosition) == '"') {
+                        c = mText.charAt(mPosition++);
+                    } else {
+                        assertTrue("Line break in a string", c != '\n' && c != '\r');
+                    }
+                    id.append(c);
+                }
+            }
+            while (mPosition < mText.length() && (Character.isLetterOrDigit(mText.charAt(mPosition)) ||
+                    mText.charAt(mPosition) == '_')) {
+                id.append(mText.charAt(mPosition++));
+            }
+            assertTrue("Expected an id at " + mPosition, id.length() > 0);
+            return id.toString();
+        }
+
+        private static String decode(String label) {
+            StringBuilder decoded = new StringBuilder();
+            for (int i = 0; i < label.length(); i++) {
+                char c = label.charAt(i);
+                if (c == '\\') {
+                    assertTrue("Unexpected escape in " + label, label.startsWith("\\n", i));
+                    decoded.append('\n');
+                    i++;
+                } else if (label.startsWith("&#92;", i)) {
+                    decoded.append('\\');
+                    i += 4;
+                } else if (label.startsWith("&amp;", i)) {
+                    decoded.append('&');
+                    i += 4;
+                } else {
+                    assertTrue("Unescaped ampersand in " + label, c != '&');
+                    decoded.append(c);
+                }
+            }
+            return decoded.toString();
+        }
+
+        private boolean peek(String token) {
+            skipWhitespace();
+            return mText.startsWith(token, mPosition);
+        }
+
+        private void expect(String token) {
+            assertTrue("Expected " + token + " at " + mPosition, peek(token));
+            mPosition += token.length();
+        }
+
+        private void skipWhitespace() {
+            while (mPosition < mText.length() && Character.isWhitespace(mText.charAt(mPosition))) {
+                mPosition++;
+            }
+        }
+    }
+
+    /**
+     * A strict JSON parser, after RFC 8259, for one value per line. Numbers are read as doubles.
+     */
+    private static final class JsonParser {
+        private final String mText;
+        private int mPosition;
+
+        JsonParser(String text) {
+            mText = text;
+        }
+
+        Object parseLine() {
+            Object value = parseValue();
+            skipWhitespace();
+            assertEquals("Trailing text in " + mText, mText.length(), mPosition);
+            return value;
+        }
+
+        private Object parseValue() {
+            skipWhitespace();
+            assertTrue("Missing value in " + mText, mPosition < mText.length());
+            char c = mText.charAt(mPosition);
+            if (c == '{') {
+                Map<String, Object> object = new LinkedHashMap<>();
+                mPosition++;
+                if (!consume('}')) {
+                    do {
+                        skipWhitespace();
+                        String key = parseString();
+                        assertTrue("Expected : in " + mText, consume(':'));
+                        assertFalse("Duplicate key " + key, object.containsKey(key));
+                        object.put(key, parseValue());
+                    } while (consume(','));
+                    assertTrue("Expected } in " + mText, consume('}'));
+                }
+                return object;
+            }
+            if (c == '[') {
+                List<Object> array = new ArrayList<>();
+                mPosition++;
+                if (!consume(']')) {
+                    do {
+                        array.add(parseValue());
+                    } while (consume(','));
+                    assertTrue("Expected ] in " + mText, consume(']'));
+                }
+                return array;
+            }
+            if (c == '"') {
+                return parseString();
+            }
+            for (String literal : new String[]{"true", "false", "null"}) {
+                if (mText.startsWith(literal, mPosition)) {
+                    mPosition += literal.length();
+                    return literal.equals("null") ? null : Boolean.valueOf(literal);
+                }
+            }
+            int start = mPosition;
+            take('-');
+            if (!take('0')) {
+                assertTrue("Bad number in " + mText, readDigits() > 0);
+            }
+            if (take('.')) {
+                assertTrue("Bad fraction in " + mText, readDigits() > 0);
+            }
+            if (take('e') || take('E')) {
+                if (!take('+')) {
+                    take('-');
+                }
+                assertTrue("Bad exponent in " + mText, readDigits() > 0);
+            }
+            return Double.parseDouble(mText.substring(start, mPosition));
+        }
+
+        private String parseString() {
+            assertTrue("Expected a string in " + mText, consume('"'));
+            StringBuilder string = new StringBuilder();
+            while (true) {
+                assertTrue("Unterminated string in " + mText, mPosition < mText.length());
+                char c = mText.charAt(mPosition++);
+                if (c == '"') {
+                    return string.toString();
+                }
+                assertTrue("Unescaped control character in " + mText, c >= 0x20);
+                if (c != '\\') {
+                    string.append(c);
+                    continue;
+                }
+                char escape = mText.charAt(mPosition++);
+                int index = "\"\\/bfnrt".indexOf(escape);
+                if (index >= 0) {
+                    string.append("\"\\/\b\f\n\r\t".charAt(index));
+                } else {
+                    assertEquals("Bad escape in " + mText, 'u', escape);
+                    string.append((char) Integer.parseInt(mText.substring(mPosition, mPosition + 4), 16));
+                    mPosition += 4;
+                }
+            }
+        }
+
+        private int readDigits() {
+            int start = mPosition;
+            while (mPosition < mText.length() && mText.charAt(mPosition) >= '0' && mText.charAt(mPosition) <= '9') {
+                mPosition++;
+            }
+            return mPosition - start;
+        }
+
+        private boolean consume(char c) {
+            skipWhitespace();
+            return take(c);
+        }
+
+        private boolean take(char c) {
+            if (mPosition < mText.length() && mText.charAt(mPosition) == c) {
+                mPosition++;
+                return true;
+            }
+            return false;
+        }
+
+        private void skipWhitespace() {
+            while (mPosition < mText.length() && " \t".indexOf(mText.charAt(mPosition)) >= 0) {
+                mPosition++;
+            }
+        }
+    }
+}
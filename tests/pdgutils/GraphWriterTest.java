@@ -0,0 +1,268 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiStatement;
+import com.intellij.psi.controlFlow.ControlFlow;
+import com.intellij.psi.controlFlow.ControlFlowFactory;
+import com.intellij.psi.controlFlow.EmptyInstruction;
+import com.intellij.psi.controlFlow.LocalsOrMyInstanceFieldsControlFlowPolicy;
+import com.intellij.psi.controlFlow.SimpleInstruction;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+import org.jetbrains.annotations.NonNls;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Graphs written by {@link GraphWriter} read back the same through {@link GraphReader}.
+ */
+public class GraphWriterTest extends LightCodeInsightTestCase {
+    @NonNls
+    private static final String TEST_DIR_PATH = "testData/psi/controlFlowGraph";
+
+    /**
+     * A graph written with {@link GraphWriter}, and what it should read back as.
+     */
+    private static class Written {
+
+        private final String mName;
+        private final DenseControlFlowGraph mControlFlowGraph;
+        private final ControlDependenceGraph mControlDependenceGraph;
+
+        Written(String name, DenseControlFlowGraph controlFlowGraph, ControlDependenceGraph controlDependenceGraph) {
+            mName = name;
+            mControlFlowGraph = controlFlowGraph;
+            mControlDependenceGraph = controlDependenceGraph;
+        }
+
+        int size() {
+            return (mControlFlowGraph != null) ? mControlFlowGraph.size() : mControlDependenceGraph.size();
+        }
+
+        ControlFlowNode getNode(int node) {
+            return (mControlFlowGraph != null) ? mControlFlowGraph.getNode(node) :
+                    mControlDependenceGraph.getNodes().get(node);
+        }
+    }
+
+    private static PsiCodeBlock configure(File file) throws Exception {
+        String contents = StringUtil.convertLineSeparators(FileUtil.loadFile(file));
+        configureFromFileText(file.getName(), contents);
+        PsiElement element = getFile().findElementAt(getEditor().getCaretModel().getOffset());
+        PsiCodeBlock block = PsiTreeUtil.getParentOfType(element, PsiCodeBlock.class, false);
+        assertNotNull("Selected element: " + element, block);
+        return block;
+    }
+
+    /**
+     * Build a graph with what the fixtures don't have: nodes whose elements come in reverse order, a node without an
+     * element, an instruction of no known kind, an edge of each type, empty rows and no exit node.
+     */
+    private static Written createUnusualGraph(PsiCodeBlock block) {
+        List<PsiElement> elements = new ArrayList<>(PsiTreeUtil.findChildrenOfType(block, PsiStatement.class));
+        assertTrue(elements.size() >= 2);
+        Collections.reverse(elements);
+        int nodeCount = elements.size() + 2;
+        ControlFlowNode[] nodes = new ControlFlowNode[nodeCount];
+        for (int i = 0; i < elements.size(); i++) {
+            nodes[i] = new ControlFlowNode(EmptyInstruction.INSTANCE, elements.get(i));
+        }
+        nodes[nodeCount - 2] = new ControlFlowNode(new SimpleInstruction() {
+            @Override
+            public String toString() {
+                return "OTHER";
+            }
+        }, null);
+        nodes[nodeCount - 1] = new ControlFlowNode(new StatementInstruction(0, 1), elements.get(0));
+
+        ControlFlowEdgeType[] types = ControlFlowEdgeType.values();
+        int[] sources = new int[types.length + 1];
+        int[] targets = new int[types.length + 1];
+        byte[] edgeTypes = new byte[types.length + 1];
+        int[] dependenceOffsets = new int[nodeCount + 1];
+        int[] controllers = new int[types.length];
+        byte[] dependenceTypes = new byte[types.length];
+        for (int i = 0; i < types.length; i++) {
+            // Edges from the last node go backward, so their first deltas are negative.
+            sources[i] = nodeCount - 1;
+            targets[i] = types.length - 1 - i;
+            edgeTypes[i] = (byte) types[i].ordinal();
+            controllers[i] = nodeCount - 1 - i % 2;
+            dependenceTypes[i] = (byte) types[i].ordinal();
+        }
+        sources[types.length] = 0;
+        targets[types.length] = 0;
+        edgeTypes[types.length] = (byte) ControlFlowEdgeType.NORMAL.ordinal();
+        // Only node 1 has dependences; the other rows are empty.
+        for (int node = 2; node <= nodeCount; node++) {
+            dependenceOffsets[node] = types.length;
+        }
+        DenseControlFlowGraph graph = new DenseControlFlowGraph(nodes, DenseControlFlowGraph.NO_NODE, sources, targets,
+                edgeTypes, sources.length);
+        ControlDependenceGraph dependences = new ControlDependenceGraph(Arrays.asList(nodes), dependenceOffsets,
+                controllers, dependenceTypes);
+        return new Written("unusual", graph, dependences);
+    }
+
+    private static List<String> getSuccessors(DenseControlFlowGraph graph, int node) {
+        List<String> successors = new ArrayList<>();
+        for (int edge = graph.getSuccessorStart(node); edge < graph.getSuccessorEnd(node); edge++) {
+            successors.add(graph.getSuccessor(edge) + "." + graph.getSuccessorType(edge));
+        }
+        Collections.sort(successors);
+        return successors;
+    }
+
+    private static List<String> getSuccessors(GraphRecord record, int node) {
+        List<String> successors = new ArrayList<>();
+        for (int edge = record.getSuccessorStart(node); edge < record.getSuccessorEnd(node); edge++) {
+            successors.add(record.getSuccessor(edge) + "." + record.getSuccessorType(edge));
+        }
+        Collections.sort(successors);
+        return successors;
+    }
+
+    private static List<String> getDependences(ControlDependenceGraph graph, int node) {
+        List<String> dependences = new ArrayList<>();
+        for (int dependence = graph.getDependenceStart(node); dependence < graph.getDependenceEnd(node);
+             dependence++) {
+            dependences.add(graph.getDependenceTarget(dependence) + "." + graph.getDependenceType(dependence));
+        }
+        Collections.sort(dependences);
+        return dependences;
+    }
+
+    private static List<String> getDependences(GraphRecord record, int node) {
+        List<String> dependences = new ArrayList<>();
+        for (int dependence = record.getDependenceStart(node); dependence < record.getDependenceEnd(node);
+             dependence++) {
+            dependences.add(record.getDependenceTarget(dependence) + "." + record.getDependenceType(dependence));
+        }
+        Collections.sort(dependences);
+        return dependences;
+    }
+
+    private static void checkRecord(Written written, GraphRecord record, Set<InstructionKind> kinds,
+                                    Set<ControlFlowEdgeType> types) {
+        String name = written.mName;
+        assertEquals(name, record.getName());
+        assertEquals(name, written.size(), record.size());
+        assertEquals(name, written.mControlFlowGraph != null, record.hasControlFlow());
+        assertEquals(name, written.mControlDependenceGraph != null, record.hasControlDependences());
+        for (int node = 0; node < written.size(); node++) {
+            InstructionKind kind = InstructionKind.of(written.getNode(node).getInstruction());
+            kinds.add(kind);
+            assertEquals(name + ": kind of " + node, kind, record.getKind(node));
+            PsiElement element = written.getNode(node).getElement();
+            TextRange range = (element != null) ? element.getTextRange() : null;
+            assertEquals(name + ": start of " + node, (range != null) ? range.getStartOffset() : GraphRecord.NO_OFFSET,
+                    record.getStartOffset(node));
+            assertEquals(name + ": end of " + node, (range != null) ? range.getEndOffset() : GraphRecord.NO_OFFSET,
+                    record.getEndOffset(node));
+        }
+        if (written.mControlFlowGraph != null) {
+            DenseControlFlowGraph graph = written.mControlFlowGraph;
+            assertEquals(name, graph.getExitNode(), record.getExitNode());
+            for (int node = 0; node < graph.size(); node++) {
+                assertEquals(name + ": successors of " + node, getSuccessors(graph, node),
+                        getSuccessors(record, node));
+                for (int edge = graph.getSuccessorStart(node); edge < graph.getSuccessorEnd(node); edge++) {
+                    types.add(graph.getSuccessorType(edge));
+                }
+            }
+        }
+        if (written.mControlDependenceGraph != null) {
+            ControlDependenceGraph graph = written.mControlDependenceGraph;
+            for (int node = 0; node < graph.size(); node++) {
+                assertEquals(name + ": dependences of " + node, getDependences(graph, node),
+                        getDependences(record, node));
+            }
+        }
+    }
+
+    public void testRoundTrip() throws Exception {
+        File[] files = new File(TEST_DIR_PATH).listFiles((dir, name) -> name.endsWith(".java"));
+        assertTrue(files.length > 0);
+        Set<InstructionKind> kinds = EnumSet.noneOf(InstructionKind.class);
+        Set<ControlFlowEdgeType> types = EnumSet.noneOf(ControlFlowEdgeType.class);
+        for (File file : files) {
+            // The PSI of each fixture is only valid until the next is configured, so each is checked right away.
+            PsiCodeBlock block = configure(file);
+            ControlFlow controlFlow = ControlFlowFactory.getInstance(getProject()).getControlFlow(block,
+                    LocalsOrMyInstanceFieldsControlFlowPolicy.getInstance());
+            DenseControlFlowGraph graph = ControlFlowGraphFactory.getControlFlowGraph(controlFlow).getDenseGraph();
+            ControlDependenceGraph dependences = PostdominanceFrontier.getControlDependenceGraph(graph,
+                    ImmediatePostdominatorSolver.getImmediatePostdominators(graph));
+            BasicBlockGraph blocks = BasicBlockGraph.from(graph);
+            List<Written> fileGraphs = Arrays.asList(
+                    new Written(file.getName(), graph, dependences),
+                    new Written(file.getName() + " flow", graph, null),
+                    new Written(file.getName() + " dependences", null, dependences),
+                    new Written(file.getName() + " blocks", blocks.getBlockGraph(), null),
+                    createUnusualGraph(block));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            GraphWriter writer = new GraphWriter(new DataOutputStream(bytes));
+            writer.writeHeader();
+            for (Written graphToWrite : fileGraphs) {
+                writer.write(graphToWrite.mName, graphToWrite.mControlFlowGraph,
+                        graphToWrite.mControlDependenceGraph);
+            }
+            GraphReader reader = new GraphReader(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+            reader.readHeader();
+            for (Written graphToCheck : fileGraphs) {
+                GraphRecord record = reader.read();
+                assertNotNull(graphToCheck.mName, record);
+                checkRecord(graphToCheck, record, kinds, types);
+            }
+            assertNull(reader.read());
+        }
+        assertEquals(EnumSet.allOf(InstructionKind.class), kinds);
+        assertEquals(EnumSet.allOf(ControlFlowEdgeType.class), types);
+    }
+
+    public void testEmptyGraph() throws Exception {
+        DenseControlFlowGraph graph = new DenseControlFlowGraph(new ControlFlowNode[0], DenseControlFlowGraph.NO_NODE,
+                new int[0], new int[0], new byte[0], 0);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new GraphWriter(new DataOutputStream(bytes)).write("empty", graph, null);
+        GraphRecord record = new GraphReader(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())))
+                .read();
+        assertEquals("empty", record.getName());
+        assertEquals(0, record.size());
+        assertEquals(DenseControlFlowGraph.NO_NODE, record.getExitNode());
+    }
+
+    public void testRejectsUnknownEdgeType() throws Exception {
+        ControlFlowNode[] nodes = {new ControlFlowNode(EmptyInstruction.INSTANCE, null)};
+        DenseControlFlowGraph graph = new DenseControlFlowGraph(nodes, 0, new int[]{0}, new int[]{0},
+                new byte[]{(byte) ControlFlowEdgeType.NORMAL.ordinal()}, 1);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new GraphWriter(new DataOutputStream(bytes)).write("loop", graph, null);
+        byte[] data = bytes.toByteArray();
+        // The record ends with the type of its only edge.
+        data[data.length - 1] = (byte) ControlFlowEdgeType.values().length;
+        try {
+            new GraphReader(new DataInputStream(new ByteArrayInputStream(data))).read();
+            fail("Expected an unknown edge type to be rejected");
+        } catch (IOException expected) {
+        }
+    }
+}
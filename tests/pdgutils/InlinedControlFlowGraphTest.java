@@ -0,0 +1,119 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.controlFlow.ControlFlow;
+import com.intellij.psi.controlFlow.ControlFlowFactory;
+import com.intellij.psi.controlFlow.ControlFlowPolicy;
+import com.intellij.psi.controlFlow.LocalsOrMyInstanceFieldsControlFlowPolicy;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+import org.jetbrains.annotations.NonNls;
+
+import java.io.File;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @author andrewhead
+ */
+public class InlinedControlFlowGraphTest extends LightCodeInsightTestCase {
+    @NonNls
+    private static final String TEST_DIR_PATH = "testData/psi/inlinedControlFlowGraph";
+
+    private static ControlFlow getControlFlow(final File file) throws Exception {
+        String contents = StringUtil.convertLineSeparators(FileUtil.loadFile(file));
+        configureFromFileText(file.getName(), contents);
+        // extract factory policy class name
+        Pattern pattern = Pattern.compile("^// (\\S*).*", Pattern.DOTALL);
+        Matcher matcher = pattern.matcher(contents);
+        assertTrue(matcher.matches());
+        final String policyClassName = matcher.group(1);
+        final ControlFlowPolicy policy;
+        if ("LocalsOrMyInstanceFieldsControlFlowPolicy".equals(policyClassName)) {
+            policy = LocalsOrMyInstanceFieldsControlFlowPolicy.getInstance();
+        } else {
+            policy = null;
+        }
+
+        final int offset = getEditor().getCaretModel().getOffset();
+        PsiElement element = getFile().findElementAt(offset);
+        element = PsiTreeUtil.getParentOfType(element, PsiCodeBlock.class, false);
+        assertNotNull("Selected element: " + element, element);
+
+        return ControlFlowFactory.getInstance(getProject()).getControlFlow(element, policy);
+    }
+
+    private static void checkText(final String expectedFullPath, final String result) {
+        VirtualFile expectedFile = LocalFileSystem.getInstance().findFileByPath(expectedFullPath);
+        assertNotNull(expectedFullPath, expectedFile);
+        String expected = LoadTextUtil.loadText(expectedFile).toString().trim();
+        expected = expected.replaceAll("\r", "");
+        assertEquals("Text mismatch (in file " + expectedFullPath + "):\n", expected, result.trim());
+    }
+
+    private static void doTestFor(final File file) throws Exception {
+        ControlFlow controlFlow = getControlFlow(file);
+        InlinedControlFlowGraph inlinedGraph = ControlFlowGraphFactory.getInlinedControlFlowGraph(controlFlow);
+
+        final String expectedPath = StringUtil.trimEnd(file.getPath(), ".java");
+        checkText(expectedPath + ".txt", new ControlFlowGraph(inlinedGraph.getInlinedGraph()).toString());
+        checkText(expectedPath + ".dependences.txt", inlinedGraph.getControlDependences().toString());
+
+        // Without room to grow, the graph should be left as it was.
+        InlinedControlFlowGraph sharedGraph = ControlFlowGraphFactory.getInlinedControlFlowGraph(controlFlow, 0);
+        assertEquals(ControlFlowGraphFactory.getControlFlowGraph(controlFlow).toString(),
+                new ControlFlowGraph(sharedGraph.getInlinedGraph()).toString());
+    }
+
+    private static void doAllTests() throws Exception {
+        File testDir = new File(TEST_DIR_PATH);
+        final File[] files = testDir.listFiles((dir, name) -> name.endsWith(".java"));
+        for (int i = 0; i < files.length; i++) {
+            File file = files[i];
+            doTestFor(file);
+
+            System.out.print((i + 1) + " ");
+        }
+    }
+
+    public void test() throws Exception {
+        doAllTests();
+    }
+
+    /**
+     * A budget with room for copies of the inner finally block but not of the outer one leaves the calls past it
+     * sharing their subroutine. Every edge is still a copy of an instruction graph edge.
+     */
+    public void testBudgetRunsOut() throws Exception {
+        ControlFlow controlFlow = getControlFlow(new File(TEST_DIR_PATH, "flowNestedFinally.java"));
+        DenseControlFlowGraph instructionGraph = ControlFlowGraphFactory.getDenseControlFlowGraph(controlFlow);
+        int maxNodes = instructionGraph.size() + 9;
+        InlinedControlFlowGraph inlinedGraph = InlinedControlFlowGraph.from(instructionGraph, maxNodes);
+        DenseControlFlowGraph graph = inlinedGraph.getInlinedGraph();
+        assertTrue(graph.size() <= maxNodes);
+        assertEquals(4, inlinedGraph.getCopyCount());
+        assertEquals(3, inlinedGraph.getSharedCallCount());
+        for (int node = 0; node < graph.size(); node++) {
+            for (int edge = graph.getSuccessorStart(node); edge < graph.getSuccessorEnd(node); edge++) {
+                int instruction = inlinedGraph.getInstruction(node);
+                int target = inlinedGraph.getInstruction(graph.getSuccessor(edge));
+                boolean found = false;
+                for (int original = instructionGraph.getSuccessorStart(instruction);
+                     original < instructionGraph.getSuccessorEnd(instruction); original++) {
+                    found |= instructionGraph.getSuccessor(original) == target;
+                }
+                assertTrue(node + " -> " + graph.getSuccessor(edge) + " copies no edge", found);
+            }
+        }
+        inlinedGraph.getControlDependences();
+    }
+}
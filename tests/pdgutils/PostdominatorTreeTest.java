@@ -0,0 +1,91 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import com.intellij.psi.controlFlow.EmptyInstruction;
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Frozen trees and graph snapshots agree with the graphs they were made from, and read-only views can't be modified.
+ */
+public class PostdominatorTreeTest extends TestCase {
+
+    public void testMatchesImmediatePostdominatorTree() {
+        for (long seed = 0; seed < 30; seed++) {
+            SyntheticControlFlowGraphFactory factory = new SyntheticControlFlowGraphFactory(seed);
+            factory.setThrowProbability((seed % 3) / 4.0);
+            ControlFlowGraph graph = factory.getControlFlowGraph(5 + (int) seed * 4);
+            DenseControlFlowGraph denseGraph = graph.getDenseGraph();
+            ImmediatePostdominatorTree tree = ImmediatePostdominatorSolver.solve(graph);
+            PostdominatorTree frozen = tree.freeze(denseGraph);
+            assertEquals(denseGraph.size(), frozen.size());
+            for (int node = 0; node < denseGraph.size(); node++) {
+                ControlFlowNode parent = tree.getParent(denseGraph.getNode(node));
+                assertEquals((parent != null) ? denseGraph.getId(parent) : DenseControlFlowGraph.NO_NODE,
+                        frozen.getParent(node));
+                for (int postdominator = 0; postdominator < denseGraph.size(); postdominator++) {
+                    assertEquals("Seed " + seed + ", " + node + " by " + postdominator,
+                            tree.isPostdominatedBy(denseGraph.getNode(node), denseGraph.getNode(postdominator)),
+                            frozen.isPostdominatedBy(node, postdominator));
+                }
+            }
+        }
+    }
+
+    public void testSnapshotKeepsIds() {
+        ControlFlowGraph graph = new SyntheticControlFlowGraphFactory(4).getControlFlowGraph(30);
+        ControlFlowSnapshot snapshot = ControlFlowSnapshot.build(graph);
+        DenseControlFlowGraph denseGraph = snapshot.getControlFlowGraph();
+        String before = Arrays.toString(ImmediatePostdominatorSolver.getImmediatePostdominators(denseGraph));
+
+        // Build another graph over the same nodes in reverse, which numbers them differently.
+        ControlFlowGraph reversed = new ControlFlowGraph();
+        for (int i = graph.getNodes().size() - 1; i >= 0; i--) {
+            reversed.addNode(graph.getNodes().get(i));
+        }
+        reversed.getDenseGraph();
+
+        assertSame(denseGraph, snapshot.getPostdominatorTree().getGraph());
+        for (int node = 0; node < denseGraph.size(); node++) {
+            assertEquals(node, denseGraph.getId(denseGraph.getNode(node)));
+            assertSame(graph.getNodes().get(node), denseGraph.getNode(node));
+            assertSame(denseGraph.getNode(node), snapshot.getControlDependenceGraph().getNodes().get(node));
+        }
+        assertEquals(before, Arrays.toString(ImmediatePostdominatorSolver.getImmediatePostdominators(denseGraph)));
+        assertEquals(graph.getDenseGraph().getEdgeCount(), denseGraph.getEdgeCount());
+    }
+
+    private static <T> void checkReadOnly(String name, Collection<T> view, T element) {
+        try {
+            view.add(element);
+            fail(name + " accepted an added element");
+        } catch (UnsupportedOperationException expected) {
+        }
+        if (!view.isEmpty()) {
+            try {
+                view.clear();
+                fail(name + " was cleared");
+            } catch (UnsupportedOperationException expected) {
+            }
+        }
+    }
+
+    public void testReadOnlyViews() {
+        ControlFlowGraph graph = new SyntheticControlFlowGraphFactory(2).getControlFlowGraph(20);
+        ControlFlowNode extra = new ControlFlowNode(EmptyInstruction.INSTANCE, null);
+        checkReadOnly("ControlFlowGraph.getNodes()", graph.getNodes(), extra);
+        checkReadOnly("PostdominatorIndex.getNodes()", Postdominator.getPostdominators(graph).getNodes(), extra);
+        ImmediatePostdominatorTree tree = ImmediatePostdominatorSolver.solve(graph);
+        Set<ControlFlowNode> children = tree.getChildren(graph.getExitNode());
+        assertNotNull(children);
+        checkReadOnly("ImmediatePostdominatorTree.getChildren()", children, extra);
+        checkReadOnly("ControlDependenceGraph.getNodes()", ControlDependenceGraph.from(graph).getNodes(), extra);
+        checkReadOnly("DataDependenceGraph.getNodes()", DataDependenceGraph.from(graph).getNodes(), extra);
+        assertEquals(21, graph.getNodes().size());
+    }
+}
@@ -0,0 +1,157 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import com.intellij.openapi.command.WriteCommandAction;
+import com.intellij.openapi.editor.Document;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiDocumentManager;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.controlFlow.ControlFlowFactory;
+import com.intellij.psi.controlFlow.LocalsOrMyInstanceFieldsControlFlowPolicy;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+
+import java.util.Arrays;
+
+/**
+ * Hits, evictions and invalidation of cached graphs.
+ */
+public class ProgramDependenceCacheTest extends LightCodeInsightTestCase {
+
+    private static final String SOURCE =
+            "class A {\n" +
+            "    int a(int x) { if (x > 0) { x++; } return x; }\n" +
+            "    int b(int x) { while (x > 0) { x--; } return x; }\n" +
+            "    int c(int x) { for (int i = 0; i < x; i++) { if (i == 2) break; } return x; }\n" +
+            "    int d(int x) {\n" +
+            "        x++;\n" +
+            "        if (x > 1) { x--; } else { x++; }\n" +
+            "        while (x > 5) { x -= 2; }\n" +
+            "        switch (x) { case 1: x = 4; break; case 2: x = 3; default: x = 0; }\n" +
+            "        try { x = x / (x - 3); } catch (ArithmeticException e) { return -1; }\n" +
+            "        return x;\n" +
+            "    }\n" +
+            "}\n";
+
+    private static PsiCodeBlock getBody(String methodName) {
+        PsiClass psiClass = ((PsiJavaFile) getFile()).getClasses()[0];
+        return psiClass.findMethodsByName(methodName, false)[0].getBody();
+    }
+
+    private static ProgramDependenceCache createCache(int maxEntries, long maxEstimatedBytes) {
+        return new ProgramDependenceCache(getProject(), LocalsOrMyInstanceFieldsControlFlowPolicy.getInstance(),
+                maxEntries, maxEstimatedBytes);
+    }
+
+    private static String getExpectedDependences(PsiCodeBlock block) throws Exception {
+        ControlFlowGraph controlFlowGraph = ControlFlowGraphFactory.getControlFlowGraph(
+                ControlFlowFactory.getInstance(getProject()).getControlFlow(block,
+                        LocalsOrMyInstanceFieldsControlFlowPolicy.getInstance()));
+        return new ProgramDependenceCache.Entry(controlFlowGraph).getControlDependenceGraph().toString();
+    }
+
+    public void testHits() throws Exception {
+        configureFromFileText("A.java", SOURCE);
+        ProgramDependenceCache cache = createCache(8, Long.MAX_VALUE);
+        ProgramDependenceCache.Entry entry = cache.get(getBody("a"));
+        assertNotNull(entry);
+        assertSame(entry, cache.get(getBody("a")));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+        assertEquals(getExpectedDependences(getBody("a")), entry.getControlDependenceGraph().toString());
+    }
+
+    public void testEvictsLeastRecentlyUsed() {
+        configureFromFileText("A.java", SOURCE);
+        ProgramDependenceCache cache = createCache(2, Long.MAX_VALUE);
+        ProgramDependenceCache.Entry a = cache.get(getBody("a"));
+        cache.get(getBody("b"));
+        assertSame(a, cache.get(getBody("a")));
+        cache.get(getBody("c"));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        // b was used least recently, so it was the one evicted.
+        assertSame(a, cache.get(getBody("a")));
+        long misses = cache.getMissCount();
+        cache.get(getBody("b"));
+        assertEquals(misses + 1, cache.getMissCount());
+    }
+
+    public void testAccountsForLazyGraphs() {
+        configureFromFileText("A.java", SOURCE);
+        ProgramDependenceCache cache = createCache(8, Long.MAX_VALUE);
+        ProgramDependenceCache.Entry entry = cache.get(getBody("c"));
+        long estimatedBytes = cache.getEstimatedBytes();
+        assertEquals(entry.getEstimatedBytes(), estimatedBytes);
+
+        entry.getPostdominatorIndex();
+        assertTrue(cache.getEstimatedBytes() > estimatedBytes);
+        estimatedBytes = cache.getEstimatedBytes();
+        entry.getProgramDependenceGraph();
+        assertTrue(cache.getEstimatedBytes() > estimatedBytes);
+        assertEquals(entry.getEstimatedBytes(), cache.getEstimatedBytes());
+    }
+
+    public void testEvictsWhenLazyGraphsGrow() {
+        configureFromFileText("A.java", SOURCE);
+        ProgramDependenceCache probe = createCache(8, Long.MAX_VALUE);
+        long bytesA = probe.get(getBody("a")).getEstimatedBytes();
+        long bytesB = probe.get(getBody("b")).getEstimatedBytes();
+
+        ProgramDependenceCache cache = createCache(8, bytesA + bytesB);
+        cache.get(getBody("a"));
+        ProgramDependenceCache.Entry b = cache.get(getBody("b"));
+        assertEquals(2, cache.size());
+        b.getProgramDependenceGraph();
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(b.getEstimatedBytes(), cache.getEstimatedBytes());
+    }
+
+    public void testInvalidatedByEdit() throws Exception {
+        configureFromFileText("A.java", SOURCE);
+        ProgramDependenceCache cache = createCache(8, Long.MAX_VALUE);
+        ProgramDependenceCache.Entry before = cache.get(getBody("b"));
+        cache.get(getBody("a"));
+
+        Document document = getEditor().getDocument();
+        int offset = document.getText().indexOf("x--;");
+        WriteCommandAction.runWriteCommandAction(getProject(),
+                () -> document.insertString(offset, "if (x == 3) { x = 1; } "));
+        PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+
+        long misses = cache.getMissCount();
+        ProgramDependenceCache.Entry after = cache.get(getBody("b"));
+        assertNotNull(after);
+        assertNotSame(before, after);
+        assertEquals(misses + 1, cache.getMissCount());
+        assertEquals(getExpectedDependences(getBody("b")), after.getControlDependenceGraph().toString());
+        assertTrue(cache.size() <= 2);
+    }
+
+    /**
+     * An edit at the start of a method is only reached by a few nodes, so the cache patches the graphs it had.
+     */
+    public void testUpdatedIncrementallyAfterEdit() throws Exception {
+        configureFromFileText("A.java", SOURCE);
+        ProgramDependenceCache cache = createCache(8, Long.MAX_VALUE);
+        cache.get(getBody("d"));
+
+        Document document = getEditor().getDocument();
+        int offset = document.getText().indexOf("x++;\n");
+        WriteCommandAction.runWriteCommandAction(getProject(), () -> document.insertString(offset, "x *= 3; "));
+        PsiDocumentManager.getInstance(getProject()).commitAllDocuments();
+
+        ProgramDependenceCache.Entry after = cache.get(getBody("d"));
+        assertEquals(1, cache.getUpdater().getIncrementalUpdateCount());
+        assertEquals(0, cache.getUpdater().getFullRebuildCount());
+        assertEquals(getExpectedDependences(getBody("d")), after.getControlDependenceGraph().toString());
+        DenseControlFlowGraph graph = after.getControlFlowGraph().getDenseGraph();
+        assertEquals(Arrays.toString(ImmediatePostdominatorSolver.getImmediatePostdominators(graph)),
+                Arrays.toString(after.getImmediatePostdominatorTree().getParentIds(graph)));
+    }
+}
@@ -0,0 +1,99 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.controlFlow.ControlFlow;
+import com.intellij.psi.controlFlow.ControlFlowFactory;
+import com.intellij.psi.controlFlow.LocalsOrMyInstanceFieldsControlFlowPolicy;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+import org.jetbrains.annotations.NonNls;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Program dependence graphs hold exactly the edges of the control and data dependence graphs they are built from, and
+ * their outgoing and incoming indexes agree.
+ */
+public class ProgramDependenceGraphTest extends LightCodeInsightTestCase {
+    @NonNls
+    private static final String TEST_DIR_PATH = "testData/psi/dataDependenceGraph";
+
+    private static void doTestFor(final File file) throws Exception {
+        String contents = StringUtil.convertLineSeparators(FileUtil.loadFile(file));
+        configureFromFileText(file.getName(), contents);
+        final int offset = getEditor().getCaretModel().getOffset();
+        PsiElement element = getFile().findElementAt(offset);
+        element = PsiTreeUtil.getParentOfType(element, PsiCodeBlock.class, false);
+        assertNotNull("Selected element: " + element, element);
+
+        ControlFlow controlFlow = ControlFlowFactory.getInstance(getProject()).getControlFlow(element,
+                LocalsOrMyInstanceFieldsControlFlowPolicy.getInstance());
+        ControlFlowGraph controlFlowGraph = ControlFlowGraphFactory.getControlFlowGraph(controlFlow);
+        DenseControlFlowGraph denseGraph = controlFlowGraph.getDenseGraph();
+        ControlDependenceGraph controlDependenceGraph = PostdominanceFrontier.getControlDependenceGraph(denseGraph,
+                ImmediatePostdominatorSolver.getImmediatePostdominators(denseGraph));
+        DataDependenceGraph dataDependenceGraph = DataDependenceGraph.from(controlFlowGraph);
+        ProgramDependenceGraph graph = ProgramDependenceGraph.from(controlDependenceGraph, dataDependenceGraph);
+        checkGraph(file.getName(), graph, controlDependenceGraph, dataDependenceGraph);
+    }
+
+    static void checkGraph(String name, ProgramDependenceGraph graph, ControlDependenceGraph controlDependenceGraph,
+                           DataDependenceGraph dataDependenceGraph) {
+        List<String> expected = new ArrayList<>();
+        for (int node = 0; node < controlDependenceGraph.size(); node++) {
+            for (int dependence = controlDependenceGraph.getDependenceStart(node);
+                 dependence < controlDependenceGraph.getDependenceEnd(node); dependence++) {
+                expected.add(controlDependenceGraph.getDependenceTarget(dependence) + "->" + node + " " +
+                        controlDependenceGraph.getDependenceType(dependence));
+            }
+        }
+        for (int node = 0; node < dataDependenceGraph.size(); node++) {
+            for (int dependence = dataDependenceGraph.getDependenceStart(node);
+                 dependence < dataDependenceGraph.getDependenceEnd(node); dependence++) {
+                expected.add(dataDependenceGraph.getDependenceTarget(dependence) + "->" + node + " " +
+                        dataDependenceGraph.getDependenceVariable(dependence).getName());
+            }
+        }
+
+        List<String> outgoing = new ArrayList<>();
+        int incomingCount = 0;
+        for (int node = 0; node < graph.size(); node++) {
+            assertEquals(name, (node == 0) ? 0 : graph.getOutgoingEnd(node - 1), graph.getOutgoingStart(node));
+            for (int edge = graph.getOutgoingStart(node); edge < graph.getOutgoingEnd(node); edge++) {
+                assertEquals(name + ": source of edge " + edge, node, graph.getEdgeSource(edge));
+                String label = (graph.getEdgeKind(edge) == ProgramDependenceGraph.EdgeKind.CONTROL) ?
+                        graph.getControlFlowEdgeType(edge).toString() : graph.getVariable(edge).getName();
+                outgoing.add(node + "->" + graph.getEdgeTarget(edge) + " " + label);
+            }
+            for (int i = graph.getIncomingStart(node); i < graph.getIncomingEnd(node); i++) {
+                assertEquals(name, node, graph.getEdgeTarget(graph.getIncomingEdge(i)));
+                incomingCount++;
+            }
+        }
+        Collections.sort(expected);
+        Collections.sort(outgoing);
+        assertEquals(name, expected, outgoing);
+        assertEquals(name, graph.getEdgeCount(), incomingCount);
+        assertEquals(name, graph.getEdgeCount(), expected.size());
+        assertTrue(name, graph.getEstimatedBytes() >= graph.getEdgeCount() * ProgramDependenceGraph.getBytesPerEdge());
+    }
+
+    public void test() throws Exception {
+        File testDir = new File(TEST_DIR_PATH);
+        final File[] files = testDir.listFiles((dir, name) -> name.endsWith(".java"));
+        for (int i = 0; i < files.length; i++) {
+            doTestFor(files[i]);
+
+            System.out.print((i + 1) + " ");
+        }
+    }
+}
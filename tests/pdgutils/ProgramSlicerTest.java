@@ -0,0 +1,133 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.psi.PsiCodeBlock;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.controlFlow.ControlFlow;
+import com.intellij.psi.controlFlow.ControlFlowFactory;
+import com.intellij.psi.controlFlow.LocalsOrMyInstanceFieldsControlFlowPolicy;
+import com.intellij.psi.util.PsiTreeUtil;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+import org.jetbrains.annotations.NonNls;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Slices of the data dependence fixtures, checked against a plain reachability search over the graph's edges.
+ */
+public class ProgramSlicerTest extends LightCodeInsightTestCase {
+    @NonNls
+    private static final String TEST_DIR_PATH = "testData/psi/dataDependenceGraph";
+
+    private static ProgramDependenceGraph getGraph(final File file) throws Exception {
+        String contents = StringUtil.convertLineSeparators(FileUtil.loadFile(file));
+        configureFromFileText(file.getName(), contents);
+        final int offset = getEditor().getCaretModel().getOffset();
+        PsiElement element = getFile().findElementAt(offset);
+        element = PsiTreeUtil.getParentOfType(element, PsiCodeBlock.class, false);
+        assertNotNull("Selected element: " + element, element);
+
+        ControlFlow controlFlow = ControlFlowFactory.getInstance(getProject()).getControlFlow(element,
+                LocalsOrMyInstanceFieldsControlFlowPolicy.getInstance());
+        return ProgramDependenceGraph.from(ControlFlowGraphFactory.getControlFlowGraph(controlFlow));
+    }
+
+    /**
+     * @return ids of the nodes reachable from the seed along the graph's edges, or against them for a backward slice.
+     */
+    private static Set<Integer> getExpectedSlice(ProgramDependenceGraph graph, int seed,
+                                                 ProgramSlicer.Direction direction) {
+        Set<Integer> slice = new HashSet<>();
+        slice.add(seed);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int node = 0; node < graph.size(); node++) {
+                for (int edge = graph.getOutgoingStart(node); edge < graph.getOutgoingEnd(node); edge++) {
+                    int from = (direction == ProgramSlicer.Direction.FORWARD) ? node : graph.getEdgeTarget(edge);
+                    int to = (direction == ProgramSlicer.Direction.FORWARD) ? graph.getEdgeTarget(edge) : node;
+                    if (slice.contains(from) && slice.add(to)) {
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return slice;
+    }
+
+    private static void checkSlices(String name, ProgramDependenceGraph graph) {
+        // One slicer answers every query, so a query that left visited bits behind would spoil the next one.
+        ProgramSlicer slicer = new ProgramSlicer(graph);
+        int[] slice = new int[graph.size()];
+        for (ProgramSlicer.Direction direction : ProgramSlicer.Direction.values()) {
+            for (int seed = 0; seed < graph.size(); seed++) {
+                int sliceSize = slicer.slice(new int[]{seed}, 1, direction, slice);
+                Set<Integer> actual = new HashSet<>();
+                for (int i = 0; i < sliceSize; i++) {
+                    assertTrue(name + ": node found twice", actual.add(slice[i]));
+                }
+                assertEquals(name + ": " + direction + " slice of " + seed,
+                        getExpectedSlice(graph, seed, direction), actual);
+                assertEquals(sliceSize, slicer.slice(Collections.singleton(graph.getNode(seed)), direction).size());
+            }
+        }
+    }
+
+    private static void checkSliceEach(String name, ProgramDependenceGraph graph, int batchSize) {
+        ProgramSlicer slicer = new ProgramSlicer(graph);
+        long[] masks = new long[graph.size()];
+        int[] seeds = new int[batchSize];
+        for (ProgramSlicer.Direction direction : ProgramSlicer.Direction.values()) {
+            for (int first = 0; first < graph.size(); first += batchSize) {
+                int seedCount = Math.min(batchSize, graph.size() - first);
+                for (int i = 0; i < seedCount; i++) {
+                    seeds[i] = first + i;
+                }
+                slicer.sliceEach(seeds, seedCount, direction, masks);
+                for (int i = 0; i < seedCount; i++) {
+                    Set<Integer> actual = new HashSet<>();
+                    for (int node = 0; node < graph.size(); node++) {
+                        if ((masks[node] & (1L << i)) != 0) {
+                            actual.add(node);
+                        }
+                    }
+                    assertEquals(name + ": " + direction + " slice of " + seeds[i] + " in a batch of " + seedCount,
+                            getExpectedSlice(graph, seeds[i], direction), actual);
+                }
+            }
+        }
+    }
+
+    public void test() throws Exception {
+        File testDir = new File(TEST_DIR_PATH);
+        final File[] files = testDir.listFiles((dir, name) -> name.endsWith(".java"));
+        for (int i = 0; i < files.length; i++) {
+            ProgramDependenceGraph graph = getGraph(files[i]);
+            checkSlices(files[i].getName(), graph);
+            for (int batchSize : new int[]{1, 3, ProgramSlicer.MAX_BATCH_SIZE}) {
+                checkSliceEach(files[i].getName(), graph, batchSize);
+            }
+
+            System.out.print((i + 1) + " ");
+        }
+    }
+
+    public void testBatchTooLarge() throws Exception {
+        File testDir = new File(TEST_DIR_PATH);
+        ProgramDependenceGraph graph = getGraph(testDir.listFiles((dir, name) -> name.endsWith(".java"))[0]);
+        ProgramSlicer slicer = new ProgramSlicer(graph);
+        try {
+            slicer.sliceEach(new int[ProgramSlicer.MAX_BATCH_SIZE + 1], ProgramSlicer.MAX_BATCH_SIZE + 1,
+                    ProgramSlicer.Direction.BACKWARD, new long[graph.size()]);
+            fail("Expected a batch larger than " + ProgramSlicer.MAX_BATCH_SIZE + " to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,119 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import junit.framework.TestCase;
+
+import java.util.Random;
+
+/**
+ * Answers from the compressed closure and from the fallback search match a breadth-first search of the graph.
+ */
+public class ReachabilityIndexTest extends TestCase {
+
+    private static final int[] MAX_INTERVALS = {ReachabilityIndex.DEFAULT_MAX_INTERVALS, 5, 0};
+
+    /**
+     * @return whether there is a path of one or more edges from {@code from} to {@code to}.
+     */
+    private static boolean search(int[] offsets, int[] targets, int from, int to) {
+        int nodeCount = offsets.length - 1;
+        boolean[] visited = new boolean[nodeCount];
+        int[] queue = new int[nodeCount];
+        int head = 0;
+        int tail = 0;
+        for (int edge = offsets[from]; edge < offsets[from + 1]; edge++) {
+            if (!visited[targets[edge]]) {
+                visited[targets[edge]] = true;
+                queue[tail++] = targets[edge];
+            }
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            for (int edge = offsets[node]; edge < offsets[node + 1]; edge++) {
+                if (!visited[targets[edge]]) {
+                    visited[targets[edge]] = true;
+                    queue[tail++] = targets[edge];
+                }
+            }
+        }
+        return visited[to];
+    }
+
+    private static void checkAgainstSearch(String message, int[] offsets, int[] targets) {
+        for (int maxIntervals : MAX_INTERVALS) {
+            ReachabilityIndex index = new ReachabilityIndex(offsets, targets, maxIntervals);
+            assertEquals(offsets.length - 1, index.size());
+            if (maxIntervals == 0 && offsets.length > 1) {
+                assertFalse(index.isCompressed());
+            }
+            for (int from = 0; from < index.size(); from++) {
+                for (int to = 0; to < index.size(); to++) {
+                    assertEquals(message + ", max intervals " + maxIntervals + ", " + from + " to " + to,
+                            search(offsets, targets, from, to), index.reaches(from, to));
+                }
+            }
+        }
+    }
+
+    /**
+     * A random graph, mostly edges forward with some back edges and self loops, so that there are components of
+     * every size.
+     */
+    public void testRandomGraphs() {
+        for (long seed = 0; seed < 40; seed++) {
+            Random random = new Random(seed);
+            int nodeCount = 1 + random.nextInt(60);
+            int[] offsets = new int[nodeCount + 1];
+            int[] targets = new int[nodeCount * 4];
+            int edgeCount = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                int degree = random.nextInt(4);
+                for (int i = 0; i < degree; i++) {
+                    int kind = random.nextInt(10);
+                    if (kind == 0) {
+                        targets[edgeCount++] = node;
+                    } else if (kind < 3) {
+                        targets[edgeCount++] = random.nextInt(node + 1);
+                    } else {
+                        targets[edgeCount++] = node + random.nextInt(nodeCount - node);
+                    }
+                }
+                offsets[node + 1] = edgeCount;
+            }
+            checkAgainstSearch("Seed " + seed, offsets, targets);
+        }
+    }
+
+    public void testControlFlowGraphs() {
+        for (long seed = 0; seed < 20; seed++) {
+            DenseControlFlowGraph graph = new SyntheticControlFlowGraphFactory(seed).getDenseControlFlowGraph(80);
+            int[] offsets = new int[graph.size() + 1];
+            int[] targets = new int[graph.getEdgeCount()];
+            for (int node = 0; node < graph.size(); node++) {
+                for (int edge = graph.getSuccessorStart(node); edge < graph.getSuccessorEnd(node); edge++) {
+                    targets[edge] = graph.getSuccessor(edge);
+                }
+                offsets[node + 1] = graph.getSuccessorEnd(node);
+            }
+            checkAgainstSearch("Seed " + seed, offsets, targets);
+            assertTrue(ReachabilityIndex.forControlFlow(graph).isCompressed());
+            assertFalse(ReachabilityIndex.forControlFlow(graph, 0).isCompressed());
+        }
+    }
+
+    public void testEmptyGraph() {
+        ReachabilityIndex index =
+                new ReachabilityIndex(new int[1], new int[0], ReachabilityIndex.DEFAULT_MAX_INTERVALS);
+        assertEquals(0, index.size());
+        assertEquals(0, index.getIntervalCount());
+    }
+
+    public void testEstimatedBytesCountEdges() {
+        ReachabilityIndex chain = new ReachabilityIndex(new int[]{0, 1, 2, 2}, new int[]{1, 2}, 0);
+        assertTrue(chain.getEstimatedBytes() > 0);
+        assertTrue(new ReachabilityIndex(new int[]{0, 2, 3, 3}, new int[]{1, 2, 2}, 0).getEstimatedBytes() >
+                chain.getEstimatedBytes());
+    }
+}
@@ -0,0 +1,98 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import junit.framework.TestCase;
+
+/**
+ * Generated graphs are reproducible, have the size asked for, and give the same control dependences whichever way
+ * postdominators are computed.
+ */
+public class SyntheticControlFlowGraphFactoryTest extends TestCase {
+
+    private static final int[] SIZES = {0, 1, 2, 7, 50, 200};
+
+    public void testSeedReproducesGraph() {
+        for (int size : SIZES) {
+            String first = new SyntheticControlFlowGraphFactory(7).getControlFlowGraph(size).toString();
+            String second = new SyntheticControlFlowGraphFactory(7).getControlFlowGraph(size).toString();
+            assertEquals("Size " + size, first, second);
+        }
+        // A factory can be reused: each graph starts over from the seed.
+        SyntheticControlFlowGraphFactory factory = new SyntheticControlFlowGraphFactory(7);
+        String first = factory.getControlFlowGraph(200).toString();
+        factory.getControlFlowGraph(50);
+        assertEquals(first, factory.getControlFlowGraph(200).toString());
+        assertFalse(first.equals(new SyntheticControlFlowGraphFactory(8).getControlFlowGraph(200).toString()));
+    }
+
+    public void testExactSize() {
+        for (SyntheticControlFlowGraphFactory.Shape shape : SyntheticControlFlowGraphFactory.Shape.values()) {
+            for (long seed = 0; seed < 20; seed++) {
+                SyntheticControlFlowGraphFactory factory = new SyntheticControlFlowGraphFactory(seed);
+                // Favor one shape so that each is generated at every nesting depth.
+                factory.setWeight(shape, 20);
+                factory.setMaxSwitchCases(1 + (int) (seed % 4));
+                for (int size : SIZES) {
+                    DenseControlFlowGraph graph = factory.getDenseControlFlowGraph(size);
+                    assertEquals(shape + ", seed " + seed, size + 1, graph.size());
+                    assertEquals(shape + ", seed " + seed, size, graph.getExitNode());
+                    assertEquals(0, graph.getSuccessorEnd(size) - graph.getSuccessorStart(size));
+                    for (int node = 0; node < size; node++) {
+                        assertTrue("Node " + node + " has no successors",
+                                graph.getSuccessorEnd(node) > graph.getSuccessorStart(node));
+                    }
+                }
+            }
+        }
+    }
+
+    public void testRejectsBadSettings() {
+        SyntheticControlFlowGraphFactory factory = new SyntheticControlFlowGraphFactory(0);
+        Runnable[] badSettings = {
+                () -> factory.setWeight(SyntheticControlFlowGraphFactory.Shape.LOOP, -1),
+                () -> factory.setMaxDepth(-1),
+                () -> factory.setMaxDepth(SyntheticControlFlowGraphFactory.MAX_DEPTH + 1),
+                () -> factory.setMaxSwitchCases(0),
+                () -> factory.setThrowProbability(-0.1),
+                () -> factory.setThrowProbability(1.5),
+                () -> factory.setThrowProbability(Double.NaN),
+                () -> factory.getDenseControlFlowGraph(-1)
+        };
+        for (int i = 0; i < badSettings.length; i++) {
+            try {
+                badSettings[i].run();
+                fail("Setting " + i + " should have been rejected");
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        factory.setMaxSwitchCases(1);
+        factory.setThrowProbability(1);
+        factory.setMaxDepth(0);
+        assertEquals(101, factory.getDenseControlFlowGraph(100).size());
+        // The deepest allowed nesting is accepted.
+        for (SyntheticControlFlowGraphFactory.Shape shape : SyntheticControlFlowGraphFactory.Shape.values()) {
+            factory.setWeight(shape, (shape == SyntheticControlFlowGraphFactory.Shape.IF_ELSE) ? 1 : 0);
+        }
+        factory.setMaxDepth(SyntheticControlFlowGraphFactory.MAX_DEPTH);
+        assertEquals(100001, factory.getDenseControlFlowGraph(100000).size());
+    }
+
+    public void testStrategiesAgree() {
+        for (long seed = 0; seed < 30; seed++) {
+            SyntheticControlFlowGraphFactory factory = new SyntheticControlFlowGraphFactory(seed);
+            factory.setThrowProbability((seed % 3) / 2.0);
+            // Set intersection is quadratic, so keep the graphs small.
+            ControlFlowGraph graph = factory.getControlFlowGraph(10 + (int) (seed * 3));
+            String expected = ControlDependenceGraph.from(graph, PostdominatorStrategy.COOPER_HARVEY_KENNEDY)
+                    .toString();
+            for (PostdominatorStrategy strategy : PostdominatorStrategy.values()) {
+                assertEquals("Seed " + seed + ", strategy " + strategy, expected,
+                        ControlDependenceGraph.from(graph, strategy).toString());
+            }
+            assertEquals("Seed " + seed + ", basic blocks", expected,
+                    BasicBlockGraph.from(graph.getDenseGraph()).getInstructionControlDependences().toString());
+        }
+    }
+}
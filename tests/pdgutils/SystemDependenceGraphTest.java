@@ -0,0 +1,86 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import com.intellij.openapi.fileEditor.impl.LoadTextUtil;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiClass;
+import com.intellij.psi.PsiJavaFile;
+import com.intellij.psi.PsiMethod;
+import com.intellij.testFramework.LightCodeInsightTestCase;
+import org.jetbrains.annotations.NonNls;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A system dependence graph over a caller, a callee with a result, a void callee, a nested call and a call to a method
+ * outside the graph, and slices over it that don't follow unrealizable paths.
+ */
+public class SystemDependenceGraphTest extends LightCodeInsightTestCase {
+    @NonNls
+    private static final String TEST_PATH = "testData/psi/systemDependenceGraph/flowCalls";
+
+    private static SystemDependenceGraph getGraph() throws Exception {
+        File file = new File(TEST_PATH + ".java");
+        String contents = StringUtil.convertLineSeparators(FileUtil.loadFile(file));
+        configureFromFileText(file.getName(), contents);
+        PsiClass psiClass = ((PsiJavaFile) getFile()).getClasses()[0];
+        // other() is left out, so twice() calls a method outside the graph.
+        List<PsiMethod> methods = new ArrayList<>();
+        for (String name : new String[]{"add", "log", "twice"}) {
+            methods.add(psiClass.findMethodsByName(name, false)[0]);
+        }
+        return SystemDependenceGraph.from(methods);
+    }
+
+    private static int[] sortedSlice(SystemDependenceGraph graph, int seed, ProgramSlicer.Direction direction) {
+        int[] slice = graph.slice(new int[]{seed}, direction);
+        Arrays.sort(slice);
+        return slice;
+    }
+
+    public void testGraph() throws Exception {
+        SystemDependenceGraph graph = getGraph();
+        String expectedFullPath = TEST_PATH + ".txt";
+        VirtualFile expectedFile = LocalFileSystem.getInstance().findFileByPath(expectedFullPath);
+        assertNotNull(expectedFullPath, expectedFile);
+        String expected = LoadTextUtil.loadText(expectedFile).toString().trim().replaceAll("\r", "");
+        assertEquals("Text mismatch (in file " + expectedFullPath + "):\n", expected, graph.toString().trim());
+
+        assertEquals(3, graph.getMethodCount());
+        assertEquals(4, graph.getCallSiteCount());
+        assertEquals("add(add(x, 1), x)", graph.getCall(0).getText());
+        assertEquals("add(x, 1)", graph.getCall(1).getText());
+        assertEquals(1, graph.getCallee(2));
+        assertEquals(-1, graph.getCallee(3));
+        // Four summaries worked out from callees and one assumed for other().
+        assertEquals(5, graph.getSummaryEdgeCount());
+    }
+
+    /**
+     * The backward slice of the inner call's result descends into add() but doesn't climb back out of it into the
+     * outer call, so the second argument of the outer call stays out.
+     */
+    public void testBackwardSlice() throws Exception {
+        SystemDependenceGraph graph = getGraph();
+        assertEquals(Arrays.toString(new int[]{0, 1, 2, 5, 6, 7, 13, 14, 21, 27, 28, 29, 30}),
+                Arrays.toString(sortedSlice(graph, 30, ProgramSlicer.Direction.BACKWARD)));
+    }
+
+    /**
+     * The forward slice of the outer call's second argument descends into add() and log() but doesn't climb back out
+     * of add() into the inner call's result.
+     */
+    public void testForwardSlice() throws Exception {
+        SystemDependenceGraph graph = getGraph();
+        assertEquals(Arrays.toString(new int[]{2, 6, 7, 9, 12, 15, 16, 17, 18, 19, 22, 25, 26, 32, 34, 35}),
+                Arrays.toString(sortedSlice(graph, 15, ProgramSlicer.Direction.FORWARD)));
+    }
+}
@@ -0,0 +1,85 @@
+// Copyright 2000-2018 JetBrains s.r.o. Use of this source code is governed by the Apache 2.0 license that can be
+// found in the LICENSE file.
+
+package pdgutils;
+
+import com.intellij.psi.controlFlow.EmptyInstruction;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The worklist solver reaches the same postdominators as set intersection, doing the work its metrics report.
+ */
+public class WorklistSolverTest extends TestCase {
+
+    /**
+     * 0 -> 1, a loop condition that leaves to the exit 4 or runs 2 -> 3 and back to 1.
+     */
+    private static DenseControlFlowGraph createLoop() {
+        ControlFlowNode[] nodes = new ControlFlowNode[5];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new ControlFlowNode(EmptyInstruction.INSTANCE, null);
+        }
+        int[] sources = {0, 1, 1, 2, 3};
+        int[] targets = {1, 2, 4, 3, 1};
+        byte[] types = new byte[sources.length];
+        types[1] = types[2] = (byte) ControlFlowEdgeType.BRANCH.ordinal();
+        return new DenseControlFlowGraph(nodes, 4, sources, targets, types, sources.length);
+    }
+
+    private static void checkMatchesSetIntersection(String name, DenseControlFlowGraph graph) {
+        DataflowSolution<long[]> solution = WorklistSolver.solve(graph, new PostdominatorProblem(graph));
+        PostdominatorIndex index = Postdominator.getPostdominators(new ControlFlowGraph(graph));
+        for (int node = 0; node < graph.size(); node++) {
+            if (!solution.isReached(node)) {
+                continue;
+            }
+            for (int postdominator = 0; postdominator < graph.size(); postdominator++) {
+                assertEquals(name + ", " + node + " by " + postdominator,
+                        index.hasPostdominator(graph.getNode(node), graph.getNode(postdominator)),
+                        BitsetLattice.get(solution.getValue(node), postdominator));
+            }
+        }
+    }
+
+    public void testLoop() {
+        DenseControlFlowGraph graph = createLoop();
+        checkMatchesSetIntersection("Loop", graph);
+        DataflowSolution<long[]> solution = WorklistSolver.solve(graph, new PostdominatorProblem(graph));
+        // 1 first reads 2 at top, so it is queued again once 2 is visited and takes a second pass.
+        DataflowMetrics metrics = solution.getMetrics();
+        assertEquals(2, metrics.getIterations());
+        assertEquals(6, metrics.getNodeVisits());
+        // Per visit: one assignment of the start value, one meet per input and one assignment of the result.
+        assertEquals(19, metrics.getSetOperations());
+    }
+
+    public void testSynthetic() {
+        for (long seed = 0; seed < 30; seed++) {
+            SyntheticControlFlowGraphFactory factory = new SyntheticControlFlowGraphFactory(seed);
+            factory.setThrowProbability((seed % 3) / 4.0);
+            // Set intersection is quadratic, so keep the graphs small.
+            DenseControlFlowGraph graph = factory.getDenseControlFlowGraph(10 + (int) (seed * 3));
+            checkMatchesSetIntersection("Seed " + seed, graph);
+
+            DataflowMetrics metrics = WorklistSolver.solve(graph, new PostdominatorProblem(graph)).getMetrics();
+            int reached = graph.getReversePostorder(graph.getExitNode(), true).length;
+            assertTrue(metrics.toString(), metrics.getIterations() >= 1);
+            assertTrue(metrics.toString(), metrics.getNodeVisits() >= reached);
+            assertTrue(metrics.toString(), metrics.getNodeVisits() <= metrics.getIterations() * reached);
+        }
+    }
+
+    public void testNoBoundary() {
+        DenseControlFlowGraph graph = createLoop();
+        DataflowSolution<long[]> solution = WorklistSolver.solve(graph, new PostdominatorProblem(graph) {
+            @Override
+            public int getBoundaryNode(@NotNull DenseControlFlowGraph graph) {
+                return DenseControlFlowGraph.NO_NODE;
+            }
+        });
+        assertFalse(solution.isReached(0));
+        assertEquals(0, solution.getMetrics().getIterations());
+        assertEquals(0, solution.getMetrics().getNodeVisits());
+    }
+}